@@ -0,0 +1,129 @@
+package nl.inl.blacklab.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.apache.commons.io.FileUtils;
+
+import nl.inl.blacklab.exceptions.BlackLabRuntimeException;
+import nl.inl.blacklab.exceptions.DocumentFormatNotFound;
+import nl.inl.blacklab.exceptions.ErrorOpeningIndex;
+import nl.inl.blacklab.exceptions.InvalidQuery;
+import nl.inl.blacklab.index.DocumentFormats;
+import nl.inl.blacklab.index.Indexer;
+import nl.inl.blacklab.mocks.DocIndexerExample;
+import nl.inl.blacklab.queryParser.corpusql.CorpusQueryLanguageParser;
+import nl.inl.blacklab.search.BlackLab;
+import nl.inl.blacklab.search.BlackLabIndex;
+import nl.inl.blacklab.search.lucene.BLSpanQuery;
+import nl.inl.blacklab.search.results.QueryInfo;
+
+/**
+ * Generates and opens the corpus the benchmarks run on.
+ *
+ * The corpus is generated from a fixed random seed, so every run (and every
+ * commit) is benchmarked on exactly the same data. Word frequencies follow
+ * Zipf's law, like in natural language. Each word has a lemma and a part of
+ * speech that is determined by the word.
+ *
+ * Generated indexes are kept in the directory given by the system property
+ * blacklab.benchmarks.dir (default: benchmark-corpus in the temp dir), so they
+ * are only built once.
+ */
+public class BenchmarkCorpus {
+
+    /** Random seed for generating the corpus; don't change, or results can't be compared */
+    static final long SEED = 20221019L;
+
+    /** Number of tokens per document */
+    static final int DOC_LENGTH = 1000;
+
+    /** Number of different words in the corpus */
+    private static final int VOCABULARY_SIZE = 10_000;
+
+    /** Parts of speech */
+    private static final String[] POS = { "art", "adj", "nou", "vrb", "pre", "adv", "pro", "con" };
+
+    /** Format we use to index the corpus (from the mocks module) */
+    private static final String FORMAT = "benchmark-example";
+
+    /** Name of the file that indicates the index is complete */
+    private static final String COMPLETE_MARKER = "benchmark-corpus-complete";
+
+    private BenchmarkCorpus() {
+    }
+
+    /**
+     * Open the corpus, generating it first if necessary.
+     *
+     * @param numberOfDocs number of documents in the corpus
+     * @param docLength number of tokens per document
+     * @return the index
+     */
+    public static synchronized BlackLabIndex open(int numberOfDocs, int docLength) {
+        File baseDir = new File(System.getProperty("blacklab.benchmarks.dir",
+                new File(System.getProperty("java.io.tmpdir"), "benchmark-corpus").getPath()));
+        File indexDir = new File(baseDir, "docs" + numberOfDocs + "-length" + docLength);
+        try {
+            if (!new File(indexDir, COMPLETE_MARKER).exists()) {
+                FileUtils.deleteDirectory(indexDir);
+                FileUtils.forceMkdir(baseDir);
+                generate(indexDir, numberOfDocs, docLength);
+                FileUtils.touch(new File(indexDir, COMPLETE_MARKER));
+            }
+            return BlackLab.open(indexDir);
+        } catch (IOException | ErrorOpeningIndex | DocumentFormatNotFound e) {
+            throw BlackLabRuntimeException.wrap(e);
+        }
+    }
+
+    /**
+     * Parse a Corpus Query Language query.
+     *
+     * @param index index to search
+     * @param cql the query
+     * @return the query
+     */
+    public static BLSpanQuery query(BlackLabIndex index, String cql) {
+        try {
+            return CorpusQueryLanguageParser.parse(cql).toQuery(QueryInfo.create(index));
+        } catch (InvalidQuery e) {
+            throw BlackLabRuntimeException.wrap(e);
+        }
+    }
+
+    private static void generate(File indexDir, int numberOfDocs, int docLength)
+            throws DocumentFormatNotFound, ErrorOpeningIndex {
+        // Cumulative Zipf distribution over the vocabulary
+        double[] cumulative = new double[VOCABULARY_SIZE];
+        double total = 0;
+        for (int i = 0; i < VOCABULARY_SIZE; i++) {
+            total += 1.0 / (i + 1);
+            cumulative[i] = total;
+        }
+
+        Random random = new Random(SEED);
+        DocumentFormats.registerFormat(FORMAT, DocIndexerExample.class);
+        Indexer indexer = Indexer.createNewIndex(indexDir, FORMAT);
+        try {
+            for (int docNumber = 0; docNumber < numberOfDocs; docNumber++) {
+                StringBuilder doc = new StringBuilder("<doc>");
+                for (int i = 0; i < docLength; i++) {
+                    int word = Arrays.binarySearch(cumulative, random.nextDouble() * total);
+                    if (word < 0)
+                        word = -word - 1;
+                    doc.append("<w l='l").append(word / 2).append("' p='").append(POS[word * 7 % POS.length])
+                            .append("'>w").append(word).append("</w> ");
+                }
+                doc.append("</doc>");
+                indexer.index("doc" + docNumber, doc.toString().getBytes(StandardCharsets.UTF_8));
+            }
+        } finally {
+            indexer.close();
+        }
+    }
+
+}
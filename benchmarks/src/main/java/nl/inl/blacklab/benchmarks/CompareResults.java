@@ -0,0 +1,87 @@
+package nl.inl.blacklab.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Compares two benchmark result files written by {@link RunBenchmarks}.
+ *
+ * Usage: CompareResults baseline.json current.json [thresholdPercent]
+ *
+ * Prints the change in score for each benchmark that occurs in both files and
+ * marks regressions: benchmarks that became slower by more than the threshold
+ * (default 10%), even taking the error margins into account. Exits with status
+ * 1 if there were any regressions, so this can be used in a build script.
+ */
+public class CompareResults {
+
+    private static final double DEFAULT_THRESHOLD_PERCENT = 10;
+
+    /** Score of a benchmark, with its error margin and unit. */
+    private static class Score {
+        final double score;
+
+        final double error;
+
+        final String unit;
+
+        Score(JsonNode metric) {
+            score = metric.get("score").asDouble();
+            double e = metric.get("scoreError").asDouble();
+            error = Double.isNaN(e) ? 0 : e;
+            unit = metric.get("scoreUnit").asText();
+        }
+    }
+
+    private static Map<String, Score> read(File file) throws IOException {
+        Map<String, Score> scores = new LinkedHashMap<>();
+        for (JsonNode result : new ObjectMapper().readTree(file)) {
+            StringBuilder name = new StringBuilder(result.get("benchmark").asText()
+                    .replaceAll("^" + CompareResults.class.getPackage().getName() + "\\.", ""));
+            JsonNode params = result.get("params");
+            if (params != null) {
+                params.fields().forEachRemaining(
+                        e -> name.append(" ").append(e.getKey()).append("=").append(e.getValue().asText()));
+            }
+            scores.put(name.toString(), new Score(result.get("primaryMetric")));
+        }
+        return scores;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: CompareResults baseline.json current.json [thresholdPercent]");
+            System.exit(1);
+        }
+        Map<String, Score> baseline = read(new File(args[0]));
+        Map<String, Score> current = read(new File(args[1]));
+        double threshold = args.length > 2 ? Double.parseDouble(args[2]) : DEFAULT_THRESHOLD_PERCENT;
+
+        int regressions = 0;
+        System.out.println(String.format("%-80s %14s %14s %9s", "Benchmark", "Baseline", "Current", "Change"));
+        for (Entry<String, Score> e : current.entrySet()) {
+            Score before = baseline.get(e.getKey());
+            if (before == null)
+                continue;
+            Score after = e.getValue();
+            double change = (after.score - before.score) / before.score * 100;
+            // All our benchmarks measure time per operation, so higher is worse.
+            // Only report a regression if the difference is not within the error margins.
+            boolean regression = change > threshold && after.score - after.error > before.score + before.error;
+            if (regression)
+                regressions++;
+            System.out.println(String.format("%-80s %14.3f %14.3f %+8.1f%% %s %s", e.getKey(), before.score,
+                    after.score, change, after.unit, regression ? "REGRESSION" : ""));
+        }
+        System.out.println(regressions + " regression(s) of more than " + threshold + "%");
+        if (regressions > 0)
+            System.exit(1);
+    }
+
+}
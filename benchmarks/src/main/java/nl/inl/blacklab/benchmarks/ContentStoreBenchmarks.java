@@ -0,0 +1,84 @@
+package nl.inl.blacklab.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+import nl.inl.blacklab.contentstore.ContentStore;
+import nl.inl.blacklab.search.BlackLabIndex;
+
+/**
+ * Retrieves snippets of original content from the content store (the fixed
+ * block implementation), like we do when highlighting hits in a document.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ContentStoreBenchmarks {
+
+    /** Number of documents to retrieve snippets from per benchmark invocation */
+    private static final int DOCUMENTS = 100;
+
+    /** Number of snippets to retrieve per document */
+    private static final int SNIPPETS = 10;
+
+    /** Length of each snippet in characters */
+    private static final int SNIPPET_LENGTH = 200;
+
+    @Param({ "1000" })
+    public int numberOfDocs;
+
+    private BlackLabIndex index;
+
+    private ContentStore contentStore;
+
+    private int[] contentIds;
+
+    private int[][] starts;
+
+    private int[][] ends;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        index = BenchmarkCorpus.open(numberOfDocs, BenchmarkCorpus.DOC_LENGTH);
+        contentStore = index.contentAccessor(index.mainAnnotatedField()).getContentStore();
+        Integer[] ids = contentStore.idSet().toArray(new Integer[0]);
+        Random random = new Random(BenchmarkCorpus.SEED);
+        contentIds = new int[DOCUMENTS];
+        starts = new int[DOCUMENTS][SNIPPETS];
+        ends = new int[DOCUMENTS][SNIPPETS];
+        for (int i = 0; i < DOCUMENTS; i++) {
+            contentIds[i] = ids[random.nextInt(ids.length)];
+            int length = contentStore.docLength(contentIds[i]);
+            for (int j = 0; j < SNIPPETS; j++) {
+                starts[i][j] = random.nextInt(Math.max(1, length - SNIPPET_LENGTH));
+                ends[i][j] = Math.min(length, starts[i][j] + SNIPPET_LENGTH);
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        index.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(DOCUMENTS)
+    public void retrieveParts(Blackhole blackhole) {
+        for (int i = 0; i < DOCUMENTS; i++)
+            blackhole.consume(contentStore.retrieveParts(contentIds[i], starts[i], ends[i]));
+    }
+
+}
@@ -0,0 +1,106 @@
+package nl.inl.blacklab.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import nl.inl.blacklab.exceptions.BlackLabRuntimeException;
+import nl.inl.blacklab.exceptions.DocumentFormatNotFound;
+import nl.inl.blacklab.exceptions.ErrorOpeningIndex;
+import nl.inl.blacklab.index.DocumentFormats;
+import nl.inl.blacklab.index.Indexer;
+import nl.inl.blacklab.indexers.config.ConfigInputFormat;
+
+/**
+ * Indexes many small files with a TEI-like XPath-based input format.
+ *
+ * Measures the per-file overhead of DocIndexerXPath, such as getting the
+ * (compiled) XPaths of the format for every file.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class DocIndexerXPathBenchmarks {
+
+    /** Format we index the files with */
+    private static final String FORMAT = "benchmark-tei";
+
+    /** A TEI-like input format, with a number of XPaths like the real thing */
+    private static final String FORMAT_CONFIG = "documentPath: //TEI\n"
+            + "annotatedFields:\n"
+            + "  contents:\n"
+            + "    containerPath: .//text\n"
+            + "    wordPath: .//w\n"
+            + "    punctPath: .//text()[not(ancestor::w)]\n"
+            + "    annotations:\n"
+            + "    - name: word\n"
+            + "      valuePath: .\n"
+            + "    - name: lemma\n"
+            + "      valuePath: \"@lemma\"\n"
+            + "    - name: pos\n"
+            + "      valuePath: \"@type\"\n"
+            + "    inlineTags:\n"
+            + "    - path: .//p\n"
+            + "    - path: .//s\n"
+            + "metadata:\n"
+            + "  containerPath: .//listBibl[@id='inlMetadata']\n"
+            + "  fields:\n"
+            + "  - forEachPath: bibl/interpGrp/interp\n"
+            + "    namePath: ../@type\n"
+            + "    valuePath: .\n";
+
+    private File indexDir;
+
+    private Indexer indexer;
+
+    private int fileNumber;
+
+    private static byte[] smallDocument(int i) {
+        return ("<TEI><teiHeader><listBibl id='inlMetadata'><bibl><interpGrp type='title'><interp>Doc " + i
+                + "</interp></interpGrp></bibl></listBibl></teiHeader>"
+                + "<text><p><s><w lemma='the' type='art'>The</w> <w lemma='quick' type='adj'>quick</w> "
+                + "<w lemma='fox' type='nou'>fox</w>.</s></p></text></TEI>").getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Setup(Level.Trial)
+    public void registerFormat() throws IOException {
+        DocumentFormats.registerFormat(new ConfigInputFormat(FORMAT, new StringReader(FORMAT_CONFIG), false, null));
+    }
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        try {
+            indexDir = Files.createTempDirectory("benchmark-docindexerxpath").toFile();
+            indexer = Indexer.createNewIndex(indexDir, FORMAT);
+        } catch (IOException | DocumentFormatNotFound | ErrorOpeningIndex e) {
+            throw BlackLabRuntimeException.wrap(e);
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() throws IOException {
+        indexer.close();
+        FileUtils.deleteDirectory(indexDir);
+    }
+
+    @Benchmark
+    public void indexSmallFile() {
+        indexer.index("doc" + fileNumber + ".xml", smallDocument(fileNumber));
+        fileNumber++;
+    }
+
+}
@@ -0,0 +1,91 @@
+package nl.inl.blacklab.benchmarks;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import nl.inl.blacklab.exceptions.WildcardTermTooBroad;
+import nl.inl.blacklab.forwardindex.FiidLookup;
+import nl.inl.blacklab.resultproperty.HitPropertyHitText;
+import nl.inl.blacklab.search.BlackLabIndex;
+import nl.inl.blacklab.search.indexmetadata.AnnotatedField;
+import nl.inl.blacklab.search.indexmetadata.Annotation;
+import nl.inl.blacklab.search.results.ContextSize;
+import nl.inl.blacklab.search.results.Contexts;
+import nl.inl.blacklab.search.results.HitGroups;
+import nl.inl.blacklab.search.results.Hits;
+import nl.inl.blacklab.search.results.Kwics;
+
+/**
+ * Operations on a set of hits: sorting, grouping and building contexts and
+ * KWICs for a page of hits.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class HitsBenchmarks {
+
+    /** Number of hits to build contexts and KWICs for (like a page of results) */
+    private static final int WINDOW_SIZE = 1000;
+
+    @Param({ "1000" })
+    public int numberOfDocs;
+
+    private BlackLabIndex index;
+
+    private Hits hits;
+
+    private Hits window;
+
+    private List<Annotation> annotations;
+
+    private List<FiidLookup> fiidLookups;
+
+    @Setup(Level.Trial)
+    public void setUp() throws WildcardTermTooBroad {
+        index = BenchmarkCorpus.open(numberOfDocs, BenchmarkCorpus.DOC_LENGTH);
+        hits = index.find(BenchmarkCorpus.query(index, "[pos=\"nou\"]"));
+        hits.size(); // make sure all hits have been fetched
+        window = hits.window(0, WINDOW_SIZE);
+        AnnotatedField field = index.mainAnnotatedField();
+        annotations = Arrays.asList(field.annotation("word"), field.annotation("lemma"), field.annotation("pos"));
+        fiidLookups = FiidLookup.getList(annotations, index.reader());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        index.close();
+    }
+
+    @Benchmark
+    public Hits sort() {
+        return hits.sort(new HitPropertyHitText(index));
+    }
+
+    @Benchmark
+    public HitGroups group() {
+        return hits.group(new HitPropertyHitText(index), 0);
+    }
+
+    @Benchmark
+    public Contexts contexts() {
+        return new Contexts(window, annotations, ContextSize.get(5), fiidLookups);
+    }
+
+    @Benchmark
+    public Kwics kwics() {
+        return window.kwics(ContextSize.get(5));
+    }
+
+}
@@ -0,0 +1,115 @@
+package nl.inl.blacklab.benchmarks;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.collections.api.set.primitive.MutableIntSet;
+import org.eclipse.collections.impl.set.mutable.primitive.IntHashSet;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import nl.inl.blacklab.mocks.ForwardIndexDocumentString;
+import nl.inl.blacklab.mocks.MockFiAccessor;
+import nl.inl.blacklab.search.fimatch.ForwardIndexDocument;
+import nl.inl.blacklab.search.fimatch.NfaState;
+
+/**
+ * Matches an NFA at every position of a mock forward index document.
+ *
+ * Compares collecting match ends into a reused primitive set (as SpansFiSeq does)
+ * with the boxed NavigableSet version of findMatches().
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class NfaBenchmarks {
+
+    private static final String FIELD = "contents%word@i";
+
+    /** Number of tokens in the document (each position is one operation) */
+    private static final int DOC_LENGTH = 100_000;
+
+    @Param({ "acyclic", "cyclic" })
+    public String nfaType;
+
+    private NfaState nfa;
+
+    private ForwardIndexDocument fiDoc;
+
+    private final MutableIntSet matchEnds = new IntHashSet();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        // Tokens a, b and c, mostly a
+        Random random = new Random(BenchmarkCorpus.SEED);
+        StringBuilder doc = new StringBuilder();
+        for (int i = 0; i < DOC_LENGTH; i++) {
+            double r = random.nextDouble();
+            doc.append(r < 0.7 ? 'a' : r < 0.85 ? 'b' : 'c');
+        }
+        fiDoc = new ForwardIndexDocumentString(doc.toString());
+
+        switch (nfaType) {
+        case "acyclic":
+            nfa = repetitionAcyclic();
+            break;
+        case "cyclic":
+            nfa = repetitionCyclic();
+            break;
+        default:
+            throw new IllegalArgumentException("Unknown NFA type: " + nfaType);
+        }
+        nfa.finish(new HashSet<>());
+        nfa.lookupAnnotationNumbers(new MockFiAccessor(), new IdentityHashMap<>());
+    }
+
+    /** Build an NFA for a{1,10} c (acyclic). */
+    private static NfaState repetitionAcyclic() {
+        NfaState state = NfaState.token(FIELD, "a", NfaState.token(FIELD, "c", null));
+        for (int i = 1; i < 10; i++) {
+            NfaState next = NfaState.or(false, Arrays.asList(state, NfaState.token(FIELD, "c", null)), false);
+            state = NfaState.token(FIELD, "a", next);
+        }
+        return state;
+    }
+
+    /** Build an NFA for a+ (cyclic). */
+    private static NfaState repetitionCyclic() {
+        NfaState a = NfaState.token(FIELD, "a", null);
+        NfaState split = NfaState.or(true, Arrays.asList(a, NfaState.match()), false);
+        a.setNextState(0, split);
+        return NfaState.token(FIELD, "a", split);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(DOC_LENGTH)
+    public long primitiveSet() {
+        long n = 0;
+        for (int pos = 0; pos < DOC_LENGTH; pos++) {
+            if (nfa.findMatches(fiDoc, pos, 1, matchEnds))
+                n += matchEnds.size();
+        }
+        return n;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(DOC_LENGTH)
+    public long navigableSet() {
+        long n = 0;
+        for (int pos = 0; pos < DOC_LENGTH; pos++)
+            n += nfa.findMatches(fiDoc, pos, 1).size();
+        return n;
+    }
+
+}
@@ -0,0 +1,51 @@
+package nl.inl.blacklab.benchmarks;
+
+import java.io.File;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+/**
+ * Runs the benchmarks with fixed settings and writes the results to
+ * benchmark-results/LABEL.json, so results for different commits can be
+ * compared using {@link CompareResults}.
+ *
+ * Usage: RunBenchmarks [label [includeRegex]]
+ *
+ * The label defaults to the current date and time; use e.g. the commit hash.
+ * The regex selects the benchmarks to run (default: all).
+ */
+public class RunBenchmarks {
+
+    private static final String RESULTS_DIR = "benchmark-results";
+
+    public static void main(String[] args) throws RunnerException {
+        String label = args.length > 0 ? args[0] : new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date());
+        String include = args.length > 1 ? args[1] : RunBenchmarks.class.getPackage().getName() + ".*";
+
+        File resultsDir = new File(RESULTS_DIR);
+        if (!resultsDir.exists() && !resultsDir.mkdirs())
+            throw new RuntimeException("Could not create directory " + resultsDir);
+        File resultsFile = new File(resultsDir, label + ".json");
+
+        Options options = new OptionsBuilder()
+                .include(include)
+                .forks(1)
+                .warmupIterations(3)
+                .warmupTime(TimeValue.seconds(1))
+                .measurementIterations(5)
+                .measurementTime(TimeValue.seconds(1))
+                .resultFormat(ResultFormatType.JSON)
+                .result(resultsFile.getPath())
+                .build();
+        new Runner(options).run();
+        System.out.println("Results written to " + resultsFile);
+    }
+
+}
@@ -0,0 +1,75 @@
+package nl.inl.blacklab.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import nl.inl.blacklab.exceptions.WildcardTermTooBroad;
+import nl.inl.blacklab.search.BlackLabIndex;
+import nl.inl.blacklab.search.lucene.BLSpanQuery;
+
+/**
+ * Finds all hits for sequences with a gap between the clauses, with skewed
+ * term frequencies.
+ *
+ * Forward index matching is disabled, so the sequences are resolved by merging
+ * the clauses' hits. Compares a left clause of known and unknown maximum length
+ * (the former allows us to skip left hits that can't match).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class SequenceWithGapBenchmarks {
+
+    @Param({ "1000" })
+    public int numberOfDocs;
+
+    @Param({ "frequentRare", "frequentRareUnknownLength", "rareFrequent", "frequentFrequent" })
+    public String queryType;
+
+    private BlackLabIndex index;
+
+    private BLSpanQuery query;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        index = BenchmarkCorpus.open(numberOfDocs, BenchmarkCorpus.DOC_LENGTH);
+        index.forwardIndexMatchingSettings().setEnabled(false);
+        switch (queryType) {
+        case "frequentRare":
+            query = BenchmarkCorpus.query(index, "\"w1\" []{0,3} \"w2000\"");
+            break;
+        case "frequentRareUnknownLength":
+            query = BenchmarkCorpus.query(index, "\"w1\"+ []{0,3} \"w2000\"");
+            break;
+        case "rareFrequent":
+            query = BenchmarkCorpus.query(index, "\"w2000\" []{0,3} \"w1\"");
+            break;
+        case "frequentFrequent":
+            query = BenchmarkCorpus.query(index, "\"w1\" []{0,3} \"w2\"");
+            break;
+        default:
+            throw new IllegalArgumentException("Unknown query type: " + queryType);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        index.close();
+    }
+
+    @Benchmark
+    public int findAllHits() throws WildcardTermTooBroad {
+        return index.find(query).size();
+    }
+
+}
@@ -0,0 +1,67 @@
+package nl.inl.blacklab.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import nl.inl.blacklab.exceptions.WildcardTermTooBroad;
+import nl.inl.blacklab.search.BlackLabIndex;
+import nl.inl.blacklab.search.lucene.BLSpanQuery;
+
+/**
+ * Finds all hits for the main types of span query: a single term, a sequence
+ * and a repetition.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class SpanQueryBenchmarks {
+
+    @Param({ "1000" })
+    public int numberOfDocs;
+
+    @Param({ "term", "sequence", "repetition" })
+    public String queryType;
+
+    private BlackLabIndex index;
+
+    private BLSpanQuery query;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        index = BenchmarkCorpus.open(numberOfDocs, BenchmarkCorpus.DOC_LENGTH);
+        switch (queryType) {
+        case "term":
+            query = BenchmarkCorpus.query(index, "\"w5\"");
+            break;
+        case "sequence":
+            query = BenchmarkCorpus.query(index, "[pos=\"adj\"] [pos=\"nou\"]");
+            break;
+        case "repetition":
+            query = BenchmarkCorpus.query(index, "[pos=\"adj\"]{2,3}");
+            break;
+        default:
+            throw new IllegalArgumentException("Unknown query type: " + queryType);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        index.close();
+    }
+
+    @Benchmark
+    public int findAllHits() throws WildcardTermTooBroad {
+        return index.find(query).size();
+    }
+
+}
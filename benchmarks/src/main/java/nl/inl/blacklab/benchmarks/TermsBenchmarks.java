@@ -0,0 +1,76 @@
+package nl.inl.blacklab.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+import nl.inl.blacklab.forwardindex.Terms;
+import nl.inl.blacklab.search.BlackLabIndex;
+
+/**
+ * Looks up terms in the forward index's terms file, by id and by string.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class TermsBenchmarks {
+
+    /** Number of lookups per benchmark invocation */
+    private static final int LOOKUPS = 1000;
+
+    @Param({ "1000" })
+    public int numberOfDocs;
+
+    private BlackLabIndex index;
+
+    private Terms terms;
+
+    private int[] termIds;
+
+    private String[] termStrings;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        index = BenchmarkCorpus.open(numberOfDocs, BenchmarkCorpus.DOC_LENGTH);
+        terms = index.annotationForwardIndex(index.mainAnnotatedField().mainAnnotation()).terms();
+        Random random = new Random(BenchmarkCorpus.SEED);
+        termIds = new int[LOOKUPS];
+        termStrings = new String[LOOKUPS];
+        for (int i = 0; i < LOOKUPS; i++) {
+            termIds[i] = random.nextInt(terms.numberOfTerms());
+            termStrings[i] = terms.get(termIds[i]);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        index.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LOOKUPS)
+    public void get(Blackhole blackhole) {
+        for (int id: termIds)
+            blackhole.consume(terms.get(id));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LOOKUPS)
+    public void indexOf(Blackhole blackhole) {
+        for (String term: termStrings)
+            blackhole.consume(terms.indexOf(term));
+    }
+
+}
@@ -0,0 +1,64 @@
+package nl.inl.blacklab.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import nl.inl.blacklab.resultproperty.HitPropertyHitText;
+import nl.inl.blacklab.search.BlackLabIndex;
+import nl.inl.blacklab.search.indexmetadata.Annotation;
+import nl.inl.blacklab.search.indexmetadata.MatchSensitivity;
+import nl.inl.blacklab.search.results.HitGroups;
+import nl.inl.blacklab.search.results.HitGroupsTokenFrequencies;
+import nl.inl.blacklab.search.results.SearchSettings;
+import nl.inl.blacklab.searches.SearchHits;
+
+/**
+ * Calculates token frequencies for the whole corpus, grouped by an annotation
+ * (the fast path for grouping [] queries).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class TokenFrequenciesBenchmarks {
+
+    @Param({ "1000" })
+    public int numberOfDocs;
+
+    @Param({ "pos", "lemma" })
+    public String annotation;
+
+    private BlackLabIndex index;
+
+    private SearchHits allTokens;
+
+    private HitPropertyHitText groupBy;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        index = BenchmarkCorpus.open(numberOfDocs, BenchmarkCorpus.DOC_LENGTH);
+        allTokens = index.search().find(BenchmarkCorpus.query(index, "[]"), SearchSettings.defaults());
+        Annotation a = index.mainAnnotatedField().annotation(annotation);
+        groupBy = new HitPropertyHitText(index, a, MatchSensitivity.INSENSITIVE);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        index.close();
+    }
+
+    @Benchmark
+    public HitGroups tokenFrequencies() {
+        return HitGroupsTokenFrequencies.get(allTokens, groupBy);
+    }
+
+}
@@ -22,6 +22,7 @@ import java.io.File;
 import java.io.IOException;
 import java.nio.charset.Charset;
 import java.util.Set;
+import java.util.function.LongConsumer;
 
 /**
  * Store string content by integer id. Quickly retrieve (parts of) the string
@@ -50,6 +51,18 @@ public abstract class ContentStore {
         }
     }
 
+    /** Is notified of the number of bytes read from disk (for metrics) */
+    protected LongConsumer bytesReadListener = n -> {};
+
+    /**
+     * Set a listener to notify of the number of bytes read from disk.
+     *
+     * @param bytesReadListener listener
+     */
+    public void setBytesReadListener(LongConsumer bytesReadListener) {
+        this.bytesReadListener = bytesReadListener;
+    }
+
     /** A task to perform on a document in the content store. */
     public interface DocTask {
         void perform(int cid, String contents);
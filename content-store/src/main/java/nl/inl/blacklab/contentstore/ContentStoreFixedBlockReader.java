@@ -177,6 +177,7 @@ public class ContentStoreFixedBlockReader extends ContentStoreFixedBlock {
                             lastBlock = bl - 1; // last available block
 
                         // 2 - read and decode blocks
+                        bytesReadListener.accept((long) (lastBlock - firstBlock + 1) * BLOCK_SIZE_BYTES);
                         StringBuilder decoded = new StringBuilder();
                         for (int j = firstBlock; j <= lastBlock; j++) {
                             long blockNum = e.getBlockNumber(j);
@@ -0,0 +1,67 @@
+package nl.inl.blacklab.perdocument;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import nl.inl.blacklab.resultproperty.DocProperty;
+import nl.inl.blacklab.resultproperty.DocPropertyStoredField;
+import nl.inl.blacklab.resultproperty.PropertyValueString;
+import nl.inl.blacklab.search.results.DocGroup;
+import nl.inl.blacklab.search.results.DocGroups;
+import nl.inl.blacklab.search.results.DocResult;
+import nl.inl.blacklab.search.results.DocResults;
+import nl.inl.blacklab.testutil.TestIndex;
+
+public class TestDocPropertyStoredField {
+
+    private static TestIndex testIndex;
+
+    @BeforeClass
+    public static void setUp() {
+        testIndex = new TestIndex();
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        if (testIndex != null)
+            testIndex.close();
+    }
+
+    private static List<String> fieldValues(DocResults results, DocPropertyStoredField prop) {
+        List<String> values = new ArrayList<>();
+        for (DocResult result: results) {
+            values.add(prop.getFirstValue(result));
+        }
+        return values;
+    }
+
+    @Test
+    public void testSort() {
+        DocPropertyStoredField prop = new DocPropertyStoredField(testIndex.index(), "fromInputFile");
+        DocResults docs = testIndex.index().queryDocuments(new MatchAllDocsQuery());
+
+        DocResults sorted = docs.sort(prop);
+        Assert.assertEquals(Arrays.asList("test1", "test2", "test3", "test4"), fieldValues(sorted, prop));
+
+        DocResults sortedReverse = docs.sort(prop.reverse());
+        Assert.assertEquals(Arrays.asList("test4", "test3", "test2", "test1"), fieldValues(sortedReverse, prop));
+    }
+
+    @Test
+    public void testGroup() {
+        DocProperty prop = new DocPropertyStoredField(testIndex.index(), "fromInputFile");
+        DocGroups groups = testIndex.index().queryDocuments(new MatchAllDocsQuery()).group(prop, -1);
+        Assert.assertEquals(4, groups.size());
+        DocGroup group = groups.get(new PropertyValueString("test3"));
+        Assert.assertNotNull(group);
+        Assert.assertEquals(1, group.size());
+    }
+
+}
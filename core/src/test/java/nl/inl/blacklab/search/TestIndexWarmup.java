@@ -0,0 +1,50 @@
+package nl.inl.blacklab.search;
+
+import java.util.Arrays;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import nl.inl.blacklab.queryParser.corpusql.CorpusQueryLanguageParser;
+import nl.inl.blacklab.search.results.QueryInfo;
+import nl.inl.blacklab.testutil.TestIndex;
+
+public class TestIndexWarmup {
+
+    private static TestIndex testIndex;
+
+    @BeforeClass
+    public static void setUp() {
+        testIndex = new TestIndex();
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        if (testIndex != null)
+            testIndex.close();
+    }
+
+    @Test
+    public void testWarmup() throws InterruptedException {
+        BlackLabIndex index = testIndex.index();
+        IndexWarmup warmup = index.warmup();
+        Assert.assertEquals(IndexWarmup.Status.DISABLED, warmup.status());
+        warmup.setEnabled(true);
+        warmup.setForwardIndexAnnotations(Arrays.asList("word"));
+        warmup.setLuceneExtensions(Arrays.asList("tim", "doc", "pos", "cfs"));
+        warmup.setQueries(Arrays.asList("'the' [pos='adj']", "[invalid"));
+        warmup.start(pattern -> CorpusQueryLanguageParser.parse(pattern).toQuery(QueryInfo.create(index)));
+        for (int i = 0; i < 100 && !warmup.isReady(); i++)
+            Thread.sleep(50);
+        Assert.assertEquals(IndexWarmup.Status.READY, warmup.status());
+        Assert.assertTrue(warmup.filesToPrefetch() > 0);
+        Assert.assertEquals(warmup.filesToPrefetch(), warmup.filesPrefetched());
+        Assert.assertTrue(warmup.bytesPrefetched() > 0);
+        Assert.assertEquals(1, warmup.queriesReplayed());
+        Assert.assertEquals(1, warmup.queriesFailed());
+        Assert.assertTrue(warmup.timeMs() >= 0);
+    }
+
+}
@@ -0,0 +1,53 @@
+package nl.inl.blacklab.search;
+
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.TermQuery;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import nl.inl.blacklab.search.results.CorpusSize;
+import nl.inl.blacklab.testutil.TestIndex;
+
+public class TestMetadataValueRollup {
+
+    private static TestIndex testIndex;
+
+    @BeforeClass
+    public static void setUp() {
+        testIndex = new TestIndex();
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        if (testIndex != null)
+            testIndex.close();
+    }
+
+    @Test
+    public void testSubcorpusSize() {
+        BlackLabIndex index = testIndex.index();
+        for (String value: new String[] { "test1", "test2", "test3", "test4" }) {
+            CorpusSize expected = index.queryDocuments(new TermQuery(new Term("fromInputFile", value))).subcorpusSize(true);
+            CorpusSize actual = MetadataValueRollup.subcorpusSize(index, "fromInputFile", value);
+            Assert.assertNotNull(actual);
+            Assert.assertEquals(1, actual.getDocuments());
+            Assert.assertEquals(expected.getDocuments(), actual.getDocuments());
+            Assert.assertEquals(expected.getTokens(), actual.getTokens());
+        }
+    }
+
+    @Test
+    public void testUnknownValue() {
+        CorpusSize size = MetadataValueRollup.subcorpusSize(testIndex.index(), "fromInputFile", "doesnotexist");
+        Assert.assertEquals(0, size.getDocuments());
+        Assert.assertEquals(0, size.getTokens());
+    }
+
+    @Test
+    public void testUnknownField() {
+        Assert.assertNull(MetadataValueRollup.subcorpusSize(testIndex.index(), "doesnotexist", "test1"));
+    }
+
+}
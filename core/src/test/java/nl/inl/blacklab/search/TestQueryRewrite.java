@@ -24,7 +24,6 @@ import nl.inl.blacklab.exceptions.BlackLabRuntimeException;
 import nl.inl.blacklab.exceptions.InvalidQuery;
 import nl.inl.blacklab.queryParser.corpusql.CorpusQueryLanguageParser;
 import nl.inl.blacklab.search.lucene.BLSpanQuery;
-import nl.inl.blacklab.search.lucene.optimize.ClauseCombinerNfa;
 import nl.inl.blacklab.search.results.QueryInfo;
 import nl.inl.blacklab.search.textpattern.TextPattern;
 import nl.inl.blacklab.testutil.TestIndex;
@@ -39,12 +38,11 @@ public class TestQueryRewrite {
     public static void setUp() {
         testIndex = new TestIndex();
         index = testIndex.index();
-        ClauseCombinerNfa.setForwardIndexMatchingEnabled(false);
+        index.forwardIndexMatchingSettings().setEnabled(false);
     }
 
     @AfterClass
     public static void tearDown() {
-        ClauseCombinerNfa.setForwardIndexMatchingEnabled(true);
         if (index != null)
             index.close();
         if (testIndex != null)
@@ -90,6 +88,17 @@ public class TestQueryRewrite {
                 "TERM(contents%word@i:water)");
     }
 
+    @Test
+    public void testExplainCosts() throws InvalidQuery {
+        BLSpanQuery q = getPatternFromCql("'the'").toQuery(QueryInfo.create(index));
+        QueryExplanation explanation = index.explain(q);
+        // "the" occurs 4 times in the test index
+        Assert.assertEquals(4, explanation.reverseMatchingCost());
+        Assert.assertTrue(explanation.forwardMatchingCost() > 0);
+        // Test index is too small to measure throughput; default is used
+        Assert.assertEquals(500, explanation.termFreqDivider());
+    }
+
     @Test
     public void testRewriteInsensitive() {
         assertNoRewrite("[word = '(?i)Fox']", "TERM(contents%word@i:fox)");
@@ -1,9 +1,12 @@
 package nl.inl.blacklab.search;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
 import org.apache.lucene.index.Term;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.Query;
 import org.apache.lucene.search.TermQuery;
 import org.junit.AfterClass;
 import org.junit.Assert;
@@ -11,7 +14,9 @@ import org.junit.BeforeClass;
 import org.junit.Ignore;
 import org.junit.Test;
 
+import nl.inl.blacklab.exceptions.InvalidQuery;
 import nl.inl.blacklab.forwardindex.Terms;
+import nl.inl.blacklab.queryParser.corpusql.CorpusQueryLanguageParser;
 import nl.inl.blacklab.resultproperty.HitProperty;
 import nl.inl.blacklab.resultproperty.HitPropertyHitText;
 import nl.inl.blacklab.resultproperty.HitPropertyLeftContext;
@@ -20,9 +25,19 @@ import nl.inl.blacklab.resultproperty.PropertyValue;
 import nl.inl.blacklab.resultproperty.PropertyValueContextWords;
 import nl.inl.blacklab.search.indexmetadata.Annotation;
 import nl.inl.blacklab.search.indexmetadata.MatchSensitivity;
+import nl.inl.blacklab.search.lucene.BLSpanMultiTermQueryWrapper;
+import nl.inl.blacklab.search.lucene.BLSpanQuery;
 import nl.inl.blacklab.search.lucene.BLSpanTermQuery;
+import nl.inl.blacklab.search.lucene.ReverseTermIndexCache;
+import nl.inl.blacklab.search.lucene.SpanCache;
 import nl.inl.blacklab.search.lucene.SpanQueryFiltered;
+import nl.inl.blacklab.search.results.DocResults;
+import nl.inl.blacklab.search.results.ContextSize;
 import nl.inl.blacklab.search.results.Hits;
+import nl.inl.blacklab.search.results.Kwics;
+import nl.inl.blacklab.search.results.QueryInfo;
+import nl.inl.blacklab.search.results.SearchSettings;
+import nl.inl.blacklab.searches.SearchHits;
 import nl.inl.blacklab.testutil.TestIndex;
 
 public class TestSearches {
@@ -172,6 +187,52 @@ public class TestSearches {
         Assert.assertEquals(expected, testIndex.findConc(" 'fo[xr].*' "));
     }
 
+    @Test
+    public void testMergedMultiTerm() {
+        // Patterns matching many terms aren't expanded to a disjunction; make sure we find the same hits
+        List<String> patterns = Arrays.asList(" 'b.*' ", " 'fo[xr].*' ", " '.*e' ", " '.*o.*' ", " 'May' '.*e'+ 'with' ",
+                "[lemma='.*he']{0,10}", " 'b.*' within <entity/> ");
+        for (String pattern: patterns) {
+            List<String> expanded = testIndex.findConc(pattern);
+            ReverseTermIndexCache reverseTermIndexes = testIndex.index().reverseTermIndexCache();
+            try {
+                testIndex.index().setMaxTermsToExpand(0);
+                Assert.assertEquals(pattern, expanded, testIndex.findConc(pattern));
+                reverseTermIndexes.setExecutor(Runnable::run);
+                reverseTermIndexes.setMaxSizeBytes(1_048_576);
+                Assert.assertEquals(pattern, expanded, testIndex.findConc(pattern));
+                if (pattern.contains("'.*e'"))
+                    Assert.assertTrue(pattern, reverseTermIndexes.sizeBytes() > 0);
+            } finally {
+                testIndex.index().setMaxTermsToExpand(BLSpanMultiTermQueryWrapper.DEFAULT_MAX_TERMS_TO_EXPAND);
+                reverseTermIndexes.setMaxSizeBytes(0);
+            }
+        }
+    }
+
+    @Test
+    public void testSpanCache() {
+        List<String> patterns = Arrays.asList(" 'b.*' within <entity/> ", " <entity/> containing 'b.*' ",
+                " <s/> containing 'the' ", "[lemma='.*he' & word='the']");
+        SpanCache spanCache = testIndex.index().spanCache();
+        try {
+            for (String pattern: patterns) {
+                List<String> expected = testIndex.findConc(pattern);
+                spanCache.setMaxSizeBytes(1_000_000);
+                spanCache.setMinCost(0);
+                // First time fills the cache, second time uses it
+                Assert.assertEquals(pattern, expected, testIndex.findConc(pattern));
+                long hitsBefore = spanCache.hits();
+                Assert.assertEquals(pattern, expected, testIndex.findConc(pattern));
+                Assert.assertTrue(pattern, spanCache.hits() > hitsBefore);
+                spanCache.setMaxSizeBytes(0);
+            }
+        } finally {
+            spanCache.setMaxSizeBytes(0);
+            spanCache.setMinCost(SpanCache.DEFAULT_MIN_COST);
+        }
+    }
+
     @Test
     public void testUniq() {
         expected = Arrays.asList(
@@ -436,4 +497,70 @@ public class TestSearches {
         Assert.assertEquals(3, group[0].end());
     }
 
+    @Test
+    public void testCaptureGroupsInAnd() {
+        // Clauses of an AND are not reordered by cost if they capture groups,
+        // so the order of the groups only depends on the query, not on term frequencies
+        Hits hits = testIndex.find("(X:[pos='vrb'] []) & (Y:'be' [])");
+        Hits swapped = testIndex.find("(X:'be' []) & (Y:[pos='vrb'] [])");
+        Assert.assertEquals(1, hits.size());
+        Assert.assertEquals(1, swapped.size());
+        Assert.assertEquals(hits.capturedGroups().names(), swapped.capturedGroups().names());
+    }
+
+    @Test
+    public void testCountOnly() throws InvalidQuery {
+        for (String pattern: Arrays.asList("'the'", "'aap'", "'the' []", "[pos='adj']+", "'noot'+ []")) {
+            Hits hits = testIndex.find(pattern);
+            BLSpanQuery query = CorpusQueryLanguageParser.parse(pattern).toQuery(QueryInfo.create(testIndex.index()));
+            SearchHits countOnly = testIndex.index().search().find(query, SearchSettings.defaults()).countOnly();
+            Assert.assertEquals(pattern, hits.hitsStats().countedTotal(), countOnly.hitCount().execute().countedTotal());
+            Assert.assertEquals(pattern, hits.docsStats().countedTotal(), countOnly.docCount().execute().countedTotal());
+            Assert.assertEquals(pattern, 0, countOnly.execute().size());
+        }
+    }
+
+    @Test
+    public void testQueryDocuments() throws InvalidQuery {
+        for (Query query: Arrays.asList(new MatchAllDocsQuery(), new TermQuery(new Term("fromInputFile", "test2")))) {
+            DocResults docs = testIndex.index().queryDocuments(query);
+            int expected = query instanceof MatchAllDocsQuery ? 4 : 1;
+            Assert.assertEquals(expected, docs.size());
+            Assert.assertEquals(expected, testIndex.index().search().findDocuments(query).countOnly().execute().countedTotal());
+        }
+    }
+
+    @Test
+    public void testProfile() throws InvalidQuery {
+        String pattern = "'the' [pos='adj']";
+        QueryProfile profile = new QueryProfile("test");
+        BLSpanQuery query = CorpusQueryLanguageParser.parse(pattern).toQuery(QueryInfo.create(testIndex.index()));
+        Hits hits = testIndex.index().search(null, false, profile).find(query, SearchSettings.defaults()).execute();
+        Assert.assertEquals(testIndex.find(pattern).size(), hits.size());
+        List<String> phases = new ArrayList<>();
+        for (QueryProfile child: profile.children())
+            phases.add(child.name());
+        Assert.assertEquals(Arrays.asList("rewrite", "spans"), phases);
+        QueryProfile spans = profile.children().get(1);
+        Assert.assertFalse(spans.children().isEmpty());
+        long hitsInSpans = 0;
+        for (QueryProfile segment: spans.children().get(0).children())
+            hitsInSpans += segment.count("hits");
+        Assert.assertEquals(hits.size(), hitsInSpans);
+    }
+
+    @Test
+    public void testKwics() {
+        Hits hits = testIndex.find(" [pos='adj'] ");
+        Kwics kwics = hits.kwics(ContextSize.get(1));
+        Annotation lemma = testIndex.index().mainAnnotatedField().annotation("lemma");
+        expected = Arrays.asList("[quick] brown", "[brown] fox", "[lazy] dog");
+        for (int i = 0; i < hits.size(); i++) {
+            Kwic kwic = kwics.get(i);
+            Assert.assertEquals(kwic.tokens(), kwics.get(hits.get(i)).tokens());
+            Assert.assertEquals(expected.get(i), "[" + kwic.match(lemma).get(0) + "] " + kwic.right(lemma).get(0));
+            Assert.assertEquals(kwic.annotations().size() * 3, kwic.tokens().size());
+        }
+    }
+
 }
@@ -0,0 +1,89 @@
+package nl.inl.blacklab.search.fimatch;
+
+import nl.inl.blacklab.mocks.ForwardIndexDocumentString;
+import nl.inl.blacklab.mocks.MockFiAccessor;
+import org.eclipse.collections.api.set.primitive.MutableIntSet;
+import org.eclipse.collections.impl.set.mutable.primitive.IntHashSet;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+
+public class TestNfa {
+
+    @Test
+    public void testNfaSimple() {
+        // Test simple NFA matching ab|ba
+        NfaState ab = NfaState.token("contents%word@i", "a", NfaState.token("contents%word@i", "b", null));
+        NfaState ba = NfaState.token("contents%word@i", "b", NfaState.token("contents%word@i", "a", null));
+        NfaState start = NfaState.or(false, Arrays.asList(ab, ba), true);
+        start.finish(new HashSet<NfaState>());
+        start.lookupAnnotationNumbers(new MockFiAccessor(), new IdentityHashMap<NfaState, Boolean>());
+
+        ForwardIndexDocumentString fiDoc = new ForwardIndexDocumentString("abatoir");
+        Assert.assertTrue(start.matches(fiDoc, 0, 1));
+        Assert.assertTrue(start.matches(fiDoc, 1, 1));
+        Assert.assertFalse(start.matches(fiDoc, 2, 1));
+        Assert.assertFalse(start.matches(fiDoc, 6, 1));
+    }
+
+    @Test
+    public void testNfaMatchEnds() {
+        // Test collecting match ends for ab|abc
+        NfaState ab = NfaState.token("contents%word@i", "a", NfaState.token("contents%word@i", "b", null));
+        NfaState abc = NfaState.token("contents%word@i", "a", NfaState.token("contents%word@i", "b",
+                NfaState.token("contents%word@i", "c", null)));
+        NfaState start = NfaState.or(false, Arrays.asList(ab, abc), false);
+        start.finish(new HashSet<NfaState>());
+        start.lookupAnnotationNumbers(new MockFiAccessor(), new IdentityHashMap<NfaState, Boolean>());
+
+        MutableIntSet matchEnds = new IntHashSet();
+        Assert.assertTrue(start.findMatches(new ForwardIndexDocumentString("abcd"), 0, 1, matchEnds));
+        Assert.assertEquals(IntHashSet.newSetWith(2, 3), matchEnds);
+        Assert.assertTrue(start.findMatches(new ForwardIndexDocumentString("abd"), 0, 1, matchEnds));
+        Assert.assertEquals(IntHashSet.newSetWith(2), matchEnds);
+        Assert.assertFalse(start.findMatches(new ForwardIndexDocumentString("bcd"), 0, 1, matchEnds));
+        Assert.assertTrue(matchEnds.isEmpty());
+    }
+
+    @Test
+    public void testNfaRepetition() {
+        // Test NFA matching ac*e
+        NfaState c = NfaState.token("contents%word@i", "c", null);
+        NfaState split = NfaState.or(true, Arrays.asList(c, NfaState.token("contents%word@i", "e", null)), false);
+        NfaState start = NfaState.token("contents%word@i", "a", split);
+        c.setNextState(0, split); // loopback
+        start.finish(new HashSet<NfaState>());
+        start.lookupAnnotationNumbers(new MockFiAccessor(), new IdentityHashMap<NfaState, Boolean>());
+
+        // Forward matching
+        Assert.assertTrue(start.matches(new ForwardIndexDocumentString("access"), 0, 1));
+        Assert.assertTrue(start.matches(new ForwardIndexDocumentString("aces"), 0, 1));
+        Assert.assertTrue(start.matches(new ForwardIndexDocumentString("aether"), 0, 1));
+        Assert.assertFalse(start.matches(new ForwardIndexDocumentString("acquire"), 0, 1));
+        Assert.assertFalse(start.matches(new ForwardIndexDocumentString("cesium"), 0, 1));
+
+        // Backward matching
+        Assert.assertTrue(start.matches(new ForwardIndexDocumentString("ideaal"), 3, -1));
+    }
+
+    @Test
+    public void testIntSetPool() {
+        // Small sets are reused
+        MutableIntSet small = NfaState.borrowIntSet();
+        small.add(1);
+        NfaState.returnIntSet(small);
+        MutableIntSet reused = NfaState.borrowIntSet();
+        Assert.assertSame(small, reused);
+        Assert.assertTrue(reused.isEmpty());
+
+        // Large sets are not kept in the pool
+        for (int i = 0; i < 10_000; i++)
+            reused.add(i);
+        NfaState.returnIntSet(reused);
+        Assert.assertNotSame(reused, NfaState.borrowIntSet());
+    }
+
+}
@@ -42,14 +42,12 @@ public class TestQueryRewriteNfa {
     public static void setUp() {
         testIndex = new TestIndex();
         index = testIndex.index();
-        ClauseCombinerNfa.setNfaThreshold(ClauseCombinerNfa.MAX_NFA_MATCHING);
-        ClauseCombinerNfa.setOnlyUseNfaForManyUniqueTerms(false);
+        index.forwardIndexMatchingSettings().setThreshold(ClauseCombinerNfa.MAX_NFA_MATCHING);
+        index.forwardIndexMatchingSettings().setOnlyUseNfaForManyUniqueTerms(false);
     }
 
     @AfterClass
     public static void tearDown() {
-        ClauseCombinerNfa.setOnlyUseNfaForManyUniqueTerms(true);
-        ClauseCombinerNfa.setNfaThreshold(ClauseCombinerNfa.defaultForwardIndexMatchingThreshold);
         if (index != null)
             index.close();
         if (testIndex != null)
@@ -88,12 +86,28 @@ public class TestQueryRewriteNfa {
         assertRewrite(cql, null, after);
     }
 
+    boolean usesForwardIndexMatching(String cql) {
+        try {
+            BLSpanQuery q = getPatternFromCql(cql).toQuery(QueryInfo.create(index));
+            return index.explain(q).rewrittenQuery().usesForwardIndexMatching();
+        } catch (InvalidQuery e) {
+            throw BlackLabRuntimeException.wrap(e);
+        }
+    }
+
     @Test
     public void testRewrite() {
         assertRewriteResult("\"the\" [word=\"quick\" & lemma=\"quick\"] [lemma=\"brown\"]",
                 "FISEQ(FISEQ(AND(TERM(contents%word@i:quick), TERM(contents%lemma@i:quick)), NFA:#1:TOKEN(brown,DANGLING), 1), NFA:#1:TOKEN(the,DANGLING), -1)");
     }
 
+    @Test
+    public void testUsesForwardIndexMatching() {
+        Assert.assertTrue(usesForwardIndexMatching("\"the\" [word=\"quick\" & lemma=\"quick\"] [lemma=\"brown\"]"));
+        Assert.assertTrue(usesForwardIndexMatching("<s/> containing (\"a.*\" \"b.*\" \"c.*\")"));
+        Assert.assertFalse(usesForwardIndexMatching("\"the\""));
+    }
+
     @Ignore // hard to test properly with tiny indices
     @Test
     public void testRewriteSuffix() {
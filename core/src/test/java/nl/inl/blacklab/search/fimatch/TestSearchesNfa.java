@@ -23,15 +23,14 @@ public class TestSearchesNfa {
 
     @BeforeClass
     public static void setUp() {
-        ClauseCombinerNfa.setNfaThreshold(ClauseCombinerNfa.MAX_NFA_MATCHING);
         testIndex = new TestIndex();
+        testIndex.index().forwardIndexMatchingSettings().setThreshold(ClauseCombinerNfa.MAX_NFA_MATCHING);
     }
 
     @AfterClass
     public static void tearDown() {
         if (testIndex != null)
             testIndex.close();
-        ClauseCombinerNfa.setNfaThreshold(ClauseCombinerNfa.defaultForwardIndexMatchingThreshold);
     }
 
     @Test
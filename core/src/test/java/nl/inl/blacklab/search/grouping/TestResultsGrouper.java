@@ -37,15 +37,23 @@ public class TestResultsGrouper {
     int[] start = { 1, 2, 3, 4, 5, 6 };
     int[] end   = { 7, 8, 9, 10, 11, 12 };
 
-    @Test
-    public void testGrouper() {
+    private Hits hits() {
+        return hits(doc, start, end);
+    }
+
+    private static Hits hits(int[] doc, int[] start, int[] end) {
         MockBlackLabIndex index = new MockBlackLabIndex();
-        
+
         IndexSearcher indexSearcher = Mockito.mock(IndexSearcher.class);
         Mockito.when(indexSearcher.getSimilarity(ArgumentMatchers.anyBoolean())).thenReturn(new BM25Similarity());
 
         index.setIndexSearcher(indexSearcher);
-        Hits hits = Hits.fromArrays(QueryInfo.create(index), doc, start, end);
+        return Hits.fromArrays(QueryInfo.create(index), doc, start, end);
+    }
+
+    @Test
+    public void testGrouper() {
+        Hits hits = hits();
         HitProperty crit = new HitPropertyDocumentId();
         HitGroups grouper = hits.group(crit, Results.NO_LIMIT);
 
@@ -62,4 +70,50 @@ public class TestResultsGrouper {
         PropertyValueInt three = new PropertyValueInt(3);
         Assert.assertEquals(1, grouper.get(three).size());
     }
+
+    @Test
+    public void testMaxStoredPerGroup() {
+        HitGroups grouper = hits().group(new HitPropertyDocumentId(), 2);
+
+        HitGroup group1 = grouper.get(new PropertyValueInt(1));
+        Assert.assertEquals(3, group1.size());
+        Assert.assertEquals(2, group1.numberOfStoredResults());
+        Assert.assertEquals(1, group1.storedResults().get(0).start());
+        Assert.assertEquals(3, group1.storedResults().get(1).start());
+        Assert.assertEquals(6, grouper.hitsStats().countedTotal());
+
+        HitGroups truncated = grouper.withFewerStoredResults(1);
+        HitGroup group2 = truncated.get(new PropertyValueInt(2));
+        Assert.assertEquals(2, group2.size());
+        Assert.assertEquals(1, group2.numberOfStoredResults());
+        Assert.assertEquals(2, group2.storedResults().get(0).start());
+    }
+
+    @Test
+    public void testSharedStoredHits() {
+        HitGroups grouper = hits().group(new HitPropertyDocumentId(), Results.NO_LIMIT);
+
+        // All hits are stored, so the groups share the source hits (plus a permutation array)
+        Assert.assertEquals(3 + 6 + 2, grouper.numberOfResultObjects());
+        HitGroup group1 = grouper.get(new PropertyValueInt(1));
+        Assert.assertSame(group1.storedResults(), group1.storedResults());
+    }
+
+    @Test
+    public void testCopyFewStoredHits() {
+        int[] doc   = { 1, 2, 1, 1, 2, 1, 2, 2 };
+        int[] start = { 1, 2, 3, 4, 5, 6, 7, 8 };
+        int[] end   = { 9, 9, 9, 9, 9, 9, 9, 9 };
+        HitGroups grouper = hits(doc, start, end).group(new HitPropertyDocumentId(), 1);
+
+        // Only 2 of 8 hits are stored, so they are copied instead of keeping all source hits
+        Assert.assertEquals(2 + 2, grouper.numberOfResultObjects());
+        HitGroup group1 = grouper.get(new PropertyValueInt(1));
+        Assert.assertEquals(4, group1.size());
+        Assert.assertEquals(1, group1.numberOfStoredResults());
+        Assert.assertEquals(1, group1.storedResults().get(0).start());
+        HitGroup group2 = grouper.get(new PropertyValueInt(2));
+        Assert.assertEquals(1, group2.numberOfStoredResults());
+        Assert.assertEquals(2, group2.storedResults().get(0).start());
+    }
 }
@@ -0,0 +1,97 @@
+package nl.inl.blacklab.search.lucene;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.lucene.index.LeafReader;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import nl.inl.blacklab.testutil.TestIndex;
+
+public class TestSegmentIndexCache {
+
+    private static TestIndex testIndex;
+
+    private static LeafReader reader;
+
+    /** Builds strings; fails the first time for keys starting with "fail", too large for "large" */
+    private static class TestCache extends SegmentIndexCache<String, String> {
+
+        final AtomicInteger builds = new AtomicInteger();
+
+        TestCache() {
+            super("TestCache", 1_000_000);
+            setExecutor(Runnable::run);
+        }
+
+        @Override
+        String build(LeafReader reader, String key, long maxSizeBytes) throws IOException {
+            int n = builds.incrementAndGet();
+            if (key.startsWith("fail") && n == 1)
+                throw new IOException("transient failure");
+            return key.startsWith("large") ? null : key;
+        }
+
+        @Override
+        long sizeBytes(String value) {
+            return value.length();
+        }
+    }
+
+    @BeforeClass
+    public static void setUp() {
+        testIndex = new TestIndex();
+        reader = testIndex.index().reader().leaves().get(0).reader();
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        if (testIndex != null)
+            testIndex.close();
+    }
+
+    @Test
+    public void testBuild() {
+        TestCache cache = new TestCache();
+        Assert.assertEquals("abc", cache.get(reader, "abc"));
+        Assert.assertEquals("abc", cache.get(reader, "abc"));
+        Assert.assertEquals(1, cache.builds.get());
+        Assert.assertEquals(3, cache.sizeBytes());
+    }
+
+    @Test
+    public void testTooLargeNotRetried() {
+        TestCache cache = new TestCache();
+        Assert.assertNull(cache.get(reader, "large"));
+        Assert.assertNull(cache.get(reader, "large"));
+        Assert.assertEquals(1, cache.builds.get());
+    }
+
+    @Test
+    public void testFailureRetried() {
+        TestCache cache = new TestCache();
+        Assert.assertNull(cache.get(reader, "fail"));
+        Assert.assertEquals("fail", cache.get(reader, "fail"));
+        Assert.assertEquals(2, cache.builds.get());
+    }
+
+    @Test
+    public void testPutAndEvict() {
+        TestCache cache = new TestCache();
+        cache.setMaxSizeBytes(10);
+        Assert.assertEquals("none", cache.getOrDefault(reader, "a", "none"));
+        cache.put(reader, "a", "aaaa");
+        cache.put(reader, "b", "bbbb");
+        cache.put(reader, "a", "aaa"); // replaces, and is now most recently used
+        Assert.assertEquals(7, cache.sizeBytes());
+        cache.put(reader, "c", "cccc"); // evicts b
+        Assert.assertEquals("none", cache.getOrDefault(reader, "b", "none"));
+        Assert.assertEquals("aaa", cache.getOrDefault(reader, "a", "none"));
+        Assert.assertEquals(7, cache.sizeBytes());
+        Assert.assertEquals(0, cache.builds.get());
+    }
+
+}
@@ -18,6 +18,7 @@ package nl.inl.blacklab.search.lucene;
 import java.io.IOException;
 
 import org.apache.lucene.search.spans.Spans;
+import org.junit.Assert;
 import org.junit.Test;
 
 import nl.inl.blacklab.TestUtil;
@@ -41,4 +42,24 @@ public class TestSpansNGrams {
         TestUtil.assertEquals(exp, getSpans());
     }
 
+    @Test
+    public void testSpansNGramsInBlocks() throws IOException {
+        // Get hits in blocks of 3, using nextStartPosition() for the first hit
+        SpansNGrams spans = getSpans();
+        Assert.assertEquals(0, spans.nextDoc());
+        Assert.assertEquals(0, spans.nextStartPosition());
+        int[] starts = new int[3], ends = new int[3];
+        Assert.assertEquals(3, spans.nextStartPositions(starts, ends));
+        Assert.assertArrayEquals(new int[] { 0, 1, 1 }, starts);
+        Assert.assertArrayEquals(new int[] { 3, 3, 4 }, ends);
+        Assert.assertEquals(1, spans.startPosition());
+        Assert.assertEquals(4, spans.endPosition());
+        Assert.assertEquals(3, spans.nextStartPositions(starts, ends));
+        Assert.assertArrayEquals(new int[] { 2, 2, 3 }, starts);
+        Assert.assertArrayEquals(new int[] { 4, 5, 5 }, ends);
+        Assert.assertEquals(0, spans.nextStartPositions(starts, ends));
+        Assert.assertEquals(Spans.NO_MORE_POSITIONS, spans.startPosition());
+        Assert.assertEquals(Spans.NO_MORE_DOCS, spans.nextDoc());
+    }
+
 }
@@ -0,0 +1,71 @@
+package nl.inl.blacklab.search.lucene;
+
+import java.io.IOException;
+
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.search.TwoPhaseIterator;
+import org.junit.Assert;
+import org.junit.Test;
+
+import nl.inl.blacklab.mocks.MockSpans;
+import nl.inl.blacklab.search.QueryProfile;
+
+public class TestSpansProfiled {
+
+    private static SpansProfiled profiled(BLSpans source, QueryProfile profile) {
+        return new SpansProfiled(source, new QueryProfile("clause"), profile);
+    }
+
+    @Test
+    public void testTwoPhaseIterator() throws IOException {
+        // Approximation returns docs 0-3; only odd docs match
+        BLSpans source = new MockSpans(new int[] { 1, 3 }, new int[] { 0, 0 }, new int[] { 1, 1 }) {
+            @Override
+            public TwoPhaseIterator asTwoPhaseIterator() {
+                return new TwoPhaseIterator(DocIdSetIterator.all(4)) {
+                    @Override
+                    public boolean matches() {
+                        return approximation.docID() % 2 == 1;
+                    }
+
+                    @Override
+                    public float matchCost() {
+                        return 1;
+                    }
+                };
+            }
+        };
+        QueryProfile profile = new QueryProfile("segment");
+        TwoPhaseIterator twoPhase = profiled(source, profile).asTwoPhaseIterator();
+        Assert.assertEquals(1, twoPhase.matchCost(), 0);
+        int matched = 0;
+        while (twoPhase.approximation().nextDoc() != DocIdSetIterator.NO_MORE_DOCS) {
+            if (twoPhase.matches())
+                matched++;
+        }
+        Assert.assertEquals(2, matched);
+        Assert.assertEquals(5, profile.count("nextDoc"));
+        Assert.assertEquals(4, profile.count("matches"));
+        Assert.assertEquals(2, profile.count("docs"));
+    }
+
+    @Test
+    public void testNoTwoPhaseIterator() {
+        BLSpans source = MockSpans.single(1, 2, 3);
+        Assert.assertNull(profiled(source, new QueryProfile("segment")).asTwoPhaseIterator());
+    }
+
+    @Test
+    public void testAdvanceStartPosition() throws IOException {
+        BLSpans source = new MockSpans(new int[] { 1, 1, 1 }, new int[] { 2, 4, 6 }, new int[] { 3, 5, 7 });
+        QueryProfile profile = new QueryProfile("segment");
+        SpansProfiled spans = profiled(source, profile);
+        Assert.assertEquals(1, spans.nextDoc());
+        Assert.assertEquals(4, spans.advanceStartPosition(3));
+        Assert.assertEquals(6, spans.nextStartPosition());
+        Assert.assertEquals(1, profile.count("advanceStartPosition"));
+        Assert.assertEquals(1, profile.count("nextStartPosition"));
+        Assert.assertEquals(2, profile.count("hits"));
+    }
+
+}
@@ -161,4 +161,27 @@ public class TestSpansSequenceWithGap {
         Spans exp = new MockSpans(expDoc, expStart, expEnd);
         TestUtil.assertEquals(exp, spans);
     }
+
+    @Test
+    public void testSkipLeftHits() throws IOException {
+        // Frequent left clause, rare right clause
+        int[] aDoc   = { 1, 1, 2, 2, 2, 2, 2, 2, 3, 3 };
+        int[] aStart = { 1, 2, 1, 2, 3, 7, 8, 9, 1, 2 };
+        int[] aEnd   = { 2, 3, 2, 3, 4, 8, 9, 10, 2, 3 };
+        BLSpans a = new MockSpans(aDoc, aStart, aEnd);
+
+        int[] bDoc   = { 2 };
+        int[] bStart = { 10 };
+        int[] bEnd   = { 11 };
+        BLSpans b = new MockSpans(bDoc, bStart, bEnd);
+
+        // Left hits have length 1, so we may skip left hits starting before 10 - 2 - 1 = 7
+        Spans spans = new SpansSequenceWithGap(a, 1, Gap.variable(0, 2), b);
+
+        int[] expDoc   = { 2, 2, 2 };
+        int[] expStart = { 7, 8, 9 };
+        int[] expEnd   = { 11, 11, 11 };
+        Spans exp = new MockSpans(expDoc, expStart, expEnd);
+        TestUtil.assertEquals(exp, spans);
+    }
 }
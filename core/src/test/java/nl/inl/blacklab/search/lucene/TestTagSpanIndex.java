@@ -0,0 +1,141 @@
+package nl.inl.blacklab.search.lucene;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.search.spans.SpanWeight.Postings;
+import org.apache.lucene.search.spans.Spans;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import nl.inl.blacklab.exceptions.InvalidQuery;
+import nl.inl.blacklab.queryParser.corpusql.CorpusQueryLanguageParser;
+import nl.inl.blacklab.search.BlackLabIndex;
+import nl.inl.blacklab.search.results.QueryInfo;
+import nl.inl.blacklab.testutil.TestIndex;
+
+public class TestTagSpanIndex {
+
+    private static TestIndex testIndex;
+
+    private static BlackLabIndex index;
+
+    @BeforeClass
+    public static void setUp() {
+        testIndex = new TestIndex();
+        index = testIndex.index();
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        if (testIndex != null)
+            testIndex.close();
+    }
+
+    @After
+    public void resetCache() {
+        index.tagSpanIndexCache().setMaxSizeBytes(TagSpanIndexCache.DEFAULT_MAX_SIZE_BYTES);
+        index.tagSpanIndexCache().clear();
+    }
+
+    private static BLSpanWeight weight(String pattern) throws InvalidQuery, IOException {
+        BLSpanQuery query = CorpusQueryLanguageParser.parse(pattern).toQuery(QueryInfo.create(index));
+        query = query.rewrite(index.reader());
+        return query.createWeight(index.searcher(), false);
+    }
+
+    /** Get spans for each segment, using the tag span indexes or not. */
+    private static List<BLSpans> spansPerSegment(BLSpanWeight weight, boolean useTagSpanIndex) throws IOException {
+        TagSpanIndexCache cache = index.tagSpanIndexCache();
+        cache.clear();
+        cache.setMaxSizeBytes(useTagSpanIndex ? TagSpanIndexCache.DEFAULT_MAX_SIZE_BYTES : 0);
+        cache.setExecutor(Runnable::run); // build right away
+        List<BLSpans> result = new ArrayList<>();
+        for (LeafReaderContext context: index.reader().leaves()) {
+            BLSpans spans = weight.getSpans(context, Postings.PAYLOADS);
+            if (spans != null)
+                Assert.assertEquals(useTagSpanIndex ? SpansTagSpanIndex.class : SpansTags.class, spans.getClass());
+            result.add(spans);
+        }
+        return result;
+    }
+
+    private static List<String> hits(Spans spans) throws IOException {
+        List<String> hits = new ArrayList<>();
+        if (spans == null)
+            return hits;
+        while (spans.nextDoc() != DocIdSetIterator.NO_MORE_DOCS) {
+            while (spans.nextStartPosition() != Spans.NO_MORE_POSITIONS)
+                hits.add(spans.docID() + ":" + spans.startPosition() + "-" + spans.endPosition());
+        }
+        return hits;
+    }
+
+    @Test
+    public void testSameSpans() throws InvalidQuery, IOException {
+        for (String tag: Arrays.asList("s", "entity")) {
+            BLSpanWeight weight = weight("<" + tag + "/>");
+            List<BLSpans> expected = spansPerSegment(weight, false);
+            List<BLSpans> actual = spansPerSegment(weight, true);
+            int totalHits = 0;
+            for (int i = 0; i < expected.size(); i++) {
+                List<String> expectedHits = hits(expected.get(i));
+                Assert.assertEquals(expectedHits, hits(actual.get(i)));
+                totalHits += expectedHits.size();
+            }
+            Assert.assertTrue(totalHits > 0);
+        }
+    }
+
+    @Test
+    public void testAdvance() throws InvalidQuery, IOException {
+        BLSpanWeight weight = weight("<entity/>");
+        for (int target = 0; target < index.reader().maxDoc(); target++) {
+            List<BLSpans> expected = spansPerSegment(weight, false);
+            List<BLSpans> actual = spansPerSegment(weight, true);
+            for (int i = 0; i < expected.size(); i++) {
+                BLSpans exp = expected.get(i), act = actual.get(i);
+                if (exp == null) {
+                    Assert.assertNull(act);
+                    continue;
+                }
+                Assert.assertEquals(exp.advance(target), act.advance(target));
+                if (exp.docID() == DocIdSetIterator.NO_MORE_DOCS)
+                    continue;
+                for (int pos = 0; pos < 12 && exp.startPosition() != Spans.NO_MORE_POSITIONS; pos += 3) {
+                    Assert.assertEquals(exp.advanceStartPosition(pos), act.advanceStartPosition(pos));
+                    Assert.assertEquals(exp.endPosition(), act.endPosition());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testCacheSize() throws InvalidQuery, IOException {
+        spansPerSegment(weight("<s/>"), true);
+        TagSpanIndexCache cache = index.tagSpanIndexCache();
+        Assert.assertTrue(cache.sizeBytes() > 0);
+        cache.setMaxSizeBytes(1);
+        Assert.assertEquals(0, cache.sizeBytes());
+    }
+
+    @Test
+    public void testQueries() throws InvalidQuery {
+        index.tagSpanIndexCache().setExecutor(Runnable::run);
+        for (String pattern: Arrays.asList("<s/>", "<entity/> containing 'the'", "'the' within <s/>", "<s> []", "[] </entity>")) {
+            index.tagSpanIndexCache().setMaxSizeBytes(0);
+            List<String> expected = testIndex.findConc(pattern);
+            index.tagSpanIndexCache().setMaxSizeBytes(TagSpanIndexCache.DEFAULT_MAX_SIZE_BYTES);
+            testIndex.findConc(pattern); // (builds the tag span indexes)
+            Assert.assertEquals(pattern, expected, testIndex.findConc(pattern));
+        }
+    }
+
+}
@@ -1,7 +1,11 @@
 package nl.inl.blacklab.config;
 
 import nl.inl.blacklab.search.BlackLabIndex;
+import nl.inl.blacklab.search.lucene.BLSpanMultiTermQueryWrapper;
+import nl.inl.blacklab.search.lucene.SpanCache;
+import nl.inl.blacklab.search.lucene.TagSpanIndexCache;
 import nl.inl.blacklab.search.lucene.optimize.ClauseCombinerNfa;
+import nl.inl.blacklab.search.lucene.optimize.QueryCostModel;
 import nl.inl.blacklab.search.results.ContextSize;
 import nl.inl.blacklab.search.results.SearchSettings;
 
@@ -14,7 +18,21 @@ public class BLConfigSearch {
     
     int maxHitsToCount = 10_000_000;
     
-    long fiMatchFactor = ClauseCombinerNfa.defaultForwardIndexMatchingThreshold;
+    long fiMatchFactor = ClauseCombinerNfa.DEFAULT_FORWARD_INDEX_MATCHING_THRESHOLD;
+
+    double fiToPostingsCostRatio = QueryCostModel.DEFAULT_FI_TO_POSTINGS_COST_RATIO;
+
+    long maxTermsToExpand = BLSpanMultiTermQueryWrapper.DEFAULT_MAX_TERMS_TO_EXPAND;
+
+    int reverseTermIndexSizeMegs = 0;
+
+    int spanCacheSizeMegs = 0;
+
+    long spanCacheMinCost = SpanCache.DEFAULT_MIN_COST;
+
+    int tagSpanIndexSizeMegs = (int) (TagSpanIndexCache.DEFAULT_MAX_SIZE_BYTES / 1_048_576L);
+
+    BLConfigWarmup warmup = new BLConfigWarmup();
 
     public BLConfigCollator getCollator() {
         return collator;
@@ -56,6 +74,62 @@ public class BLConfigSearch {
         this.fiMatchFactor = fiMatchFactor;
     }
 
+    public double getFiToPostingsCostRatio() {
+        return fiToPostingsCostRatio;
+    }
+
+    public void setFiToPostingsCostRatio(double fiToPostingsCostRatio) {
+        this.fiToPostingsCostRatio = fiToPostingsCostRatio;
+    }
+
+    public long getMaxTermsToExpand() {
+        return maxTermsToExpand;
+    }
+
+    public void setMaxTermsToExpand(long maxTermsToExpand) {
+        this.maxTermsToExpand = maxTermsToExpand;
+    }
+
+    public int getReverseTermIndexSizeMegs() {
+        return reverseTermIndexSizeMegs;
+    }
+
+    public void setReverseTermIndexSizeMegs(int reverseTermIndexSizeMegs) {
+        this.reverseTermIndexSizeMegs = reverseTermIndexSizeMegs;
+    }
+
+    public int getSpanCacheSizeMegs() {
+        return spanCacheSizeMegs;
+    }
+
+    public void setSpanCacheSizeMegs(int spanCacheSizeMegs) {
+        this.spanCacheSizeMegs = spanCacheSizeMegs;
+    }
+
+    public int getTagSpanIndexSizeMegs() {
+        return tagSpanIndexSizeMegs;
+    }
+
+    public void setTagSpanIndexSizeMegs(int tagSpanIndexSizeMegs) {
+        this.tagSpanIndexSizeMegs = tagSpanIndexSizeMegs;
+    }
+
+    public long getSpanCacheMinCost() {
+        return spanCacheMinCost;
+    }
+
+    public void setSpanCacheMinCost(long spanCacheMinCost) {
+        this.spanCacheMinCost = spanCacheMinCost;
+    }
+
+    public BLConfigWarmup getWarmup() {
+        return warmup;
+    }
+
+    public void setWarmup(BLConfigWarmup warmup) {
+        this.warmup = warmup;
+    }
+
     /**
      * Apply the search configuration settings to an opened index.
      *
@@ -66,9 +140,15 @@ public class BLConfigSearch {
         index.setDefaultContextSize(ContextSize.get(getContextSize()));
         int maxHitsToProcess = getMaxHitsToRetrieve();
         int maxHitsToCount = getMaxHitsToCount();
-        long fiMatchFactor = getFiMatchFactor();
-        SearchSettings sett = SearchSettings.get(maxHitsToProcess, maxHitsToCount, fiMatchFactor);
-        ClauseCombinerNfa.setDefaultForwardIndexMatchingThreshold(fiMatchFactor);
+        SearchSettings sett = SearchSettings.get(maxHitsToProcess, maxHitsToCount);
         index.setSearchSettings(sett);
+        index.forwardIndexMatchingSettings().setThreshold(getFiMatchFactor());
+        index.forwardIndexMatchingSettings().setFiToPostingsCostRatio(getFiToPostingsCostRatio());
+        index.setMaxTermsToExpand(getMaxTermsToExpand());
+        index.reverseTermIndexCache().setMaxSizeBytes(getReverseTermIndexSizeMegs() * 1_048_576L);
+        index.spanCache().setMaxSizeBytes(getSpanCacheSizeMegs() * 1_048_576L);
+        index.spanCache().setMinCost(getSpanCacheMinCost());
+        index.tagSpanIndexCache().setMaxSizeBytes(getTagSpanIndexSizeMegs() * 1_048_576L);
+        getWarmup().apply(index.warmup());
     }
 }
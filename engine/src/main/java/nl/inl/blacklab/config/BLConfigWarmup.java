@@ -0,0 +1,94 @@
+package nl.inl.blacklab.config;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import nl.inl.blacklab.search.IndexWarmup;
+
+public class BLConfigWarmup {
+    boolean enabled = false;
+
+    int threads = 2;
+
+    List<String> forwardIndexAnnotations = Arrays.asList("word", "lemma", "pos");
+
+    boolean terms = true;
+
+    boolean contentStore = false;
+
+    List<String> luceneExtensions = Arrays.asList("tim", "tip", "doc", "pos", "cfs");
+
+    List<String> queries = Collections.emptyList();
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    public List<String> getForwardIndexAnnotations() {
+        return forwardIndexAnnotations;
+    }
+
+    public void setForwardIndexAnnotations(List<String> forwardIndexAnnotations) {
+        this.forwardIndexAnnotations = forwardIndexAnnotations;
+    }
+
+    public boolean isTerms() {
+        return terms;
+    }
+
+    public void setTerms(boolean terms) {
+        this.terms = terms;
+    }
+
+    public boolean isContentStore() {
+        return contentStore;
+    }
+
+    public void setContentStore(boolean contentStore) {
+        this.contentStore = contentStore;
+    }
+
+    public List<String> getLuceneExtensions() {
+        return luceneExtensions;
+    }
+
+    public void setLuceneExtensions(List<String> luceneExtensions) {
+        this.luceneExtensions = luceneExtensions;
+    }
+
+    public List<String> getQueries() {
+        return queries;
+    }
+
+    public void setQueries(List<String> queries) {
+        this.queries = queries;
+    }
+
+    /**
+     * Apply the warm-up settings to an index's warm-up.
+     *
+     * @param warmup warm-up to configure
+     */
+    public void apply(IndexWarmup warmup) {
+        warmup.setEnabled(isEnabled());
+        warmup.setThreads(getThreads());
+        warmup.setForwardIndexAnnotations(getForwardIndexAnnotations());
+        warmup.setTerms(isTerms());
+        warmup.setContentStore(isContentStore());
+        warmup.setLuceneExtensions(getLuceneExtensions());
+        warmup.setQueries(getQueries());
+    }
+}
@@ -2,12 +2,14 @@ package nl.inl.blacklab.forwardindex;
 
 import java.io.File;
 import java.text.Collator;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Set;
 
 import org.apache.lucene.document.Document;
 
 import nl.inl.blacklab.exceptions.BlackLabRuntimeException;
+import nl.inl.blacklab.search.IndexMetrics;
 import nl.inl.blacklab.search.indexmetadata.Annotation;
 import nl.inl.util.VersionFile;
 
@@ -172,6 +174,9 @@ public abstract class AnnotationForwardIndex {
     /** Has the tokens file been mapped? */
     protected boolean initialized = false;
 
+    /** Timers and counters for the index we're part of */
+    protected IndexMetrics metrics = IndexMetrics.NONE;
+
     public AnnotationForwardIndex(Annotation annotation, File dir, Collators collators) {
         this.annotation = annotation;
         canDoNfaMatching = collators == null ? false : collators.version() != CollatorVersion.V1;
@@ -185,6 +190,17 @@ public abstract class AnnotationForwardIndex {
         // NOP, subclasses may override
         initialized = true;
     }
+
+    /**
+     * Set the metrics to record reads in.
+     *
+     * Should be called before initialize().
+     *
+     * @param metrics metrics for the index we're part of
+     */
+    public void setMetrics(IndexMetrics metrics) {
+        this.metrics = metrics;
+    }
     
     /**
      * Close the forward index. Writes the table of contents to disk if modified.
@@ -333,6 +349,24 @@ public abstract class AnnotationForwardIndex {
     public Annotation annotation() {
         return annotation;
     }
+
+    /**
+     * The tokens file and the table of contents.
+     *
+     * @return the files
+     */
+    public List<File> tokensFiles() {
+        return Arrays.asList(tokensFile, tocFile);
+    }
+
+    /**
+     * The terms file.
+     *
+     * @return the terms file
+     */
+    public File termsFile() {
+        return termsFile;
+    }
     
     public abstract Set<Integer> idSet();
 
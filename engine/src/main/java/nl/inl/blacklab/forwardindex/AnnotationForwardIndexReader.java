@@ -32,6 +32,7 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -99,10 +100,12 @@ class AnnotationForwardIndexReader extends AnnotationForwardIndex {
         //logger.debug("  END   read TOC " + tocFile);
 
         //logger.debug("  START read Terms " + tocFile);
+        long startTermsNs = System.nanoTime();
         terms = Terms.openForReading(collators, termsFile, buildTermIndexesOnInit);
         //logger.debug("  END   read Terms " + tocFile);
         //logger.debug("  START Terms.initialize() " + tocFile);
         terms.initialize();
+        metrics.termsInit().record(System.nanoTime() - startTermsNs, TimeUnit.NANOSECONDS);
         //logger.debug("  END   Terms.initialize() " + tocFile);
 
         //logger.debug("  START map tokens file " + tocFile);
@@ -224,6 +227,7 @@ class AnnotationForwardIndexReader extends AnnotationForwardIndex {
         if (n != ends.length)
             throw new IllegalArgumentException("start and end must be of equal length");
         List<int[]> result = new ArrayList<>(n);
+        long bytesRead = 0;
 
         for (int i = 0; i < n; i++) {
             int start = starts[i]; // don't modify the start/end array contents!
@@ -291,7 +295,9 @@ class AnnotationForwardIndexReader extends AnnotationForwardIndex {
                 ib.get(snippet);
             }
             result.add(snippet);
+            bytesRead += (long) snippetLength * SIZEOF_INT;
         }
+        metrics.forwardIndexBytesRead().increment(bytesRead);
 
         return result;
     }
@@ -307,6 +313,7 @@ class AnnotationForwardIndexReader extends AnnotationForwardIndex {
         if (n != ends.length)
             throw new IllegalArgumentException("start and end must be of equal length");
         List<int[]> result = new ArrayList<>(n);
+        long bytesRead = 0;
 
         for (int i = 0; i < n; i++) {
             int start = starts[i]; // don't modify the start/end array contents!
@@ -370,7 +377,9 @@ class AnnotationForwardIndexReader extends AnnotationForwardIndex {
             ib.position(start);
             ib.get(snippet);
             result.add(snippet);
+            bytesRead += (long) snippetLength * SIZEOF_INT;
         }
+        metrics.forwardIndexBytesRead().increment(bytesRead);
 
         return result;
     }
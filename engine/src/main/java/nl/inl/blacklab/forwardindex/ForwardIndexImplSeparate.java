@@ -203,6 +203,7 @@ public class ForwardIndexImplSeparate implements ForwardIndex {
         File dir = determineAfiDir(index.indexDirectory(), annotation);
         boolean create = index.indexMode() && index.isEmpty();
         AnnotationForwardIndex afi = AnnotationForwardIndex.open(dir, index.indexMode(), index.collator(), create, annotation, buildTermIndexesOnInit(annotation));
+        afi.setMetrics(index.metrics());
         synchronized (fis) {
             fis.put(annotation, afi);
         }
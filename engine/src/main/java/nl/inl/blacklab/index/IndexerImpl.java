@@ -26,6 +26,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import org.apache.commons.io.IOUtils;
 import org.apache.logging.log4j.LogManager;
@@ -55,6 +57,7 @@ import nl.inl.blacklab.search.indexmetadata.Annotation;
 import nl.inl.util.FileProcessor;
 import nl.inl.util.FileUtil;
 import nl.inl.util.UnicodeStream;
+import nl.inl.util.XmlElementSplitter;
 
 /**
  * Tool for indexing. Reports its progress to an IndexListener.
@@ -67,6 +70,13 @@ class IndexerImpl implements DocWriter, Indexer {
 
     static final Logger logger = LogManager.getLogger(IndexerImpl.class);
 
+    /**
+     * Document paths we can split large files on: //doc or /root/doc, optionally
+     * with namespace prefixes. Group 1 is the root element's local name (null for //doc),
+     * group 2 the document element's local name.
+     */
+    private static final Pattern SPLITTABLE_DOCUMENT_PATH = Pattern.compile("(?://|/(?:[\\w.-]+:)?([\\w.-]+)/)(?:[\\w.-]+:)?([\\w.-]+)");
+
     /**
      * FileProcessor FileHandler that creates a DocIndexer for every file and
      * performs some reporting.
@@ -74,6 +84,26 @@ class IndexerImpl implements DocWriter, Indexer {
     private class DocIndexerWrapper implements FileProcessor.FileHandler {
         @Override
         public void file(String path, byte[] contents, File file) throws IOException, MalformedInputFile, PluginException {
+            impl(docIndexer(path, contents), path, true);
+        }
+
+        @Override
+        public void splitFileStarted(String path, File file) {
+            listener().fileStarted(path);
+        }
+
+        @Override
+        public void filePart(String path, byte[] contents, File file) throws IOException, MalformedInputFile, PluginException {
+            // Parts are reported as a single file (see splitFileStarted/splitFileDone)
+            impl(docIndexer(path, contents), path, false);
+        }
+
+        @Override
+        public void splitFileDone(String path, File file) {
+            listener().fileDone(path);
+        }
+
+        private DocIndexer docIndexer(String path, byte[] contents) {
             // Attempt to detect the encoding of our input, falling back to DEFAULT_INPUT_ENCODING if the stream
             // doesn't contain a a BOM. 
             // There is one gotcha, and that is that if the inputstream contains non-textual data, we pass the
@@ -90,7 +120,7 @@ class IndexerImpl implements DocWriter, Indexer {
             } catch (Exception e) { 
                 logger.trace("Could not determine charset for input file {}, using default ({})", path,  DEFAULT_INPUT_ENCODING.name()); 
             }
-            impl(DocumentFormats.get(IndexerImpl.this.formatIdentifier, IndexerImpl.this, path, contents, cs), path);
+            return DocumentFormats.get(IndexerImpl.this.formatIdentifier, IndexerImpl.this, path, contents, cs);
         }
 
         @Override
@@ -108,20 +138,29 @@ class IndexerImpl implements DocWriter, Indexer {
                     UnicodeStream inputStream = new UnicodeStream(is, DEFAULT_INPUT_ENCODING);
                     DocIndexer docIndexer = DocumentFormats.get(IndexerImpl.this.formatIdentifier, IndexerImpl.this, path,
                             inputStream, inputStream.getEncoding());) {
-                impl(docIndexer, path);
+                impl(docIndexer, path, true);
             }
         }
 
-        private void impl(DocIndexer indexer, String documentName) throws MalformedInputFile, PluginException, IOException {
+        /**
+         * Index a file (or part of a file).
+         *
+         * @param indexer indexer for the file
+         * @param documentName name of the file
+         * @param reportFile whether to report the file to the listener (false for parts of a split file)
+         */
+        private void impl(DocIndexer indexer, String documentName, boolean reportFile) throws MalformedInputFile, PluginException, IOException {
             if (!indexer.continueIndexing())
                 return;
 
-            listener().fileStarted(documentName);
+            if (reportFile)
+                listener().fileStarted(documentName);
             int docsDoneBefore = indexer.numberOfDocsDone();
             long tokensDoneBefore = indexer.numberOfTokensDone();
 
             indexer.index();
-            listener().fileDone(documentName);
+            if (reportFile)
+                listener().fileDone(documentName);
             
             // FIXME the following checks are broken in multithreaded indexing, as the listener is shared between threads
             // So a docIndexer that didn't index anything can slip through if another thread did index some data in the
@@ -569,6 +608,7 @@ class IndexerImpl implements DocWriter, Indexer {
         try (FileProcessor proc = new FileProcessor(numberOfThreadsToUse, defaultRecurseSubdirs, processArchivesAsDirectories)) {
             proc.setFileNameGlob(optGlob.orElse("*"));
             proc.setFileHandler(docIndexerWrapper);
+            proc.setFileSplitter(fileSplitter());
             proc.setErrorHandler(listener());
             proc.processFile(file);
         }
@@ -585,6 +625,28 @@ class IndexerImpl implements DocWriter, Indexer {
         }
     }
     
+    /**
+     * Get the splitter for large input files, if our format wants them split.
+     *
+     * @return the splitter, or null if files shouldn't be split
+     */
+    private FileProcessor.FileSplitter fileSplitter() {
+        Format format = DocumentFormats.getFormat(formatIdentifier);
+        if (format == null || !format.isConfigurationBased())
+            return null;
+        ConfigInputFormat config = format.getConfig();
+        long minimumFileSize = config.getSplitLargeFilesSize();
+        if (minimumFileSize < 0)
+            return null;
+        Matcher m = SPLITTABLE_DOCUMENT_PATH.matcher(config.getDocumentPath());
+        if (!m.matches()) {
+            logger.warn("Not splitting large files for format " + formatIdentifier + ": documentPath "
+                    + config.getDocumentPath() + " is not of the form //doc or /root/doc");
+            return null;
+        }
+        return new XmlElementSplitter(m.group(1), m.group(2), minimumFileSize);
+    }
+
     /**
      * Should we continue indexing or stop?
      *
@@ -0,0 +1,117 @@
+package nl.inl.blacklab.indexers.config;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Queue;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import com.ximpleware.AutoPilot;
+import com.ximpleware.ParseException;
+import com.ximpleware.VTDGen;
+import com.ximpleware.VTDNav;
+import com.ximpleware.XPathParseException;
+
+import nl.inl.blacklab.exceptions.BlackLabRuntimeException;
+
+/**
+ * Compiled XPath expressions (VTD AutoPilots) for an input format, shared by all
+ * DocIndexerXPath instances for that format.
+ *
+ * A DocIndexerXPath is created for every input file, so without this, all the
+ * XPaths in the format would be compiled again for every file. An AutoPilot can
+ * only be used by one thread at a time, so it is taken out of the pool while in
+ * use, bound to the indexer's VTDNav, and put back afterwards.
+ */
+class AutoPilotPool {
+
+    /** Pools per input format */
+    private static final Map<ConfigInputFormat, AutoPilotPool> pools = new WeakHashMap<>();
+
+    /**
+     * Navigator for an empty document. Pooled AutoPilots are bound to this, so they
+     * don't keep the last document they were used for in memory.
+     */
+    private static final VTDNav EMPTY_NAV = emptyNav();
+
+    private static VTDNav emptyNav() {
+        VTDGen vg = new VTDGen();
+        vg.setDoc("<empty/>".getBytes(StandardCharsets.UTF_8));
+        try {
+            vg.parse(false);
+        } catch (ParseException e) {
+            throw BlackLabRuntimeException.wrap(e);
+        }
+        return vg.getNav();
+    }
+
+    /**
+     * Get the pool for an input format.
+     *
+     * @param config input format
+     * @return the pool
+     */
+    static synchronized AutoPilotPool get(ConfigInputFormat config) {
+        return pools.computeIfAbsent(config, AutoPilotPool::new);
+    }
+
+    /** Namespaces to declare on new AutoPilots (empty if not namespace aware) */
+    private final Map<String, String> namespaces;
+
+    /** AutoPilots that are not in use, per XPath expression */
+    private final Map<String, Queue<AutoPilot>> available = new ConcurrentHashMap<>();
+
+    private AutoPilotPool(ConfigInputFormat config) {
+        // NOTE: don't keep a reference to config, or it will never be removed from pools
+        namespaces = new HashMap<>();
+        if (config.isNamespaceAware()) {
+            namespaces.put("xml", "http://www.w3.org/XML/1998/namespace"); // builtin
+            namespaces.putAll(config.getNamespaces());
+        }
+    }
+
+    /**
+     * Get an AutoPilot for an XPath expression, bound to a navigator.
+     *
+     * The AutoPilot should be returned using {@link #release(String, AutoPilot)}
+     * when no longer needed.
+     *
+     * @param xpathExpr XPath expression
+     * @param nav navigator to bind the AutoPilot to
+     * @return the AutoPilot
+     */
+    AutoPilot acquire(String xpathExpr, VTDNav nav) {
+        Queue<AutoPilot> queue = available.get(xpathExpr);
+        AutoPilot ap = queue == null ? null : queue.poll();
+        if (ap == null) {
+            ap = new AutoPilot(nav);
+            for (Entry<String, String> e : namespaces.entrySet()) {
+                ap.declareXPathNameSpace(e.getKey(), e.getValue());
+            }
+            try {
+                ap.selectXPath(xpathExpr);
+            } catch (XPathParseException e) {
+                throw new BlackLabRuntimeException("Error in XPath expression " + xpathExpr + " : " + e.getMessage(), e);
+            }
+        } else {
+            ap.bind(nav);
+            ap.resetXPath();
+        }
+        return ap;
+    }
+
+    /**
+     * Return an AutoPilot to the pool.
+     *
+     * @param xpathExpr XPath expression the AutoPilot was acquired for
+     * @param ap the AutoPilot
+     */
+    void release(String xpathExpr, AutoPilot ap) {
+        ap.bind(EMPTY_NAV);
+        available.computeIfAbsent(xpathExpr, __ -> new ConcurrentLinkedQueue<>()).add(ap);
+    }
+
+}
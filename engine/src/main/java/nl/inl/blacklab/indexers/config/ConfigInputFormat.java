@@ -515,6 +515,26 @@ public class ConfigInputFormat {
                 && fileTypeOptions.get("resolveNamedEntityReferences").equalsIgnoreCase("true");
     }
 
+    /**
+     * From what size should input files be split into documents before indexing?
+     *
+     * Set using the XML file type option splitLargeFilesMB. Splitting allows a very
+     * large file containing many documents to be indexed in parallel, without
+     * reading it into memory as a whole.
+     *
+     * @return minimum file size in bytes, or -1 if files should never be split
+     */
+    public long getSplitLargeFilesSize() {
+        String value = fileTypeOptions.get("splitLargeFilesMB");
+        if (fileType != FileType.XML || value == null)
+            return -1;
+        try {
+            return Long.parseLong(value.trim()) * 1024 * 1024;
+        } catch (NumberFormatException e) {
+            throw new InvalidInputFormatConfig("splitLargeFilesMB must be a number, not " + value);
+        }
+    }
+
     public String getHelpUrl() {
         return helpUrl;
     }
@@ -18,7 +18,6 @@ import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
 import java.util.Set;
 import java.util.function.Function;
 
@@ -36,7 +35,6 @@ import com.ximpleware.XPathEvalException;
 import com.ximpleware.XPathParseException;
 
 import nl.inl.blacklab.exceptions.BlackLabRuntimeException;
-import nl.inl.blacklab.exceptions.InvalidConfiguration;
 import nl.inl.blacklab.exceptions.MalformedInputFile;
 import nl.inl.blacklab.exceptions.PluginException;
 import nl.inl.blacklab.index.Indexer;
@@ -138,47 +136,48 @@ public class DocIndexerXPath extends DocIndexerConfig {
         }
     }
 
-    /** Map from XPath expression to compiled XPath. */
-    private Map<String, AutoPilot> compiledXPaths = new HashMap<>();
+    /** Compiled XPaths for our input format, shared with other indexers. */
+    private AutoPilotPool autoPilotPool;
 
     /**
      * AutoPilots that are currently being used. We need to keep track of this to be
-     * able to re-add them to compiledXpath with the correct XPath expression later.
+     * able to return them to the pool with the correct XPath expression later.
      */
     private Map<AutoPilot, String> autoPilotsInUse = new HashMap<>();
 
     /**
-     * Create AutoPilot and declare namespaces on it.
+     * Get an AutoPilot for an XPath expression from the pool, bound to our navigator.
+     *
+     * The AutoPilot must be returned using {@link #releaseAutoPilot(AutoPilot)},
+     * also if an exception is thrown (so use try/finally).
      *
      * @param xpathExpr xpath expression for the AutoPilot
      * @return the AutoPilot
-     * @throws XPathParseException
      */
-    private AutoPilot acquireAutoPilot(String xpathExpr) throws XPathParseException {
-        AutoPilot ap = compiledXPaths.remove(xpathExpr);
-        if (ap == null) {
-            ap = new AutoPilot(nav);
-            if (config.isNamespaceAware()) {
-                ap.declareXPathNameSpace("xml", "http://www.w3.org/XML/1998/namespace"); // builtin
-                for (Entry<String, String> e : config.getNamespaces().entrySet()) {
-                    ap.declareXPathNameSpace(e.getKey(), e.getValue());
-                }
-            }
-            try {
-                ap.selectXPath(xpathExpr);
-            } catch (XPathParseException e) {
-                throw new BlackLabRuntimeException("Error in XPath expression " + xpathExpr + " : " + e.getMessage(), e);
-            }
-        } else {
-            ap.resetXPath();
-        }
+    private AutoPilot acquireAutoPilot(String xpathExpr) {
+        if (autoPilotPool == null)
+            autoPilotPool = AutoPilotPool.get(config);
+        AutoPilot ap = autoPilotPool.acquire(xpathExpr, nav);
         autoPilotsInUse.put(ap, xpathExpr);
         return ap;
     }
 
+    /**
+     * Return an AutoPilot to the pool.
+     *
+     * @param ap the AutoPilot, or null (then nothing happens)
+     */
     private void releaseAutoPilot(AutoPilot ap) {
+        if (ap == null)
+            return;
         String xpathExpr = autoPilotsInUse.remove(ap);
-        compiledXPaths.put(xpathExpr, ap);
+        autoPilotPool.release(xpathExpr, ap);
+    }
+
+    /** Return the AutoPilot we keep for evaluating "." to the pool. */
+    private void releaseApDot() {
+        releaseAutoPilot(apDot);
+        apDot = null;
     }
 
     @Override
@@ -201,12 +200,17 @@ public class DocIndexerXPath extends DocIndexerConfig {
 
                 // Find all documents
                 AutoPilot documents = acquireAutoPilot(config.getDocumentPath());
-                while (documents.evalXPath() != -1) {
-                    indexDocument();
+                try {
+                    while (documents.evalXPath() != -1) {
+                        indexDocument();
+                    }
+                } finally {
+                    releaseAutoPilot(documents);
                 }
-                releaseAutoPilot(documents);
             } catch (VTDException e) {
                 throw new MalformedInputFile("Error indexing file: " + documentName, e);
+            } finally {
+                releaseApDot();
             }
         }
     }
@@ -235,11 +239,9 @@ public class DocIndexerXPath extends DocIndexerConfig {
         for (ConfigLinkedDocument ld : config.getLinkedDocuments().values()) {
             Function<String, String> xpathProcessor = xpath -> {
                 // Resolve value using XPath
-                AutoPilot apLinkPath = null;
-                String result = null;
+                AutoPilot apLinkPath = acquireAutoPilot(xpath);
                 try {
-                    apLinkPath = acquireAutoPilot(xpath);
-                    result = apLinkPath.evalXPathToString();
+                    String result = apLinkPath.evalXPathToString();
                     if (result == null || result.isEmpty()) {
                         switch (ld.getIfLinkPathMissing()) {
                             case IGNORE:
@@ -252,11 +254,10 @@ public class DocIndexerXPath extends DocIndexerConfig {
                                 throw new BlackLabRuntimeException("Link path " + xpath + " not found in document " + documentName);
                         }
                     }
+                    return result;
+                } finally {
                     releaseAutoPilot(apLinkPath);
-                } catch (XPathParseException e) {
-                    throw new InvalidConfiguration(e.getMessage() + String.format("; when indexing file: %s", documentName), e);
                 }
-                return result;
             };
             processLinkedDocument(ld, xpathProcessor);
         }
@@ -273,95 +274,137 @@ public class DocIndexerXPath extends DocIndexerConfig {
         setCurrentAnnotatedField(annotatedField);
 
         // Precompile XPaths for words, evalToString, inline tags, punct and (sub)annotations
-        AutoPilot words = acquireAutoPilot(annotatedField.getWordsPath());
-        AutoPilot apEvalToString = acquireAutoPilot(".");
+        AutoPilot words = null;
+        AutoPilot apEvalToString = null;
         List<AutoPilot> apsInlineTag = new ArrayList<>();
-        for (ConfigInlineTag inlineTag : annotatedField.getInlineTags()) {
-            AutoPilot apInlineTag = acquireAutoPilot(inlineTag.getPath());
-            apsInlineTag.add(apInlineTag);
-        }
         AutoPilot apPunct = null;
-        if (annotatedField.getPunctPath() != null)
-            apPunct = acquireAutoPilot(annotatedField.getPunctPath());
-        String tokenPositionIdPath = annotatedField.getTokenPositionIdPath();
         AutoPilot apTokenPositionId = null;
-        if (tokenPositionIdPath != null) {
-            apTokenPositionId = acquireAutoPilot(tokenPositionIdPath);
-        }
+        AutoPilot bodies = null;
+        try {
+            words = acquireAutoPilot(annotatedField.getWordsPath());
+            apEvalToString = acquireAutoPilot(".");
+            for (ConfigInlineTag inlineTag : annotatedField.getInlineTags()) {
+                AutoPilot apInlineTag = acquireAutoPilot(inlineTag.getPath());
+                apsInlineTag.add(apInlineTag);
+            }
+            if (annotatedField.getPunctPath() != null)
+                apPunct = acquireAutoPilot(annotatedField.getPunctPath());
+            String tokenPositionIdPath = annotatedField.getTokenPositionIdPath();
+            if (tokenPositionIdPath != null) {
+                apTokenPositionId = acquireAutoPilot(tokenPositionIdPath);
+            }
 
-        // For each body element...
-        // (there's usually only one, but there's no reason to limit it)
-        navpush();
-        AutoPilot bodies = acquireAutoPilot(annotatedField.getContainerPath());
-        AnnotatedFieldWriter annotatedFieldWriter = getAnnotatedField(annotatedField.getName());
-        while (bodies.evalXPath() != -1) {
-
-            // First we find all inline elements (stuff like s, p, b, etc.) and store
-            // the locations of their start and end tags in a sorted list.
-            // This way, we can keep track of between which words these tags occur.
-            // For end tags, we will update the payload of the start tag when we encounter it,
-            // just like we do in our SAX parsers.
-            List<InlineObject> tagsAndPunct = new ArrayList<>();
-            for (AutoPilot apInlineTag : apsInlineTag) {
-                navpush();
-                apInlineTag.resetXPath();
-                while (apInlineTag.evalXPath() != -1) {
-                    collectInlineTag(tagsAndPunct);
+            // For each body element...
+            // (there's usually only one, but there's no reason to limit it)
+            navpush();
+            bodies = acquireAutoPilot(annotatedField.getContainerPath());
+            AnnotatedFieldWriter annotatedFieldWriter = getAnnotatedField(annotatedField.getName());
+            while (bodies.evalXPath() != -1) {
+
+                // First we find all inline elements (stuff like s, p, b, etc.) and store
+                // the locations of their start and end tags in a sorted list.
+                // This way, we can keep track of between which words these tags occur.
+                // For end tags, we will update the payload of the start tag when we encounter it,
+                // just like we do in our SAX parsers.
+                List<InlineObject> tagsAndPunct = new ArrayList<>();
+                for (AutoPilot apInlineTag : apsInlineTag) {
+                    navpush();
+                    apInlineTag.resetXPath();
+                    while (apInlineTag.evalXPath() != -1) {
+                        collectInlineTag(tagsAndPunct);
+                    }
+                    navpop();
                 }
-                navpop();
-            }
-            setAddDefaultPunctuation(true);
-            if (apPunct != null) {
-                // We have punctuation occurring between word tags (as opposed to
-                // punctuation that is tagged as a word itself). Collect this punctuation.
-                setAddDefaultPunctuation(false);
+                setAddDefaultPunctuation(true);
+                if (apPunct != null) {
+                    // We have punctuation occurring between word tags (as opposed to
+                    // punctuation that is tagged as a word itself). Collect this punctuation.
+                    setAddDefaultPunctuation(false);
+                    navpush();
+                    apPunct.resetXPath();
+                    while (apPunct.evalXPath() != -1) {
+                        apEvalToString.resetXPath();
+                        String punct = apEvalToString.evalXPathToString();
+                        // If punctPath matches an empty tag, replace it with a space.
+                        // Deals with e.g. <lb/> (line break) tags in TEI.
+                        if (punct.isEmpty())
+                            punct = " ";
+                        collectPunct(tagsAndPunct, punct);
+                    }
+                    navpop();
+                }
+                tagsAndPunct.sort(Comparator.naturalOrder());
+                Iterator<InlineObject> inlineObjectsIt = tagsAndPunct.iterator();
+                InlineObject nextInlineObject = inlineObjectsIt.hasNext() ? inlineObjectsIt.next() : null;
+
+                // Now, find all words, keeping track of what inline objects occur in between.
                 navpush();
-                apPunct.resetXPath();
-                while (apPunct.evalXPath() != -1) {
-                    apEvalToString.resetXPath();
-                    String punct = apEvalToString.evalXPathToString();
-                    // If punctPath matches an empty tag, replace it with a space.
-                    // Deals with e.g. <lb/> (line break) tags in TEI.
-                    if (punct.isEmpty())
-                        punct = " ";
-                    collectPunct(tagsAndPunct, punct);
+                words.resetXPath();
+
+                // first find all words and sort the list -- words are returned out of order when they are at different nesting levels
+                // since the xpath spec doesn't enforce any order, there's nothing we can do
+                // so record their positions, sort the list, then restore the position and carry on
+                List<Pair<Integer, BookMark>> wordPositions = new ArrayList<>();
+                while (words.evalXPath() != -1) {
+                    BookMark b = new BookMark(nav);
+                    b.setCursorPosition();
+                    wordPositions.add(Pair.of(nav.getCurrentIndex(), b));
                 }
-                navpop();
-            }
-            tagsAndPunct.sort(Comparator.naturalOrder());
-            Iterator<InlineObject> inlineObjectsIt = tagsAndPunct.iterator();
-            InlineObject nextInlineObject = inlineObjectsIt.hasNext() ? inlineObjectsIt.next() : null;
+                wordPositions.sort((a, b) -> a.getKey().compareTo(b.getKey()));
 
-            // Now, find all words, keeping track of what inline objects occur in between.
-            navpush();
-            words.resetXPath();
-
-            // first find all words and sort the list -- words are returned out of order when they are at different nesting levels
-            // since the xpath spec doesn't enforce any order, there's nothing we can do
-            // so record their positions, sort the list, then restore the position and carry on
-            List<Pair<Integer, BookMark>> wordPositions = new ArrayList<>();
-            while (words.evalXPath() != -1) {
-                BookMark b = new BookMark(nav);
-                b.setCursorPosition();
-                wordPositions.add(Pair.of(nav.getCurrentIndex(), b));
-            }
-            wordPositions.sort((a, b) -> a.getKey().compareTo(b.getKey()));
+                for (Pair<Integer, BookMark> wordPosition : wordPositions) {
+                    wordPosition.getValue().setCursorPosition();
+
+                    // Capture tokenPositionId for this token position?
+                    if (apTokenPositionId != null) {
+                        apTokenPositionId.resetXPath();
+                        String tokenPositionId = apTokenPositionId.evalXPathToString();
+                        tokenPositionsMap.put(tokenPositionId, getCurrentTokenPosition());
+                    }
+
+                    // Does an inline object occur before this word?
+                    long wordFragment = nav.getContentFragment();
+                    int wordOffset = (int) wordFragment;
+                    while (nextInlineObject != null && wordOffset >= nextInlineObject.getOffset()) {
+                        // Yes. Handle it.
+                        if (nextInlineObject.type() == InlineObjectType.PUNCTUATION)
+                            punctuation(nextInlineObject.getText());
+                        else
+                            inlineTag(nextInlineObject.getText(), nextInlineObject.type() == InlineObjectType.OPEN_TAG,
+                                    nextInlineObject.getAttributes());
+                        nextInlineObject = inlineObjectsIt.hasNext() ? inlineObjectsIt.next() : null;
+                    }
+
+                    fragPos = FragmentPosition.BEFORE_OPEN_TAG;
+                    beginWord();
+
+                    // For each configured annotation...
+                    int lastValuePosition = -1; // keep track of last value position so we can update lagging annotations
+                    for (ConfigAnnotation annotation : annotatedField.getAnnotations().values()) {
+                        processAnnotation(annotation, null);
+                        AnnotationWriter annotWriter = getAnnotation(annotation.getName());
+                        int lvp = annotWriter.lastValuePosition();
+                        if (lastValuePosition < lvp) {
+                            lastValuePosition = lvp;
+                        }
+                    }
 
-            for (Pair<Integer, BookMark> wordPosition : wordPositions) {
-                wordPosition.getValue().setCursorPosition();
+                    fragPos = FragmentPosition.AFTER_CLOSE_TAG;
+                    endWord();
 
-                // Capture tokenPositionId for this token position?
-                if (apTokenPositionId != null) {
-                    apTokenPositionId.resetXPath();
-                    String tokenPositionId = apTokenPositionId.evalXPathToString();
-                    tokenPositionsMap.put(tokenPositionId, getCurrentTokenPosition());
+                    // Add empty values to all lagging annotations
+                    for (AnnotationWriter prop: annotatedFieldWriter.annotationWriters()) {
+                        while (prop.lastValuePosition() < lastValuePosition) {
+                            prop.addValue("");
+                            if (prop.hasPayload())
+                                prop.addPayload(null);
+                        }
+                    }
                 }
+                navpop();
 
-                // Does an inline object occur before this word?
-                long wordFragment = nav.getContentFragment();
-                int wordOffset = (int) wordFragment;
-                while (nextInlineObject != null && wordOffset >= nextInlineObject.getOffset()) {
-                    // Yes. Handle it.
+                // Handle any inline objects after the last word
+                while (nextInlineObject != null) {
                     if (nextInlineObject.type() == InlineObjectType.PUNCTUATION)
                         punctuation(nextInlineObject.getText());
                     else
@@ -370,89 +413,53 @@ public class DocIndexerXPath extends DocIndexerConfig {
                     nextInlineObject = inlineObjectsIt.hasNext() ? inlineObjectsIt.next() : null;
                 }
 
-                fragPos = FragmentPosition.BEFORE_OPEN_TAG;
-                beginWord();
-
-                // For each configured annotation...
-                int lastValuePosition = -1; // keep track of last value position so we can update lagging annotations
-                for (ConfigAnnotation annotation : annotatedField.getAnnotations().values()) {
-                    processAnnotation(annotation, null);
-                    AnnotationWriter annotWriter = getAnnotation(annotation.getName());
-                    int lvp = annotWriter.lastValuePosition();
-                    if (lastValuePosition < lvp) {
-                        lastValuePosition = lvp;
-                    }
-                }
-
-                fragPos = FragmentPosition.AFTER_CLOSE_TAG;
-                endWord();
-
-                // Add empty values to all lagging annotations
-                for (AnnotationWriter prop: annotatedFieldWriter.annotationWriters()) {
-                    while (prop.lastValuePosition() < lastValuePosition) {
-                        prop.addValue("");
-                        if (prop.hasPayload())
-                            prop.addPayload(null);
-                    }
-                }
             }
             navpop();
 
-            // Handle any inline objects after the last word
-            while (nextInlineObject != null) {
-                if (nextInlineObject.type() == InlineObjectType.PUNCTUATION)
-                    punctuation(nextInlineObject.getText());
-                else
-                    inlineTag(nextInlineObject.getText(), nextInlineObject.type() == InlineObjectType.OPEN_TAG,
-                            nextInlineObject.getAttributes());
-                nextInlineObject = inlineObjectsIt.hasNext() ? inlineObjectsIt.next() : null;
-            }
-
-        }
-        navpop();
+            // For each configured standoff annotation...
+            for (ConfigStandoffAnnotations standoff : annotatedField.getStandoffAnnotations()) {
+                // For each instance of this standoff annotation..
+                navpush();
+                AutoPilot apStandoff = acquireAutoPilot(standoff.getPath());
+                AutoPilot apTokenPos = acquireAutoPilot(standoff.getRefTokenPositionIdPath());
+                try {
+                    while (apStandoff.evalXPath() != -1) {
 
-        // For each configured standoff annotation...
-        for (ConfigStandoffAnnotations standoff : annotatedField.getStandoffAnnotations()) {
-            // For each instance of this standoff annotation..
-            navpush();
-            AutoPilot apStandoff = acquireAutoPilot(standoff.getPath());
-            AutoPilot apTokenPos = acquireAutoPilot(standoff.getRefTokenPositionIdPath());
-            while (apStandoff.evalXPath() != -1) {
+                        // Determine what token positions to index these values at
+                        navpush();
+                        List<Integer> tokenPositions = new ArrayList<>();
+                        apTokenPos.resetXPath();
+                        while (apTokenPos.evalXPath() != -1) {
+                            apEvalToString.resetXPath();
+                            String tokenPositionId = apEvalToString.evalXPathToString();
+                            Integer integer = tokenPositionsMap.get(tokenPositionId);
+                            if (integer == null)
+                                warn("Unresolved reference to token position: '" + tokenPositionId + "'");
+                            else
+                                tokenPositions.add(integer);
+                        }
+                        navpop();
 
-                // Determine what token positions to index these values at
-                navpush();
-                List<Integer> tokenPositions = new ArrayList<>();
-                apTokenPos.resetXPath();
-                while (apTokenPos.evalXPath() != -1) {
-                    apEvalToString.resetXPath();
-                    String tokenPositionId = apEvalToString.evalXPathToString();
-                    Integer integer = tokenPositionsMap.get(tokenPositionId);
-                    if (integer == null)
-                        warn("Unresolved reference to token position: '" + tokenPositionId + "'");
-                    else
-                        tokenPositions.add(integer);
+                        for (ConfigAnnotation annotation : standoff.getAnnotations().values()) {
+                            processAnnotation(annotation, tokenPositions);
+                        }
+                    }
+                } finally {
+                    releaseAutoPilot(apStandoff);
+                    releaseAutoPilot(apTokenPos);
                 }
                 navpop();
-
-                for (ConfigAnnotation annotation : standoff.getAnnotations().values()) {
-                    processAnnotation(annotation, tokenPositions);
-                }
             }
-            releaseAutoPilot(apStandoff);
-            releaseAutoPilot(apTokenPos);
-            navpop();
-        }
-
-        releaseAutoPilot(words);
-        releaseAutoPilot(apEvalToString);
-        for (AutoPilot ap : apsInlineTag) {
-            releaseAutoPilot(ap);
-        }
-        if (apPunct != null)
+        } finally {
+            releaseAutoPilot(words);
+            releaseAutoPilot(apEvalToString);
+            for (AutoPilot ap : apsInlineTag) {
+                releaseAutoPilot(ap);
+            }
             releaseAutoPilot(apPunct);
-        if (apTokenPositionId != null)
             releaseAutoPilot(apTokenPositionId);
-        releaseAutoPilot(bodies);
+            releaseAutoPilot(bodies);
+        }
     }
 
     protected void navpush() {
@@ -471,116 +478,127 @@ public class DocIndexerXPath extends DocIndexerConfig {
         // For each instance of this metadata block...
         navpush();
         AutoPilot apMetadataBlock = acquireAutoPilot(b.getContainerPath());
-        while (apMetadataBlock.evalXPath() != -1) {
+        try {
+            while (apMetadataBlock.evalXPath() != -1) {
 
-            // For each configured metadata field...
-            List<ConfigMetadataField> fields = b.getFields();
-            for (int i = 0; i < fields.size(); i++) { // NOTE: fields may be added during loop, so can't iterate
-                ConfigMetadataField f = fields.get(i);
+                // For each configured metadata field...
+                List<ConfigMetadataField> fields = b.getFields();
+                for (int i = 0; i < fields.size(); i++) { // NOTE: fields may be added during loop, so can't iterate
+                    ConfigMetadataField f = fields.get(i);
 
-                // Metadata field configs without a valuePath are just for
-                // adding information about fields captured in forEach's,
-                // such as extra processing steps
-                if (f.getValuePath() == null || f.getValuePath().isEmpty())
-                    continue;
+                    // Metadata field configs without a valuePath are just for
+                    // adding information about fields captured in forEach's,
+                    // such as extra processing steps
+                    if (f.getValuePath() == null || f.getValuePath().isEmpty())
+                        continue;
 
-                // Capture whatever this configured metadata field points to
-                AutoPilot apMetadata = acquireAutoPilot(f.getValuePath());
-                if (f.isForEach()) {
-                    // "forEach" metadata specification
-                    // (allows us to capture many metadata fields with 3 XPath expressions)
-                    navpush();
-                    AutoPilot apMetaForEach = acquireAutoPilot(f.getForEachPath());
-                    AutoPilot apFieldName = acquireAutoPilot(f.getName());
-                    while (apMetaForEach.evalXPath() != -1) {
-                        // Find the fieldName and value for this forEach match
-                        apFieldName.resetXPath();
-                        String origFieldName = apFieldName.evalXPathToString();
-                        String fieldName = AnnotatedFieldNameUtil.sanitizeXmlElementName(origFieldName);
-                        if (!origFieldName.equals(fieldName)) {
-                            warnSanitized(origFieldName, fieldName);
-                        }
-                        ConfigMetadataField metadataField = b.getOrCreateField(fieldName);
-
-                        // This metadata field is matched by a for-each, but if it specifies its own xpath ignore it in the for-each section
-                        // It will capture values on its own at another point in the outer loop.
-                        // Note that we check whether there is any path at all: otherwise an identical path to the for-each would capture values twice.
-                        if (metadataField.getValuePath() != null && !metadataField.getValuePath().isEmpty())
-                            continue;
-
-                        apMetadata.resetXPath();
-
-                        // Multiple matches will be indexed at the same position.
-                        AutoPilot apEvalToString = acquireAutoPilot(".");
-                        try {
-                            while (apMetadata.evalXPath() != -1) {
-                                apEvalToString.resetXPath();
-                                String unprocessedValue = apEvalToString.evalXPathToString();
-                                for (String value : processStringMultipleValues(unprocessedValue, f.getProcess(), f.getMapValues())) {
-                                    // Also execute process defined for named metadata field, if any
-                                    for (String processedValue : processStringMultipleValues(value, metadataField.getProcess(), metadataField.getMapValues())) {
-                                        addMetadataField(fieldName, processedValue);
+                    // Capture whatever this configured metadata field points to
+                    AutoPilot apMetadata = acquireAutoPilot(f.getValuePath());
+                    try {
+                        if (f.isForEach()) {
+                            // "forEach" metadata specification
+                            // (allows us to capture many metadata fields with 3 XPath expressions)
+                            navpush();
+                            AutoPilot apMetaForEach = acquireAutoPilot(f.getForEachPath());
+                            AutoPilot apFieldName = acquireAutoPilot(f.getName());
+                            try {
+                                while (apMetaForEach.evalXPath() != -1) {
+                                    // Find the fieldName and value for this forEach match
+                                    apFieldName.resetXPath();
+                                    String origFieldName = apFieldName.evalXPathToString();
+                                    String fieldName = AnnotatedFieldNameUtil.sanitizeXmlElementName(origFieldName);
+                                    if (!origFieldName.equals(fieldName)) {
+                                        warnSanitized(origFieldName, fieldName);
+                                    }
+                                    ConfigMetadataField metadataField = b.getOrCreateField(fieldName);
+
+                                    // This metadata field is matched by a for-each, but if it specifies its own xpath ignore it in the for-each section
+                                    // It will capture values on its own at another point in the outer loop.
+                                    // Note that we check whether there is any path at all: otherwise an identical path to the for-each would capture values twice.
+                                    if (metadataField.getValuePath() != null && !metadataField.getValuePath().isEmpty())
+                                        continue;
+
+                                    apMetadata.resetXPath();
+
+                                    // Multiple matches will be indexed at the same position.
+                                    AutoPilot apEvalToString = acquireAutoPilot(".");
+                                    try {
+                                        while (apMetadata.evalXPath() != -1) {
+                                            apEvalToString.resetXPath();
+                                            String unprocessedValue = apEvalToString.evalXPathToString();
+                                            for (String value : processStringMultipleValues(unprocessedValue, f.getProcess(), f.getMapValues())) {
+                                                // Also execute process defined for named metadata field, if any
+                                                for (String processedValue : processStringMultipleValues(value, metadataField.getProcess(), metadataField.getMapValues())) {
+                                                    addMetadataField(fieldName, processedValue);
+                                                }
+                                            }
+                                        }
+                                    } catch (XPathEvalException e) {
+                                        // An xpath like string(@value) will make evalXPath() fail.
+                                        // There is no good way to check whether this exception will occur
+                                        // When the exception occurs we try to evaluate the xpath as string
+                                        // NOTE: an xpath with dot like: string(.//tei:availability[1]/@status='free') may fail silently!!
+                                        if (logger.isDebugEnabled() && !warnedAboutXpathIssue) {
+                                            warnedAboutXpathIssue = true;
+                                            logger.debug(String.format("An xpath with a dot like %s may fail silently and may have to be replaced by one like %s",
+                                                    "string(.//tei:availability[1]/@status='free')",
+                                                    "string(//tei:availability[1]/@status='free')"));
+                                        }
+                                        String unprocessedValue = apMetadata.evalXPathToString();
+                                        for (String value : processStringMultipleValues(unprocessedValue, f.getProcess(), f.getMapValues())) {
+                                            for (String processedValue : processStringMultipleValues(value, metadataField.getProcess(), metadataField.getMapValues())) {
+                                                addMetadataField(fieldName, processedValue);
+                                            }
+                                        }
+                                    } finally {
+                                        releaseAutoPilot(apEvalToString);
                                     }
                                 }
+                            } finally {
+                                releaseAutoPilot(apMetaForEach);
+                                releaseAutoPilot(apFieldName);
                             }
-                        } catch (XPathEvalException e) {
-                            // An xpath like string(@value) will make evalXPath() fail.
-                            // There is no good way to check whether this exception will occur
-                            // When the exception occurs we try to evaluate the xpath as string
-                            // NOTE: an xpath with dot like: string(.//tei:availability[1]/@status='free') may fail silently!!
-                            if (logger.isDebugEnabled() && !warnedAboutXpathIssue) {
-                                warnedAboutXpathIssue = true;
-                                logger.debug(String.format("An xpath with a dot like %s may fail silently and may have to be replaced by one like %s",
-                                        "string(.//tei:availability[1]/@status='free')",
-                                        "string(//tei:availability[1]/@status='free')"));
-                            }
-                            String unprocessedValue = apMetadata.evalXPathToString();
-                            for (String value : processStringMultipleValues(unprocessedValue, f.getProcess(), f.getMapValues())) {
-                                for (String processedValue : processStringMultipleValues(value, metadataField.getProcess(), metadataField.getMapValues())) {
-                                    addMetadataField(fieldName, processedValue);
+                            navpop();
+                        } else {
+                            // Regular metadata field; just the fieldName and an XPath expression for the value
+                            // Multiple matches will be indexed at the same position.
+                            AutoPilot apEvalToString = acquireAutoPilot(".");
+                            try {
+                                while (apMetadata.evalXPath() != -1) {
+                                    apEvalToString.resetXPath();
+                                    String unprocessedValue = apEvalToString.evalXPathToString();
+                                    for (String value : processStringMultipleValues(unprocessedValue, f.getProcess(), f.getMapValues())) {
+                                        addMetadataField(f.getName(), value);
+                                    }
                                 }
+                            } catch(XPathEvalException e) {
+                                // An xpath like string(@value) will make evalXPath() fail.
+                                // There is no good way to check whether this exception will occur
+                                // When the exception occurs we try to evaluate the xpath as string
+                                // NOTE: an xpath with dot like: string(.//tei:availability[1]/@status='free') may fail silently!!
+                                if (logger.isDebugEnabled() && !warnedAboutXpathIssue) {
+                                    warnedAboutXpathIssue = true;
+                                    logger.debug(String.format("An xpath with a dot like %s may fail silently and may have to be replaced by one like %s",
+                                            "string(.//tei:availability[1]/@status='free')",
+                                            "string(//tei:availability[1]/@status='free')"));
+                                }
+                                String unprocessedValue = apMetadata.evalXPathToString();
+                                for (String value : processStringMultipleValues(unprocessedValue, f.getProcess(), f.getMapValues())) {
+                                    addMetadataField(f.getName(), value);
+                                }
+                            } finally {
+                                releaseAutoPilot(apEvalToString);
                             }
                         }
-                        releaseAutoPilot(apEvalToString);
-                    }
-                    releaseAutoPilot(apMetaForEach);
-                    releaseAutoPilot(apFieldName);
-                    navpop();
-                } else {
-                    // Regular metadata field; just the fieldName and an XPath expression for the value
-                    // Multiple matches will be indexed at the same position.
-                    AutoPilot apEvalToString = acquireAutoPilot(".");
-                    try {
-                        while (apMetadata.evalXPath() != -1) {
-                            apEvalToString.resetXPath();
-                            String unprocessedValue = apEvalToString.evalXPathToString();
-                            for (String value : processStringMultipleValues(unprocessedValue, f.getProcess(), f.getMapValues())) {
-                                addMetadataField(f.getName(), value);
-                            }
-                        }
-                    } catch(XPathEvalException e) {
-                        // An xpath like string(@value) will make evalXPath() fail.
-                        // There is no good way to check whether this exception will occur
-                        // When the exception occurs we try to evaluate the xpath as string
-                        // NOTE: an xpath with dot like: string(.//tei:availability[1]/@status='free') may fail silently!!
-                        if (logger.isDebugEnabled() && !warnedAboutXpathIssue) {
-                            warnedAboutXpathIssue = true;
-                            logger.debug(String.format("An xpath with a dot like %s may fail silently and may have to be replaced by one like %s",
-                                    "string(.//tei:availability[1]/@status='free')",
-                                    "string(//tei:availability[1]/@status='free')"));
-                        }
-                        String unprocessedValue = apMetadata.evalXPathToString();
-                        for (String value : processStringMultipleValues(unprocessedValue, f.getProcess(), f.getMapValues())) {
-                            addMetadataField(f.getName(), value);
-                        }
+                    } finally {
+                        releaseAutoPilot(apMetadata);
                     }
-                    releaseAutoPilot(apEvalToString);
                 }
-                releaseAutoPilot(apMetadata);
-            }
 
+            }
+        } finally {
+            releaseAutoPilot(apMetadataBlock);
         }
-        releaseAutoPilot(apMetadataBlock);
         navpop();
     }
 
@@ -607,8 +625,11 @@ public class DocIndexerXPath extends DocIndexerConfig {
             // Basepath given. Navigate to the (first) matching element and evaluate the other XPaths from there.
             navpush();
             AutoPilot apBase = acquireAutoPilot(basePath);
-            apBase.evalXPath();
-            releaseAutoPilot(apBase);
+            try {
+                apBase.evalXPath();
+            } finally {
+                releaseAutoPilot(apBase);
+            }
         }
         try {
             String valuePath = annotation.getValuePath();
@@ -621,8 +642,12 @@ public class DocIndexerXPath extends DocIndexerConfig {
             int i = 1;
             for (String captureValuePath : annotation.getCaptureValuePaths()) {
                 AutoPilot apCaptureValuePath = acquireAutoPilot(captureValuePath);
-                String value = apCaptureValuePath.evalXPathToString();
-                releaseAutoPilot(apCaptureValuePath);
+                String value;
+                try {
+                    value = apCaptureValuePath.evalXPathToString();
+                } finally {
+                    releaseAutoPilot(apCaptureValuePath);
+                }
                 valuePath = valuePath.replace("$" + i, value);
                 i++;
             }
@@ -645,39 +670,42 @@ public class DocIndexerXPath extends DocIndexerConfig {
                     navpush();
                     AutoPilot apForEach = acquireAutoPilot(subAnnot.getForEachPath());
                     AutoPilot apName = acquireAutoPilot(subAnnot.getName());
-                    while (apForEach.evalXPath() != -1) {
-                        // Find the name and value for this forEach match
-                        apName.resetXPath();
+                    try {
+                        while (apForEach.evalXPath() != -1) {
+                            // Find the name and value for this forEach match
+                            apName.resetXPath();
 
-                        String name = apName.evalXPathToString();
-                        String subannotationName = annotation.getName() + AnnotatedFieldNameUtil.SUBANNOTATION_FIELD_PREFIX_SEPARATOR + name;
-                        ConfigAnnotation actualSubAnnot = annotation.getSubAnnotation(subannotationName);
+                            String name = apName.evalXPathToString();
+                            String subannotationName = annotation.getName() + AnnotatedFieldNameUtil.SUBANNOTATION_FIELD_PREFIX_SEPARATOR + name;
+                            ConfigAnnotation actualSubAnnot = annotation.getSubAnnotation(subannotationName);
                         
-                        // It's not possible to create annotation on the fly at the moment. 
-                        // So since this was not declared in the config file, emit a warning and skip.
-                        if (actualSubAnnot == null) {
-                            if (!skippedAnnotations.contains(subannotationName)) {
-                                skippedAnnotations.add(subannotationName);
-                                logger.error(documentName + ": skipping undeclared annotation " + name + " (" + "as subannotation of forEachPath " + subAnnot.getName() + ")");
+                            // It's not possible to create annotation on the fly at the moment. 
+                            // So since this was not declared in the config file, emit a warning and skip.
+                            if (actualSubAnnot == null) {
+                                if (!skippedAnnotations.contains(subannotationName)) {
+                                    skippedAnnotations.add(subannotationName);
+                                    logger.error(documentName + ": skipping undeclared annotation " + name + " (" + "as subannotation of forEachPath " + subAnnot.getName() + ")");
+                                }
+                                continue;
                             }
-                            continue;
-                        }
 
-                        // The forEach xpath matched an annotation that specifies its own valuepath
-                        // Skip it as part of the forEach, because it will be processed by itself later.
-                        if (actualSubAnnot.getValuePath() != null && !actualSubAnnot.getValuePath().isEmpty()) {
-                            continue;
-                        }
+                            // The forEach xpath matched an annotation that specifies its own valuepath
+                            // Skip it as part of the forEach, because it will be processed by itself later.
+                            if (actualSubAnnot.getValuePath() != null && !actualSubAnnot.getValuePath().isEmpty()) {
+                                continue;
+                            }
 
-                        boolean reuseAnnotationValue = subAnnot.getValuePath().equals(annotation.getValuePath()) &&
-                            actualSubAnnot.isMultipleValues() == annotation.isMultipleValues() &&
-                            actualSubAnnot.isAllowDuplicateValues() == annotation.isAllowDuplicateValues() &&
-                            actualSubAnnot.isCaptureXml() == annotation.isCaptureXml();
+                            boolean reuseAnnotationValue = subAnnot.getValuePath().equals(annotation.getValuePath()) &&
+                                actualSubAnnot.isMultipleValues() == annotation.isMultipleValues() &&
+                                actualSubAnnot.isAllowDuplicateValues() == annotation.isAllowDuplicateValues() &&
+                                actualSubAnnot.isCaptureXml() == annotation.isCaptureXml();
 
-                        findAnnotationMatches(actualSubAnnot, subAnnot.getValuePath(), indexAtPositions, reuseAnnotationValue ? annotValue : null);
+                            findAnnotationMatches(actualSubAnnot, subAnnot.getValuePath(), indexAtPositions, reuseAnnotationValue ? annotValue : null);
+                        }
+                    } finally {
+                        releaseAutoPilot(apForEach);
+                        releaseAutoPilot(apName);
                     }
-                    releaseAutoPilot(apForEach);
-                    releaseAutoPilot(apName);
                     navpop();
                 } else {
                     // Regular subannotation; just the fieldName and an XPath expression for the value
@@ -710,25 +738,28 @@ public class DocIndexerXPath extends DocIndexerConfig {
             navpush();
 
             AutoPilot apValuePath = acquireAutoPilot(valuePath);
-            if (annotation.isMultipleValues()) {
-                // Multiple matches will be indexed at the same position.
-                AutoPilot apValue = apDot == null ? apDot = acquireAutoPilot(".") : apDot;
+            try {
+                if (annotation.isMultipleValues()) {
+                    // Multiple matches will be indexed at the same position.
+                    AutoPilot apValue = apDot == null ? apDot = acquireAutoPilot(".") : apDot;
 
-                while (apValuePath.evalXPath() != -1) {
-                    String unprocessedValue = evalXml ? apValue.evalXPath() != -1 ? getXml(apValue) : "" : apValue.evalXPathToString();
-                    reuseValueFromParentAnnot.add(unprocessedValue);
-                }
+                    while (apValuePath.evalXPath() != -1) {
+                        String unprocessedValue = evalXml ? apValue.evalXPath() != -1 ? getXml(apValue) : "" : apValue.evalXPathToString();
+                        reuseValueFromParentAnnot.add(unprocessedValue);
+                    }
 
-                // No annotations have been added, the result of the xPath query must have been empty.
-                if (reuseValueFromParentAnnot.isEmpty()) {
-                    reuseValueFromParentAnnot.add("");
+                    // No annotations have been added, the result of the xPath query must have been empty.
+                    if (reuseValueFromParentAnnot.isEmpty()) {
+                        reuseValueFromParentAnnot.add("");
+                    }
+                } else {
+                    // Single value expected
+                    String unprocessedValue = evalXml ? apValuePath.evalXPath() != -1 ? getXml(apValuePath) : "" : apValuePath.evalXPathToString();
+                    reuseValueFromParentAnnot.add(unprocessedValue);
                 }
-            } else {
-                // Single value expected
-                String unprocessedValue = evalXml ? apValuePath.evalXPath() != -1 ? getXml(apValuePath) : "" : apValuePath.evalXPathToString();
-                reuseValueFromParentAnnot.add(unprocessedValue);
+            } finally {
+                releaseAutoPilot(apValuePath);
             }
-            releaseAutoPilot(apValuePath);
             navpop();
         }
 
@@ -779,29 +810,37 @@ public class DocIndexerXPath extends DocIndexerConfig {
             if (documentXPath != null) {
                 // Find our specific document
                 AutoPilot documents = acquireAutoPilot(documentXPath);
-                while (documents.evalXPath() != -1) {
-                    if (docDone)
-                        throw new BlackLabRuntimeException(
-                                "Document link " + documentXPath + " matched multiple documents in " + documentName);
-                    indexDocument();
-                    docDone = true;
+                try {
+                    while (documents.evalXPath() != -1) {
+                        if (docDone)
+                            throw new BlackLabRuntimeException(
+                                    "Document link " + documentXPath + " matched multiple documents in " + documentName);
+                        indexDocument();
+                        docDone = true;
+                    }
+                } finally {
+                    releaseAutoPilot(documents);
                 }
-                releaseAutoPilot(documents);
             } else {
                 // Process whole file; must be 1 document
                 AutoPilot documents = acquireAutoPilot(config.getDocumentPath());
-                while (documents.evalXPath() != -1) {
-                    if (docDone)
-                        throw new BlackLabRuntimeException(
-                                "Linked file contains multiple documents (and no document path given) in "
-                                        + documentName);
-                    indexDocument();
-                    docDone = true;
+                try {
+                    while (documents.evalXPath() != -1) {
+                        if (docDone)
+                            throw new BlackLabRuntimeException(
+                                    "Linked file contains multiple documents (and no document path given) in "
+                                            + documentName);
+                        indexDocument();
+                        docDone = true;
+                    }
+                } finally {
+                    releaseAutoPilot(documents);
                 }
-                releaseAutoPilot(documents);
             }
         } catch (Exception e1) {
             throw BlackLabRuntimeException.wrap(e1);
+        } finally {
+            releaseApDot();
         }
     }
 
@@ -54,6 +54,10 @@ import nl.inl.util.StringUtil;
  * This class is thread-safe.
  * (using synchronization on DocValues instance; DocValues are stored for each LeafReader,
  *  and each of those should only be used from one thread at a time)
+ *
+ * If the field has DocValues, sorting and grouping use global ordinals (see
+ * {@link StoredFieldOrdinals}) that are built once per index and field, so
+ * they don't need any synchronization or string comparisons.
  */
 public class DocPropertyStoredField extends DocProperty {
     //private static final Logger logger = LogManager.getLogger(DocPropertyStoredField.class);
@@ -69,6 +73,9 @@ public class DocPropertyStoredField extends DocProperty {
     /** Null unless the field is numeric. */
     private Map<Integer, NumericDocValues> numericDocValues = null;
 
+    /** Global ordinals for fast sorting/grouping, or null if not determined yet (or no DocValues). */
+    private volatile StoredFieldOrdinals ordinals = null;
+
     /** Our index */
     private BlackLabIndex index;
 
@@ -77,6 +84,9 @@ public class DocPropertyStoredField extends DocProperty {
         this.index = prop.index;
         this.fieldName = prop.fieldName;
         this.friendlyName = prop.friendlyName;
+        this.docValues = prop.docValues;
+        this.numericDocValues = prop.numericDocValues;
+        this.ordinals = prop.ordinals;
     }
 
     public DocPropertyStoredField(BlackLabIndex index, String fieldName) {
@@ -122,6 +132,20 @@ public class DocPropertyStoredField extends DocProperty {
         }
     }
 
+    /**
+     * Get the global ordinals for this field, if it has DocValues.
+     *
+     * The ordinals are built the first time they're needed (for this index and field).
+     *
+     * @return ordinals, or null if this field has no DocValues
+     */
+    private StoredFieldOrdinals ordinals() {
+        if (ordinals == null && (docValues != null || numericDocValues != null)) {
+            ordinals = StoredFieldOrdinals.get(index.reader(), fieldName, numericDocValues != null);
+        }
+        return ordinals;
+    }
+
     /**
      * Get the raw values straight from lucene.
      * The returned array is in whichever order the values were originally added to the document.
@@ -213,10 +237,26 @@ public class DocPropertyStoredField extends DocProperty {
     /** Get the values as PropertyValue. */
     @Override
     public PropertyValueString get(DocResult result) {
+        StoredFieldOrdinals ord = ordinals();
+        if (ord != null)
+            return ord.value(result.identity().id());
         String[] values = get(result.identity());
         return fromArray(values);
     }
 
+    /**
+     * Get the values for a document as PropertyValue.
+     *
+     * @param docId document id
+     * @return the values, joined into a single PropertyValueString
+     */
+    public PropertyValueString getValue(int docId) {
+        StoredFieldOrdinals ord = ordinals();
+        if (ord != null)
+            return ord.value(docId);
+        return fromArray(get(docId));
+    }
+
     /** Get the first value. The empty string is returned if there are no values for this document */
     public String getFirstValue(DocResult result) {
         return getFirstValue(result.identity());
@@ -246,6 +286,9 @@ public class DocPropertyStoredField extends DocProperty {
      * @return 0 if equal, negative if a < b, positive if a > b.
      */
     public int compare(int docId1, int docId2) {
+        StoredFieldOrdinals ord = ordinals();
+        if (ord != null)
+            return ord.compare(docId1, docId2) * (reverse ? -1 : 1);
         return fromArray(get(docId1)).compareTo(fromArray(get(docId2))) * (reverse ? -1 : 1);
     }
 
@@ -258,6 +301,9 @@ public class DocPropertyStoredField extends DocProperty {
      */
     @Override
     public int compare(DocResult a, DocResult b) {
+        StoredFieldOrdinals ord = ordinals();
+        if (ord != null)
+            return ord.compare(a.identity().id(), b.identity().id()) * (reverse ? -1 : 1);
         PropertyValue v1 = get(a);
         PropertyValue v2 = get(b);
         return v1.compareTo(v2) * (reverse ? -1 : 1);
@@ -268,6 +314,15 @@ public class DocPropertyStoredField extends DocProperty {
         return friendlyName;
     }
 
+    /**
+     * Get the Lucene field name.
+     *
+     * @return name of the metadata field
+     */
+    public String fieldName() {
+        return fieldName;
+    }
+
     public static DocPropertyStoredField deserialize(BlackLabIndex index, String info) {
         return new DocPropertyStoredField(index, PropertySerializeUtil.unescapePart(info));
     }
@@ -57,7 +57,7 @@ public class HitPropertyDocumentStoredField extends HitProperty {
 
     @Override
     public PropertyValueString get(int result) {
-        return DocPropertyStoredField.fromArray(docPropStoredField.get(hits.hitsArrays().doc(result)));
+        return docPropStoredField.getValue(hits.hitsArrays().doc(result));
     }
 
     @Override
@@ -0,0 +1,241 @@
+package nl.inl.blacklab.resultproperty;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.text.Collator;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.lucene.index.DocValues;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.MultiDocValues.OrdinalMap;
+import org.apache.lucene.index.NumericDocValues;
+import org.apache.lucene.index.SortedDocValues;
+import org.apache.lucene.index.SortedSetDocValues;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.LongValues;
+import org.apache.lucene.util.packed.PackedInts;
+import org.eclipse.collections.api.map.primitive.MutableLongIntMap;
+import org.eclipse.collections.impl.factory.primitive.LongIntMaps;
+
+import nl.inl.blacklab.exceptions.BlackLabRuntimeException;
+
+/**
+ * Global (index-wide) ordinals for the values of a metadata field with DocValues.
+ *
+ * Every document is mapped to a "value key": the global ordinal of its single
+ * value (via a Lucene OrdinalMap across segments), or an extra key for documents
+ * with no value or with multiple values. For each key we know the value string
+ * (as returned by {@link DocPropertyStoredField#fromArray(String[])}) and its
+ * rank according to the collator used for sorting, so sorting and grouping
+ * DocResults by a metadata field only needs int comparisons.
+ *
+ * Instances are built once per IndexReader and field, and are immutable after that,
+ * so they can be used from multiple threads without synchronization.
+ */
+final class StoredFieldOrdinals {
+
+    /** Ordinals per IndexReader (core cache key) and field name. */
+    private static final Map<Object, Map<String, StoredFieldOrdinals>> cache = new WeakHashMap<>();
+
+    /**
+     * Get the ordinals for a field, building them if we haven't done so yet.
+     *
+     * @param reader index reader
+     * @param fieldName metadata field
+     * @param numeric whether this is a numeric field (NumericDocValues)
+     * @return the ordinals
+     */
+    static StoredFieldOrdinals get(IndexReader reader, String fieldName, boolean numeric) {
+        Map<String, StoredFieldOrdinals> perField;
+        synchronized (cache) {
+            perField = cache.computeIfAbsent(reader.getCoreCacheKey(), __ -> new HashMap<>());
+        }
+        synchronized (perField) {
+            StoredFieldOrdinals ordinals = perField.get(fieldName);
+            if (ordinals == null) {
+                try {
+                    ordinals = numeric ? buildNumeric(reader, fieldName) : buildSorted(reader, fieldName);
+                } catch (IOException e) {
+                    throw BlackLabRuntimeException.wrap(e);
+                }
+                perField.put(fieldName, ordinals);
+            }
+            return ordinals;
+        }
+    }
+
+    /** Value key for each document (indexed by global doc id) */
+    private final int[] docKey;
+
+    /** Value for each key, as PropertyValueString */
+    private final PropertyValueString[] keyValue;
+
+    /** Collator rank for each key (keys that compare equal get the same rank) */
+    private final int[] keyRank;
+
+    private StoredFieldOrdinals(int[] docKey, List<String> keyStrings) {
+        this.docKey = docKey;
+        this.keyValue = new PropertyValueString[keyStrings.size()];
+        for (int i = 0; i < keyValue.length; i++) {
+            keyValue[i] = new PropertyValueString(keyStrings.get(i));
+        }
+        this.keyRank = determineRanks(keyValue);
+    }
+
+    /**
+     * Sort the keys once using the collator and assign each a rank.
+     *
+     * @param values value for each key
+     * @return rank for each key
+     */
+    private static int[] determineRanks(PropertyValueString[] values) {
+        Collator collator = PropertyValue.collator;
+        Integer[] sorted = new Integer[values.length];
+        for (int i = 0; i < sorted.length; i++)
+            sorted[i] = i;
+        Arrays.sort(sorted, (a, b) -> collator.compare(values[a].value(), values[b].value()));
+        int[] rank = new int[values.length];
+        int currentRank = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            if (i > 0 && collator.compare(values[sorted[i - 1]].value(), values[sorted[i]].value()) != 0)
+                currentRank++;
+            rank[sorted[i]] = currentRank;
+        }
+        return rank;
+    }
+
+    private static StoredFieldOrdinals buildSorted(IndexReader reader, String fieldName) throws IOException {
+        List<LeafReaderContext> leaves = reader.leaves();
+        SortedSetDocValues[] segmentValues = new SortedSetDocValues[leaves.size()];
+        for (int i = 0; i < segmentValues.length; i++) {
+            LeafReader r = leaves.get(i).reader();
+            // New indexes all have SortedSetDocValues, but some very old indexes may still contain SortedDocValues
+            SortedSetDocValues values = r.getSortedSetDocValues(fieldName);
+            if (values == null) {
+                SortedDocValues sortedDocValues = r.getSortedDocValues(fieldName);
+                values = sortedDocValues == null ? DocValues.emptySortedSet() : DocValues.singleton(sortedDocValues);
+            }
+            segmentValues[i] = values;
+        }
+        OrdinalMap ordinalMap = OrdinalMap.build(reader.getCoreCacheKey(), segmentValues, PackedInts.DEFAULT);
+
+        // Keys [0, valueCount) are the global ordinals; after that come "no value"
+        // and any combinations of multiple values we encounter.
+        long valueCount = ordinalMap.getValueCount();
+        if (valueCount >= Integer.MAX_VALUE)
+            throw new BlackLabRuntimeException("Too many unique values for field " + fieldName);
+        List<String> keyStrings = new ArrayList<>((int)valueCount + 1);
+        for (long globalOrd = 0; globalOrd < valueCount; globalOrd++) {
+            SortedSetDocValues values = segmentValues[ordinalMap.getFirstSegmentNumber(globalOrd)];
+            keyStrings.add(utf8ToString(values.lookupOrd(ordinalMap.getFirstSegmentOrd(globalOrd))));
+        }
+        final int noValueKey = keyStrings.size();
+        keyStrings.add("");
+        Map<String, Integer> multipleValueKeys = new HashMap<>();
+
+        int[] docKey = new int[reader.maxDoc()];
+        List<String> docValues = new ArrayList<>();
+        for (int i = 0; i < segmentValues.length; i++) {
+            LeafReaderContext rc = leaves.get(i);
+            SortedSetDocValues values = segmentValues[i];
+            LongValues toGlobal = ordinalMap.getGlobalOrds(i);
+            int maxDoc = rc.reader().maxDoc();
+            for (int segmentDocId = 0; segmentDocId < maxDoc; segmentDocId++) {
+                values.setDocument(segmentDocId);
+                long firstOrd = values.nextOrd();
+                int key;
+                if (firstOrd == SortedSetDocValues.NO_MORE_ORDS) {
+                    key = noValueKey;
+                } else {
+                    long nextOrd = values.nextOrd();
+                    if (nextOrd == SortedSetDocValues.NO_MORE_ORDS) {
+                        // Single value (by far the most common case)
+                        key = (int) toGlobal.get(firstOrd);
+                    } else {
+                        // Multiple values; join them just like DocPropertyStoredField does
+                        docValues.clear();
+                        docValues.add(utf8ToString(values.lookupOrd(firstOrd)));
+                        for (long ord = nextOrd; ord != SortedSetDocValues.NO_MORE_ORDS; ord = values.nextOrd()) {
+                            docValues.add(utf8ToString(values.lookupOrd(ord)));
+                        }
+                        String joined = StringUtils.join(docValues, " · ");
+                        Integer multiKey = multipleValueKeys.get(joined);
+                        if (multiKey == null) {
+                            multiKey = keyStrings.size();
+                            keyStrings.add(joined);
+                            multipleValueKeys.put(joined, multiKey);
+                        }
+                        key = multiKey;
+                    }
+                }
+                docKey[rc.docBase + segmentDocId] = key;
+            }
+        }
+        return new StoredFieldOrdinals(docKey, keyStrings);
+    }
+
+    private static StoredFieldOrdinals buildNumeric(IndexReader reader, String fieldName) throws IOException {
+        List<String> keyStrings = new ArrayList<>();
+        final int noValueKey = 0;
+        keyStrings.add("");
+        MutableLongIntMap valueKeys = LongIntMaps.mutable.empty();
+        int[] docKey = new int[reader.maxDoc()];
+        for (LeafReaderContext rc : reader.leaves()) {
+            LeafReader r = rc.reader();
+            NumericDocValues values = r.getNumericDocValues(fieldName);
+            int maxDoc = r.maxDoc();
+            if (values == null) {
+                // No values were indexed for this field in this segment
+                Arrays.fill(docKey, rc.docBase, rc.docBase + maxDoc, noValueKey);
+                continue;
+            }
+            for (int segmentDocId = 0; segmentDocId < maxDoc; segmentDocId++) {
+                long value = values.get(segmentDocId);
+                int key = valueKeys.getIfAbsent(value, -1);
+                if (key < 0) {
+                    key = keyStrings.size();
+                    keyStrings.add(Long.toString(value));
+                    valueKeys.put(value, key);
+                }
+                docKey[rc.docBase + segmentDocId] = key;
+            }
+        }
+        return new StoredFieldOrdinals(docKey, keyStrings);
+    }
+
+    private static String utf8ToString(BytesRef val) {
+        return new String(val.bytes, val.offset, val.length, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Get the value of a document.
+     *
+     * Documents with the same value share the same PropertyValueString instance.
+     *
+     * @param docId global document id
+     * @return the value
+     */
+    PropertyValueString value(int docId) {
+        return keyValue[docKey[docId]];
+    }
+
+    /**
+     * Compare the values of two documents using their precomputed ranks.
+     *
+     * @param docId1 first document
+     * @param docId2 second document
+     * @return 0 if equal, negative if a < b, positive if a > b.
+     */
+    int compare(int docId1, int docId2) {
+        return Integer.compare(keyRank[docKey[docId1]], keyRank[docKey[docId2]]);
+    }
+
+}
@@ -26,6 +26,10 @@ import nl.inl.blacklab.search.indexmetadata.MatchSensitivity;
 import nl.inl.blacklab.search.indexmetadata.MetadataField;
 import nl.inl.blacklab.search.indexmetadata.MetadataFields;
 import nl.inl.blacklab.search.lucene.BLSpanQuery;
+import nl.inl.blacklab.search.lucene.ReverseTermIndexCache;
+import nl.inl.blacklab.search.lucene.SpanCache;
+import nl.inl.blacklab.search.lucene.TagSpanIndexCache;
+import nl.inl.blacklab.search.lucene.optimize.ForwardIndexMatchingSettings;
 import nl.inl.blacklab.search.results.ContextSize;
 import nl.inl.blacklab.search.results.DocResults;
 import nl.inl.blacklab.search.results.Hits;
@@ -150,7 +154,21 @@ public interface BlackLabIndex extends Closeable {
      * @throws WildcardTermTooBroad if a wildcard or regular expression term
      *             is overly broad
      */
-    Hits find(BLSpanQuery query, SearchSettings settings) throws WildcardTermTooBroad;
+    default Hits find(BLSpanQuery query, SearchSettings settings) throws WildcardTermTooBroad {
+        return find(query, settings, null);
+    }
+
+    /**
+     * Find hits for a pattern in a field, optionally profiling the search.
+     * 
+     * @param query the pattern to find
+     * @param settings search settings, or null for default
+     * @param profile where to record a profile of the search, or null to not profile it
+     * @return the hits found
+     * @throws WildcardTermTooBroad if a wildcard or regular expression term
+     *             is overly broad
+     */
+    Hits find(BLSpanQuery query, SearchSettings settings, QueryProfile profile) throws WildcardTermTooBroad;
 
     /**
      * Perform a document query only (no hits)
@@ -188,7 +206,21 @@ public interface BlackLabIndex extends Closeable {
      * @param useCache whether to use the cache or bypass it
      * @return empty search object
      */
-    SearchEmpty search(AnnotatedField field, boolean useCache);
+    default SearchEmpty search(AnnotatedField field, boolean useCache) {
+        return search(field, useCache, null);
+    }
+
+    /**
+     * Start building a Search, optionally profiling it.
+     *
+     * Profiled searches are never shared with other searches through the cache.
+     *
+     * @param field field to search
+     * @param useCache whether to use the cache or bypass it
+     * @param profile where to record a profile of the search, or null to not profile it
+     * @return empty search object
+     */
+    SearchEmpty search(AnnotatedField field, boolean useCache, QueryProfile profile);
 
     /**
      * Start building a Search. 
@@ -274,6 +306,15 @@ public interface BlackLabIndex extends Closeable {
      */
     File indexDirectory();
 
+    /**
+     * Get the timers and counters for this index.
+     *
+     * @return index metrics
+     */
+    default IndexMetrics metrics() {
+        return IndexMetrics.NONE;
+    }
+
     /**
      * Get information about the structure of the BlackLab index.
      *
@@ -327,6 +368,71 @@ public interface BlackLabIndex extends Closeable {
      */
     SearchSettings searchSettings();
 
+    /**
+     * Settings for forward index (NFA) matching for this index.
+     *
+     * You may change these settings; this will affect all queries optimized afterwards.
+     *
+     * @return settings object
+     */
+    ForwardIndexMatchingSettings forwardIndexMatchingSettings();
+
+    /**
+     * How many terms may a wildcard, prefix or regex pattern match before we stop
+     * expanding it to a disjunction of terms?
+     *
+     * Patterns matching more terms are searched by merging the postings of all
+     * matching terms instead.
+     *
+     * @return maximum number of terms to expand a pattern to
+     */
+    long maxTermsToExpand();
+
+    /**
+     * Set how many terms a pattern may match before we stop expanding it.
+     *
+     * @param maxTermsToExpand maximum number of terms to expand a pattern to
+     */
+    void setMaxTermsToExpand(long maxTermsToExpand);
+
+    /**
+     * Reverse term indexes, used to find terms matching patterns with a leading
+     * wildcard (e.g. {@code .*ing}).
+     *
+     * Disabled by default; you may change its settings.
+     *
+     * @return the reverse term index cache
+     */
+    ReverseTermIndexCache reverseTermIndexCache();
+
+    /**
+     * Cache of materialized spans for expensive subqueries in this index.
+     *
+     * Disabled by default; you may change its settings.
+     *
+     * @return the span cache
+     */
+    SpanCache spanCache();
+
+    /**
+     * Compact indexes of the spans of tags (e.g. sentences) in this index.
+     *
+     * Enabled by default; you may change its settings.
+     *
+     * @return the tag span index cache
+     */
+    TagSpanIndexCache tagSpanIndexCache();
+
+    /**
+     * Warm-up of this index (reading its most important files into the OS cache
+     * and running some representative queries).
+     *
+     * Disabled by default; you may change its settings and start it.
+     *
+     * @return the warm-up
+     */
+    IndexWarmup warmup();
+
     /**
      * How do we fix well-formedness for snippets of XML?
      * 
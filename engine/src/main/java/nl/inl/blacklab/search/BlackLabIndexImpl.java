@@ -11,7 +11,13 @@ import nl.inl.blacklab.forwardindex.AnnotationForwardIndex;
 import nl.inl.blacklab.forwardindex.ForwardIndex;
 import nl.inl.blacklab.indexers.config.ConfigInputFormat;
 import nl.inl.blacklab.search.indexmetadata.*;
+import nl.inl.blacklab.search.lucene.BLSpanMultiTermQueryWrapper;
 import nl.inl.blacklab.search.lucene.BLSpanQuery;
+import nl.inl.blacklab.search.lucene.ReverseTermIndexCache;
+import nl.inl.blacklab.search.lucene.SpanCache;
+import nl.inl.blacklab.search.lucene.TagSpanIndexCache;
+import nl.inl.blacklab.search.lucene.optimize.ForwardIndexMatchingSettings;
+import nl.inl.blacklab.search.lucene.optimize.QueryCostModel;
 import nl.inl.blacklab.search.results.*;
 import nl.inl.blacklab.searches.SearchCache;
 import nl.inl.blacklab.searches.SearchCacheDummy;
@@ -255,6 +261,24 @@ public class BlackLabIndexImpl implements BlackLabIndexWriter {
 
     protected SearchSettings searchSettings;
 
+    /** Settings for forward index (NFA) matching */
+    protected final ForwardIndexMatchingSettings forwardIndexMatchingSettings = new ForwardIndexMatchingSettings();
+
+    /** How many terms may a pattern match before we stop expanding it to a disjunction? */
+    protected long maxTermsToExpand = BLSpanMultiTermQueryWrapper.DEFAULT_MAX_TERMS_TO_EXPAND;
+
+    /** Reverse term indexes for leading wildcard patterns */
+    protected final ReverseTermIndexCache reverseTermIndexCache = new ReverseTermIndexCache();
+
+    /** Cache of materialized spans for expensive subqueries */
+    protected final SpanCache spanCache = new SpanCache();
+
+    /** Compact indexes of the spans of tags */
+    protected final TagSpanIndexCache tagSpanIndexCache = new TagSpanIndexCache();
+
+    /** Warm-up of this index after opening it */
+    protected final IndexWarmup warmup = new IndexWarmup(this);
+
     /** Should we default to case-/diacritics-sensitive searching? [default: both insensitive] */
     protected MatchSensitivity defaultMatchSensitivity = MatchSensitivity.INSENSITIVE;
 
@@ -283,6 +307,9 @@ public class BlackLabIndexImpl implements BlackLabIndexWriter {
      */
     private File indexLocation;
 
+    /** Timers and counters for this index */
+    private IndexMetrics metrics = IndexMetrics.NONE;
+
     /**
      * If true, we've just created a new index. New indices cannot be searched, only
      * added to.
@@ -386,6 +413,41 @@ public class BlackLabIndexImpl implements BlackLabIndexWriter {
         return searchSettings;
     }
 
+    @Override
+    public ForwardIndexMatchingSettings forwardIndexMatchingSettings() {
+        return forwardIndexMatchingSettings;
+    }
+
+    @Override
+    public long maxTermsToExpand() {
+        return maxTermsToExpand;
+    }
+
+    @Override
+    public void setMaxTermsToExpand(long maxTermsToExpand) {
+        this.maxTermsToExpand = maxTermsToExpand;
+    }
+
+    @Override
+    public ReverseTermIndexCache reverseTermIndexCache() {
+        return reverseTermIndexCache;
+    }
+
+    @Override
+    public SpanCache spanCache() {
+        return spanCache;
+    }
+
+    @Override
+    public TagSpanIndexCache tagSpanIndexCache() {
+        return tagSpanIndexCache;
+    }
+
+    @Override
+    public IndexWarmup warmup() {
+        return warmup;
+    }
+
     @Override
     public void setSearchSettings(SearchSettings searchSettings) {
         this.searchSettings = searchSettings;
@@ -432,8 +494,8 @@ public class BlackLabIndexImpl implements BlackLabIndexWriter {
     }
 
     @Override
-    public Hits find(BLSpanQuery query, SearchSettings settings) throws WildcardTermTooBroad {
-        QueryInfo queryInfo = QueryInfo.create(this, fieldFromQuery(query), true);
+    public Hits find(BLSpanQuery query, SearchSettings settings, QueryProfile profile) throws WildcardTermTooBroad {
+        QueryInfo queryInfo = QueryInfo.create(this, fieldFromQuery(query), true, profile);
         return Hits.fromSpanQuery(queryInfo, query, settings == null ? searchSettings() : settings);
     }
 
@@ -442,7 +504,7 @@ public class BlackLabIndexImpl implements BlackLabIndexWriter {
         try {
             IndexReader indexReader = reader();
             query.setQueryInfo(QueryInfo.create(this, fieldFromQuery(query), true));
-            return new QueryExplanation(query, query.optimize(indexReader).rewrite(indexReader));
+            return new QueryExplanation(query, query.optimize(indexReader).rewrite(indexReader), indexReader);
         } catch (IOException e) {
             throw BlackLabRuntimeException.wrap(e);
         }
@@ -481,6 +543,7 @@ public class BlackLabIndexImpl implements BlackLabIndexWriter {
      */
     protected void registerContentStore(Field field, ContentStore contentStore) {
         contentStores.put(field, contentStore);
+        contentStore.setBytesReadListener(metrics.contentStoreBytesRead()::increment);
 
         // Start reading the content store's TOC in the background, so it doesn't
         // trigger on the first search
@@ -580,6 +643,7 @@ public class BlackLabIndexImpl implements BlackLabIndexWriter {
             reader = DirectoryReader.open(FSDirectory.open(indexPath));
         }
         this.indexLocation = indexDir;
+        metrics = new IndexMetrics(indexDir.getAbsolutePath());
 
 //      logger.debug("TOTAL TERM FREQ contents%lemma@i: " + reader.getSumTotalTermFreq("contents%lemma@i"));
 //      logger.debug("TOTAL TERM FREQ test: " + reader.getSumTotalTermFreq("test"));
@@ -667,6 +731,12 @@ public class BlackLabIndexImpl implements BlackLabIndexWriter {
                 }
             }
         }
+
+        if (!indexMode && !isEmptyIndex) {
+            // Measure index throughput for the query planner in the background
+            // (queued after the forward index initialization)
+            QueryCostModel.get(reader).startMeasuring();
+        }
     }
 
     @Override
@@ -699,6 +769,9 @@ public class BlackLabIndexImpl implements BlackLabIndexWriter {
     @Override
     public void close() {
         try {
+            warmup.cancel();
+            metrics.close();
+
             if (blackLab != null) {
                 blackLab.removeSearcher(this);
                 blackLab = null;
@@ -820,6 +893,11 @@ public class BlackLabIndexImpl implements BlackLabIndexWriter {
         return indexLocation;
     }
 
+    @Override
+    public IndexMetrics metrics() {
+        return metrics;
+    }
+
     protected void deleteFromForwardIndices(Document d) {
         // Delete this document in all forward indices
         for (Map.Entry<AnnotatedField, ForwardIndex> e : forwardIndices.entrySet()) {
@@ -952,8 +1030,8 @@ public class BlackLabIndexImpl implements BlackLabIndexWriter {
     }
 
     @Override
-    public SearchEmpty search(AnnotatedField field, boolean useCache) {
-        return new SearchEmpty(QueryInfo.create(this, field, useCache));
+    public SearchEmpty search(AnnotatedField field, boolean useCache, QueryProfile profile) {
+        return new SearchEmpty(QueryInfo.create(this, field, useCache, profile));
     }
 
     @Override
@@ -0,0 +1,212 @@
+package nl.inl.blacklab.search;
+
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
+import io.micrometer.core.instrument.search.Search;
+
+/**
+ * Timers and counters for searching and reading an index.
+ *
+ * Meters are registered with Micrometer's global registry, tagged with an
+ * id that uniquely identifies the index (its full path), so they are exported by
+ * whatever registry the application adds to it (e.g. BlackLab Server's
+ * metricsProvider setting). If no registry was added, the meters don't do anything.
+ *
+ * The meters are created once per index and kept here, so recording a value
+ * doesn't involve a registry lookup. When the index is closed, its meters are
+ * removed from the registry again (see {@link #close()}). If the same index is
+ * opened more than once (e.g. when it is reopened before the old instance is closed),
+ * the instances share the meters, and they are removed when the last one is closed.
+ */
+public class IndexMetrics {
+
+    /** Tag with the index id */
+    public static final String TAG_INDEX = "index";
+
+    /** Number of open instances using each set of tags, per registry */
+    private static final Map<MeterRegistry, Map<Tags, Integer>> instancesPerTags = new IdentityHashMap<>();
+
+    /** Metrics that aren't recorded anywhere, for indexes without a name (e.g. mocks) */
+    public static final IndexMetrics NONE = new IndexMetrics(new CompositeMeterRegistry(), "none");
+
+    /** Registry our meters are registered with */
+    private final MeterRegistry registry;
+
+    private final Tags tags;
+
+    private boolean closed = false;
+
+    private final Timer queryRewrite;
+
+    private final Counter forwardIndexMatching;
+
+    private final Counter reverseIndexMatching;
+
+    private final Timer spansReader;
+
+    private final Counter hitsCounted;
+
+    private final Counter docsCounted;
+
+    private final Timer contexts;
+
+    private final Timer kwics;
+
+    private final Counter forwardIndexBytesRead;
+
+    private final Counter contentStoreBytesRead;
+
+    private final Timer termsInit;
+
+    /**
+     * Create metrics for an index, registered with the global registry.
+     *
+     * @param indexId id to tag the metrics with; must uniquely identify the index (e.g. its path)
+     */
+    public IndexMetrics(String indexId) {
+        this(Metrics.globalRegistry, indexId);
+    }
+
+    /**
+     * Create metrics for an index.
+     *
+     * @param registry registry to register the meters with
+     * @param indexId id to tag the metrics with; must uniquely identify the index (e.g. its path)
+     */
+    IndexMetrics(MeterRegistry registry, String indexId) {
+        this.registry = registry;
+        tags = Tags.of(TAG_INDEX, indexId);
+        synchronized (instancesPerTags) {
+            instancesPerTags.computeIfAbsent(registry, __ -> new HashMap<>()).merge(tags, 1, Integer::sum);
+        }
+        queryRewrite = Timer.builder("blacklab.query.rewrite")
+                .description("Time spent optimizing and rewriting queries")
+                .tags(tags).register(registry);
+        forwardIndexMatching = Counter.builder("blacklab.query.matching")
+                .description("Number of queries executed, by matching strategy")
+                .tags(tags).tag("strategy", "forward-index").register(registry);
+        reverseIndexMatching = Counter.builder("blacklab.query.matching")
+                .description("Number of queries executed, by matching strategy")
+                .tags(tags).tag("strategy", "reverse-index").register(registry);
+        spansReader = Timer.builder("blacklab.spans.segment")
+                .description("Time spent reading hits from a single index segment")
+                .tags(tags).register(registry);
+        hitsCounted = Counter.builder("blacklab.hits.counted")
+                .description("Number of hits found")
+                .tags(tags).register(registry);
+        docsCounted = Counter.builder("blacklab.docs.counted")
+                .description("Number of documents with hits found")
+                .tags(tags).register(registry);
+        contexts = Timer.builder("blacklab.contexts.build")
+                .description("Time spent getting hit contexts from the forward index")
+                .tags(tags).register(registry);
+        kwics = Timer.builder("blacklab.kwics.build")
+                .description("Time spent building KWICs")
+                .tags(tags).register(registry);
+        forwardIndexBytesRead = Counter.builder("blacklab.forwardindex.read")
+                .description("Bytes read from the forward index")
+                .baseUnit("bytes")
+                .tags(tags).register(registry);
+        contentStoreBytesRead = Counter.builder("blacklab.contentstore.read")
+                .description("Bytes read from the content store")
+                .baseUnit("bytes")
+                .tags(tags).register(registry);
+        termsInit = Timer.builder("blacklab.terms.init")
+                .description("Time spent reading a forward index terms file")
+                .tags(tags).register(registry);
+    }
+
+    /** @return tags to use for other metrics about this index */
+    public Tags tags() {
+        return tags;
+    }
+
+    /** @return time spent in BLSpanQuery.optimize() and rewrite() */
+    public Timer queryRewrite() {
+        return queryRewrite;
+    }
+
+    /**
+     * Count a query that was executed.
+     *
+     * @param usesForwardIndexMatching whether the optimized query uses forward index (NFA) matching
+     */
+    public void queryMatching(boolean usesForwardIndexMatching) {
+        (usesForwardIndexMatching ? forwardIndexMatching : reverseIndexMatching).increment();
+    }
+
+    /** @return time spent reading spans from one segment */
+    public Timer spansReader() {
+        return spansReader;
+    }
+
+    /** @return number of hits counted */
+    public Counter hitsCounted() {
+        return hitsCounted;
+    }
+
+    /** @return number of docs counted */
+    public Counter docsCounted() {
+        return docsCounted;
+    }
+
+    /** @return time spent getting contexts */
+    public Timer contexts() {
+        return contexts;
+    }
+
+    /** @return time spent building KWICs */
+    public Timer kwics() {
+        return kwics;
+    }
+
+    /** @return number of bytes read from the forward index */
+    public Counter forwardIndexBytesRead() {
+        return forwardIndexBytesRead;
+    }
+
+    /** @return number of bytes read from the content store */
+    public Counter contentStoreBytesRead() {
+        return contentStoreBytesRead;
+    }
+
+    /** @return time spent reading terms files */
+    public Timer termsInit() {
+        return termsInit;
+    }
+
+    /**
+     * Remove the meters for this index from the registry.
+     *
+     * This includes meters registered elsewhere using our {@link #tags()}. Called
+     * when the index is closed, so we don't keep reporting (and holding on to)
+     * meters for indexes that are gone. If other instances for the same index are
+     * still open, the meters are left alone until the last one is closed.
+     */
+    public void close() {
+        synchronized (instancesPerTags) {
+            if (closed)
+                return;
+            closed = true;
+            Map<Tags, Integer> instances = instancesPerTags.get(registry);
+            if (instances.merge(tags, -1, Integer::sum) > 0)
+                return; // still in use
+            instances.remove(tags);
+            if (instances.isEmpty())
+                instancesPerTags.remove(registry);
+            for (Meter meter : Search.in(registry).tags(tags).meters()) {
+                registry.remove(meter);
+            }
+        }
+    }
+
+}
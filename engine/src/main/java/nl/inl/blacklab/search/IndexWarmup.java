@@ -0,0 +1,373 @@
+package nl.inl.blacklab.search;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.io.FilenameUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import nl.inl.blacklab.exceptions.InvalidQuery;
+import nl.inl.blacklab.search.indexmetadata.AnnotatedField;
+import nl.inl.blacklab.search.indexmetadata.Annotation;
+import nl.inl.blacklab.search.lucene.BLSpanQuery;
+import nl.inl.blacklab.search.results.Hits;
+import nl.inl.blacklab.searches.SearchHits;
+
+/**
+ * Warms up an index after it has been opened, so the first searches aren't slow.
+ *
+ * First loads the files searches need most (the tokens files of selected
+ * annotations, the terms files, Lucene's term dictionaries and postings and
+ * optionally the content store) into the operating system's page cache, on a few
+ * threads at once. Files are memory-mapped in chunks and each chunk is loaded
+ * using {@link java.nio.MappedByteBuffer#load()}, so we don't copy the data onto
+ * the heap. Then runs a list of
+ * representative queries, to initialize the forward indexes and any other lazily
+ * built structures.
+ *
+ * This does what you'd otherwise do by hand using vmtouch. Disabled by default;
+ * configure it in the search.warmup section of the BlackLab configuration.
+ * BlackLab Server starts the warm-up when it opens an index.
+ */
+public class IndexWarmup {
+
+    private static final Logger logger = LogManager.getLogger(IndexWarmup.class);
+
+    /** How much of a file to map into memory and load at once */
+    private static final long MAP_CHUNK_SIZE = 64 * 1_048_576L;
+
+    /** Number of hits per query to build KWICs for (reads the forward index) */
+    private static final int KWIC_HITS = 20;
+
+    public enum Status {
+        DISABLED, // not enabled or not started
+        WARMING_UP, // reading files or running queries
+        READY; // done (or cancelled)
+
+        @Override
+        public String toString() {
+            return name().toLowerCase();
+        }
+    }
+
+    /** Parses the warm-up queries, e.g. as Corpus Query Language. */
+    @FunctionalInterface
+    public interface PatternParser {
+        BLSpanQuery parse(String pattern) throws InvalidQuery;
+    }
+
+    private final BlackLabIndex index;
+
+    private boolean enabled = false;
+
+    private int threads = 2;
+
+    private List<String> forwardIndexAnnotations = Collections.emptyList();
+
+    private boolean terms = true;
+
+    private boolean contentStore = false;
+
+    private List<String> luceneExtensions = Collections.emptyList();
+
+    private List<String> queries = Collections.emptyList();
+
+    private volatile Status status = Status.DISABLED;
+
+    private volatile int filesToPrefetch = 0;
+
+    private final AtomicInteger filesPrefetched = new AtomicInteger();
+
+    private final AtomicLong bytesPrefetched = new AtomicLong();
+
+    private final AtomicInteger queriesReplayed = new AtomicInteger();
+
+    private final AtomicInteger queriesFailed = new AtomicInteger();
+
+    private volatile long startTimeMs;
+
+    private volatile long timeMs = -1;
+
+    /** Runs the warm-up */
+    private Thread thread;
+
+    private volatile boolean cancelled = false;
+
+    public IndexWarmup(BlackLabIndex index) {
+        this.index = index;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public void setThreads(int threads) {
+        this.threads = Math.max(threads, 1);
+    }
+
+    /**
+     * Set the annotations whose tokens files to read.
+     *
+     * @param forwardIndexAnnotations annotation names
+     */
+    public void setForwardIndexAnnotations(List<String> forwardIndexAnnotations) {
+        this.forwardIndexAnnotations = forwardIndexAnnotations;
+    }
+
+    /**
+     * Set whether to read the terms files of all forward indexes.
+     *
+     * @param terms whether to read the terms files
+     */
+    public void setTerms(boolean terms) {
+        this.terms = terms;
+    }
+
+    public void setContentStore(boolean contentStore) {
+        this.contentStore = contentStore;
+    }
+
+    /**
+     * Set the extensions of the Lucene index files to read.
+     *
+     * E.g. tim and tip (term dictionary), doc (postings), pos (positions) and cfs
+     * (compound files, which contain all of these for small segments).
+     *
+     * @param luceneExtensions file extensions, without the dot
+     */
+    public void setLuceneExtensions(List<String> luceneExtensions) {
+        this.luceneExtensions = luceneExtensions;
+    }
+
+    /**
+     * Set the queries to run after reading the files.
+     *
+     * @param queries patterns, to be parsed by the parser passed to {@link #start(PatternParser)}
+     */
+    public void setQueries(List<String> queries) {
+        this.queries = queries;
+    }
+
+    /**
+     * Start warming up the index in the background, if enabled.
+     *
+     * Does nothing if the warm-up was started before.
+     *
+     * @param parser parser for the queries, or null to skip running them
+     */
+    public synchronized void start(PatternParser parser) {
+        if (!enabled || status != Status.DISABLED || cancelled)
+            return;
+        status = Status.WARMING_UP;
+        startTimeMs = System.currentTimeMillis();
+        thread = new Thread(() -> run(parser), "IndexWarmup-" + index.name());
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stop the warm-up, e.g. because the index is being closed.
+     */
+    public synchronized void cancel() {
+        cancelled = true;
+        if (thread != null)
+            thread.interrupt();
+    }
+
+    private void run(PatternParser parser) {
+        try {
+            prefetchFiles();
+            if (parser != null)
+                replayQueries(parser);
+        } catch (InterruptedException e) {
+            // cancelled
+        } catch (RuntimeException e) {
+            if (!cancelled)
+                logger.error("Error warming up index " + index.name(), e);
+        } finally {
+            timeMs = System.currentTimeMillis() - startTimeMs;
+            status = Status.READY;
+            if (!cancelled) {
+                logger.info("Warmed up index " + index.name() + " in " + timeMs + "ms (" + filesPrefetched.get()
+                        + " files, " + bytesPrefetched.get() / 1_048_576 + "MB, " + queriesReplayed.get() + " queries, "
+                        + queriesFailed.get() + " failed)");
+            }
+        }
+    }
+
+    /**
+     * Determine what files to read.
+     *
+     * @return files to read
+     */
+    List<File> determineFilesToPrefetch() {
+        List<File> files = new ArrayList<>();
+        File indexDir = index.indexDirectory();
+        for (AnnotatedField field: index.annotatedFields()) {
+            for (Annotation annotation: field.annotations()) {
+                if (!annotation.hasForwardIndex())
+                    continue;
+                if (forwardIndexAnnotations.contains(annotation.name()))
+                    files.addAll(index.annotationForwardIndex(annotation).tokensFiles());
+                if (terms)
+                    files.add(index.annotationForwardIndex(annotation).termsFile());
+            }
+            if (contentStore && field.hasContentStore()) {
+                File[] csFiles = new File(indexDir, "cs_" + field.name()).listFiles(File::isFile);
+                if (csFiles != null)
+                    Collections.addAll(files, csFiles);
+            }
+        }
+        File[] luceneFiles = indexDir.listFiles(f -> f.isFile() && luceneExtensions.contains(FilenameUtils.getExtension(f.getName())));
+        if (luceneFiles != null)
+            Collections.addAll(files, luceneFiles);
+        files.removeIf(f -> !f.exists());
+        return files;
+    }
+
+    private void prefetchFiles() throws InterruptedException {
+        List<File> files = determineFilesToPrefetch();
+        filesToPrefetch = files.size();
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (File file: files) {
+            tasks.add(() -> {
+                prefetch(file);
+                return null;
+            });
+        }
+        AtomicInteger threadNumber = new AtomicInteger(1);
+        ExecutorService pool = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread worker = new Thread(runnable, "IndexWarmup-" + index.name() + "-" + threadNumber.getAndIncrement());
+            worker.setDaemon(true);
+            return worker;
+        });
+        try {
+            for (Future<Void> future: pool.invokeAll(tasks)) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    logger.warn("Could not read file while warming up index " + index.name() + ": " + e.getCause().getMessage());
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Load a file into the OS page cache.
+     *
+     * @param file file to load
+     * @throws IOException if the file couldn't be read
+     */
+    private void prefetch(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            for (long position = 0; position < size && !cancelled; position += MAP_CHUNK_SIZE) {
+                long length = Math.min(MAP_CHUNK_SIZE, size - position);
+                channel.map(FileChannel.MapMode.READ_ONLY, position, length).load();
+                bytesPrefetched.addAndGet(length);
+            }
+        }
+        filesPrefetched.incrementAndGet();
+    }
+
+    private void replayQueries(PatternParser parser) {
+        for (String pattern: queries) {
+            if (cancelled)
+                return;
+            try {
+                BLSpanQuery query = parser.parse(pattern);
+                SearchHits search = index.search(null, false).find(query, index.searchSettings());
+                search.countOnly().hitCount().execute();
+                Hits hits = search.window(0, KWIC_HITS).execute();
+                hits.kwics(index.defaultContextSize());
+                queriesReplayed.incrementAndGet();
+            } catch (InvalidQuery e) {
+                logger.warn("Invalid warm-up query for index " + index.name() + ": " + pattern + " (" + e.getMessage() + ")");
+                queriesFailed.incrementAndGet();
+            } catch (RuntimeException e) {
+                if (cancelled)
+                    return;
+                logger.warn("Error running warm-up query for index " + index.name() + ": " + pattern, e);
+                queriesFailed.incrementAndGet();
+            }
+        }
+    }
+
+    public Status status() {
+        return status;
+    }
+
+    /**
+     * Is the index ready for searching at full speed?
+     *
+     * @return true if the warm-up is done or wasn't started
+     */
+    public boolean isReady() {
+        return status != Status.WARMING_UP;
+    }
+
+    public int filesToPrefetch() {
+        return filesToPrefetch;
+    }
+
+    public int filesPrefetched() {
+        return filesPrefetched.get();
+    }
+
+    public long bytesPrefetched() {
+        return bytesPrefetched.get();
+    }
+
+    public int queriesToReplay() {
+        return queries.size();
+    }
+
+    /**
+     * How many warm-up queries ran successfully?
+     *
+     * @return number of queries replayed (not including failed ones)
+     */
+    public int queriesReplayed() {
+        return queriesReplayed.get();
+    }
+
+    /**
+     * How many warm-up queries were invalid or failed?
+     *
+     * @return number of failed queries
+     */
+    public int queriesFailed() {
+        return queriesFailed.get();
+    }
+
+    /**
+     * How long did the warm-up take?
+     *
+     * @return time in ms, or the time so far if it's still running, or -1 if it wasn't started
+     */
+    public long timeMs() {
+        if (status == Status.WARMING_UP)
+            return System.currentTimeMillis() - startTimeMs;
+        return timeMs;
+    }
+
+}
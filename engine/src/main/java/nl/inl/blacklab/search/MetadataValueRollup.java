@@ -0,0 +1,251 @@
+package nl.inl.blacklab.search;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.WeakHashMap;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.DocValues;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.NumericDocValues;
+import org.apache.lucene.index.PostingsEnum;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.BytesRef;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import nl.inl.blacklab.exceptions.BlackLabRuntimeException;
+import nl.inl.blacklab.search.indexmetadata.AnnotatedField;
+import nl.inl.blacklab.search.indexmetadata.FieldType;
+import nl.inl.blacklab.search.indexmetadata.MetadataField;
+import nl.inl.blacklab.search.results.CorpusSize;
+import nl.inl.util.Json;
+import nl.inl.util.StringUtil;
+
+/**
+ * Number of documents and tokens per value of a metadata field, for the whole index.
+ *
+ * This allows us to determine the subcorpus size for a single metadata value
+ * (e.g. "all documents from 1950") by lookup, instead of querying and summing
+ * document lengths every time. Useful for relative frequencies in grouped results.
+ *
+ * The rollup is built lazily (by walking the field's postings once) and persisted
+ * in the index directory, alongside the index metadata. A persisted rollup is only
+ * used if the index hasn't changed since it was built.
+ *
+ * Only available for untokenized fields (tokenized fields have a term per word,
+ * numeric fields are indexed as prefix-coded terms), and only if the main
+ * annotated field has DocValues for document length.
+ */
+public final class MetadataValueRollup {
+
+    private static final Logger logger = LogManager.getLogger(MetadataValueRollup.class);
+
+    /** Subdirectory of the index directory where we persist our rollups. */
+    private static final String ROLLUP_DIR_NAME = "rollups";
+
+    /** Rollups per IndexReader (core cache key) and field name. */
+    private static final Map<Object, Map<String, MetadataValueRollup>> cache = new WeakHashMap<>();
+
+    /**
+     * Get the rollup for a metadata field, building it if necessary.
+     *
+     * @param index our index
+     * @param fieldName metadata field to get the rollup for
+     * @return the rollup, or null if not available for this field
+     */
+    public static MetadataValueRollup get(BlackLabIndex index, String fieldName) {
+        IndexReader reader = index.reader();
+        if (reader == null || !index.metadataFields().exists(fieldName))
+            return null;
+        MetadataField field = index.metadataField(fieldName);
+        AnnotatedField mainField = index.mainAnnotatedField();
+        if (field.type() != FieldType.UNTOKENIZED || mainField == null || !mainField.hasTokenLengthDocValues())
+            return null;
+
+        Map<String, MetadataValueRollup> perField;
+        synchronized (cache) {
+            perField = cache.computeIfAbsent(reader.getCoreCacheKey(), __ -> new HashMap<>());
+        }
+        synchronized (perField) {
+            MetadataValueRollup rollup = perField.get(fieldName);
+            if (rollup == null) {
+                long version = reader instanceof DirectoryReader ? ((DirectoryReader) reader).getVersion() : -1;
+                File file = index.indexDirectory() == null ? null :
+                        new File(new File(index.indexDirectory(), ROLLUP_DIR_NAME), fieldName + ".json");
+                if (version >= 0 && file != null)
+                    rollup = read(file, version);
+                if (rollup == null) {
+                    try {
+                        rollup = build(reader, fieldName, mainField.tokenLengthField());
+                    } catch (IOException e) {
+                        throw BlackLabRuntimeException.wrap(e);
+                    }
+                    if (version >= 0 && file != null)
+                        write(file, version, rollup);
+                }
+                perField.put(fieldName, rollup);
+            }
+            return rollup;
+        }
+    }
+
+    /**
+     * Determine the size of the subcorpus with a certain metadata value.
+     *
+     * @param index our index
+     * @param fieldName metadata field
+     * @param value value to find the subcorpus size for
+     * @return the subcorpus size, or null if no rollup is available for this field
+     */
+    public static CorpusSize subcorpusSize(BlackLabIndex index, String fieldName, String value) {
+        MetadataValueRollup rollup = get(index, fieldName);
+        return rollup == null ? null : rollup.get(value);
+    }
+
+    /** Number of documents per (indexed) value */
+    private final Map<String, Integer> documents;
+
+    /** Number of tokens per (indexed) value */
+    private final Map<String, Long> tokens;
+
+    private MetadataValueRollup(Map<String, Integer> documents, Map<String, Long> tokens) {
+        this.documents = documents;
+        this.tokens = tokens;
+    }
+
+    /**
+     * Get the number of documents and tokens with this value.
+     *
+     * The value is desensitized in the same way as when searching for it.
+     *
+     * @param value metadata value
+     * @return number of documents and tokens (CorpusSize.EMPTY if the value doesn't occur)
+     */
+    public CorpusSize get(String value) {
+        String term = StringUtil.desensitize(value);
+        Integer docs = documents.get(term);
+        if (docs == null)
+            return CorpusSize.EMPTY;
+        return CorpusSize.get(docs, tokens.get(term));
+    }
+
+    /**
+     * Walk the field's postings and add up documents and their lengths per value.
+     */
+    private static MetadataValueRollup build(IndexReader reader, String fieldName, String tokenLengthField) throws IOException {
+        logger.debug("Building metadata rollup for field " + fieldName);
+        Map<String, Integer> documents = new HashMap<>();
+        Map<String, Long> tokens = new HashMap<>();
+        for (LeafReaderContext rc: reader.leaves()) {
+            LeafReader r = rc.reader();
+            Terms terms = r.terms(fieldName);
+            if (terms == null)
+                continue;
+            Bits liveDocs = r.getLiveDocs();
+            NumericDocValues tokenLengths = DocValues.getNumeric(r, tokenLengthField);
+            TermsEnum termsEnum = terms.iterator();
+            PostingsEnum postings = null;
+            while (true) {
+                BytesRef term = termsEnum.next();
+                if (term == null)
+                    break;
+                int docs = 0;
+                long numberOfTokens = 0;
+                postings = termsEnum.postings(postings, PostingsEnum.NONE);
+                while (true) {
+                    int docId = postings.nextDoc();
+                    if (docId == DocIdSetIterator.NO_MORE_DOCS)
+                        break;
+                    if (liveDocs != null && !liveDocs.get(docId))
+                        continue;
+                    docs++;
+                    numberOfTokens += tokenLengths.get(docId) - BlackLabIndex.IGNORE_EXTRA_CLOSING_TOKEN;
+                }
+                if (docs > 0) {
+                    String value = term.utf8ToString();
+                    documents.merge(value, docs, Integer::sum);
+                    tokens.merge(value, numberOfTokens, Long::sum);
+                }
+            }
+        }
+        return new MetadataValueRollup(documents, tokens);
+    }
+
+    /**
+     * Read a persisted rollup.
+     *
+     * @param file file to read
+     * @param indexVersion current index version
+     * @return the rollup, or null if not found, invalid or out of date
+     */
+    private static MetadataValueRollup read(File file, long indexVersion) {
+        if (!file.exists())
+            return null;
+        try {
+            JsonNode root = Json.getJsonObjectMapper().readTree(file);
+            if (root.path("indexVersion").asLong(-1) != indexVersion)
+                return null; // index has changed since we built this
+            Map<String, Integer> documents = new HashMap<>();
+            Map<String, Long> tokens = new HashMap<>();
+            Iterator<Entry<String, JsonNode>> it = root.path("values").fields();
+            while (it.hasNext()) {
+                Entry<String, JsonNode> e = it.next();
+                documents.put(e.getKey(), e.getValue().get(0).asInt());
+                tokens.put(e.getKey(), e.getValue().get(1).asLong());
+            }
+            return new MetadataValueRollup(documents, tokens);
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Could not read metadata rollup " + file + ", rebuilding", e);
+            return null;
+        }
+    }
+
+    /**
+     * Persist a rollup, so we don't have to build it again after a restart.
+     *
+     * Failing to write (e.g. because the index directory is read-only) is not an error.
+     *
+     * @param file file to write
+     * @param indexVersion index version the rollup was built from
+     * @param rollup the rollup
+     */
+    private static void write(File file, long indexVersion, MetadataValueRollup rollup) {
+        try {
+            File dir = file.getParentFile();
+            if (!dir.exists() && !dir.mkdir())
+                throw new IOException("Could not create directory " + dir);
+            ObjectMapper mapper = Json.getJsonObjectMapper();
+            ObjectNode root = mapper.createObjectNode();
+            root.put("indexVersion", indexVersion);
+            ObjectNode values = root.putObject("values");
+            for (Entry<String, Integer> e: rollup.documents.entrySet()) {
+                ArrayNode counts = values.putArray(e.getKey());
+                counts.add(e.getValue());
+                counts.add(rollup.tokens.get(e.getKey()));
+            }
+            File tmpFile = new File(dir, file.getName() + ".tmp");
+            mapper.writeValue(tmpFile, root);
+            Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            logger.warn("Could not write metadata rollup " + file + " (" + e.getMessage() + ")");
+        }
+    }
+
+}
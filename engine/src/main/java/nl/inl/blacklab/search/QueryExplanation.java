@@ -1,9 +1,15 @@
 package nl.inl.blacklab.search;
 
+import org.apache.lucene.index.IndexReader;
+
 import nl.inl.blacklab.search.lucene.BLSpanQuery;
+import nl.inl.blacklab.search.lucene.optimize.QueryCostModel;
 
 /**
  * Object used to explain how a SpanQuery is rewritten.
+ *
+ * Also includes the estimated costs the query planner used to decide
+ * how to execute the query.
  */
 public class QueryExplanation {
 
@@ -11,10 +17,28 @@ public class QueryExplanation {
 
     private BLSpanQuery rewrittenQuery;
 
+    private long reverseMatchingCost = -1;
+
+    private int forwardMatchingCost = -1;
+
+    private QueryCostModel costModel;
+
+    private long nfaThreshold = -1;
+
     public QueryExplanation(BLSpanQuery spanQuery, BLSpanQuery rewrittenQuery) {
+        this(spanQuery, rewrittenQuery, null);
+    }
+
+    public QueryExplanation(BLSpanQuery spanQuery, BLSpanQuery rewrittenQuery, IndexReader reader) {
         super();
         this.spanQuery = spanQuery;
         this.rewrittenQuery = rewrittenQuery;
+        if (reader != null) {
+            costModel = QueryCostModel.get(reader);
+            nfaThreshold = BlackLab.fromIndexReader(reader).forwardIndexMatchingSettings().threshold();
+            reverseMatchingCost = rewrittenQuery.reverseMatchingCost(reader);
+            forwardMatchingCost = rewrittenQuery.forwardMatchingCost();
+        }
     }
 
     public BLSpanQuery originalQuery() {
@@ -24,4 +48,60 @@ public class QueryExplanation {
     public BLSpanQuery rewrittenQuery() {
         return rewrittenQuery;
     }
+
+    /**
+     * Estimated cost of matching the rewritten query using the reverse index.
+     *
+     * @return the estimated cost (roughly the number of hits), or -1 if unknown
+     */
+    public long reverseMatchingCost() {
+        return reverseMatchingCost;
+    }
+
+    /**
+     * Estimated cost of matching the rewritten query using the forward index.
+     *
+     * @return the estimated cost (only meaningful relative to other forward matching costs),
+     *         or -1 if unknown
+     */
+    public int forwardMatchingCost() {
+        return forwardMatchingCost;
+    }
+
+    /**
+     * Relative cost of reading term positions, as used by the query planner.
+     *
+     * @return the term frequency divider, or -1 if unknown
+     * @see QueryCostModel#termFreqDivider()
+     */
+    public long termFreqDivider() {
+        return costModel == null ? -1 : costModel.termFreqDivider();
+    }
+
+    /**
+     * Threshold the query planner used to decide whether to use forward index matching.
+     *
+     * @return the threshold, or -1 if unknown
+     */
+    public long nfaThreshold() {
+        return nfaThreshold;
+    }
+
+    /**
+     * Measured cost of reading a term position from the reverse index.
+     *
+     * @return cost in nanoseconds, or -1 if not measured
+     */
+    public double postingsNsPerToken() {
+        return costModel == null ? -1 : costModel.postingsNsPerToken();
+    }
+
+    /**
+     * Measured cost of reading a token from the forward index.
+     *
+     * @return cost in nanoseconds, or -1 if not measured
+     */
+    public double forwardIndexNsPerToken() {
+        return costModel == null ? -1 : costModel.forwardIndexNsPerToken();
+    }
 }
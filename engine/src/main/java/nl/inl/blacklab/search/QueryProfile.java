@@ -0,0 +1,176 @@
+package nl.inl.blacklab.search;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Hierarchical trace of where time was spent executing a search.
+ *
+ * Each node has a name (e.g. the search phase or query class), an optional
+ * description (e.g. the query), the time spent in it, a number of counters and
+ * child nodes. Times are inclusive: a node's time includes that of its
+ * children. Nodes may be updated from several threads at once.
+ *
+ * A profile is only recorded if one is passed in through
+ * {@link nl.inl.blacklab.search.results.QueryInfo}; otherwise, the code that
+ * records it is skipped.
+ */
+public class QueryProfile {
+
+    private final String name;
+
+    private final String description;
+
+    private final LongAdder timeNs = new LongAdder();
+
+    private final Map<String, LongAdder> counters = new LinkedHashMap<>();
+
+    private final List<QueryProfile> children = new ArrayList<>();
+
+    /**
+     * Create a profile (root node).
+     *
+     * @param name name of the root node
+     */
+    public QueryProfile(String name) {
+        this(name, null);
+    }
+
+    private QueryProfile(String name, String description) {
+        this.name = name;
+        this.description = description;
+    }
+
+    /**
+     * Add a child node.
+     *
+     * @param name node name
+     * @param description node description, or null for none
+     * @return the new node
+     */
+    public synchronized QueryProfile add(String name, String description) {
+        QueryProfile child = new QueryProfile(name, description);
+        children.add(child);
+        return child;
+    }
+
+    /**
+     * Get a child node, adding it if we don't have one with this name and description yet.
+     *
+     * @param name node name
+     * @param description node description, or null for none
+     * @return the node
+     */
+    public synchronized QueryProfile child(String name, String description) {
+        for (QueryProfile child : children) {
+            if (child.name.equals(name) && (description == null ? child.description == null : description.equals(child.description)))
+                return child;
+        }
+        return add(name, description);
+    }
+
+    /**
+     * Add time spent in this node.
+     *
+     * @param ns time in nanoseconds
+     */
+    public void addTime(long ns) {
+        timeNs.add(ns);
+    }
+
+    /**
+     * Add the time since the specified start time.
+     *
+     * @param startNs start time (from System.nanoTime())
+     */
+    public void addTimeSince(long startNs) {
+        timeNs.add(System.nanoTime() - startNs);
+    }
+
+    /**
+     * Get a counter, adding it if it doesn't exist yet.
+     *
+     * Keep a reference to the counter if it's updated often.
+     *
+     * @param name counter name
+     * @return the counter
+     */
+    public synchronized LongAdder counter(String name) {
+        return counters.computeIfAbsent(name, __ -> new LongAdder());
+    }
+
+    /**
+     * Add to a counter.
+     *
+     * @param name counter name
+     * @param n number to add
+     */
+    public void count(String name, long n) {
+        counter(name).add(n);
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public String description() {
+        return description;
+    }
+
+    /**
+     * Time spent in this node (including its children).
+     *
+     * @return time in nanoseconds
+     */
+    public long timeNs() {
+        return timeNs.sum();
+    }
+
+    /**
+     * Get the value of a counter.
+     *
+     * @param name counter name
+     * @return the counter's value, or 0 if it doesn't exist
+     */
+    public synchronized long count(String name) {
+        LongAdder counter = counters.get(name);
+        return counter == null ? 0 : counter.sum();
+    }
+
+    public synchronized List<QueryProfile> children() {
+        return new ArrayList<>(children);
+    }
+
+    /**
+     * Get the profile as a structure of maps and lists, e.g. for serializing it.
+     *
+     * @return the profile
+     */
+    public synchronized Map<String, Object> toMap() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("name", name);
+        if (description != null)
+            result.put("description", description);
+        result.put("timeMs", timeNs.sum() / 1_000_000.0);
+        if (!counters.isEmpty()) {
+            Map<String, Long> counts = new LinkedHashMap<>();
+            counters.forEach((counterName, counter) -> counts.put(counterName, counter.sum()));
+            result.put("counts", counts);
+        }
+        if (!children.isEmpty()) {
+            List<Map<String, Object>> childMaps = new ArrayList<>();
+            for (QueryProfile child : children)
+                childMaps.add(child.toMap());
+            result.put("children", childMaps);
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "QueryProfile(" + name + (description == null ? "" : ", " + description) + ")";
+    }
+}
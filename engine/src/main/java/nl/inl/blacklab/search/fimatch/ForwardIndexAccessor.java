@@ -1,5 +1,7 @@
 package nl.inl.blacklab.search.fimatch;
 
+import java.util.function.Predicate;
+
 import org.apache.lucene.index.LeafReader;
 import org.eclipse.collections.api.set.primitive.MutableIntSet;
 
@@ -46,6 +48,22 @@ public abstract class ForwardIndexAccessor {
     public abstract void getTermNumbers(MutableIntSet results, int annotationNumber, String annotationValue,
             MatchSensitivity sensitivity);
 
+    /**
+     * Get the ids of the terms in an annotation that match a pattern.
+     *
+     * Lets pattern states test a single bit per token instead of matching the
+     * term string. The default implementation returns null, meaning the
+     * pattern states must match term strings instead.
+     *
+     * @param annotationNumber annotation to find matching terms in
+     * @param key key identifying the pattern (including sensitivity), for caching
+     * @param matches tests whether a term string matches the pattern
+     * @return the matching term ids, or null if not available
+     */
+    public TermIdSet getMatchingTermIds(int annotationNumber, String key, Predicate<String> matches) {
+        return null;
+    }
+
     /**
      * Get the number of annotations
      * 
@@ -4,6 +4,7 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Predicate;
 
 import org.apache.lucene.index.LeafReader;
 import org.eclipse.collections.api.set.primitive.MutableIntSet;
@@ -79,6 +80,11 @@ class ForwardIndexAccessorImpl extends ForwardIndexAccessor {
         terms.get(annotationNumber).indexOf(results, annotationValue, sensitivity);
     }
 
+    @Override
+    public TermIdSet getMatchingTermIds(int annotationNumber, String key, Predicate<String> matches) {
+        return TermIdSet.get(terms.get(annotationNumber), key, matches);
+    }
+
     public int getTermAtPosition(int fiid, int annotationNumber, int pos) {
         return fis.get(annotationNumber).getToken(fiid, pos);
     }
@@ -2,6 +2,9 @@ package nl.inl.blacklab.search.fimatch;
 
 import java.util.*;
 
+import org.eclipse.collections.api.set.primitive.MutableIntSet;
+import org.eclipse.collections.impl.set.mutable.primitive.IntHashSet;
+
 /**
  * Represents both a state in an NFA, and a complete NFA with this as the
  * starting state.
@@ -14,6 +17,51 @@ public abstract class NfaState {
     /** Singleton instance of the match final state */
     private static final NfaState THE_MATCH_STATE = new NfaStateMatch();
 
+    /**
+     * Sets of match ends for states to use while matching, per thread.
+     *
+     * Matching happens for every anchor hit, so we don't want to allocate (or box
+     * positions) there. States may be visited recursively, so each state borrows
+     * its sets and returns them when it's done.
+     */
+    private static final ThreadLocal<ArrayDeque<MutableIntSet>> intSetPool = ThreadLocal.withInitial(ArrayDeque::new);
+
+    /** Maximum number of sets to keep in a thread's pool (deeper recursion allocates) */
+    private static final int MAX_POOLED_SETS = 64;
+
+    /**
+     * Don't pool sets that held more match ends than this; clearing a set doesn't
+     * shrink it, so each would keep its memory for the lifetime of the thread.
+     */
+    private static final int MAX_POOLED_SET_SIZE = 1024;
+
+    /**
+     * Borrow an (empty) set of match ends from this thread's pool.
+     *
+     * Return it using {@link #returnIntSet(MutableIntSet)} when done.
+     *
+     * @return the set
+     */
+    static MutableIntSet borrowIntSet() {
+        MutableIntSet set = intSetPool.get().pollLast();
+        return set == null ? new IntHashSet() : set;
+    }
+
+    /**
+     * Return a set borrowed using {@link #borrowIntSet()}.
+     *
+     * Large sets, or sets beyond the pool's capacity, are left to the garbage collector.
+     *
+     * @param set the set
+     */
+    static void returnIntSet(MutableIntSet set) {
+        ArrayDeque<MutableIntSet> pool = intSetPool.get();
+        if (set.size() > MAX_POOLED_SET_SIZE || pool.size() >= MAX_POOLED_SETS)
+            return;
+        set.clear();
+        pool.addLast(set);
+    }
+
     /**
      * Build a token state.
      *
@@ -87,7 +135,7 @@ public abstract class NfaState {
      *            to collect them
      * @return true if any (new) matches were found, false if not
      */
-    abstract boolean findMatchesInternal(ForwardIndexDocument fiDoc, int pos, int direction, Set<Integer> matchEnds);
+    abstract boolean findMatchesInternal(ForwardIndexDocument fiDoc, int pos, int direction, MutableIntSet matchEnds);
 
     /**
      * Find all matches for this NFA in the token source.
@@ -99,10 +147,28 @@ public abstract class NfaState {
      */
     public NavigableSet<Integer> findMatches(ForwardIndexDocument fiDoc, int pos, int direction) {
         NavigableSet<Integer> results = new TreeSet<>();
-        findMatchesInternal(fiDoc, pos, direction, results);
+        MutableIntSet matchEnds = new IntHashSet();
+        findMatchesInternal(fiDoc, pos, direction, matchEnds);
+        matchEnds.forEach(results::add);
         return results;
     }
 
+    /**
+     * Find all matches for this NFA in the token source.
+     *
+     * Doesn't allocate if the caller reuses the buffer, so use this in hot loops.
+     *
+     * @param fiDoc where to read tokens from
+     * @param pos current matching position
+     * @param direction matching direction
+     * @param matchEnds (out) buffer to collect the match ends in; will be cleared first
+     * @return true if any matches were found, false if not
+     */
+    public boolean findMatches(ForwardIndexDocument fiDoc, int pos, int direction, MutableIntSet matchEnds) {
+        matchEnds.clear();
+        return findMatchesInternal(fiDoc, pos, direction, matchEnds);
+    }
+
     /**
      * Does the token source match this NFA?
      *
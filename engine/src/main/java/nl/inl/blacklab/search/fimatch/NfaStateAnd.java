@@ -2,6 +2,8 @@ package nl.inl.blacklab.search.fimatch;
 
 import java.util.*;
 
+import org.eclipse.collections.api.set.primitive.MutableIntSet;
+
 public class NfaStateAnd extends NfaState {
 
     List<NfaState> nextStates;
@@ -15,25 +17,33 @@ public class NfaStateAnd extends NfaState {
     }
 
     @Override
-    public boolean findMatchesInternal(ForwardIndexDocument fiDoc, int pos, int direction, Set<Integer> matchEnds) {
+    public boolean findMatchesInternal(ForwardIndexDocument fiDoc, int pos, int direction, MutableIntSet matchEnds) {
         // Split state. Find matches for all alternatives.
-        Set<Integer> newHitsFound = null;
-        for (NfaState nextState : nextStates) {
-            Set<Integer> matchesForClause = new HashSet<>();
-            if (!nextState.findMatchesInternal(fiDoc, pos, direction, matchesForClause))
-                return false; // short-circuit
-            if (newHitsFound == null) {
-                newHitsFound = matchesForClause;
-            } else {
-                // Calculate intersection
-                newHitsFound.retainAll(matchesForClause);
-                if (newHitsFound.isEmpty())
-                    return false; // no hits left; short-circuit
+        MutableIntSet newHitsFound = borrowIntSet();
+        MutableIntSet matchesForClause = borrowIntSet();
+        try {
+            boolean first = true;
+            for (NfaState nextState : nextStates) {
+                matchesForClause.clear();
+                if (!nextState.findMatchesInternal(fiDoc, pos, direction, matchesForClause))
+                    return false; // short-circuit
+                if (first) {
+                    newHitsFound.addAll(matchesForClause);
+                    first = false;
+                } else {
+                    // Calculate intersection
+                    newHitsFound.retainAll(matchesForClause);
+                    if (newHitsFound.isEmpty())
+                        return false; // no hits left; short-circuit
+                }
             }
+            if (matchEnds != null)
+                matchEnds.addAll(newHitsFound);
+            return true;
+        } finally {
+            returnIntSet(matchesForClause);
+            returnIntSet(newHitsFound);
         }
-        if (matchEnds != null)
-            matchEnds.addAll(newHitsFound);
-        return true;
     }
 
     @Override
@@ -2,6 +2,9 @@ package nl.inl.blacklab.search.fimatch;
 
 import java.util.*;
 
+import org.eclipse.collections.api.iterator.MutableIntIterator;
+import org.eclipse.collections.api.set.primitive.MutableIntSet;
+
 /**
  * An AND-node where none of the clauses cycle back to an earlier node. This can
  * be evaluated more efficiently, by finding matches for each of the clauses,
@@ -27,33 +30,38 @@ public class NfaStateAndAcyclic extends NfaState {
     }
 
     @Override
-    public boolean findMatchesInternal(ForwardIndexDocument fiDoc, int pos, int direction, Set<Integer> matchEnds) {
+    public boolean findMatchesInternal(ForwardIndexDocument fiDoc, int pos, int direction, MutableIntSet matchEnds) {
         // AND state. Find matches for all alternatives.
-        Set<Integer> clausesMatchEnds = null;
-        Set<Integer> matchEndsThisClause = new HashSet<>();
-        for (NfaState clause : clauses) {
-            matchEndsThisClause.clear();
-            if (!clause.findMatchesInternal(fiDoc, pos, direction, matchEndsThisClause))
-                return false; // this clause had no hits; short circuit AND
-            if (clausesMatchEnds == null) {
-                // First matches found
-                clausesMatchEnds = matchEndsThisClause;
-                matchEndsThisClause = new HashSet<>();
-            } else {
-                // Determine intersection with previous matches
-                clausesMatchEnds.retainAll(matchEndsThisClause);
-                if (clausesMatchEnds.isEmpty())
-                    return false; // there are no hits left; short circuit AND
+        MutableIntSet clausesMatchEnds = borrowIntSet();
+        MutableIntSet matchEndsThisClause = borrowIntSet();
+        try {
+            boolean first = true;
+            for (NfaState clause : clauses) {
+                matchEndsThisClause.clear();
+                if (!clause.findMatchesInternal(fiDoc, pos, direction, matchEndsThisClause))
+                    return false; // this clause had no hits; short circuit AND
+                if (first) {
+                    // First matches found
+                    clausesMatchEnds.addAll(matchEndsThisClause);
+                    first = false;
+                } else {
+                    // Determine intersection with previous matches
+                    clausesMatchEnds.retainAll(matchEndsThisClause);
+                    if (clausesMatchEnds.isEmpty())
+                        return false; // there are no hits left; short circuit AND
+                }
             }
-        }
-        boolean foundMatch = false;
-        if (!clausesMatchEnds.isEmpty()) {
             // Continue matching from the matches to our OR clauses
-            for (Integer clauseMatchEnd : clausesMatchEnds) {
-                foundMatch |= nextState.findMatchesInternal(fiDoc, clauseMatchEnd, direction, matchEnds);
+            boolean foundMatch = false;
+            MutableIntIterator it = clausesMatchEnds.intIterator();
+            while (it.hasNext()) {
+                foundMatch |= nextState.findMatchesInternal(fiDoc, it.next(), direction, matchEnds);
             }
+            return foundMatch;
+        } finally {
+            returnIntSet(matchEndsThisClause);
+            returnIntSet(clausesMatchEnds);
         }
-        return foundMatch;
     }
 
     @Override
@@ -4,13 +4,15 @@ import java.util.Collection;
 import java.util.Map;
 import java.util.Set;
 
+import org.eclipse.collections.api.set.primitive.MutableIntSet;
+
 /**
  * The match state
  */
 public class NfaStateMatch extends NfaState {
 
     @Override
-    public boolean findMatchesInternal(ForwardIndexDocument fiDoc, int pos, int direction, Set<Integer> matchEnds) {
+    public boolean findMatchesInternal(ForwardIndexDocument fiDoc, int pos, int direction, MutableIntSet matchEnds) {
         if (matchEnds != null)
             matchEnds.add(pos);
         return true;
@@ -4,6 +4,8 @@ import java.util.Collection;
 import java.util.Map;
 import java.util.Set;
 
+import org.eclipse.collections.api.set.primitive.MutableIntSet;
+
 import nl.inl.blacklab.exceptions.BlackLabRuntimeException;
 import nl.inl.blacklab.search.indexmetadata.AnnotatedFieldNameUtil;
 import nl.inl.blacklab.search.indexmetadata.MatchSensitivity;
@@ -31,6 +33,12 @@ public abstract class NfaStateMultiTermPattern extends NfaState {
     /** Match case-/diacritics-sensitively? */
     private MatchSensitivity sensitivity;
 
+    /**
+     * Ids of the terms matching our pattern, if available. Only valid after
+     * lookupPropertyNumber() called.
+     */
+    private TermIdSet matchingTermIds;
+
     public NfaStateMultiTermPattern(String luceneField, String pattern, NfaState nextState) {
         this.luceneField = luceneField;
         this.sensitivity = AnnotatedFieldNameUtil.sensitivity(luceneField);
@@ -48,12 +56,18 @@ public abstract class NfaStateMultiTermPattern extends NfaState {
      * @return true if any (new) matches were found, false if not
      */
     @Override
-    public boolean findMatchesInternal(ForwardIndexDocument fiDoc, int pos, int direction, Set<Integer> matchEnds) {
+    public boolean findMatchesInternal(ForwardIndexDocument fiDoc, int pos, int direction, MutableIntSet matchEnds) {
         // Token state. Check if it matches token from token source, and if so, continue.
         int actualToken = fiDoc.getToken(propertyNumber, pos);
         if (actualToken >= 0) {
-            String tokenString = fiDoc.getTermString(propertyNumber, actualToken);
-            if (matchesPattern(sensitivity.desensitize(tokenString))) {
+            boolean matches;
+            if (matchingTermIds != null && matchingTermIds.covers(actualToken)) {
+                matches = matchingTermIds.contains(actualToken);
+            } else {
+                String tokenString = fiDoc.getTermString(propertyNumber, actualToken);
+                matches = matchesPattern(sensitivity.desensitize(tokenString));
+            }
+            if (matches) {
                 return nextState.findMatchesInternal(fiDoc, pos + direction, direction, matchEnds);
             }
         }
@@ -131,6 +145,9 @@ public abstract class NfaStateMultiTermPattern extends NfaState {
         String[] comp = AnnotatedFieldNameUtil.getNameComponents(luceneField);
         String annotationName = comp[1];
         propertyNumber = fiAccessor.getAnnotationNumber(annotationName);
+        String key = getPatternType() + "|" + sensitivity.luceneFieldSuffix() + "|" + pattern;
+        matchingTermIds = fiAccessor.getMatchingTermIds(propertyNumber, key,
+                term -> matchesPattern(sensitivity.desensitize(term)));
         if (nextState != null)
             nextState.lookupAnnotationNumbers(fiAccessor, statesVisited);
     }
@@ -5,6 +5,8 @@ import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 
+import org.eclipse.collections.api.set.primitive.MutableIntSet;
+
 public class NfaStateNot extends NfaState {
 
     private NfaState clause;
@@ -22,7 +24,7 @@ public class NfaStateNot extends NfaState {
     }
 
     @Override
-    boolean findMatchesInternal(ForwardIndexDocument fiDoc, int pos, int direction, Set<Integer> matchEnds) {
+    boolean findMatchesInternal(ForwardIndexDocument fiDoc, int pos, int direction, MutableIntSet matchEnds) {
         // Is this a valid position? If not, no match.
         if (!fiDoc.validPos(pos))
             return false;
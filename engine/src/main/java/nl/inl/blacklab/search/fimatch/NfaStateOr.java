@@ -2,6 +2,8 @@ package nl.inl.blacklab.search.fimatch;
 
 import java.util.*;
 
+import org.eclipse.collections.api.set.primitive.MutableIntSet;
+
 public class NfaStateOr extends NfaState {
 
     List<NfaState> nextStates;
@@ -19,7 +21,7 @@ public class NfaStateOr extends NfaState {
     }
 
     @Override
-    public boolean findMatchesInternal(ForwardIndexDocument fiDoc, int pos, int direction, Set<Integer> matchEnds) {
+    public boolean findMatchesInternal(ForwardIndexDocument fiDoc, int pos, int direction, MutableIntSet matchEnds) {
         // OR/Split state. Find matches for all alternatives.
         boolean result = false;
         for (NfaState nextState : nextStates) {
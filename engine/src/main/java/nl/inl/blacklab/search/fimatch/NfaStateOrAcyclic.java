@@ -2,6 +2,9 @@ package nl.inl.blacklab.search.fimatch;
 
 import java.util.*;
 
+import org.eclipse.collections.api.iterator.MutableIntIterator;
+import org.eclipse.collections.api.set.primitive.MutableIntSet;
+
 /**
  * An OR-node where none of the clauses cycle back to an earlier node. This can
  * be evaluated more efficiently, by finding matches for each of the clauses,
@@ -34,37 +37,42 @@ public class NfaStateOrAcyclic extends NfaState {
     }
 
     @Override
-    public boolean findMatchesInternal(ForwardIndexDocument fiDoc, int pos, int direction, Set<Integer> matchEnds) {
+    public boolean findMatchesInternal(ForwardIndexDocument fiDoc, int pos, int direction, MutableIntSet matchEnds) {
         // OR/Split state. Find matches for all alternatives.
         boolean clauseMatched = false;
-        Set<Integer> clauseMatchEnds = new HashSet<>();
-        if (clausesAllSameLength) {
-            // We can short-circuit as soon as we find a single clause hit, because there can only be one match end.
-            for (NfaState clause : clauses) {
-                boolean matchesFound = false;
-                matchesFound = clause.findMatchesInternal(fiDoc, pos, direction, clauseMatchEnds);
-                clauseMatched |= matchesFound;
-                if (clauseMatched)
-                    break; // short-circuit OR
-            }
-        } else {
-            // We have to process all clauses because we need all match ends for the next phase.
-            for (NfaState clause : clauses) {
-                boolean matchesFound = false;
-                matchesFound = clause.findMatchesInternal(fiDoc, pos, direction, clauseMatchEnds);
-                clauseMatched |= matchesFound;
+        MutableIntSet clauseMatchEnds = borrowIntSet();
+        try {
+            if (clausesAllSameLength) {
+                // We can short-circuit as soon as we find a single clause hit, because there can only be one match end.
+                for (NfaState clause : clauses) {
+                    boolean matchesFound = false;
+                    matchesFound = clause.findMatchesInternal(fiDoc, pos, direction, clauseMatchEnds);
+                    clauseMatched |= matchesFound;
+                    if (clauseMatched)
+                        break; // short-circuit OR
+                }
+            } else {
+                // We have to process all clauses because we need all match ends for the next phase.
+                for (NfaState clause : clauses) {
+                    boolean matchesFound = false;
+                    matchesFound = clause.findMatchesInternal(fiDoc, pos, direction, clauseMatchEnds);
+                    clauseMatched |= matchesFound;
+                }
             }
-        }
-        boolean foundMatch = false;
-        if (clauseMatched) {
-            // Continue matching from the matches to our OR clauses
-            for (Integer clauseMatchEnd : clauseMatchEnds) {
-                foundMatch |= nextState.findMatchesInternal(fiDoc, clauseMatchEnd, direction, matchEnds);
-                if (foundMatch && matchEnds == null)
-                    break; // we don't care about the match ends, just that there are matches
+            boolean foundMatch = false;
+            if (clauseMatched) {
+                // Continue matching from the matches to our OR clauses
+                MutableIntIterator it = clauseMatchEnds.intIterator();
+                while (it.hasNext()) {
+                    foundMatch |= nextState.findMatchesInternal(fiDoc, it.next(), direction, matchEnds);
+                    if (foundMatch && matchEnds == null)
+                        break; // we don't care about the match ends, just that there are matches
+                }
             }
+            return foundMatch;
+        } finally {
+            returnIntSet(clauseMatchEnds);
         }
-        return foundMatch;
     }
 
     @Override
@@ -69,7 +69,7 @@ public class NfaStateToken extends NfaState {
      * @return true if any (new) matches were found, false if not
      */
     @Override
-    public boolean findMatchesInternal(ForwardIndexDocument fiDoc, int pos, int direction, Set<Integer> matchEnds) {
+    public boolean findMatchesInternal(ForwardIndexDocument fiDoc, int pos, int direction, MutableIntSet matchEnds) {
         // Token state. Check if it matches token from token source, and if so, continue.
         int actualToken = fiDoc.getToken(propertyNumber, pos);
         if (acceptAnyToken && actualToken >= 0 || inputTokens.contains(actualToken)) {
@@ -0,0 +1,135 @@
+package nl.inl.blacklab.search.fimatch;
+
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.function.Predicate;
+
+import nl.inl.blacklab.exceptions.BlackLabRuntimeException;
+import nl.inl.blacklab.exceptions.InterruptedSearch;
+import nl.inl.blacklab.forwardindex.Terms;
+
+/**
+ * The ids of the terms matching a pattern (e.g. a regex) in an annotation.
+ *
+ * Used by NFA states that match a regex, wildcard or prefix pattern, so we don't
+ * have to look up and match the term string for every token we encounter while
+ * matching. The set is determined once by scanning all terms, and cached per
+ * terms object (i.e. per index and annotation) and pattern. The scan happens
+ * outside any shared lock, so only callers that need the same set wait for it.
+ *
+ * Terms added after the set was built (while indexing) are not covered by it; see
+ * {@link #covers(int)}.
+ */
+public final class TermIdSet {
+
+    /** Maximum number of term id sets to keep per terms object */
+    private static final int MAX_CACHED_PER_TERMS = 100;
+
+    /** Cached term id sets (being built) per terms object and pattern key */
+    private static final Map<Terms, Map<String, FutureTask<TermIdSet>>> cache = new WeakHashMap<>();
+
+    /**
+     * Get the set of term ids matching a pattern, building it if necessary.
+     *
+     * @param terms terms object for the annotation
+     * @param key key identifying the pattern, including the match sensitivity
+     * @param matches tests whether a term string matches the pattern
+     * @return the term id set
+     */
+    static TermIdSet get(Terms terms, String key, Predicate<String> matches) {
+        Map<String, FutureTask<TermIdSet>> perPattern;
+        synchronized (cache) {
+            perPattern = cache.computeIfAbsent(terms, __ -> new LinkedHashMap<String, FutureTask<TermIdSet>>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, FutureTask<TermIdSet>> eldest) {
+                    return size() > MAX_CACHED_PER_TERMS;
+                }
+            });
+        }
+        while (true) {
+            FutureTask<TermIdSet> task;
+            boolean buildHere = false;
+            synchronized (perPattern) {
+                task = perPattern.get(key);
+                if (task == null || isOutdated(task, terms)) {
+                    // Not built yet, or terms were added since; (re)build
+                    task = new FutureTask<>(() -> build(terms, matches));
+                    perPattern.put(key, task);
+                    buildHere = true;
+                }
+            }
+            if (buildHere)
+                task.run(); // (outside the lock, so other patterns don't have to wait)
+            try {
+                TermIdSet termIdSet = task.get();
+                if (buildHere || termIdSet.numberOfTerms >= terms.numberOfTerms())
+                    return termIdSet;
+                // Terms were added while another thread built this; try again
+            } catch (ExecutionException e) {
+                synchronized (perPattern) {
+                    perPattern.remove(key, task); // don't cache the failure
+                }
+                throw BlackLabRuntimeException.wrap(e.getCause() == null ? e : e.getCause());
+            } catch (InterruptedException e) {
+                throw new InterruptedSearch(e);
+            }
+        }
+    }
+
+    /** Is this (finished) set missing terms that were added after we built it? */
+    private static boolean isOutdated(FutureTask<TermIdSet> task, Terms terms) {
+        if (!task.isDone())
+            return false; // being built; we'll check once it's done
+        try {
+            return task.get().numberOfTerms < terms.numberOfTerms();
+        } catch (ExecutionException | InterruptedException e) {
+            return true; // failed; build it again
+        }
+    }
+
+    private static TermIdSet build(Terms terms, Predicate<String> matches) {
+        int numberOfTerms = terms.numberOfTerms();
+        BitSet ids = new BitSet(numberOfTerms);
+        for (int i = 0; i < numberOfTerms; i++) {
+            if (matches.test(terms.get(i)))
+                ids.set(i);
+        }
+        return new TermIdSet(ids, numberOfTerms);
+    }
+
+    /** Ids of the matching terms */
+    private final BitSet ids;
+
+    /** Number of terms there were when we built this set */
+    private final int numberOfTerms;
+
+    TermIdSet(BitSet ids, int numberOfTerms) {
+        this.ids = ids;
+        this.numberOfTerms = numberOfTerms;
+    }
+
+    /**
+     * Does this set know whether this term matches?
+     *
+     * @param termId term id
+     * @return true if we can use {@link #contains(int)} for this term
+     */
+    public boolean covers(int termId) {
+        return termId < numberOfTerms;
+    }
+
+    /**
+     * Does this term match?
+     *
+     * @param termId term id (must be covered by this set)
+     * @return true if the term matches the pattern
+     */
+    public boolean contains(int termId) {
+        return ids.get(termId);
+    }
+
+}
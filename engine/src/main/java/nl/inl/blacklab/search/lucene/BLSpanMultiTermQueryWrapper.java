@@ -1,6 +1,7 @@
 package nl.inl.blacklab.search.lucene;
 
 import nl.inl.blacklab.exceptions.BlackLabRuntimeException;
+import nl.inl.blacklab.search.BlackLabIndex;
 import nl.inl.blacklab.search.fimatch.ForwardIndexAccessor;
 import nl.inl.blacklab.search.fimatch.Nfa;
 import nl.inl.blacklab.search.fimatch.NfaState;
@@ -12,6 +13,7 @@ import org.apache.lucene.index.Term;
 import org.apache.lucene.search.*;
 import org.apache.lucene.search.spans.SpanMultiTermQueryWrapper;
 import org.apache.lucene.search.spans.SpanQuery;
+import org.apache.lucene.util.automaton.CompiledAutomaton;
 
 import java.io.IOException;
 import java.lang.reflect.Field;
@@ -21,11 +23,21 @@ import java.util.Arrays;
  * Subclasses SpanMultiTermQueryWrapper so it correctly produces BLSpanOrQuery
  * or BLSpanTermQuery.
  *
+ * If the pattern matches a lot of terms, we produce a {@link SpanQueryMultiTerm}
+ * instead, which merges the postings of all matching terms without expanding to
+ * a huge disjunction.
+ *
  * @param <Q> the type of query we're wrapping
  */
 public class BLSpanMultiTermQueryWrapper<Q extends MultiTermQuery>
         extends BLSpanQuery {
 
+    /**
+     * By default, if a pattern matches more terms than this, don't expand it to a
+     * BLSpanOrQuery, but use a SpanQueryMultiTerm. See {@link BlackLabIndex#maxTermsToExpand()}.
+     */
+    public static final long DEFAULT_MAX_TERMS_TO_EXPAND = 1000;
+
     SpanMultiTermQueryWrapper<Q> query;
 
     Term term;
@@ -51,6 +63,18 @@ public class BLSpanMultiTermQueryWrapper<Q extends MultiTermQuery>
 
     @Override
     public BLSpanQuery rewrite(IndexReader reader) throws IOException {
+        Query wrapped = query.getWrappedQuery();
+        if (wrapped instanceof AutomatonQuery) {
+            // Does this pattern match so many terms that expanding it to a disjunction would be inefficient?
+            CompiledAutomaton automaton = new CompiledAutomaton(((AutomatonQuery) wrapped).getAutomaton());
+            BlackLabIndex index = queryInfo == null ? null : queryInfo.index();
+            long maxTermsToExpand = index == null ? DEFAULT_MAX_TERMS_TO_EXPAND : index.maxTermsToExpand();
+            SpanQueryMultiTerm.MatchingTerms matchingTerms = new SpanQueryMultiTerm.MatchingTerms(getRealField(),
+                    automaton, index == null ? null : index.reverseTermIndexCache());
+            if (matchingTerms.count(reader, maxTermsToExpand) > maxTermsToExpand)
+                return new SpanQueryMultiTerm(queryInfo, this, matchingTerms);
+        }
+
         Query q = query.rewrite(reader);
         if (!(q instanceof SpanQuery))
             throw new UnsupportedOperationException(
@@ -334,7 +334,7 @@ public final class BLSpanOrQuery extends BLSpanQuery {
     public BLSpanWeight createWeight(IndexSearcher searcher, boolean needsScores) throws IOException {
         List<BLSpanWeight> subWeights = new ArrayList<>(inner.getClauses().length);
         for (SpanQuery q : inner.getClauses()) {
-            BLSpanWeight weight = ((BLSpanQuery) q).createWeight(searcher, false);
+            BLSpanWeight weight = ProfilingSearcher.createWeight((BLSpanQuery) q, searcher, false);
             subWeights.add(weight);
         }
         Map<Term, TermContext> contexts = needsScores ? getTermContexts(subWeights.toArray(new SpanWeight[0])) : null;
@@ -705,6 +705,24 @@ public final class BLSpanOrQuery extends BLSpanQuery {
         return true;
     }
 
+    @Override
+    public boolean capturesGroups() {
+        for (SpanQuery cl : getClauses()) {
+            if (((BLSpanQuery) cl).capturesGroups())
+                return true;
+        }
+        return false;
+    }
+
+    @Override
+    public boolean usesForwardIndexMatching() {
+        for (SpanQuery cl : getClauses()) {
+            if (((BLSpanQuery) cl).usesForwardIndexMatching())
+                return true;
+        }
+        return false;
+    }
+
     @Override
     public long reverseMatchingCost(IndexReader reader) {
         // Add the costs of our clauses, since we won't
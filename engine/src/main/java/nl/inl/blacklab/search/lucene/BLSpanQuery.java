@@ -351,6 +351,24 @@ public abstract class BLSpanQuery extends SpanQuery {
         return false;
     }
 
+    /**
+     * Does this query (or any of its clauses) capture groups?
+     *
+     * @return true if any part of this query captures groups
+     */
+    public boolean capturesGroups() {
+        return false;
+    }
+
+    /**
+     * Does this query (or any of its clauses) use forward index matching?
+     *
+     * @return true if any part of this query is matched using the forward index
+     */
+    public boolean usesForwardIndexMatching() {
+        return false;
+    }
+
     public NfaTwoWay getNfaTwoWay(ForwardIndexAccessor fiAccessor, int nativeDirection) {
         Nfa nfa = getNfa(fiAccessor, nativeDirection);
         Nfa nfaRev = getNfa(fiAccessor, -nativeDirection);
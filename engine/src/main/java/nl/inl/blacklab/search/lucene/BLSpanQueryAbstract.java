@@ -148,6 +148,24 @@ abstract class BLSpanQueryAbstract extends BLSpanQuery {
         return buffer.toString();
     }
     
+    @Override
+    public boolean capturesGroups() {
+        for (BLSpanQuery clause : clauses) {
+            if (clause.capturesGroups())
+                return true;
+        }
+        return false;
+    }
+
+    @Override
+    public boolean usesForwardIndexMatching() {
+        for (BLSpanQuery clause : clauses) {
+            if (clause.usesForwardIndexMatching())
+                return true;
+        }
+        return false;
+    }
+
     @Override
     public void setQueryInfo(QueryInfo queryInfo) {
         super.setQueryInfo(queryInfo);
@@ -103,6 +103,36 @@ public abstract class BLSpans extends Spans {
         return pos;
     }
 
+    /**
+     * Get a block of hits from the current document.
+     *
+     * Places the next hits in the current document in the given arrays, so callers
+     * that process many hits (e.g. HitsFromQueryParallel) don't need several
+     * virtual calls per hit. Afterwards, the current hit is the last one placed in
+     * the arrays, or we're at NO_MORE_POSITIONS if there were no more hits. If
+     * fewer hits are returned than fit in the arrays, we're done with this
+     * document, and this method shouldn't be called again for it.
+     *
+     * Note that captured groups are only available for the current hit, so callers
+     * that need those should use {@link #nextStartPosition()} instead.
+     *
+     * @param starts (out) start positions of the hits
+     * @param ends (out) end positions of the hits (same length as starts)
+     * @return number of hits placed in the arrays; 0 if there are no more hits in
+     *         this document
+     * @throws IOException on error
+     */
+    public int nextStartPositions(int[] starts, int[] ends) throws IOException {
+        // Naive implementation; subclasses may provide a faster version.
+        int n = 0;
+        while (n < starts.length && nextStartPosition() != NO_MORE_POSITIONS) {
+            starts[n] = startPosition();
+            ends[n] = endPosition();
+            n++;
+        }
+        return n;
+    }
+
     @Override
     public long cost() {
         // returns a completely arbitrary constant value, but it's for
@@ -0,0 +1,101 @@
+package nl.inl.blacklab.search.lucene;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TermContext;
+import org.apache.lucene.search.IndexSearcher;
+
+import nl.inl.blacklab.search.QueryProfile;
+
+/**
+ * Searcher that profiles the spans of queries whose weights are created with it.
+ *
+ * Queries create the weights for their clauses using
+ * {@link #createWeight(BLSpanQuery, IndexSearcher, boolean)}. If the searcher
+ * passed in is a ProfilingSearcher, that adds a node for the clause to the
+ * profile and wraps the clause's spans in each segment in a
+ * {@link SpansProfiled}. The clause's own clauses are added below it, so the
+ * profile follows the structure of the query.
+ *
+ * For any other searcher, the weight is created as usual, so there's no
+ * overhead if we're not profiling.
+ */
+public class ProfilingSearcher extends IndexSearcher {
+
+    /**
+     * Create the weight for a query, profiling it if the searcher is a
+     * ProfilingSearcher.
+     *
+     * @param query the (rewritten) query
+     * @param searcher searcher to use
+     * @param needsScores whether we need scores
+     * @return the weight
+     * @throws IOException on error
+     */
+    public static BLSpanWeight createWeight(BLSpanQuery query, IndexSearcher searcher, boolean needsScores) throws IOException {
+        if (!(searcher instanceof ProfilingSearcher))
+            return query.createWeight(searcher, needsScores);
+        QueryProfile clauseProfile = ((ProfilingSearcher) searcher).profile.add(query.getClass().getSimpleName(), query.toString());
+        ProfilingSearcher clauseSearcher = new ProfilingSearcher(searcher.getIndexReader(), clauseProfile);
+        return new SpanWeightProfiled(query, query.createWeight(clauseSearcher, needsScores), searcher, clauseProfile);
+    }
+
+    /** Node to add the profiles of the clauses we create weights for to */
+    private final QueryProfile profile;
+
+    /**
+     * Create a profiling searcher.
+     *
+     * @param reader index reader to search
+     * @param profile where to add the profile of the query
+     */
+    public ProfilingSearcher(IndexReader reader, QueryProfile profile) {
+        super(reader);
+        this.profile = profile;
+    }
+
+    /** Weight that wraps the spans of a clause to profile them, per segment. */
+    private static class SpanWeightProfiled extends BLSpanWeight {
+
+        private final BLSpanWeight weight;
+
+        private final QueryProfile profile;
+
+        SpanWeightProfiled(BLSpanQuery query, BLSpanWeight weight, IndexSearcher searcher, QueryProfile profile) throws IOException {
+            super(query, searcher, null);
+            this.weight = weight;
+            this.profile = profile;
+        }
+
+        @Override
+        public void extractTerms(Set<Term> terms) {
+            weight.extractTerms(terms);
+        }
+
+        @Override
+        public void extractTermContexts(Map<Term, TermContext> contexts) {
+            weight.extractTermContexts(contexts);
+        }
+
+        @Override
+        public BLSpans getSpans(LeafReaderContext context, Postings requiredPostings) throws IOException {
+            long start = System.nanoTime();
+            BLSpans spans = weight.getSpans(context, requiredPostings);
+            if (spans == null)
+                return null;
+            QueryProfile segmentProfile = profile.child("segment " + context.ord, spans.getClass().getSimpleName());
+            segmentProfile.count("getSpansNs", System.nanoTime() - start);
+            if (spans instanceof SpansExpansionRaw) {
+                // SpanQuerySequence needs to recognize these to combine them with their neighbours
+                // into a SpansSequenceWithGap, so we don't wrap them.
+                return spans;
+            }
+            return new SpansProfiled(spans, profile, segmentProfile);
+        }
+    }
+}
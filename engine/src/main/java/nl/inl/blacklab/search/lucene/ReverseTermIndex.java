@@ -0,0 +1,203 @@
+package nl.inl.blacklab.search.lucene;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.BytesRefBuilder;
+import org.apache.lucene.util.IntroSorter;
+import org.eclipse.collections.impl.list.mutable.primitive.IntArrayList;
+
+/**
+ * The terms of a field in one index segment, reversed and sorted.
+ *
+ * Lucene's terms dictionary is sorted, so finding terms with a certain prefix is
+ * fast, but finding terms with a certain suffix (e.g. for the wildcard pattern
+ * {@code *ing}) means checking every term. With the terms reversed, a suffix becomes
+ * a prefix, and we can find all candidates using binary search.
+ *
+ * Built the first time we need it for a segment and field; kept by
+ * {@link ReverseTermIndexCache}.
+ */
+final class ReverseTermIndex {
+
+    /** Approximate overhead per reverse term index (bytes) */
+    private static final long OVERHEAD = 64;
+
+    /** Reversed terms, concatenated in sorted order */
+    private final byte[] data;
+
+    /** Offset in data for each reversed term (plus one extra at the end) */
+    private final int[] offsets;
+
+    private ReverseTermIndex(byte[] data, int[] offsets) {
+        this.data = data;
+        this.offsets = offsets;
+    }
+
+    /**
+     * Build the reverse term index for a field in a segment.
+     *
+     * @param reader segment reader
+     * @param luceneField field to build the reverse term index for
+     * @param maxSizeBytes maximum size of the reverse term index
+     * @return the reverse term index, or null if it would be larger than maxSizeBytes
+     * @throws IOException on error
+     */
+    static ReverseTermIndex build(LeafReader reader, String luceneField, long maxSizeBytes) throws IOException {
+        Terms terms = reader.terms(luceneField);
+        if (terms == null)
+            return new ReverseTermIndex(new byte[0], new int[] { 0 });
+        if ((long) Integer.BYTES * terms.size() > maxSizeBytes)
+            return null;
+
+        // Read all terms, reversed
+        IntArrayList unsortedOffsets = new IntArrayList();
+        byte[] unsorted = new byte[1024];
+        int length = 0;
+        TermsEnum termsEnum = terms.iterator();
+        for (BytesRef term = termsEnum.next(); term != null; term = termsEnum.next()) {
+            if ((long) length + term.length > ArrayUtil.MAX_ARRAY_LENGTH
+                    || length + term.length + (long) Integer.BYTES * (unsortedOffsets.size() + 1) > maxSizeBytes)
+                return null;
+            unsorted = ArrayUtil.grow(unsorted, length + term.length);
+            unsortedOffsets.add(length);
+            for (int i = 0; i < term.length; i++)
+                unsorted[length + i] = term.bytes[term.offset + term.length - 1 - i];
+            length += term.length;
+        }
+        unsortedOffsets.add(length);
+
+        // Sort them
+        int n = unsortedOffsets.size() - 1;
+        int[] order = new int[n];
+        for (int i = 0; i < n; i++)
+            order[i] = i;
+        byte[] finalUnsorted = unsorted;
+        int[] from = unsortedOffsets.toArray();
+        new IntroSorter() {
+            int pivot;
+
+            @Override
+            protected void swap(int i, int j) {
+                int t = order[i];
+                order[i] = order[j];
+                order[j] = t;
+            }
+
+            @Override
+            protected void setPivot(int i) {
+                pivot = order[i];
+            }
+
+            @Override
+            protected int comparePivot(int j) {
+                return ReverseTermIndex.compare(finalUnsorted, from, pivot, order[j]);
+            }
+
+            @Override
+            protected int compare(int i, int j) {
+                return ReverseTermIndex.compare(finalUnsorted, from, order[i], order[j]);
+            }
+        }.sort(0, n);
+
+        // Store them in sorted order
+        byte[] data = new byte[length];
+        int[] offsets = new int[n + 1];
+        int offset = 0;
+        for (int i = 0; i < n; i++) {
+            int termLength = from[order[i] + 1] - from[order[i]];
+            System.arraycopy(unsorted, from[order[i]], data, offset, termLength);
+            offsets[i] = offset;
+            offset += termLength;
+        }
+        offsets[n] = offset;
+        return new ReverseTermIndex(data, offsets);
+    }
+
+    /**
+     * Get the size of the reverse term index.
+     *
+     * @return approximate size in memory (bytes)
+     */
+    long sizeBytes() {
+        return OVERHEAD + data.length + (long) Integer.BYTES * offsets.length;
+    }
+
+    private static int compare(byte[] data, int[] offsets, int i, int j) {
+        return Arrays.compareUnsigned(data, offsets[i], offsets[i + 1], data, offsets[j], offsets[j + 1]);
+    }
+
+    /**
+     * Number of terms in the index.
+     *
+     * @return number of terms
+     */
+    int numberOfTerms() {
+        return offsets.length - 1;
+    }
+
+    /**
+     * Compare the start of a reversed term with a reversed suffix.
+     *
+     * @return 0 if the reversed term starts with the reversed suffix, otherwise
+     *   negative if it sorts before it and positive if it sorts after it
+     */
+    private int comparePrefix(int i, byte[] reversedSuffix) {
+        int length = Math.min(offsets[i + 1] - offsets[i], reversedSuffix.length);
+        int cmp = Arrays.compareUnsigned(data, offsets[i], offsets[i] + length, reversedSuffix, 0, length);
+        if (cmp == 0 && length < reversedSuffix.length)
+            return -1; // term is shorter than suffix
+        return cmp;
+    }
+
+    /**
+     * Find the range of terms ending with a suffix.
+     *
+     * @param suffix the suffix (not reversed)
+     * @return the range as { first, last + 1 }; use {@link #getTerm(int, BytesRefBuilder)} to get the terms
+     */
+    int[] rangeWithSuffix(BytesRef suffix) {
+        byte[] reversedSuffix = new byte[suffix.length];
+        for (int i = 0; i < suffix.length; i++)
+            reversedSuffix[i] = suffix.bytes[suffix.offset + suffix.length - 1 - i];
+        int lo = 0, hi = numberOfTerms();
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (comparePrefix(mid, reversedSuffix) < 0)
+                lo = mid + 1;
+            else
+                hi = mid;
+        }
+        int first = lo;
+        hi = numberOfTerms();
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (comparePrefix(mid, reversedSuffix) <= 0)
+                lo = mid + 1;
+            else
+                hi = mid;
+        }
+        return new int[] { first, lo };
+    }
+
+    /**
+     * Get a term (in its original, non-reversed form).
+     *
+     * @param i index of the term
+     * @param term (out) the term
+     */
+    void getTerm(int i, BytesRefBuilder term) {
+        int start = offsets[i], length = offsets[i + 1] - start;
+        term.grow(length);
+        term.setLength(length);
+        byte[] bytes = term.bytes();
+        for (int j = 0; j < length; j++)
+            bytes[j] = data[start + length - 1 - j];
+    }
+
+}
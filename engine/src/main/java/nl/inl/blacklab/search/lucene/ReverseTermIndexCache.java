@@ -0,0 +1,43 @@
+package nl.inl.blacklab.search.lucene;
+
+import java.io.IOException;
+
+import org.apache.lucene.index.LeafReader;
+
+/**
+ * Reverse term indexes ({@link ReverseTermIndex}) for the fields in an index, per segment.
+ *
+ * Used to quickly find terms matching patterns with a leading wildcard. Each index
+ * is built in the background the first time such a pattern is searched in a segment;
+ * until it's ready, we scan the terms dictionary as usual.
+ *
+ * Disabled by default (maximum size 0).
+ */
+public class ReverseTermIndexCache extends SegmentIndexCache<String, ReverseTermIndex> {
+
+    /**
+     * Create a (disabled) reverse term index cache.
+     */
+    public ReverseTermIndexCache() {
+        this(0);
+    }
+
+    /**
+     * Create a reverse term index cache.
+     *
+     * @param maxSizeBytes maximum total size of the reverse term indexes (bytes); 0 disables the cache
+     */
+    public ReverseTermIndexCache(long maxSizeBytes) {
+        super("ReverseTermIndexCache", maxSizeBytes);
+    }
+
+    @Override
+    ReverseTermIndex build(LeafReader reader, String luceneField, long maxSizeBytes) throws IOException {
+        return ReverseTermIndex.build(reader, luceneField, maxSizeBytes);
+    }
+
+    @Override
+    long sizeBytes(ReverseTermIndex index) {
+        return index.sizeBytes();
+    }
+}
@@ -0,0 +1,315 @@
+package nl.inl.blacklab.search.lucene;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.lucene.index.LeafReader;
+
+/**
+ * In-memory structures derived from index segments, built in the background and
+ * kept within a size budget.
+ *
+ * The first time a structure is requested for a segment, we start building it on
+ * another thread; until it's ready, callers should do without. By default, structures
+ * are built on a small pool of threads shared by all caches, so many misses at once
+ * (e.g. the first query on an index with lots of segments) are queued. Subclasses that
+ * need more context to build a structure (like {@link SpanCache}) may build it
+ * themselves and {@link #put(LeafReader, Object, Object)} it instead.
+ *
+ * The cache evicts least recently used entries when it grows beyond its maximum size.
+ * Entries for a segment are removed when it is closed.
+ *
+ * @param <K> what identifies a structure within a segment (e.g. a term or field)
+ * @param <V> the structure
+ */
+public abstract class SegmentIndexCache<K, V> {
+
+    private static final Logger logger = LogManager.getLogger(SegmentIndexCache.class);
+
+    /** Don't build a single structure larger than this fraction of the whole cache. */
+    private static final int MAX_ENTRY_FRACTION = 4;
+
+    /** Number of threads in the shared pool that builds the structures by default */
+    private static final int BUILDER_THREADS = 2;
+
+    private static final AtomicInteger builderThreadCounter = new AtomicInteger(1);
+
+    /** Builds the structures for all caches, unless they're given another executor */
+    private static final ExecutorService sharedExecutor = createSharedExecutor();
+
+    private static ExecutorService createSharedExecutor() {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(BUILDER_THREADS, BUILDER_THREADS, 60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+                    Thread thread = new Thread(runnable, "SegmentIndexBuilder-" + builderThreadCounter.getAndIncrement());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        executor.allowCoreThreadTimeOut(true); // don't keep idle threads around
+        return executor;
+    }
+
+    /** Cache key: structure key and segment. */
+    private static final class Key<K> {
+        private final K key;
+
+        private final Object coreCacheKey;
+
+        Key(K key, Object coreCacheKey) {
+            this.key = key;
+            this.coreCacheKey = coreCacheKey;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o)
+                return true;
+            if (o == null || getClass() != o.getClass())
+                return false;
+            Key<?> other = (Key<?>) o;
+            return coreCacheKey == other.coreCacheKey && key.equals(other.key);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(key, System.identityHashCode(coreCacheKey));
+        }
+    }
+
+    /** Name of this cache (for logging) */
+    private final String name;
+
+    /** Maximum total size of the structures (bytes); 0 disables the cache */
+    private volatile long maxSizeBytes;
+
+    /** Builds the structures */
+    private volatile Executor executor;
+
+    /** Structures (or null if too large to build), in least recently used order */
+    private final LinkedHashMap<Key<K>, V> cache = new LinkedHashMap<>(16, 0.75f, true);
+
+    /** Structures being built right now */
+    private final Set<Key<K>> building = new HashSet<>();
+
+    /** Segments we've registered a listener for, so we can evict their entries when they're closed */
+    private final Set<Object> registeredSegments = new HashSet<>();
+
+    /** Current total size of the structures (bytes) */
+    private long sizeBytes = 0;
+
+    /**
+     * Create the cache.
+     *
+     * @param name name of this cache (for logging)
+     * @param maxSizeBytes maximum total size of the structures (bytes); 0 disables the cache
+     */
+    protected SegmentIndexCache(String name, long maxSizeBytes) {
+        this.name = name;
+        this.maxSizeBytes = maxSizeBytes;
+        executor = sharedExecutor;
+    }
+
+    /**
+     * Build a structure.
+     *
+     * @param reader segment reader
+     * @param key what to build
+     * @param maxSizeBytes maximum size of the structure
+     * @return the structure, or null if it would be larger than maxSizeBytes (we won't try
+     *         to build it again)
+     * @throws IOException on error (we'll try again the next time it's requested)
+     */
+    abstract V build(LeafReader reader, K key, long maxSizeBytes) throws IOException;
+
+    /**
+     * Get the size of a structure.
+     *
+     * @param value the structure
+     * @return its approximate size in memory (bytes)
+     */
+    abstract long sizeBytes(V value);
+
+    public boolean isEnabled() {
+        return maxSizeBytes > 0;
+    }
+
+    public long getMaxSizeBytes() {
+        return maxSizeBytes;
+    }
+
+    /**
+     * Set the maximum size of the cache.
+     *
+     * @param maxSizeBytes maximum total size of the structures (bytes); 0 disables the cache
+     */
+    public synchronized void setMaxSizeBytes(long maxSizeBytes) {
+        this.maxSizeBytes = maxSizeBytes;
+        evict();
+    }
+
+    /**
+     * Set what to build the structures on.
+     *
+     * By default, structures are built on a small pool of (daemon) threads shared by
+     * all caches. Tests may build them synchronously using Runnable::run.
+     *
+     * @param executor executor to build the structures on
+     */
+    public void setExecutor(Executor executor) {
+        this.executor = executor;
+    }
+
+    public synchronized long sizeBytes() {
+        return sizeBytes;
+    }
+
+    /**
+     * Get the maximum size of a single structure.
+     *
+     * @return maximum size (bytes)
+     */
+    long maxEntrySizeBytes() {
+        return maxSizeBytes / MAX_ENTRY_FRACTION;
+    }
+
+    public synchronized void clear() {
+        cache.clear();
+        sizeBytes = 0;
+    }
+
+    /**
+     * Get a structure for a segment, if it's available.
+     *
+     * If it isn't, we start building it (unless it's being built already, or would be
+     * too large).
+     *
+     * @param reader segment reader
+     * @param key what structure to get
+     * @return the structure, or null if not available (yet)
+     */
+    V get(LeafReader reader, K key) {
+        if (!isEnabled())
+            return null;
+        Key<K> cacheKey = new Key<>(key, reader.getCoreCacheKey());
+        synchronized (this) {
+            if (cache.containsKey(cacheKey))
+                return cache.get(cacheKey); // (null if too large)
+            if (!building.add(cacheKey))
+                return null; // already being built
+            if (registeredSegments.add(cacheKey.coreCacheKey))
+                reader.addCoreClosedListener(this::segmentClosed);
+        }
+        executor.execute(() -> build(reader, cacheKey));
+        synchronized (this) {
+            return cache.get(cacheKey); // (available right away if built synchronously)
+        }
+    }
+
+    /**
+     * Get a structure for a segment if it's in the cache, without building it.
+     *
+     * @param reader segment reader
+     * @param key what structure to get
+     * @param defaultValue what to return if it's not in the cache
+     * @return the structure, null if it was too large to build, or defaultValue if not in the cache
+     */
+    synchronized V getOrDefault(LeafReader reader, K key, V defaultValue) {
+        Key<K> cacheKey = new Key<>(key, reader.getCoreCacheKey());
+        if (cache.containsKey(cacheKey))
+            return cache.get(cacheKey);
+        return defaultValue;
+    }
+
+    /**
+     * Add a structure we've built ourselves to the cache.
+     *
+     * @param reader segment reader (must be open)
+     * @param key what structure this is
+     * @param value the structure, or null if too large to build (we won't try again)
+     */
+    synchronized void put(LeafReader reader, K key, V value) {
+        if (!isEnabled())
+            return;
+        Key<K> cacheKey = new Key<>(key, reader.getCoreCacheKey());
+        if (registeredSegments.add(cacheKey.coreCacheKey))
+            reader.addCoreClosedListener(this::segmentClosed);
+        add(cacheKey, value);
+    }
+
+    private void build(LeafReader reader, Key<K> cacheKey) {
+        V value;
+        try {
+            value = build(reader, cacheKey.key, maxEntrySizeBytes());
+        } catch (IOException | RuntimeException e) {
+            // Don't remember the failure, so we'll try again next time
+            boolean segmentClosed;
+            synchronized (this) {
+                building.remove(cacheKey);
+                segmentClosed = !registeredSegments.contains(cacheKey.coreCacheKey);
+            }
+            if (segmentClosed)
+                logger.debug(name + ": segment closed while building for " + cacheKey.key);
+            else
+                logger.warn(name + ": could not build for " + cacheKey.key, e);
+            return;
+        }
+        synchronized (this) {
+            building.remove(cacheKey);
+            if (!isEnabled() || !registeredSegments.contains(cacheKey.coreCacheKey))
+                return; // disabled or segment closed in the meantime
+            add(cacheKey, value);
+        }
+    }
+
+    /** Add an entry (null means: too large, don't try again) and evict if necessary. */
+    private synchronized void add(Key<K> cacheKey, V value) {
+        V prev = cache.put(cacheKey, value);
+        if (prev != null)
+            sizeBytes -= sizeBytes(prev);
+        if (value != null)
+            sizeBytes += sizeBytes(value);
+        evict();
+    }
+
+    /** Evict least recently used entries until we're within our maximum size. */
+    private synchronized void evict() {
+        Iterator<V> it = cache.values().iterator();
+        while (sizeBytes > maxSizeBytes && it.hasNext()) {
+            V value = it.next();
+            if (value != null)
+                sizeBytes -= sizeBytes(value);
+            it.remove();
+        }
+    }
+
+    /** A segment was closed; remove its entries. */
+    private synchronized void segmentClosed(Object coreCacheKey) {
+        Iterator<Map.Entry<Key<K>, V>> it = cache.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Key<K>, V> entry = it.next();
+            if (entry.getKey().coreCacheKey == coreCacheKey) {
+                if (entry.getValue() != null)
+                    sizeBytes -= sizeBytes(entry.getValue());
+                it.remove();
+            }
+        }
+        registeredSegments.remove(coreCacheKey);
+    }
+
+    @Override
+    public synchronized String toString() {
+        return getClass().getSimpleName() + "(entries=" + cache.size() + ", size=" + sizeBytes + "/" + maxSizeBytes + ")";
+    }
+}
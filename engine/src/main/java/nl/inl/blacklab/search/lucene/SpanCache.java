@@ -0,0 +1,252 @@
+package nl.inl.blacklab.search.lucene;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TermContext;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.spans.SpanWeight;
+import org.eclipse.collections.impl.list.mutable.primitive.IntArrayList;
+
+import nl.inl.blacklab.search.BlackLabIndex;
+
+/**
+ * Cache of materialized spans for (expensive) subqueries, per index segment.
+ *
+ * Users tend to repeat the same building blocks (e.g. {@code <s/>} or
+ * {@code [pos="NOU.*"]}) inside many different queries. Clauses of
+ * {@link SpanQueryAndNot} and {@link SpanQueryPositionFilter} that are
+ * expensive enough are looked up here by (rewritten) query and segment; if
+ * found, we replay the stored (doc, start, end) arrays instead of evaluating the
+ * clause again.
+ *
+ * Like Lucene's LRUQueryCache does for document sets. Disabled by default; the
+ * cache is bounded by the configured size and evicts least recently used entries.
+ * Unlike the other {@link SegmentIndexCache}s, the spans are materialized by the
+ * searching thread, as they need the clause's weight.
+ */
+public class SpanCache extends SegmentIndexCache<BLSpanQuery, SpanCache.CachedSpans> {
+
+    /** Default minimum estimated cost (see {@link BLSpanQuery#reverseMatchingCost(org.apache.lucene.index.IndexReader)}) to cache a clause. */
+    public static final long DEFAULT_MIN_COST = 100_000;
+
+    /** Approximate overhead per cache entry (bytes) */
+    private static final long ENTRY_OVERHEAD = 128;
+
+    /** The materialized spans for a query in one segment. */
+    static final class CachedSpans {
+
+        /** Marks a clause we shouldn't cache (too many hits, or captures groups) */
+        static final CachedSpans DONT_CACHE = new CachedSpans(new int[0], new int[] { 0 }, new int[0], new int[0]);
+
+        /** Documents with hits, in increasing order */
+        final int[] docs;
+
+        /** Offset in starts/ends for each document in docs (plus one extra at the end) */
+        final int[] docOffsets;
+
+        final int[] starts;
+
+        final int[] ends;
+
+        CachedSpans(int[] docs, int[] docOffsets, int[] starts, int[] ends) {
+            this.docs = docs;
+            this.docOffsets = docOffsets;
+            this.starts = starts;
+            this.ends = ends;
+        }
+
+        long sizeBytes() {
+            return ENTRY_OVERHEAD + (long) Integer.BYTES * (docs.length + docOffsets.length + starts.length + ends.length);
+        }
+    }
+
+    /** Minimum estimated cost of a clause to cache it */
+    private volatile long minCost = DEFAULT_MIN_COST;
+
+    private long hits = 0;
+
+    private long misses = 0;
+
+    /**
+     * Create a (disabled) span cache.
+     */
+    public SpanCache() {
+        this(0);
+    }
+
+    /**
+     * Create a span cache.
+     *
+     * @param maxSizeBytes maximum total size of the cached spans (bytes); 0 disables the cache
+     */
+    public SpanCache(long maxSizeBytes) {
+        super("SpanCache", maxSizeBytes);
+    }
+
+    /**
+     * Not used: we materialize spans on the searching thread, see
+     * {@link #getSpans(BLSpanQuery, BLSpanWeight, LeafReaderContext, SpanWeight.Postings)}.
+     */
+    @Override
+    CachedSpans build(LeafReader reader, BLSpanQuery key, long maxSizeBytes) {
+        throw new UnsupportedOperationException("SpanCache materializes spans when they're needed");
+    }
+
+    @Override
+    long sizeBytes(CachedSpans value) {
+        return value.sizeBytes();
+    }
+
+    public long getMinCost() {
+        return minCost;
+    }
+
+    public void setMinCost(long minCost) {
+        this.minCost = minCost;
+    }
+
+    public synchronized long hits() {
+        return hits;
+    }
+
+    public synchronized long misses() {
+        return misses;
+    }
+
+    /**
+     * Create a weight for a clause, reusing cached spans for it if the clause is
+     * expensive enough and the cache is enabled for its index.
+     *
+     * @param clause the (rewritten) clause
+     * @param searcher searcher to use
+     * @param needsScores whether we need scores
+     * @return the weight
+     * @throws IOException on error
+     */
+    static BLSpanWeight createWeight(BLSpanQuery clause, IndexSearcher searcher, boolean needsScores) throws IOException {
+        BLSpanWeight weight = ProfilingSearcher.createWeight(clause, searcher, needsScores);
+        BlackLabIndex index = clause.queryInfo == null ? null : clause.queryInfo.index();
+        SpanCache spanCache = index == null ? null : index.spanCache();
+        if (needsScores || spanCache == null || !spanCache.isEnabled()
+                || clause.reverseMatchingCost(searcher.getIndexReader()) < spanCache.getMinCost())
+            return weight;
+        return spanCache.new SpanWeightCached(clause, weight, searcher);
+    }
+
+    /**
+     * Get the cached spans for a clause in a segment, materializing them if necessary.
+     *
+     * @param clause the clause
+     * @param weight weight for the clause
+     * @param context segment
+     * @param requiredPostings postings we need
+     * @return the spans (cached or not)
+     */
+    private BLSpans getSpans(BLSpanQuery clause, BLSpanWeight weight, LeafReaderContext context,
+            SpanWeight.Postings requiredPostings) throws IOException {
+        LeafReader reader = context.reader();
+        CachedSpans cached = getOrDefault(reader, clause, null);
+        synchronized (this) {
+            if (cached != null && cached != CachedSpans.DONT_CACHE)
+                hits++;
+            else if (cached == null)
+                misses++;
+        }
+        if (cached == CachedSpans.DONT_CACHE)
+            return weight.getSpans(context, requiredPostings);
+        if (cached != null)
+            return cached.docs.length == 0 ? null : new SpansCached(cached, clause.hitsStartPointSorted());
+
+        BLSpans spans = weight.getSpans(context, requiredPostings);
+        if (spans == null) {
+            put(reader, clause, new CachedSpans(new int[0], new int[] { 0 }, new int[0], new int[0]));
+            return null;
+        }
+
+        // Spans that capture groups can't be replayed from the cache
+        HitQueryContext captureCheck = new HitQueryContext(spans);
+        spans.setHitQueryContext(captureCheck);
+        if (captureCheck.numberOfCapturedGroups() > 0) {
+            put(reader, clause, CachedSpans.DONT_CACHE);
+            return spans;
+        }
+
+        cached = materialize(spans, maxEntrySizeBytes());
+        if (cached == null) {
+            // Too large to cache; we've used up the spans, so get them again
+            put(reader, clause, CachedSpans.DONT_CACHE);
+            return weight.getSpans(context, requiredPostings);
+        }
+        put(reader, clause, cached);
+        return cached.docs.length == 0 ? null : new SpansCached(cached, clause.hitsStartPointSorted());
+    }
+
+    /**
+     * Read all spans into arrays.
+     *
+     * @param spans spans to read
+     * @param maxBytes maximum size
+     * @return materialized spans, or null if they would be larger than maxBytes
+     */
+    private static CachedSpans materialize(BLSpans spans, long maxBytes) throws IOException {
+        long maxHits = maxBytes / (2 * Integer.BYTES);
+        IntArrayList docs = new IntArrayList();
+        IntArrayList docOffsets = new IntArrayList();
+        IntArrayList starts = new IntArrayList();
+        IntArrayList ends = new IntArrayList();
+        while (spans.nextDoc() != BLSpans.NO_MORE_DOCS) {
+            int numberOfHitsBefore = starts.size();
+            while (spans.nextStartPosition() != BLSpans.NO_MORE_POSITIONS) {
+                starts.add(spans.startPosition());
+                ends.add(spans.endPosition());
+                if (starts.size() + docs.size() > maxHits)
+                    return null;
+            }
+            if (starts.size() > numberOfHitsBefore) {
+                docs.add(spans.docID());
+                docOffsets.add(numberOfHitsBefore);
+            }
+        }
+        docOffsets.add(starts.size());
+        return new CachedSpans(docs.toArray(), docOffsets.toArray(), starts.toArray(), ends.toArray());
+    }
+
+    /** Weight that gets its spans from the cache if possible. */
+    class SpanWeightCached extends BLSpanWeight {
+
+        private final BLSpanQuery clause;
+
+        private final BLSpanWeight weight;
+
+        SpanWeightCached(BLSpanQuery clause, BLSpanWeight weight, IndexSearcher searcher) throws IOException {
+            super(clause, searcher, null);
+            this.clause = clause;
+            this.weight = weight;
+        }
+
+        @Override
+        public void extractTerms(Set<Term> terms) {
+            weight.extractTerms(terms);
+        }
+
+        @Override
+        public void extractTermContexts(Map<Term, TermContext> contexts) {
+            weight.extractTermContexts(contexts);
+        }
+
+        @Override
+        public BLSpans getSpans(LeafReaderContext context, Postings requiredPostings) throws IOException {
+            return SpanCache.this.getSpans(clause, weight, context, requiredPostings);
+        }
+    }
+
+    @Override
+    public synchronized String toString() {
+        return super.toString() + "(hits=" + hits + ", misses=" + misses + ")";
+    }
+}
@@ -18,6 +18,8 @@ package nl.inl.blacklab.search.lucene;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -245,9 +247,22 @@ public class SpanQueryAndNot extends BLSpanQuery {
         if (!exclude.isEmpty())
             throw new BlackLabRuntimeException("Query should've been rewritten! (exclude clauses left)");
 
+        // Evaluate the cheapest (least frequent) clauses first, so they can drive
+        // skipping through the more expensive ones. (Not if any clause captures groups:
+        // the order of the clauses determines the order of the captured groups)
+        List<BLSpanQuery> clausesByCost = new ArrayList<>(include);
+        if (!capturesGroups()) {
+            IndexReader reader = searcher.getIndexReader();
+            Map<BLSpanQuery, Long> costs = new IdentityHashMap<>();
+            for (BLSpanQuery clause : clausesByCost) {
+                costs.put(clause, clause.reverseMatchingCost(reader));
+            }
+            clausesByCost.sort(Comparator.comparingLong(costs::get));
+        }
+
         List<BLSpanWeight> weights = new ArrayList<>();
-        for (BLSpanQuery clause : include) {
-            weights.add(clause.createWeight(searcher, needsScores));
+        for (BLSpanQuery clause : clausesByCost) {
+            weights.add(SpanCache.createWeight(clause, searcher, needsScores));
         }
         Map<Term, TermContext> contexts = needsScores ? getTermContexts(weights.toArray(new SpanWeight[0])) : null;
         return new SpanWeightAnd(weights, searcher, contexts);
@@ -456,6 +471,32 @@ public class SpanQueryAndNot extends BLSpanQuery {
         return cost * 2 / 3; // we expect to be able to short-circuit AND in a significant number of cases
     }
 
+    @Override
+    public boolean capturesGroups() {
+        for (BLSpanQuery cl: include) {
+            if (cl.capturesGroups())
+                return true;
+        }
+        for (BLSpanQuery cl: exclude) {
+            if (cl.capturesGroups())
+                return true;
+        }
+        return false;
+    }
+
+    @Override
+    public boolean usesForwardIndexMatching() {
+        for (BLSpanQuery cl: include) {
+            if (cl.usesForwardIndexMatching())
+                return true;
+        }
+        for (BLSpanQuery cl: exclude) {
+            if (cl.usesForwardIndexMatching())
+                return true;
+        }
+        return false;
+    }
+
     @Override
     public void setQueryInfo(QueryInfo queryInfo) {
         super.setQueryInfo(queryInfo);
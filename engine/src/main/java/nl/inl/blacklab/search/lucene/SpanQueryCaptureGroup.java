@@ -80,9 +80,14 @@ public class SpanQueryCaptureGroup extends BLSpanQueryAbstract {
         return new SpanQueryCaptureGroup(clauses.get(0).noEmpty(), name, leftAdjust, rightAdjust);
     }
 
+    @Override
+    public boolean capturesGroups() {
+        return true;
+    }
+
     @Override
     public BLSpanWeight createWeight(IndexSearcher searcher, boolean needsScores) throws IOException {
-        BLSpanWeight weight = clauses.get(0).createWeight(searcher, needsScores);
+        BLSpanWeight weight = ProfilingSearcher.createWeight(clauses.get(0), searcher, needsScores);
         return new SpanWeightCaptureGroup(weight, searcher, needsScores ? getTermContexts(weight) : null);
     }
 
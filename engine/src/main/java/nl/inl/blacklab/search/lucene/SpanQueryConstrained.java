@@ -50,7 +50,7 @@ public class SpanQueryConstrained extends BLSpanQueryAbstract {
 
     @Override
     public BLSpanWeight createWeight(IndexSearcher searcher, boolean needsScores) throws IOException {
-        BLSpanWeight prodWeight = clauses.get(0).createWeight(searcher, needsScores);
+        BLSpanWeight prodWeight = ProfilingSearcher.createWeight(clauses.get(0), searcher, needsScores);
         Map<Term, TermContext> contexts = needsScores ? getTermContexts(prodWeight) : null;
         constraint.lookupAnnotationIndices(fiAccessor);
         return new SpanWeightConstrained(prodWeight, constraint, searcher, contexts);
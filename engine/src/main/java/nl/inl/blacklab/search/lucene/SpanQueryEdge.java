@@ -55,7 +55,7 @@ public class SpanQueryEdge extends BLSpanQueryAbstract {
 
     @Override
     public BLSpanWeight createWeight(IndexSearcher searcher, boolean needsScores) throws IOException {
-        BLSpanWeight weight = clauses.get(0).createWeight(searcher, needsScores);
+        BLSpanWeight weight = ProfilingSearcher.createWeight(clauses.get(0), searcher, needsScores);
         return new SpanWeightEdge(weight, searcher, needsScores ? getTermContexts(weight) : null);
     }
 
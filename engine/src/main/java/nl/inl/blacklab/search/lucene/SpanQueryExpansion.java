@@ -113,7 +113,7 @@ public class SpanQueryExpansion extends BLSpanQueryAbstract {
 
     @Override
     public BLSpanWeight createWeight(IndexSearcher searcher, boolean needsScores) throws IOException {
-        BLSpanWeight weight = clauses.get(0).createWeight(searcher, needsScores);
+        BLSpanWeight weight = ProfilingSearcher.createWeight(clauses.get(0), searcher, needsScores);
         return new SpanWeightExpansion(weight, searcher, needsScores ? getTermContexts(weight) : null);
     }
 
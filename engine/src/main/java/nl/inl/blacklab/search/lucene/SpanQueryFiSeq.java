@@ -96,7 +96,7 @@ public class SpanQueryFiSeq extends BLSpanQueryAbstract {
         nfa.finish();
         nfa.lookupAnnotationNumbers(fiAccessor, new IdentityHashMap<NfaState, Boolean>());
 
-        BLSpanWeight anchorWeight = clauses.get(0).createWeight(searcher, needsScores);
+        BLSpanWeight anchorWeight = ProfilingSearcher.createWeight(clauses.get(0), searcher, needsScores);
         Map<Term, TermContext> contexts = needsScores ? getTermContexts(anchorWeight) : null;
         return new SpanWeightFiSeq(anchorWeight, searcher, contexts, !hitsStartPointSorted());
     }
@@ -269,6 +269,11 @@ public class SpanQueryFiSeq extends BLSpanQueryAbstract {
         return result;
     }
 
+    @Override
+    public boolean usesForwardIndexMatching() {
+        return true;
+    }
+
     @Override
     public boolean canMakeNfa() {
         return clauses.get(0).canMakeNfa();
@@ -113,7 +113,7 @@ public class SpanQueryFiltered extends BLSpanQueryAbstract {
 
     @Override
     public BLSpanWeight createWeight(IndexSearcher searcher, boolean needsScores) throws IOException {
-        BLSpanWeight weight = clauses.get(0).createWeight(searcher, needsScores);
+        BLSpanWeight weight = ProfilingSearcher.createWeight(clauses.get(0), searcher, needsScores);
         Query rewrite = filter.rewrite(searcher.getIndexReader());
         if (rewrite instanceof MultiTermQuery) {
             // Wrap it so it is rewritten to a BooleanQuery and we avoid the
@@ -0,0 +1,276 @@
+package nl.inl.blacklab.search.lucene;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TermContext;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.BytesRefBuilder;
+import org.apache.lucene.util.automaton.CompiledAutomaton;
+import org.apache.lucene.util.automaton.Operations;
+
+import nl.inl.blacklab.search.fimatch.ForwardIndexAccessor;
+import nl.inl.blacklab.search.fimatch.Nfa;
+import nl.inl.blacklab.search.results.QueryInfo;
+
+/**
+ * Matches all terms matching a wildcard, prefix or regex pattern, without
+ * expanding it to a disjunction of terms.
+ *
+ * {@link BLSpanMultiTermQueryWrapper} rewrites to this if the pattern matches too
+ * many terms to efficiently use a {@link BLSpanOrQuery}. The matching terms are
+ * enumerated per segment using the pattern's automaton, and their postings are
+ * merged into a single stream (see {@link SpansMultiTerm}).
+ */
+public class SpanQueryMultiTerm extends BLSpanQuery {
+
+    /** Called for each matching term. */
+    @FunctionalInterface
+    interface TermVisitor {
+        /**
+         * Visit a matching term.
+         *
+         * @param termsEnum terms enum, positioned at the matching term
+         * @return true to continue, false to stop
+         * @throws IOException on error
+         */
+        boolean visit(TermsEnum termsEnum) throws IOException;
+    }
+
+    /**
+     * The terms matching a pattern in a field.
+     *
+     * Can find matching terms using the (Lucene) terms dictionary, or, for patterns
+     * with a fixed suffix but no fixed prefix, using a {@link ReverseTermIndex}.
+     */
+    static class MatchingTerms {
+
+        private final String luceneField;
+
+        private final CompiledAutomaton automaton;
+
+        /** Reverse term indexes to use, or null if we don't use them */
+        private final ReverseTermIndexCache reverseTermIndexes;
+
+        /** If not null, use a reverse term index to find candidates ending in this suffix. */
+        private final BytesRef suffixForReverseTermIndex;
+
+        MatchingTerms(String luceneField, CompiledAutomaton automaton, ReverseTermIndexCache reverseTermIndexes) {
+            this.luceneField = luceneField;
+            this.automaton = automaton;
+            this.reverseTermIndexes = reverseTermIndexes == null || !reverseTermIndexes.isEnabled() ? null : reverseTermIndexes;
+            boolean leadingWildcard = automaton.type == CompiledAutomaton.AUTOMATON_TYPE.NORMAL
+                    && automaton.commonSuffixRef != null && automaton.commonSuffixRef.length > 0
+                    && Operations.getCommonPrefixBytesRef(automaton.automaton).length == 0;
+            suffixForReverseTermIndex = this.reverseTermIndexes != null && leadingWildcard ? automaton.commonSuffixRef : null;
+        }
+
+        String luceneField() {
+            return luceneField;
+        }
+
+        boolean usesReverseTermIndex() {
+            return reverseTermIndexes != null;
+        }
+
+        /**
+         * Visit each matching term in a segment.
+         *
+         * @param reader segment reader
+         * @param visitor what to do with each matching term
+         * @throws IOException on error
+         */
+        void forEach(LeafReader reader, TermVisitor visitor) throws IOException {
+            Terms terms = reader.terms(luceneField);
+            if (terms == null)
+                return;
+            ReverseTermIndex reverseTermIndex = suffixForReverseTermIndex == null ? null
+                    : reverseTermIndexes.get(reader, luceneField); // (null if not built yet)
+            if (reverseTermIndex != null) {
+                // Find the terms ending in the suffix, and check them against the automaton
+                TermsEnum termsEnum = terms.iterator();
+                int[] range = reverseTermIndex.rangeWithSuffix(suffixForReverseTermIndex);
+                BytesRefBuilder term = new BytesRefBuilder();
+                for (int i = range[0]; i < range[1]; i++) {
+                    reverseTermIndex.getTerm(i, term);
+                    if (automaton.runAutomaton.run(term.bytes(), 0, term.length()) && termsEnum.seekExact(term.get())) {
+                        if (!visitor.visit(termsEnum))
+                            return;
+                    }
+                }
+            } else {
+                TermsEnum termsEnum = automaton.getTermsEnum(terms);
+                while (termsEnum.next() != null) {
+                    if (!visitor.visit(termsEnum))
+                        return;
+                }
+            }
+        }
+
+        /**
+         * Count the matching terms in all segments (up to a maximum).
+         *
+         * Terms occurring in several segments are counted once.
+         *
+         * @param reader index reader
+         * @param max stop counting after this many terms
+         * @return number of matching terms, or max + 1 if there are more than max
+         * @throws IOException on error
+         */
+        long count(IndexReader reader, long max) throws IOException {
+            Set<BytesRef> distinct = new HashSet<>();
+            for (LeafReaderContext context: reader.leaves()) {
+                forEach(context.reader(), termsEnum -> {
+                    distinct.add(BytesRef.deepCopyOf(termsEnum.term()));
+                    return distinct.size() <= max;
+                });
+                if (distinct.size() > max)
+                    break;
+            }
+            return distinct.size();
+        }
+    }
+
+    /** The pattern query we were rewritten from (used for NFA matching and cost estimates) */
+    private final BLSpanMultiTermQueryWrapper<?> pattern;
+
+    private final MatchingTerms matchingTerms;
+
+    SpanQueryMultiTerm(QueryInfo queryInfo, BLSpanMultiTermQueryWrapper<?> pattern, MatchingTerms matchingTerms) {
+        super(queryInfo);
+        this.pattern = pattern;
+        this.matchingTerms = matchingTerms;
+    }
+
+    @Override
+    public BLSpanQuery rewrite(IndexReader reader) {
+        return this;
+    }
+
+    @Override
+    public BLSpanWeight createWeight(IndexSearcher searcher, boolean needsScores) throws IOException {
+        return new SpanWeightMultiTerm(searcher);
+    }
+
+    class SpanWeightMultiTerm extends BLSpanWeight {
+
+        public SpanWeightMultiTerm(IndexSearcher searcher) throws IOException {
+            super(SpanQueryMultiTerm.this, searcher, null);
+        }
+
+        @Override
+        public void extractTerms(Set<Term> terms) {
+            // (we don't enumerate potentially huge numbers of terms here)
+        }
+
+        @Override
+        public void extractTermContexts(Map<Term, TermContext> contexts) {
+            // (we don't enumerate potentially huge numbers of terms here)
+        }
+
+        @Override
+        public BLSpans getSpans(final LeafReaderContext context, Postings requiredPostings) throws IOException {
+            return SpansMultiTerm.create(context.reader(), matchingTerms);
+        }
+    }
+
+    @Override
+    public String toString(String field) {
+        return "MULTITERM(" + pattern.query.getWrappedQuery() + ")";
+    }
+
+    @Override
+    public int hashCode() {
+        return pattern.hashCode() * 31 + (matchingTerms.usesReverseTermIndex() ? 1 : 0);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj)
+            return true;
+        if (obj == null)
+            return false;
+        if (getClass() != obj.getClass())
+            return false;
+        SpanQueryMultiTerm other = (SpanQueryMultiTerm) obj;
+        return pattern.equals(other.pattern) && matchingTerms.usesReverseTermIndex() == other.matchingTerms.usesReverseTermIndex();
+    }
+
+    @Override
+    public boolean hitsAllSameLength() {
+        return true;
+    }
+
+    @Override
+    public int hitsLengthMin() {
+        return 1;
+    }
+
+    @Override
+    public int hitsLengthMax() {
+        return 1;
+    }
+
+    @Override
+    public boolean hitsEndPointSorted() {
+        return true;
+    }
+
+    @Override
+    public boolean hitsStartPointSorted() {
+        return true;
+    }
+
+    @Override
+    public boolean hitsHaveUniqueStart() {
+        // Several matching terms may occur at the same position
+        return false;
+    }
+
+    @Override
+    public boolean hitsHaveUniqueEnd() {
+        // Several matching terms may occur at the same position
+        return false;
+    }
+
+    @Override
+    public boolean hitsAreUnique() {
+        // Several matching terms may occur at the same position
+        return false;
+    }
+
+    @Override
+    public Nfa getNfa(ForwardIndexAccessor fiAccessor, int direction) {
+        return pattern.getNfa(fiAccessor, direction);
+    }
+
+    @Override
+    public boolean canMakeNfa() {
+        return pattern.canMakeNfa();
+    }
+
+    @Override
+    public long reverseMatchingCost(IndexReader reader) {
+        return pattern.reverseMatchingCost(reader);
+    }
+
+    @Override
+    public int forwardMatchingCost() {
+        return pattern.forwardMatchingCost();
+    }
+
+    @Override
+    public String getRealField() {
+        return pattern.getRealField();
+    }
+
+}
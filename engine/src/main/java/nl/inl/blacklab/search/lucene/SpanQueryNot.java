@@ -86,7 +86,7 @@ public class SpanQueryNot extends BLSpanQueryAbstract {
     @Override
     public BLSpanWeight createWeight(IndexSearcher searcher, boolean needsScores) throws IOException {
         BLSpanQuery query = clauses.get(0);
-        BLSpanWeight weight = query == null ? null : query.createWeight(searcher, needsScores);
+        BLSpanWeight weight = query == null ? null : ProfilingSearcher.createWeight(query, searcher, needsScores);
         return new SpanWeightNot(weight, searcher, needsScores ? getTermContexts(weight) : null);
     }
 
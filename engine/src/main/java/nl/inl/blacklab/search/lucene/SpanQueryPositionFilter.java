@@ -110,8 +110,8 @@ public class SpanQueryPositionFilter extends BLSpanQueryAbstract {
 
     @Override
     public BLSpanWeight createWeight(IndexSearcher searcher, boolean needsScores) throws IOException {
-        BLSpanWeight prodWeight = clauses.get(0).createWeight(searcher, needsScores);
-        BLSpanWeight filterWeight = clauses.get(1).createWeight(searcher, needsScores);
+        BLSpanWeight prodWeight = SpanCache.createWeight(clauses.get(0), searcher, needsScores);
+        BLSpanWeight filterWeight = SpanCache.createWeight(clauses.get(1), searcher, needsScores);
         Map<Term, TermContext> contexts = needsScores ? getTermContexts(prodWeight, filterWeight) : null;
         return new SpanWeightPositionFilter(prodWeight, filterWeight, searcher, contexts);
     }
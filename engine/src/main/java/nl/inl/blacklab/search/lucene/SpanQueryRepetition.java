@@ -124,7 +124,7 @@ public class SpanQueryRepetition extends BLSpanQueryAbstract {
 
     @Override
     public BLSpanWeight createWeight(IndexSearcher searcher, boolean needsScores) throws IOException {
-        BLSpanWeight weight = clauses.get(0).createWeight(searcher, needsScores);
+        BLSpanWeight weight = ProfilingSearcher.createWeight(clauses.get(0), searcher, needsScores);
         return new SpanWeightRepetition(weight, searcher, needsScores ? getTermContexts(weight) : null);
     }
 
@@ -41,6 +41,7 @@ import nl.inl.blacklab.search.fimatch.Nfa;
 import nl.inl.blacklab.search.lucene.SpanQueryExpansion.Direction;
 import nl.inl.blacklab.search.lucene.SpansSequenceWithGap.Gap;
 import nl.inl.blacklab.search.lucene.optimize.ClauseCombiner;
+import nl.inl.blacklab.search.lucene.optimize.ForwardIndexMatchingSettings;
 
 /**
  * Combines spans, keeping only combinations of hits that occur one after the
@@ -290,14 +291,23 @@ public class SpanQuerySequence extends BLSpanQueryAbstract {
         return anyRewritten;
     }
 
+    /**
+     * Get the forward index matching settings for an index.
+     *
+     * @param reader index reader
+     * @return the settings, or null if this index can't do forward index matching
+     */
+    private static ForwardIndexMatchingSettings nfaSettings(IndexReader reader) {
+        BlackLabIndex index = BlackLab.fromIndexReader(reader);
+        if (index instanceof BlackLabIndexImpl && ((BlackLabIndexImpl) index).canDoNfaMatching())
+            return index.forwardIndexMatchingSettings();
+        return null;
+    }
+
     @Override
     public BLSpanQuery optimize(IndexReader reader) throws IOException {
         super.optimize(reader);
-        BlackLabIndex index = BlackLab.fromIndexReader(reader);
-        boolean canDoNfaMatching = false;
-        if (index instanceof BlackLabIndexImpl) {
-            canDoNfaMatching = ((BlackLabIndexImpl)index).canDoNfaMatching();
-        }
+        ForwardIndexMatchingSettings nfaSettings = nfaSettings(reader);
         boolean anyRewritten = false;
 
         // Make a copy, because our methods rewrite things in-place.
@@ -319,7 +329,7 @@ public class SpanQuerySequence extends BLSpanQueryAbstract {
         // By doing it before rewriting, we save the time to expand the regex to all its matching
         // terms, as well
         // as dealing with each of these (sometimes frequent) terms, which can be significant.
-        anyRewritten |= combineAdjacentClauses(cl, reader, getField(), ClauseCombiner.all(canDoNfaMatching));
+        anyRewritten |= combineAdjacentClauses(cl, reader, getField(), ClauseCombiner.all(nfaSettings));
 
         // Optimize each clause, and flatten again if necessary
         anyRewritten |= optimizeClauses(cl, reader);
@@ -336,11 +346,7 @@ public class SpanQuerySequence extends BLSpanQueryAbstract {
 
     @Override
     public BLSpanQuery rewrite(IndexReader reader) throws IOException {
-        BlackLabIndex index = BlackLab.fromIndexReader(reader);
-        boolean canDoNfaMatching = false;
-        if (index instanceof BlackLabIndexImpl) {
-            canDoNfaMatching = ((BlackLabIndexImpl)index).canDoNfaMatching();
-        }
+        ForwardIndexMatchingSettings nfaSettings = nfaSettings(reader);
         boolean anyRewritten = false;
 
         // Make a copy, because our methods rewrite things in-place.
@@ -362,7 +368,7 @@ public class SpanQuerySequence extends BLSpanQueryAbstract {
         // By doing it before rewriting, we save the time to expand the regex to all its matching
         // terms, as well
         // as dealing with each of these (sometimes frequent) terms, which can be significant.
-        anyRewritten |= combineAdjacentClauses(cl, reader, getField(), ClauseCombiner.all(canDoNfaMatching));
+        anyRewritten |= combineAdjacentClauses(cl, reader, getField(), ClauseCombiner.all(nfaSettings));
 
         // Rewrite each clause, and flatten again if necessary
         anyRewritten |= rewriteClauses(cl, reader);
@@ -372,7 +378,7 @@ public class SpanQuerySequence extends BLSpanQueryAbstract {
         // Again, try to combine adjacent clauses into more efficient ones. Rewriting clauses may
         // have
         // generated new opportunities for combining clauses.
-        anyRewritten |= combineAdjacentClauses(cl, reader, getField(), ClauseCombiner.all(canDoNfaMatching));
+        anyRewritten |= combineAdjacentClauses(cl, reader, getField(), ClauseCombiner.all(nfaSettings));
 
         // If any part of the sequence matches the empty sequence, we must
         // rewrite it to several alternatives combined with OR. Do so now.
@@ -535,7 +541,7 @@ public class SpanQuerySequence extends BLSpanQueryAbstract {
     public BLSpanWeight createWeight(IndexSearcher searcher, boolean needsScores) throws IOException {
         List<BLSpanWeight> weights = new ArrayList<>();
         for (BLSpanQuery clause : clauses) {
-            weights.add(clause.createWeight(searcher, needsScores));
+            weights.add(ProfilingSearcher.createWeight(clause, searcher, needsScores));
         }
         Map<Term, TermContext> contexts = needsScores ? getTermContexts(weights.toArray(new SpanWeight[0])) : null;
         return new SpanWeightSequence(weights, searcher, contexts);
@@ -578,6 +584,12 @@ public class SpanQuerySequence extends BLSpanQueryAbstract {
 
             boolean sameLength;
 
+            /** Maximum hit length (MAX_UNLIMITED if unknown) */
+            int maxLength = MAX_UNLIMITED;
+
+            /** If spans is an expansion: maximum hit length of the clause being expanded */
+            int clauseMaxLength = MAX_UNLIMITED;
+
             public CombiPart(BLSpanWeight weight, final LeafReaderContext context, Postings requiredPostings)
                     throws IOException {
                 this.spans = weight.getSpans(context, requiredPostings);
@@ -588,6 +600,8 @@ public class SpanQuerySequence extends BLSpanQueryAbstract {
                     this.startSorted = q.hitsStartPointSorted();
                     this.endSorted = q.hitsEndPointSorted();
                     this.sameLength = q.hitsAllSameLength();
+                    this.maxLength = q.hitsLengthMax();
+                    this.clauseMaxLength = q instanceof SpanQueryExpansion ? ((SpanQueryExpansion) q).getClause().hitsLengthMax() : maxLength;
                 }
             }
 
@@ -635,6 +649,7 @@ public class SpanQuerySequence extends BLSpanQueryAbstract {
                     newPart = new CombiPart(newSpans, left.uniqueStart, right.uniqueEnd, left.startSorted,
                             right.sameLength,
                             left.sameLength && right.sameLength);
+                    newPart.maxLength = newPart.clauseMaxLength = addMaxValues(left.maxLength, right.maxLength);
                     parts.remove(i - 1);
                     parts.set(i - 1, newPart);
                     i--;
@@ -651,42 +666,52 @@ public class SpanQuerySequence extends BLSpanQueryAbstract {
                 if (lsp instanceof SpansExpansionRaw && ((SpansExpansionRaw)lsp).direction() == Direction.RIGHT) {
                     // Left is an expand-to-right. Make a SpansSequenceWithGap.
                     BLSpans newSpans;
+                    int newClauseMaxLength;
                     if (rsp instanceof SpansExpansionRaw && ((SpansExpansionRaw)rsp).direction() == Direction.RIGHT) {
                         // Right is an expansion-to-the-right too. Make the whole resulting clause expansion-to-right
                         //   instead, so we can repeat the sequence-with-gaps trick.
                         SpansExpansionRaw expLeft = (SpansExpansionRaw)lsp;
                         SpansExpansionRaw expRight = (SpansExpansionRaw)rsp;
-                        BLSpans gapped = new SpansSequenceWithGap(expLeft.clause(), expLeft.gap(), expRight.clause());
+                        BLSpans gapped = new SpansSequenceWithGap(expLeft.clause(), left.clauseMaxLength, expLeft.gap(), expRight.clause());
                         newSpans = new SpansExpansionRaw(expRight.lengthGetter(), gapped, Direction.RIGHT, expRight.gap().minSize(), expRight.gap().maxSize());
+                        newClauseMaxLength = addMaxValues(addMaxValues(left.clauseMaxLength, expLeft.gap().maxSize()), right.clauseMaxLength);
                     } else {
                         // Only left is an expansion-to-the-right.
                         SpansExpansionRaw expLeft = (SpansExpansionRaw)lsp;
-                        newSpans = new SpansSequenceWithGap(expLeft.clause(), expLeft.gap(), rsp);
+                        newSpans = new SpansSequenceWithGap(expLeft.clause(), left.clauseMaxLength, expLeft.gap(), rsp);
+                        newClauseMaxLength = addMaxValues(left.maxLength, right.maxLength);
                     }
                     newPart = new CombiPart(newSpans, left.uniqueStart && left.uniqueEnd && right.uniqueStart,
                             left.uniqueEnd && right.uniqueStart && right.uniqueEnd, left.startSorted, right.sameLength,
                             left.sameLength && right.sameLength);
+                    newPart.maxLength = addMaxValues(left.maxLength, right.maxLength);
+                    newPart.clauseMaxLength = newClauseMaxLength;
                     parts.remove(i - 1);
                     parts.set(i - 1, newPart);
                     i--;
                 } else if (rsp instanceof SpansExpansionRaw && ((SpansExpansionRaw)rsp).direction() == Direction.LEFT) {
                     // Right is an expand-to-left (much less common, but can probably occur sometimes)
                     BLSpans newSpans;
+                    int newClauseMaxLength;
                     if (lsp instanceof SpansExpansionRaw && ((SpansExpansionRaw)lsp).direction() == Direction.LEFT) {
                         // Left is an expansion-to-the-left too. Make the whole resulting clause expansion-to-left
                         //   instead, so we can repeat the sequence-with-gaps trick.
                         SpansExpansionRaw expLeft = (SpansExpansionRaw)lsp;
                         SpansExpansionRaw expRight = (SpansExpansionRaw)rsp;
-                        BLSpans gapped = new SpansSequenceWithGap(expLeft.clause(), expRight.gap(), expRight.clause());
+                        BLSpans gapped = new SpansSequenceWithGap(expLeft.clause(), left.clauseMaxLength, expRight.gap(), expRight.clause());
                         newSpans = new SpansExpansionRaw(expLeft.lengthGetter(), gapped, Direction.LEFT, expLeft.gap().minSize(), expLeft.gap().maxSize());
+                        newClauseMaxLength = addMaxValues(addMaxValues(left.clauseMaxLength, expRight.gap().maxSize()), right.clauseMaxLength);
                     } else {
                         // Only right is an expasion-to-the-left
                         SpansExpansionRaw expRight = (SpansExpansionRaw)rsp;
-                        newSpans = new SpansSequenceWithGap(lsp, expRight.gap(), expRight.clause());
+                        newSpans = new SpansSequenceWithGap(lsp, left.maxLength, expRight.gap(), expRight.clause());
+                        newClauseMaxLength = addMaxValues(left.maxLength, right.maxLength);
                     }
                     newPart = new CombiPart(newSpans, left.uniqueStart && left.uniqueEnd && right.uniqueStart,
                             left.uniqueEnd && right.uniqueStart && right.uniqueEnd, left.startSorted, right.sameLength,
                             left.sameLength && right.sameLength);
+                    newPart.maxLength = addMaxValues(left.maxLength, right.maxLength);
+                    newPart.clauseMaxLength = newClauseMaxLength;
                     parts.remove(i - 1);
                     parts.set(i - 1, newPart);
                     i--;
@@ -704,10 +729,11 @@ public class SpanQuerySequence extends BLSpanQueryAbstract {
                 CombiPart newPart = null;
                 if (!right.startSorted)
                     right.spans = PerDocumentSortedSpans.startPoint(right.spans);
-                BLSpans newSpans = new SpansSequenceWithGap(left.spans, Gap.NONE, right.spans);
+                BLSpans newSpans = new SpansSequenceWithGap(left.spans, left.maxLength, Gap.NONE, right.spans);
                 newPart = new CombiPart(newSpans, left.uniqueStart && left.uniqueEnd && right.uniqueStart,
                         left.uniqueEnd && right.uniqueStart && right.uniqueEnd, left.startSorted, right.sameLength,
                         left.sameLength && right.sameLength);
+                newPart.maxLength = newPart.clauseMaxLength = addMaxValues(left.maxLength, right.maxLength);
                 parts.remove(0);
                 parts.set(0, newPart);
             }
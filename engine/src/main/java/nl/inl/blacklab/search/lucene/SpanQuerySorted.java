@@ -58,7 +58,7 @@ class SpanQuerySorted extends BLSpanQuery {
 
     @Override
     public BLSpanWeight createWeight(IndexSearcher searcher, boolean needsScores) throws IOException {
-        BLSpanWeight weight = src.createWeight(searcher, needsScores);
+        BLSpanWeight weight = ProfilingSearcher.createWeight(src, searcher, needsScores);
         return new SpanWeightSorted(weight, searcher, needsScores ? getTermContexts(weight) : null);
     }
 
@@ -187,6 +187,16 @@ class SpanQuerySorted extends BLSpanQuery {
         return src.forwardMatchingCost();
     }
 
+    @Override
+    public boolean capturesGroups() {
+        return src.capturesGroups();
+    }
+
+    @Override
+    public boolean usesForwardIndexMatching() {
+        return src.usesForwardIndexMatching();
+    }
+
     @Override
     public void setQueryInfo(QueryInfo queryInfo) {
         super.setQueryInfo(queryInfo);
@@ -16,6 +16,7 @@
 package nl.inl.blacklab.search.lucene;
 
 import nl.inl.blacklab.exceptions.BlackLabRuntimeException;
+import nl.inl.blacklab.search.BlackLabIndex;
 import nl.inl.blacklab.search.indexmetadata.AnnotatedFieldNameUtil;
 import nl.inl.blacklab.search.results.QueryInfo;
 import org.apache.lucene.index.IndexReader;
@@ -88,7 +89,7 @@ public class SpanQueryTags extends BLSpanQuery {
     public BLSpanWeight createWeight(IndexSearcher searcher, boolean needsScores) throws IOException {
         if (attr != null)
             throw new BlackLabRuntimeException("Query should've been rewritten! (attr != null)");
-        BLSpanWeight weight = clause.createWeight(searcher, needsScores);
+        BLSpanWeight weight = ProfilingSearcher.createWeight(clause, searcher, needsScores);
         return new SpanWeightTags(weight, searcher, needsScores ? getTermContexts(weight) : null);
     }
 
@@ -114,6 +115,13 @@ public class SpanQueryTags extends BLSpanQuery {
 
         @Override
         public BLSpans getSpans(final LeafReaderContext context, Postings requiredPostings) throws IOException {
+            // Use the compact tag span index if we can, so we don't have to decode payloads
+            BlackLabIndex index = queryInfo == null ? null : queryInfo.index();
+            TagSpanIndexCache tagSpanIndexes = index == null ? null : index.tagSpanIndexCache();
+            TagSpanIndex tagSpans = tagSpanIndexes == null ? null : tagSpanIndexes.get(context.reader(), clause.getTerm());
+            if (tagSpans != null)
+                return tagSpans.numberOfDocs() == 0 ? null : new SpansTagSpanIndex(tagSpans);
+
             BLSpans startTags = weight.getSpans(context, requiredPostings);
             if (startTags == null)
                 return null;
@@ -243,6 +251,16 @@ public class SpanQueryTags extends BLSpanQuery {
         return clause.forwardMatchingCost();
     }
 
+    @Override
+    public boolean capturesGroups() {
+        return clause.capturesGroups();
+    }
+
+    @Override
+    public boolean usesForwardIndexMatching() {
+        return clause.usesForwardIndexMatching();
+    }
+
     @Override
     public void setQueryInfo(QueryInfo queryInfo) {
         super.setQueryInfo(queryInfo);
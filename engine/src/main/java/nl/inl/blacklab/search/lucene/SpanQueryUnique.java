@@ -65,7 +65,7 @@ class SpanQueryUnique extends BLSpanQuery {
 
     @Override
     public BLSpanWeight createWeight(IndexSearcher searcher, boolean needsScores) throws IOException {
-        BLSpanWeight weight = src.createWeight(searcher, needsScores);
+        BLSpanWeight weight = ProfilingSearcher.createWeight(src, searcher, needsScores);
         return new SpanWeightUnique(weight, searcher, needsScores ? getTermContexts(weight) : null);
     }
 
@@ -190,6 +190,16 @@ class SpanQueryUnique extends BLSpanQuery {
         return src.forwardMatchingCost();
     }
 
+    @Override
+    public boolean capturesGroups() {
+        return src.capturesGroups();
+    }
+
+    @Override
+    public boolean usesForwardIndexMatching() {
+        return src.usesForwardIndexMatching();
+    }
+
     @Override
     public void setQueryInfo(QueryInfo queryInfo) {
         super.setQueryInfo(queryInfo);
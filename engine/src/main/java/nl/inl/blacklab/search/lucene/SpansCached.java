@@ -0,0 +1,176 @@
+package nl.inl.blacklab.search.lucene;
+
+import org.apache.lucene.search.spans.SpanCollector;
+
+import nl.inl.blacklab.search.Span;
+
+/**
+ * Replays spans that were materialized by {@link SpanCache}.
+ *
+ * Hits are produced in the same order as the original spans, so any sort or
+ * uniqueness guarantees of the original query still hold.
+ */
+class SpansCached extends BLSpans {
+
+    private final SpanCache.CachedSpans cached;
+
+    /** Are the hits sorted by start point? (if so, we can use binary search to advance) */
+    private final boolean startPointSorted;
+
+    /** Index of the current document in cached.docs (-1 if not nexted yet) */
+    private int docIndex = -1;
+
+    /** Current document id */
+    private int doc = -1;
+
+    /** Index of the current hit in cached.starts/ends (-1 if not nexted yet) */
+    private int current = -1;
+
+    /** Index of the first hit in the current document */
+    private int firstHit;
+
+    /** Index after the last hit in the current document */
+    private int endHit;
+
+    public SpansCached(SpanCache.CachedSpans cached, boolean startPointSorted) {
+        this.cached = cached;
+        this.startPointSorted = startPointSorted;
+    }
+
+    @Override
+    protected void passHitQueryContextToClauses(HitQueryContext context) {
+        // NOP
+    }
+
+    @Override
+    public void getCapturedGroups(Span[] capturedGroups) {
+        // NOP (we never cache spans that capture groups)
+    }
+
+    private int goToDocIndex(int index) {
+        docIndex = index;
+        if (docIndex < cached.docs.length) {
+            doc = cached.docs[docIndex];
+            firstHit = cached.docOffsets[docIndex];
+            endHit = cached.docOffsets[docIndex + 1];
+        } else {
+            doc = NO_MORE_DOCS;
+            firstHit = endHit = 0;
+        }
+        current = -1;
+        return doc;
+    }
+
+    @Override
+    public int nextDoc() {
+        if (doc == NO_MORE_DOCS)
+            return NO_MORE_DOCS;
+        return goToDocIndex(docIndex + 1);
+    }
+
+    @Override
+    public int advance(int target) {
+        if (doc == NO_MORE_DOCS)
+            return NO_MORE_DOCS;
+        int lo = docIndex + 1, hi = cached.docs.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (cached.docs[mid] < target)
+                lo = mid + 1;
+            else
+                hi = mid;
+        }
+        return goToDocIndex(lo);
+    }
+
+    @Override
+    public int docID() {
+        return doc;
+    }
+
+    @Override
+    public int nextStartPosition() {
+        if (current < 0)
+            current = firstHit;
+        else if (current < endHit)
+            current++;
+        return startPosition();
+    }
+
+    @Override
+    public int nextStartPositions(int[] starts, int[] ends) {
+        if (starts.length == 0)
+            return 0;
+        int first = current < 0 ? firstHit : Math.min(current + 1, endHit);
+        int n = Math.min(starts.length, endHit - first);
+        System.arraycopy(cached.starts, first, starts, 0, n);
+        System.arraycopy(cached.ends, first, ends, 0, n);
+        current = n == 0 ? endHit : first + n - 1;
+        return n;
+    }
+
+    @Override
+    public int advanceStartPosition(int target) {
+        if (!startPointSorted) {
+            int pos;
+            do {
+                pos = nextStartPosition();
+            } while (pos < target && pos != NO_MORE_POSITIONS);
+            return pos;
+        }
+        if (current >= endHit)
+            return NO_MORE_POSITIONS;
+        // Binary search for the first hit after the current one starting at or after target
+        int lo = current < 0 ? firstHit : current + 1, hi = endHit;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (cached.starts[mid] < target)
+                lo = mid + 1;
+            else
+                hi = mid;
+        }
+        current = lo;
+        return startPosition();
+    }
+
+    @Override
+    public int startPosition() {
+        if (current < 0)
+            return -1;
+        return current >= endHit ? NO_MORE_POSITIONS : cached.starts[current];
+    }
+
+    @Override
+    public int endPosition() {
+        if (current < 0)
+            return -1;
+        return current >= endHit ? NO_MORE_POSITIONS : cached.ends[current];
+    }
+
+    @Override
+    public int width() {
+        return 0;
+    }
+
+    @Override
+    public void collect(SpanCollector collector) {
+        // No postings to collect; the spans were materialized.
+    }
+
+    @Override
+    public float positionsCost() {
+        // Cheap: positions are already known
+        return 1;
+    }
+
+    @Override
+    public long cost() {
+        return cached.docs.length;
+    }
+
+    @Override
+    public String toString() {
+        return "CACHED(" + doc + ")";
+    }
+
+}
@@ -209,7 +209,9 @@ class SpansExpansionRaw extends BLSpans {
         if (expandStepsLeft > 0 && start >= target)
             return nextStartPosition(); // we're already there
 
-        clauseStart = clause.advanceStartPosition(target);
+        // When expanding to the left, hits start at least min positions before the clause hit,
+        // so we can skip clause hits that start before target + min.
+        clauseStart = clause.advanceStartPosition(direction == Direction.LEFT ? target + min : target);
         resetExpand();
         return clauseStart;
     }
@@ -16,10 +16,13 @@
 package nl.inl.blacklab.search.lucene;
 
 import java.io.IOException;
-import java.util.Iterator;
-import java.util.NavigableSet;
+import java.util.Arrays;
 
 import org.apache.lucene.search.spans.SpanCollector;
+import org.apache.lucene.util.ArrayUtil;
+import org.eclipse.collections.api.iterator.MutableIntIterator;
+import org.eclipse.collections.api.set.primitive.MutableIntSet;
+import org.eclipse.collections.impl.set.mutable.primitive.IntHashSet;
 
 import nl.inl.blacklab.search.Span;
 import nl.inl.blacklab.search.fimatch.ForwardIndexAccessor.ForwardIndexAccessorLeafReader;
@@ -65,8 +68,17 @@ class SpansFiSeq extends BLSpans {
     /** Maps from term strings to term indices for each annotation. */
     private ForwardIndexAccessorLeafReader fiAccessor;
 
-    /** Iterator over NFA-matched endpoints */
-    private Iterator<Integer> matchEndPointIt;
+    /** Buffer to collect NFA-matched endpoints in (reused to avoid allocating for every anchor hit) */
+    private final MutableIntSet matchEndPointsFound = new IntHashSet();
+
+    /** NFA-matched endpoints for the current anchor hit, sorted (only the first numberOfMatchEndPoints are valid) */
+    private int[] matchEndPoints = new int[16];
+
+    /** Number of valid entries in matchEndPoints */
+    private int numberOfMatchEndPoints = 0;
+
+    /** How many of the NFA-matched endpoints have we returned? */
+    private int matchEndPointsReturned = 0;
 
     /** Current NFA-matched endpoint */
     private int currentMatchEndPoint = -1;
@@ -140,8 +152,8 @@ class SpansFiSeq extends BLSpans {
         if (anchorStart == NO_MORE_POSITIONS)
             return NO_MORE_POSITIONS;
 
-        if (matchEndPointIt.hasNext()) {
-            currentMatchEndPoint = matchEndPointIt.next();
+        if (matchEndPointsReturned < numberOfMatchEndPoints) {
+            nextMatchEndPoint();
             return startPosition();
         }
 
@@ -222,13 +234,10 @@ class SpansFiSeq extends BLSpans {
             int anchorPos = startOfAnchor ? anchorStart : anchor.endPosition();
             if (direction < 0)
                 anchorPos--;
-            NavigableSet<Integer> setMatchEndpoints = nfa.findMatches(currentFiDoc, anchorPos, direction);
-            if (setMatchEndpoints.size() > 0) {
-                if (direction == 1)
-                    matchEndPointIt = setMatchEndpoints.iterator();
-                else
-                    matchEndPointIt = setMatchEndpoints.descendingSet().iterator();
-                currentMatchEndPoint = matchEndPointIt.next();
+            if (nfa.findMatches(currentFiDoc, anchorPos, direction, matchEndPointsFound)
+                    && !matchEndPointsFound.isEmpty()) {
+                sortMatchEndPoints();
+                nextMatchEndPoint();
                 return startPosition();
             }
 
@@ -241,6 +250,26 @@ class SpansFiSeq extends BLSpans {
         return anchorStart;
     }
 
+    /** Copy the NFA-matched endpoints we found to our array and sort them. */
+    private void sortMatchEndPoints() {
+        numberOfMatchEndPoints = matchEndPointsFound.size();
+        if (matchEndPoints.length < numberOfMatchEndPoints)
+            matchEndPoints = new int[ArrayUtil.oversize(numberOfMatchEndPoints, Integer.BYTES)];
+        int i = 0;
+        MutableIntIterator it = matchEndPointsFound.intIterator();
+        while (it.hasNext())
+            matchEndPoints[i++] = it.next();
+        Arrays.sort(matchEndPoints, 0, numberOfMatchEndPoints);
+        matchEndPointsReturned = 0;
+    }
+
+    /** Go to the next NFA-matched endpoint (in our matching direction). */
+    private void nextMatchEndPoint() {
+        int i = direction == 1 ? matchEndPointsReturned : numberOfMatchEndPoints - 1 - matchEndPointsReturned;
+        currentMatchEndPoint = matchEndPoints[i];
+        matchEndPointsReturned++;
+    }
+
     @Override
     public int advance(int doc) throws IOException {
         alreadyAtFirstMatch = false;
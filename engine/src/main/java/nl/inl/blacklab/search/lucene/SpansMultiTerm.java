@@ -0,0 +1,359 @@
+package nl.inl.blacklab.search.lucene;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.PostingsEnum;
+import org.apache.lucene.search.spans.SpanCollector;
+import org.apache.lucene.util.ArrayUtil;
+import org.eclipse.collections.impl.list.mutable.primitive.IntArrayList;
+import org.eclipse.collections.impl.list.mutable.primitive.LongArrayList;
+import org.eclipse.collections.impl.map.mutable.primitive.IntObjectHashMap;
+
+import nl.inl.blacklab.search.Span;
+
+/**
+ * Single-token hits for all terms matching a wildcard, prefix or regex pattern
+ * in one index segment, merged into one stream.
+ *
+ * Using a BLSpanOrQuery for this means a priority queue with a term spans object
+ * for every matching term, which is slow and uses a lot of memory if there are
+ * many matching terms. Instead, we read the positions of all matching terms up
+ * front into (at most) two merged sources, no matter how many terms match:
+ *
+ * <ul>
+ * <li>frequent terms are merged into a bitset of matching positions per document.
+ * Its size is bounded by the number of tokens in the segment (one bit per token
+ * in documents containing a match);</li>
+ * <li>rare terms are kept in one sorted array of positions (bounded in size). Terms
+ * that don't fit in the array anymore are merged into the bitsets as well.</li>
+ * </ul>
+ */
+class SpansMultiTerm extends BLSpans {
+
+    /**
+     * Terms making up at least 1/FREQUENT_TERM_TOKEN_FRACTION of the tokens in a
+     * segment are considered frequent; their positions are merged into bitsets.
+     */
+    private static final int FREQUENT_TERM_TOKEN_FRACTION = 1024;
+
+    /**
+     * Maximum number of positions of rare terms to keep in the sorted array per segment.
+     *
+     * The buffers grow as needed; while reading, each position takes 8 bytes (so at
+     * most 2MB per segment), afterwards 4 bytes. Terms that don't fit are merged into
+     * the bitsets.
+     */
+    static final int MAX_BUFFERED_POSITIONS = 262_144;
+
+    /**
+     * Find the matching terms in a segment and create spans for them.
+     *
+     * @param reader segment reader
+     * @param terms matching terms in this segment
+     * @return the spans, or null if no terms match in this segment
+     * @throws IOException on error
+     */
+    static SpansMultiTerm create(LeafReader reader, SpanQueryMultiTerm.MatchingTerms terms) throws IOException {
+        return create(reader, terms, MAX_BUFFERED_POSITIONS);
+    }
+
+    /**
+     * Find the matching terms in a segment and create spans for them.
+     *
+     * @param reader segment reader
+     * @param terms matching terms in this segment
+     * @param maxBufferedPositions maximum number of rare term positions to keep in the sorted array
+     * @return the spans, or null if no terms match in this segment
+     * @throws IOException on error
+     */
+    static SpansMultiTerm create(LeafReader reader, SpanQueryMultiTerm.MatchingTerms terms, int maxBufferedPositions)
+            throws IOException {
+        long segmentTokens = reader.getSumTotalTermFreq(terms.luceneField());
+        long frequentTermFreq = Math.max(1, segmentTokens / FREQUENT_TERM_TOKEN_FRACTION);
+        LongArrayList buffered = new LongArrayList();
+        IntObjectHashMap<long[]> bitsPerDoc = new IntObjectHashMap<>();
+        PostingsEnum[] reuse = new PostingsEnum[1];
+        terms.forEach(reader, termsEnum -> {
+            long totalTermFreq = termsEnum.totalTermFreq();
+            PostingsEnum postings = termsEnum.postings(reuse[0], PostingsEnum.POSITIONS);
+            reuse[0] = postings;
+            if (segmentTokens < 0 || totalTermFreq < 0 || totalTermFreq >= frequentTermFreq
+                    || buffered.size() + totalTermFreq > maxBufferedPositions) {
+                // Frequent term (or no room in the buffer): set the bits for its positions
+                for (int doc = postings.nextDoc(); doc != NO_MORE_DOCS; doc = postings.nextDoc()) {
+                    long[] bits = bitsPerDoc.get(doc);
+                    int freq = postings.freq();
+                    for (int i = 0; i < freq; i++) {
+                        int position = postings.nextPosition();
+                        int word = position >>> 6;
+                        if (bits == null || word >= bits.length) {
+                            bits = bits == null ? new long[word + 1] : ArrayUtil.grow(bits, word + 1);
+                            bitsPerDoc.put(doc, bits);
+                        }
+                        bits[word] |= 1L << position;
+                    }
+                }
+            } else {
+                // Rare term: add its positions to the buffer, encoded as (doc << 32 | position)
+                for (int doc = postings.nextDoc(); doc != NO_MORE_DOCS; doc = postings.nextDoc()) {
+                    int freq = postings.freq();
+                    for (int i = 0; i < freq; i++)
+                        buffered.add(((long) doc << 32) | postings.nextPosition());
+                }
+            }
+            return true;
+        });
+        if (buffered.isEmpty() && bitsPerDoc.isEmpty())
+            return null;
+
+        // Convert the rare term positions to a per-document layout
+        buffered.sortThis();
+        IntArrayList docs = new IntArrayList();
+        IntArrayList offsets = new IntArrayList();
+        int[] positions = new int[buffered.size()];
+        for (int i = 0; i < buffered.size(); i++) {
+            long value = buffered.get(i);
+            int doc = (int) (value >>> 32);
+            if (docs.isEmpty() || docs.getLast() != doc) {
+                docs.add(doc);
+                offsets.add(i);
+            }
+            positions[i] = (int) value;
+        }
+        offsets.add(positions.length);
+
+        // Put the bitsets for the frequent terms in one array, in document order
+        int[] bitsDocs = bitsPerDoc.keysView().toSortedArray();
+        int[] bitsOffsets = new int[bitsDocs.length + 1];
+        for (int i = 0; i < bitsDocs.length; i++)
+            bitsOffsets[i + 1] = bitsOffsets[i] + bitsPerDoc.get(bitsDocs[i]).length;
+        long[] bits = new long[bitsOffsets[bitsDocs.length]];
+        for (int i = 0; i < bitsDocs.length; i++) {
+            long[] docBits = bitsPerDoc.get(bitsDocs[i]);
+            System.arraycopy(docBits, 0, bits, bitsOffsets[i], docBits.length);
+        }
+
+        return new SpansMultiTerm(docs.toArray(), offsets.toArray(), positions, bitsDocs, bitsOffsets, bits);
+    }
+
+    /** Documents containing rare terms */
+    private final int[] bufferedDocs;
+
+    /** Offset in bufferedPositions for each document in bufferedDocs (plus one extra at the end) */
+    private final int[] bufferedOffsets;
+
+    /** Positions of rare terms, per document */
+    private final int[] bufferedPositions;
+
+    /** Index of the first document in bufferedDocs at or after the current document */
+    private int bufferedIndex = 0;
+
+    /** Documents containing frequent terms (or rare terms that didn't fit in the buffer) */
+    private final int[] bitsDocs;
+
+    /** Offset in bits for each document in bitsDocs (plus one extra at the end) */
+    private final int[] bitsOffsets;
+
+    /** Positions of those terms, as a bitset per document */
+    private final long[] bits;
+
+    /** Index of the first document in bitsDocs at or after the current document */
+    private int bitsIndex = 0;
+
+    /** Current document id */
+    private int doc = -1;
+
+    /** Have we read the positions in the current document yet? */
+    private boolean positionsRead = false;
+
+    /** Number of matching positions in the current document */
+    private int numberOfPositions = 0;
+
+    /** Matching positions in the current document (sorted) */
+    private int[] positions = new int[16];
+
+    /** Index of the current hit in the current document (-1 if not nexted yet) */
+    private int current = -1;
+
+    private SpansMultiTerm(int[] bufferedDocs, int[] bufferedOffsets, int[] bufferedPositions, int[] bitsDocs,
+            int[] bitsOffsets, long[] bits) {
+        this.bufferedDocs = bufferedDocs;
+        this.bufferedOffsets = bufferedOffsets;
+        this.bufferedPositions = bufferedPositions;
+        this.bitsDocs = bitsDocs;
+        this.bitsOffsets = bitsOffsets;
+        this.bits = bits;
+    }
+
+    /**
+     * Number of matching positions kept in the sorted array (rare terms).
+     *
+     * @return number of positions
+     */
+    int numberOfBufferedPositions() {
+        return bufferedPositions.length;
+    }
+
+    /**
+     * Approximate size of the merged positions in memory.
+     *
+     * @return size in bytes
+     */
+    long sizeBytes() {
+        return (bufferedDocs.length + bufferedOffsets.length + bufferedPositions.length + bitsDocs.length
+                + bitsOffsets.length) * (long) Integer.BYTES + bits.length * (long) Long.BYTES;
+    }
+
+    @Override
+    protected void passHitQueryContextToClauses(HitQueryContext context) {
+        // NOP
+    }
+
+    @Override
+    public void getCapturedGroups(Span[] capturedGroups) {
+        // NOP
+    }
+
+    @Override
+    public int nextDoc() throws IOException {
+        if (doc == NO_MORE_DOCS)
+            return NO_MORE_DOCS;
+        return advance(doc + 1);
+    }
+
+    /**
+     * Find the first document at or after target in a sorted array of documents.
+     *
+     * @param docs sorted document ids
+     * @param from index to start searching from
+     * @param target document to find
+     * @return index of the first document &gt;= target (docs.length if none)
+     */
+    private static int firstDocAtOrAfter(int[] docs, int from, int target) {
+        int lo = from, hi = docs.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (docs[mid] < target)
+                lo = mid + 1;
+            else
+                hi = mid;
+        }
+        return lo;
+    }
+
+    @Override
+    public int advance(int target) throws IOException {
+        if (doc == NO_MORE_DOCS)
+            return NO_MORE_DOCS;
+        bufferedIndex = firstDocAtOrAfter(bufferedDocs, bufferedIndex, target);
+        bitsIndex = firstDocAtOrAfter(bitsDocs, bitsIndex, target);
+        int bufferedDoc = bufferedIndex < bufferedDocs.length ? bufferedDocs[bufferedIndex] : NO_MORE_DOCS;
+        int bitsDoc = bitsIndex < bitsDocs.length ? bitsDocs[bitsIndex] : NO_MORE_DOCS;
+        doc = Math.min(bufferedDoc, bitsDoc);
+        positionsRead = false;
+        numberOfPositions = 0;
+        current = -1;
+        return doc;
+    }
+
+    @Override
+    public int docID() {
+        return doc;
+    }
+
+    private void ensurePositionsRead() {
+        if (positionsRead)
+            return;
+        positionsRead = true;
+        numberOfPositions = 0;
+        boolean fromBuffer = false;
+        if (bufferedIndex < bufferedDocs.length && bufferedDocs[bufferedIndex] == doc) {
+            int start = bufferedOffsets[bufferedIndex], length = bufferedOffsets[bufferedIndex + 1] - start;
+            positions = ArrayUtil.grow(positions, length);
+            System.arraycopy(bufferedPositions, start, positions, 0, length);
+            numberOfPositions = length;
+            fromBuffer = true;
+        }
+        if (bitsIndex < bitsDocs.length && bitsDocs[bitsIndex] == doc) {
+            for (int i = bitsOffsets[bitsIndex]; i < bitsOffsets[bitsIndex + 1]; i++) {
+                long word = bits[i];
+                int base = (i - bitsOffsets[bitsIndex]) << 6;
+                while (word != 0) {
+                    positions = ArrayUtil.grow(positions, numberOfPositions + 1);
+                    positions[numberOfPositions++] = base + Long.numberOfTrailingZeros(word);
+                    word &= word - 1;
+                }
+            }
+            if (fromBuffer)
+                Arrays.sort(positions, 0, numberOfPositions);
+        }
+    }
+
+    @Override
+    public int nextStartPosition() throws IOException {
+        ensurePositionsRead();
+        if (current < numberOfPositions)
+            current++;
+        return startPosition();
+    }
+
+    @Override
+    public int advanceStartPosition(int target) throws IOException {
+        ensurePositionsRead();
+        if (current >= numberOfPositions)
+            return NO_MORE_POSITIONS;
+        // Binary search for the first hit after the current one starting at or after target
+        int lo = current + 1, hi = numberOfPositions;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (positions[mid] < target)
+                lo = mid + 1;
+            else
+                hi = mid;
+        }
+        current = lo;
+        return startPosition();
+    }
+
+    @Override
+    public int startPosition() {
+        if (current < 0)
+            return -1;
+        return current >= numberOfPositions ? NO_MORE_POSITIONS : positions[current];
+    }
+
+    @Override
+    public int endPosition() {
+        if (current < 0)
+            return -1;
+        return current >= numberOfPositions ? NO_MORE_POSITIONS : positions[current] + 1;
+    }
+
+    @Override
+    public int width() {
+        return 0;
+    }
+
+    @Override
+    public void collect(SpanCollector collector) {
+        // Single-token hits from the word annotations; no payloads to collect.
+    }
+
+    @Override
+    public float positionsCost() {
+        return 1;
+    }
+
+    @Override
+    public long cost() {
+        return bufferedDocs.length + bitsDocs.length;
+    }
+
+    @Override
+    public String toString() {
+        return "MULTITERM(" + doc + ")";
+    }
+
+}
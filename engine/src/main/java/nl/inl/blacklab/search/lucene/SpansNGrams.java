@@ -175,6 +175,42 @@ class SpansNGrams extends BLSpans {
         return currentStart;
     }
 
+    @Override
+    public int nextStartPositions(int[] starts, int[] ends) {
+        if (starts.length == 0)
+            return 0;
+        int n = 0;
+        if (alreadyAtFirstMatch) {
+            alreadyAtFirstMatch = false;
+            starts[n] = currentStart;
+            ends[n] = currentEnd;
+            n++;
+        }
+        if (currentDoc < 0 || currentDoc == NO_MORE_DOCS || currentStart == NO_MORE_POSITIONS)
+            return n;
+
+        // Same as nextStartPosition(), but in a tight loop, using locals
+        int start = currentStart, end = currentEnd;
+        while (n < starts.length) {
+            if (start < 0 || end - start >= max || end >= currentDocLength) {
+                start++;
+                end = start + min;
+                if (end > currentDocLength) {
+                    start = end = NO_MORE_POSITIONS;
+                    break;
+                }
+            } else {
+                end++;
+            }
+            starts[n] = start;
+            ends[n] = end;
+            n++;
+        }
+        currentStart = start;
+        currentEnd = end;
+        return n;
+    }
+
     @Override
     public int advanceStartPosition(int target) throws IOException {
         if (alreadyAtFirstMatch) {
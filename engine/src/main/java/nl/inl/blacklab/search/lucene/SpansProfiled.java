@@ -0,0 +1,231 @@
+package nl.inl.blacklab.search.lucene;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.search.TwoPhaseIterator;
+import org.apache.lucene.search.spans.SpanCollector;
+
+import nl.inl.blacklab.search.QueryProfile;
+import nl.inl.blacklab.search.Span;
+
+/**
+ * Wraps the spans of a clause to record the time spent in them and the number
+ * of calls and results in a {@link QueryProfile}.
+ *
+ * Created by {@link ProfilingSearcher}; one per clause per segment.
+ */
+class SpansProfiled extends BLSpans {
+
+    private final BLSpans source;
+
+    /** Profile for the clause (all segments) */
+    private final QueryProfile clauseProfile;
+
+    /** Profile for the clause in this segment */
+    private final QueryProfile profile;
+
+    private final LongAdder nextDocCalls;
+
+    private final LongAdder advanceCalls;
+
+    private final LongAdder nextStartPositionCalls;
+
+    private final LongAdder advanceStartPositionCalls;
+
+    private final LongAdder matchesCalls;
+
+    private final LongAdder docs;
+
+    private final LongAdder hits;
+
+    public SpansProfiled(BLSpans source, QueryProfile clauseProfile, QueryProfile profile) {
+        this.source = source;
+        this.clauseProfile = clauseProfile;
+        this.profile = profile;
+        nextDocCalls = profile.counter("nextDoc");
+        advanceCalls = profile.counter("advance");
+        nextStartPositionCalls = profile.counter("nextStartPosition");
+        advanceStartPositionCalls = profile.counter("advanceStartPosition");
+        matchesCalls = profile.counter("matches");
+        docs = profile.counter("docs");
+        hits = profile.counter("hits");
+    }
+
+    private void addTimeSince(long start) {
+        long ns = System.nanoTime() - start;
+        profile.addTime(ns);
+        clauseProfile.addTime(ns);
+    }
+
+    @Override
+    protected void passHitQueryContextToClauses(HitQueryContext context) {
+        source.setHitQueryContext(context);
+    }
+
+    @Override
+    public void getCapturedGroups(Span[] capturedGroups) {
+        if (!childClausesCaptureGroups)
+            return;
+        source.getCapturedGroups(capturedGroups);
+    }
+
+    @Override
+    public int nextDoc() throws IOException {
+        long start = System.nanoTime();
+        int doc = source.nextDoc();
+        addTimeSince(start);
+        nextDocCalls.increment();
+        if (doc != NO_MORE_DOCS)
+            docs.increment();
+        return doc;
+    }
+
+    @Override
+    public int advance(int target) throws IOException {
+        long start = System.nanoTime();
+        int doc = source.advance(target);
+        addTimeSince(start);
+        advanceCalls.increment();
+        if (doc != NO_MORE_DOCS)
+            docs.increment();
+        return doc;
+    }
+
+    @Override
+    public int docID() {
+        return source.docID();
+    }
+
+    @Override
+    public int nextStartPosition() throws IOException {
+        long start = System.nanoTime();
+        int pos = source.nextStartPosition();
+        addTimeSince(start);
+        nextStartPositionCalls.increment();
+        if (pos != NO_MORE_POSITIONS)
+            hits.increment();
+        return pos;
+    }
+
+    @Override
+    public int advanceStartPosition(int target) throws IOException {
+        long start = System.nanoTime();
+        int pos = source.advanceStartPosition(target);
+        addTimeSince(start);
+        advanceStartPositionCalls.increment();
+        if (pos != NO_MORE_POSITIONS)
+            hits.increment();
+        return pos;
+    }
+
+    @Override
+    public int nextStartPositions(int[] starts, int[] ends) throws IOException {
+        long start = System.nanoTime();
+        int n = source.nextStartPositions(starts, ends);
+        addTimeSince(start);
+        nextStartPositionCalls.increment();
+        hits.add(n);
+        return n;
+    }
+
+    @Override
+    public int startPosition() {
+        return source.startPosition();
+    }
+
+    @Override
+    public int endPosition() {
+        return source.endPosition();
+    }
+
+    @Override
+    public int width() {
+        return source.width();
+    }
+
+    @Override
+    public void collect(SpanCollector collector) throws IOException {
+        source.collect(collector);
+    }
+
+    @Override
+    public float positionsCost() {
+        return source.positionsCost();
+    }
+
+    @Override
+    public TwoPhaseIterator asTwoPhaseIterator() {
+        // Keep the same execution strategy as without profiling, but record
+        // the approximation and matches() calls as well
+        TwoPhaseIterator twoPhase = source.asTwoPhaseIterator();
+        if (twoPhase == null)
+            return null;
+        return new TwoPhaseIterator(new ApproximationProfiled(twoPhase.approximation())) {
+            @Override
+            public boolean matches() throws IOException {
+                long start = System.nanoTime();
+                boolean matches = twoPhase.matches();
+                addTimeSince(start);
+                matchesCalls.increment();
+                if (matches)
+                    docs.increment();
+                return matches;
+            }
+
+            @Override
+            public float matchCost() {
+                return twoPhase.matchCost();
+            }
+        };
+    }
+
+    /** Records the time spent in and calls to the approximation of our two-phase iterator. */
+    private class ApproximationProfiled extends DocIdSetIterator {
+
+        private final DocIdSetIterator approximation;
+
+        ApproximationProfiled(DocIdSetIterator approximation) {
+            this.approximation = approximation;
+        }
+
+        @Override
+        public int docID() {
+            return approximation.docID();
+        }
+
+        @Override
+        public int nextDoc() throws IOException {
+            long start = System.nanoTime();
+            int doc = approximation.nextDoc();
+            addTimeSince(start);
+            nextDocCalls.increment();
+            return doc;
+        }
+
+        @Override
+        public int advance(int target) throws IOException {
+            long start = System.nanoTime();
+            int doc = approximation.advance(target);
+            addTimeSince(start);
+            advanceCalls.increment();
+            return doc;
+        }
+
+        @Override
+        public long cost() {
+            return approximation.cost();
+        }
+    }
+
+    @Override
+    public long cost() {
+        return source.cost();
+    }
+
+    @Override
+    public String toString() {
+        return source.toString();
+    }
+}
@@ -137,6 +137,9 @@ class SpansSequenceWithGap extends BLSpans {
     }
 
     private BLSpans left;
+
+    /** Maximum length of hits in the left clause (MAX_UNLIMITED if unknown) */
+    private int leftMaxLength;
     
     /** Gap between the two clauses. */
     private Gap gap;
@@ -191,7 +194,23 @@ class SpansSequenceWithGap extends BLSpans {
      * @param right (startpoint-sorted) right clause
      */
     public SpansSequenceWithGap(BLSpans left, Gap gap, BLSpans right) {
+        this(left, MAX_UNLIMITED, gap, right);
+    }
+
+    /**
+     * Construct SpansSequenceWithGap.
+     *
+     * If we know the maximum length of the left hits (and the maximum gap), we can
+     * skip over left hits that are too far from the next right hit to match it.
+     *
+     * @param left (startpoint-sorted) left clause
+     * @param leftMaxLength maximum length of hits in the left clause (MAX_UNLIMITED if unknown)
+     * @param gap allowable gap between the clauses
+     * @param right (startpoint-sorted) right clause
+     */
+    public SpansSequenceWithGap(BLSpans left, int leftMaxLength, Gap gap, BLSpans right) {
         this.left = left;
+        this.leftMaxLength = leftMaxLength;
         this.gap = gap;
         this.right = new SpansInBucketsPerDocument(right);
     }
@@ -215,10 +234,9 @@ class SpansSequenceWithGap extends BLSpans {
             currentDoc = left.nextDoc();
             leftStart = -1;
             if (currentDoc != NO_MORE_DOCS) {
-                right.nextDoc();
-                right.nextBucket();
-                indexInBucket = -1;
-                indexInBucketLeftEnd = -1;
+                // (realignDoc() will advance right to this document, skipping
+                //  documents in between; we only gather its hits once we know
+                //  both clauses occur in a document)
                 rightEnd = -1;
                 realignDoc();
             }
@@ -301,13 +319,17 @@ class SpansSequenceWithGap extends BLSpans {
                         leftStart = rightEnd = NO_MORE_POSITIONS;
                         return NO_MORE_DOCS;
                     }
-                    right.nextBucket();
                     rightEnd = -1;
-                    indexInBucket = 0;
-                    indexInBucketLeftEnd = -1;
                 }
             }
 
+            // Both clauses occur in this doc; gather the right hits if we haven't yet
+            if (right.bucketSize() < 0) {
+                right.nextBucket();
+                indexInBucket = -1;
+                indexInBucketLeftEnd = -1;
+            }
+
             // Does this doc have any matches?
             leftStart = left.nextStartPosition();
             realignPos();
@@ -361,23 +383,37 @@ class SpansSequenceWithGap extends BLSpans {
             while (indexInBucket < right.bucketSize() && (indexInBucket < 0 || right.startPosition(indexInBucket) < leftStartFirst)) {
                 indexInBucket++;
             }
-            if (indexInBucket < right.bucketSize()) {
-                // Found a valid position for indexInBucket.
-                // Next, position indexInBucketLeftEnd according to rightStartFirst.
-                // (This represents the actual first span in the bucket that can match our current left span)
-                indexInBucketLeftEnd = indexInBucket;
-                while (indexInBucketLeftEnd < right.bucketSize() && right.startPosition(indexInBucketLeftEnd) < rightStartFirst) {
-                    indexInBucketLeftEnd++;
-                }
-                if (indexInBucketLeftEnd < right.bucketSize() && right.startPosition(indexInBucketLeftEnd) <= rightStartLast) {
-                    // Found the first matching right span for this left span. Return the sequence span.
-                    rightEnd = right.endPosition(indexInBucketLeftEnd);
-                    return;
-                }
+            if (indexInBucket >= right.bucketSize()) {
+                // No right hit starts late enough to follow this left hit. Left start
+                // positions only go up, so no later left hit will match either; we're
+                // done with this document.
+                leftStart = rightEnd = NO_MORE_POSITIONS;
+                return;
+            }
+
+            // Found a valid position for indexInBucket.
+            // Next, position indexInBucketLeftEnd according to rightStartFirst.
+            // (This represents the actual first span in the bucket that can match our current left span)
+            indexInBucketLeftEnd = indexInBucket;
+            while (indexInBucketLeftEnd < right.bucketSize() && right.startPosition(indexInBucketLeftEnd) < rightStartFirst) {
+                indexInBucketLeftEnd++;
+            }
+            if (indexInBucketLeftEnd < right.bucketSize() && right.startPosition(indexInBucketLeftEnd) <= rightStartLast) {
+                // Found the first matching right span for this left span. Return the sequence span.
+                rightEnd = right.endPosition(indexInBucketLeftEnd);
+                return;
             }
             
             // Advance the left clause.
-            leftStart = left.nextStartPosition();
+            // A left hit can only match if it ends close enough before a right hit that starts
+            // at or after the current one. If left hits can't be longer than a certain length,
+            // we know where the first left hit that could match must start, and we can skip there.
+            long skipTo = gap.maxSize() == MAX_UNLIMITED || leftMaxLength == MAX_UNLIMITED ? -1 :
+                    (long) right.startPosition(indexInBucket) - gap.maxSize() - leftMaxLength;
+            if (skipTo > leftStart + 1)
+                leftStart = left.advanceStartPosition((int) skipTo);
+            else
+                leftStart = left.nextStartPosition();
         }
     }
 
@@ -388,14 +424,11 @@ class SpansSequenceWithGap extends BLSpans {
             currentDoc = left.advance(doc);
             if (currentDoc != NO_MORE_DOCS) {
                 leftStart = -1;
-                int rightDoc = right.advance(doc);
+                int rightDoc = right.docID() < currentDoc ? right.advance(currentDoc) : right.docID();
                 if (rightDoc == NO_MORE_DOCS)
                     currentDoc = NO_MORE_DOCS;
                 else {
-                    right.nextBucket();
                     rightEnd = -1;
-                    indexInBucket = 0;
-                    indexInBucketLeftEnd = -1;
                     realignDoc();
                 }
             }
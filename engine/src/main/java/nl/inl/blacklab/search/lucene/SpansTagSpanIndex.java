@@ -0,0 +1,159 @@
+package nl.inl.blacklab.search.lucene;
+
+import org.apache.lucene.search.spans.SpanCollector;
+import org.apache.lucene.util.ArrayUtil;
+
+import nl.inl.blacklab.search.Span;
+
+/**
+ * Gets spans for a certain XML element from a {@link TagSpanIndex}.
+ *
+ * Much faster than {@link SpansTags} because no payloads have to be decoded,
+ * and we can skip to a start position using binary search.
+ */
+class SpansTagSpanIndex extends BLSpans {
+
+    private final TagSpanIndex tagSpans;
+
+    /** Index of the current document in tagSpans (-1 if not nexted yet) */
+    private int docIndex = -1;
+
+    /** Current document id */
+    private int doc = -1;
+
+    /** Have we decoded the tags in the current document yet? */
+    private boolean decoded = false;
+
+    /** Number of tags in the current document */
+    private int numberOfTags = 0;
+
+    /** Start positions of the tags in the current document */
+    private int[] starts = new int[16];
+
+    /** End positions of the tags in the current document */
+    private int[] ends = new int[16];
+
+    /** Index of the current tag in the current document (-1 if not nexted yet) */
+    private int current = -1;
+
+    public SpansTagSpanIndex(TagSpanIndex tagSpans) {
+        this.tagSpans = tagSpans;
+    }
+
+    @Override
+    protected void passHitQueryContextToClauses(HitQueryContext context) {
+        // NOP
+    }
+
+    @Override
+    public void getCapturedGroups(Span[] capturedGroups) {
+        // NOP
+    }
+
+    private int goToDocIndex(int index) {
+        docIndex = index;
+        doc = docIndex < tagSpans.numberOfDocs() ? tagSpans.doc(docIndex) : NO_MORE_DOCS;
+        decoded = false;
+        current = -1;
+        return doc;
+    }
+
+    @Override
+    public int nextDoc() {
+        if (doc == NO_MORE_DOCS)
+            return NO_MORE_DOCS;
+        return goToDocIndex(docIndex + 1);
+    }
+
+    @Override
+    public int advance(int target) {
+        if (doc == NO_MORE_DOCS)
+            return NO_MORE_DOCS;
+        return goToDocIndex(tagSpans.advance(docIndex + 1, target));
+    }
+
+    @Override
+    public int docID() {
+        return doc;
+    }
+
+    private void ensureDecoded() {
+        if (!decoded) {
+            numberOfTags = tagSpans.numberOfTags(docIndex);
+            if (starts.length < numberOfTags) {
+                starts = new int[ArrayUtil.oversize(numberOfTags, Integer.BYTES)];
+                ends = new int[starts.length];
+            }
+            tagSpans.decode(docIndex, starts, ends);
+            decoded = true;
+        }
+    }
+
+    @Override
+    public int nextStartPosition() {
+        ensureDecoded();
+        if (current < numberOfTags)
+            current++;
+        return startPosition();
+    }
+
+    @Override
+    public int advanceStartPosition(int target) {
+        ensureDecoded();
+        if (current >= numberOfTags)
+            return NO_MORE_POSITIONS;
+        // Binary search for the first tag after the current one starting at or after target
+        int lo = current + 1, hi = numberOfTags;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (starts[mid] < target)
+                lo = mid + 1;
+            else
+                hi = mid;
+        }
+        current = lo;
+        return startPosition();
+    }
+
+    @Override
+    public int startPosition() {
+        if (current < 0)
+            return -1;
+        return current >= numberOfTags ? NO_MORE_POSITIONS : starts[current];
+    }
+
+    @Override
+    public int endPosition() {
+        if (current < 0)
+            return -1;
+        return current >= numberOfTags ? NO_MORE_POSITIONS : ends[current];
+    }
+
+    @Override
+    public int width() {
+        return 0;
+    }
+
+    @Override
+    public void collect(SpanCollector collector) {
+        // No postings to collect; the end positions (which we'd otherwise get from
+        // the payloads) are already known.
+    }
+
+    @Override
+    public float positionsCost() {
+        // Cheap: positions are already decoded
+        return 1;
+    }
+
+    @Override
+    public long cost() {
+        return tagSpans.numberOfDocs();
+    }
+
+    @Override
+    public String toString() {
+        return "TAGSPANINDEX(" + doc + ")";
+    }
+
+}
@@ -0,0 +1,200 @@
+package nl.inl.blacklab.search.lucene;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.PostingsEnum;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.BytesRef;
+import org.eclipse.collections.impl.list.mutable.primitive.IntArrayList;
+
+/**
+ * Compact index of the spans of one tag (e.g. all {@code <s>} elements) in one
+ * index segment.
+ *
+ * Start tags are indexed as terms with the end position in the payload. Decoding
+ * that payload for every tag occurrence is slow when there are millions of them
+ * (e.g. sentences), so the first time we need a tag's spans in a segment, we decode
+ * them all once and keep them here: per document, (start, end) pairs delta-encoded as
+ * variable-length integers. Segments never change, so this stays valid as long as the
+ * segment exists.
+ *
+ * Tag span indexes are built and kept by a {@link TagSpanIndexCache}.
+ */
+final class TagSpanIndex {
+
+    /** Approximate overhead per tag span index (bytes) */
+    private static final long OVERHEAD = 128;
+
+    /** Documents containing the tag, in increasing order */
+    private final int[] docs;
+
+    /** Number of tags for each document in docs */
+    private final int[] numberOfTags;
+
+    /** Offset in data for each document in docs (plus one extra at the end) */
+    private final int[] dataOffset;
+
+    /** Variable-length (start - previous start, end - start) pairs for each document */
+    private final byte[] data;
+
+    private TagSpanIndex(int[] docs, int[] numberOfTags, int[] dataOffset, byte[] data) {
+        this.docs = docs;
+        this.numberOfTags = numberOfTags;
+        this.dataOffset = dataOffset;
+        this.data = data;
+    }
+
+    /**
+     * Decode the tag payloads for this term in this segment.
+     *
+     * @param reader segment reader
+     * @param startTagTerm term for the start tag (field and tag name)
+     * @param maxSizeBytes maximum size of the tag span index
+     * @return the tag span index, or null if it would be larger than maxSizeBytes
+     */
+    static TagSpanIndex build(LeafReader reader, Term startTagTerm, long maxSizeBytes) throws IOException {
+        int[] empty = new int[0];
+        Terms terms = reader.terms(startTagTerm.field());
+        if (terms == null)
+            return new TagSpanIndex(empty, empty, new int[] { 0 }, new byte[0]);
+        TermsEnum termsEnum = terms.iterator();
+        if (!termsEnum.seekExact(startTagTerm.bytes()))
+            return new TagSpanIndex(empty, empty, new int[] { 0 }, new byte[0]);
+        // Each tag takes at least two bytes
+        if (termsEnum.totalTermFreq() * 2 > maxSizeBytes)
+            return null;
+
+        IntArrayList docs = new IntArrayList();
+        IntArrayList numberOfTags = new IntArrayList();
+        IntArrayList dataOffset = new IntArrayList();
+        byte[] data = new byte[1024];
+        int length = 0;
+        PostingsEnum postings = termsEnum.postings(null, PostingsEnum.PAYLOADS);
+        while (postings.nextDoc() != DocIdSetIterator.NO_MORE_DOCS) {
+            int freq = postings.freq();
+            docs.add(postings.docID());
+            numberOfTags.add(freq);
+            dataOffset.add(length);
+            int prevStart = 0;
+            for (int i = 0; i < freq; i++) {
+                int start = postings.nextPosition();
+                BytesRef payload = postings.getPayload();
+                int end = ByteBuffer.wrap(payload.bytes, payload.offset, payload.length).getInt();
+                data = ArrayUtil.grow(data, length + 10);
+                length = writeVInt(data, length, start - prevStart);
+                length = writeVInt(data, length, end - start);
+                prevStart = start;
+            }
+            if (length + 3L * Integer.BYTES * docs.size() > maxSizeBytes)
+                return null;
+        }
+        dataOffset.add(length);
+        return new TagSpanIndex(docs.toArray(), numberOfTags.toArray(), dataOffset.toArray(),
+                ArrayUtil.shrink(data, length));
+    }
+
+    private static int writeVInt(byte[] data, int offset, int value) {
+        while ((value & ~0x7F) != 0) {
+            data[offset++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        data[offset++] = (byte) value;
+        return offset;
+    }
+
+    /**
+     * Approximate size of this tag span index.
+     *
+     * @return size in bytes
+     */
+    long sizeBytes() {
+        return OVERHEAD + data.length + (long) Integer.BYTES * (docs.length + numberOfTags.length + dataOffset.length);
+    }
+
+    /**
+     * Number of documents containing the tag.
+     *
+     * @return number of documents
+     */
+    int numberOfDocs() {
+        return docs.length;
+    }
+
+    /**
+     * Document id at an index.
+     *
+     * @param docIndex index in our list of documents
+     * @return document id
+     */
+    int doc(int docIndex) {
+        return docs[docIndex];
+    }
+
+    /**
+     * Find the first document at or after the specified one.
+     *
+     * @param fromDocIndex index in our list of documents to start searching at
+     * @param target document id to find
+     * @return index of the first document at or after target (numberOfDocs() if none)
+     */
+    int advance(int fromDocIndex, int target) {
+        int lo = fromDocIndex, hi = docs.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (docs[mid] < target)
+                lo = mid + 1;
+            else
+                hi = mid;
+        }
+        return lo;
+    }
+
+    /**
+     * Number of tags in a document.
+     *
+     * @param docIndex index in our list of documents
+     * @return number of tags
+     */
+    int numberOfTags(int docIndex) {
+        return numberOfTags[docIndex];
+    }
+
+    /**
+     * Decode the tags in a document.
+     *
+     * @param docIndex index in our list of documents
+     * @param starts (out) start positions (must be at least numberOfTags(docIndex) long)
+     * @param ends (out) end positions (must be at least numberOfTags(docIndex) long)
+     */
+    void decode(int docIndex, int[] starts, int[] ends) {
+        int n = numberOfTags[docIndex];
+        int offset = dataOffset[docIndex];
+        int start = 0;
+        for (int i = 0; i < n; i++) {
+            int value = 0;
+            for (int shift = 0;; shift += 7) {
+                byte b = data[offset++];
+                value |= (b & 0x7F) << shift;
+                if (b >= 0)
+                    break;
+            }
+            start += value;
+            value = 0;
+            for (int shift = 0;; shift += 7) {
+                byte b = data[offset++];
+                value |= (b & 0x7F) << shift;
+                if (b >= 0)
+                    break;
+            }
+            starts[i] = start;
+            ends[i] = start + value;
+        }
+    }
+
+}
@@ -0,0 +1,46 @@
+package nl.inl.blacklab.search.lucene;
+
+import java.io.IOException;
+
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.Term;
+
+/**
+ * Compact tag span indexes ({@link TagSpanIndex}) for the tags in an index, per segment.
+ *
+ * Building a tag span index means decoding the payloads of all occurrences of a tag in
+ * a segment, which can take a while. So the first time a tag is searched in a segment,
+ * we start building its index in the background; until it's ready, searches decode the
+ * payloads as usual (see {@link SpansTags}).
+ */
+public class TagSpanIndexCache extends SegmentIndexCache<Term, TagSpanIndex> {
+
+    /** Default maximum total size of the tag span indexes (bytes) */
+    public static final long DEFAULT_MAX_SIZE_BYTES = 256 * 1_048_576L;
+
+    /**
+     * Create a tag span index cache with the default maximum size.
+     */
+    public TagSpanIndexCache() {
+        this(DEFAULT_MAX_SIZE_BYTES);
+    }
+
+    /**
+     * Create a tag span index cache.
+     *
+     * @param maxSizeBytes maximum total size of the tag span indexes (bytes); 0 disables the cache
+     */
+    public TagSpanIndexCache(long maxSizeBytes) {
+        super("TagSpanIndexCache", maxSizeBytes);
+    }
+
+    @Override
+    TagSpanIndex build(LeafReader reader, Term startTagTerm, long maxSizeBytes) throws IOException {
+        return TagSpanIndex.build(reader, startTagTerm, maxSizeBytes);
+    }
+
+    @Override
+    long sizeBytes(TagSpanIndex index) {
+        return index.sizeBytes();
+    }
+}
@@ -19,14 +19,20 @@ public abstract class ClauseCombiner {
         return priority(left, right, reader) != CANNOT_COMBINE;
     }
 
-    public static Set<ClauseCombiner> all(boolean nfa) {
+    /**
+     * Get all clause combiners.
+     *
+     * @param nfaSettings forward index matching settings, or null if we can't do forward index matching
+     * @return the clause combiners
+     */
+    public static Set<ClauseCombiner> all(ForwardIndexMatchingSettings nfaSettings) {
         HashSet<ClauseCombiner> all = new HashSet<>();
         all.add(new ClauseCombinerRepetition());
         all.add(new ClauseCombinerInternalisation());
         all.add(new ClauseCombinerAnyExpansion());
         all.add(new ClauseCombinerNot());
-        if (nfa)
-            all.add(new ClauseCombinerNfa());
+        if (nfaSettings != null)
+            all.add(new ClauseCombinerNfa(nfaSettings));
         return all;
     }
     
@@ -10,7 +10,6 @@ import nl.inl.blacklab.search.fimatch.ForwardIndexAccessor;
 import nl.inl.blacklab.search.fimatch.NfaTwoWay;
 import nl.inl.blacklab.search.lucene.BLSpanQuery;
 import nl.inl.blacklab.search.lucene.SpanQueryFiSeq;
-import nl.inl.util.LuceneUtil;
 
 /**
  * Tries to optimize the query using "forward index matching" (also called NFA
@@ -62,17 +61,9 @@ public class ClauseCombinerNfa extends ClauseCombiner {
     public static final long NO_NFA_MATCHING = 0;
 
     /**
-     * The default value of nfaThreshold.
+     * The default value of the NFA threshold.
      */
-    public static long defaultForwardIndexMatchingThreshold = 900; //DISABLE: NO_NFA_MATCHING;
-
-    /**
-     * Indicates how expensive fetching a lot of term positions from Lucene is; Used
-     * to calculate the cost of "regular" matching.
-     *
-     * Higher values means "regular" (reverse) matching is considered relatively cheaper.
-     */
-    private static final long TERM_FREQ_DIVIDER = 500;
+    public static final long DEFAULT_FORWARD_INDEX_MATCHING_THRESHOLD = 900; //DISABLE: NO_NFA_MATCHING;
 
     /**
      * What we multiply our calculated cost ratio by to get an integer in a
@@ -80,48 +71,11 @@ public class ClauseCombinerNfa extends ClauseCombiner {
      */
     private static final long COST_RATIO_CONSTANT_FACTOR = 1000;
 
-    /**
-     * Should we try forward index matching at all or skip it altogether?
-     */
-    private static boolean enableForwardIndexmatching = true;
-
-    /**
-     * The ratio of estimated numbers of hits that we use to decide whether or not
-     * to try NFA-matching with two clauses / subsequences. The lower the number,
-     * the more we use NFA-matching.
-     *
-     * (we compare this to the absolute "combinability factor"; see below)
-     */
-    private static long nfaThreshold = defaultForwardIndexMatchingThreshold;
-
-    /**
-     * Don't NFA optimization if there's too few unique terms?
-     * (disable for testing)
-     */
-    private static boolean onlyUseNfaForManyUniqueTerms = true;
-
-    public static void setDefaultForwardIndexMatchingThreshold(long threshold) {
-        ClauseCombinerNfa.defaultForwardIndexMatchingThreshold = threshold;
-    }
-
-    public static void setOnlyUseNfaForManyUniqueTerms(boolean onlyUseNfaForManyUniqueTerms) {
-        ClauseCombinerNfa.onlyUseNfaForManyUniqueTerms = onlyUseNfaForManyUniqueTerms;
-    }
-
-    public static void setNfaThreshold(long nfaThreshold) {
-        ClauseCombinerNfa.nfaThreshold = nfaThreshold;
-    }
-
-    public static long getNfaThreshold() {
-        return ClauseCombinerNfa.nfaThreshold;
-    }
-
-    public static void setForwardIndexMatchingEnabled(boolean doNfaMatching) {
-        enableForwardIndexmatching = doNfaMatching;
-    }
+    /** Forward index matching settings for the index we're optimizing queries for */
+    private final ForwardIndexMatchingSettings settings;
 
-    private static boolean isForwardIndexMatchingEnabled() {
-        return enableForwardIndexmatching && nfaThreshold > NO_NFA_MATCHING;
+    public ClauseCombinerNfa(ForwardIndexMatchingSettings settings) {
+        this.settings = settings;
     }
 
     /**
@@ -142,15 +96,17 @@ public class ClauseCombinerNfa extends ClauseCombiner {
      * @param reader index
      * @return the "combinability factor"
      */
-    private static long getFactor(BLSpanQuery left, BLSpanQuery right, IndexReader reader) {
-        if (!isForwardIndexMatchingEnabled())
+    private long getFactor(BLSpanQuery left, BLSpanQuery right, IndexReader reader) {
+        if (!settings.isActive())
             return 0;
 
         // Estimate the performance cost of matching the whole sequence using reverse matching.
         // (this number is a very rough estimation of the expected number of results)
+        // How expensive reading term positions is (relative to forward index matching) depends on the index.
+        long termFreqDivider = QueryCostModel.get(reader).termFreqDivider();
         long numLeft = Math.max(1, left.reverseMatchingCost(reader));
         long numRight = Math.max(1, right.reverseMatchingCost(reader));
-        long seqReverseCost = Math.min(numLeft, numRight) + (numLeft + numRight) / TERM_FREQ_DIVIDER;
+        long seqReverseCost = Math.min(numLeft, numRight) + (numLeft + numRight) / termFreqDivider;
 
         // Estimate the performance cost of matching either clause using forward matching.
         // (this number doesn't really mean anything in isolation, only in comparison to other NFA matching costs)
@@ -205,7 +161,7 @@ public class ClauseCombinerNfa extends ClauseCombiner {
 
     @Override
     public int priority(BLSpanQuery left, BLSpanQuery right, IndexReader reader) {
-        if (!isForwardIndexMatchingEnabled()) {
+        if (!settings.isActive()) {
             if (BlackLabIndexImpl.traceOptimization())
                 logger.debug("(CCNFA: nfa matching switched off)");
             return CANNOT_COMBINE;
@@ -220,15 +176,17 @@ public class ClauseCombinerNfa extends ClauseCombiner {
             return CANNOT_COMBINE;
         }
         long absFactor = Math.abs(factor);
+        long nfaThreshold = settings.threshold();
         if (absFactor > nfaThreshold) {
             if (BlackLabIndexImpl.traceOptimization())
                 logger.debug("(CCNFA: abs(factor) > nfaThreshold (" + nfaThreshold + "))");
             return CANNOT_COMBINE;
         }
 
-        if (onlyUseNfaForManyUniqueTerms) {
-            long maxTermsRight = LuceneUtil.getMaxTermsPerLeafReader(reader, right.getRealField());
-            long maxTermsLeft = LuceneUtil.getMaxTermsPerLeafReader(reader, left.getRealField());
+        if (settings.isOnlyUseNfaForManyUniqueTerms()) {
+            QueryCostModel costModel = QueryCostModel.get(reader);
+            long maxTermsRight = costModel.maxTermsPerLeafReader(right.getRealField());
+            long maxTermsLeft = costModel.maxTermsPerLeafReader(left.getRealField());
             if (BlackLabIndexImpl.traceOptimization())
                 logger.debug("(CCNFA: maxTermsLeft=" + maxTermsLeft + ", maxTermsRight=" + maxTermsRight + ")");
             if (factor > 0 && maxTermsRight < 10_000 ||
@@ -0,0 +1,132 @@
+package nl.inl.blacklab.search.lucene.optimize;
+
+/**
+ * Settings for forward index matching (NFA matching) for a single index.
+ *
+ * Each index has its own settings, so indexes with different characteristics
+ * can be tuned separately. The settings are thread-safe: queries may be optimized
+ * concurrently, and a query may temporarily override the threshold for the thread
+ * it's being optimized on (see {@link #overrideThresholdForThisThread(long)}).
+ */
+public class ForwardIndexMatchingSettings {
+
+    /** Should we try forward index matching at all or skip it altogether? */
+    private volatile boolean enabled = true;
+
+    /**
+     * The ratio of estimated numbers of hits that we use to decide whether or not
+     * to try NFA-matching with two clauses / subsequences. The lower the number,
+     * the more we use NFA-matching.
+     */
+    private volatile long threshold = ClauseCombinerNfa.DEFAULT_FORWARD_INDEX_MATCHING_THRESHOLD;
+
+    /** Don't use NFA optimization if there's too few unique terms? (disable for testing) */
+    private volatile boolean onlyUseNfaForManyUniqueTerms = true;
+
+    /** Reference ratio of forward index to postings read cost, or 0 to not measure */
+    private volatile double fiToPostingsCostRatio = QueryCostModel.DEFAULT_FI_TO_POSTINGS_COST_RATIO;
+
+    /** Threshold to use for the query being optimized on this thread, if overridden */
+    private final ThreadLocal<Long> thresholdOverride = new ThreadLocal<>();
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Is forward index matching enabled for the query being optimized on this thread?
+     *
+     * @return true if we should consider forward index matching
+     */
+    public boolean isActive() {
+        return enabled && threshold() > ClauseCombinerNfa.NO_NFA_MATCHING;
+    }
+
+    /**
+     * Get the threshold to use for the query being optimized on this thread.
+     *
+     * @return the (possibly overridden) threshold
+     */
+    public long threshold() {
+        Long override = thresholdOverride.get();
+        return override != null ? override : threshold;
+    }
+
+    /**
+     * Set the threshold, e.g. from the configuration file.
+     *
+     * @param threshold the new threshold
+     */
+    public void setThreshold(long threshold) {
+        this.threshold = threshold;
+    }
+
+    /**
+     * Use a different threshold for queries optimized on this thread.
+     *
+     * Used to override the threshold for a single query (debug use only!).
+     * Make sure to call {@link #clearThresholdOverride()} afterwards.
+     *
+     * @param threshold threshold to use
+     */
+    public void overrideThresholdForThisThread(long threshold) {
+        thresholdOverride.set(threshold);
+    }
+
+    /**
+     * Go back to using the regular threshold on this thread.
+     */
+    public void clearThresholdOverride() {
+        thresholdOverride.remove();
+    }
+
+    public boolean isOnlyUseNfaForManyUniqueTerms() {
+        return onlyUseNfaForManyUniqueTerms;
+    }
+
+    public void setOnlyUseNfaForManyUniqueTerms(boolean onlyUseNfaForManyUniqueTerms) {
+        this.onlyUseNfaForManyUniqueTerms = onlyUseNfaForManyUniqueTerms;
+    }
+
+    /**
+     * Get the ratio of forward index read cost to postings read cost (per token) for
+     * which the query planner uses the default weight for reverse matching.
+     *
+     * When an index is opened, we measure how fast it reads tokens from the forward index
+     * and term positions from the reverse index (see {@link QueryCostModel}). If the measured
+     * ratio is higher than this, reading the forward index is relatively expensive on this
+     * machine, so the planner prefers reverse matching more; if lower, it prefers forward
+     * index matching more.
+     *
+     * The default (4.5) is what we typically measured on a 3M token test corpus with a warm
+     * page cache (about 45 ns per forward index token vs. 10 ns per term position).
+     *
+     * @return the reference ratio, or 0 if we don't measure (and always use the default weight)
+     */
+    public double getFiToPostingsCostRatio() {
+        return fiToPostingsCostRatio;
+    }
+
+    /**
+     * Set the ratio of forward index read cost to postings read cost.
+     *
+     * Must be set before the index is opened to have effect.
+     *
+     * @param fiToPostingsCostRatio the reference ratio, or 0 (or less) to not measure and
+     *                              always use the default weight, so query plans don't
+     *                              depend on measurements
+     * @see #getFiToPostingsCostRatio()
+     */
+    public void setFiToPostingsCostRatio(double fiToPostingsCostRatio) {
+        this.fiToPostingsCostRatio = Math.max(0, fiToPostingsCostRatio);
+    }
+
+    @Override
+    public String toString() {
+        return "ForwardIndexMatchingSettings(enabled=" + enabled + ", threshold=" + threshold + ")";
+    }
+}
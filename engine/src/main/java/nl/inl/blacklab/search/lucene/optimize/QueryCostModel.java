@@ -0,0 +1,298 @@
+package nl.inl.blacklab.search.lucene.optimize;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.PostingsEnum;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.util.BytesRef;
+
+import nl.inl.blacklab.search.BlackLab;
+import nl.inl.blacklab.search.BlackLabIndex;
+import nl.inl.blacklab.search.fimatch.ForwardIndexAccessor;
+import nl.inl.blacklab.search.fimatch.ForwardIndexAccessor.ForwardIndexAccessorLeafReader;
+import nl.inl.blacklab.search.fimatch.ForwardIndexDocument;
+import nl.inl.blacklab.search.indexmetadata.AnnotatedField;
+import nl.inl.util.LuceneUtil;
+
+/**
+ * Statistics about an index, used to estimate the cost of different ways of
+ * executing a query.
+ *
+ * Keeps track of the number of unique terms per field (a measure of annotation
+ * cardinality) and of how expensive reading term positions from the reverse index
+ * is compared to reading tokens from the forward index. The latter determines how
+ * attractive forward index (NFA) matching is compared to "regular" reverse matching.
+ *
+ * Statistics are cached per IndexReader. Term counts are gathered lazily; throughput
+ * is measured in the background after an index is opened for searching (see
+ * {@link #startMeasuring()}).
+ */
+public final class QueryCostModel {
+
+    private static final Logger logger = LogManager.getLogger(QueryCostModel.class);
+
+    /**
+     * Default relative cost of fetching term positions from Lucene; see
+     * {@link #termFreqDivider()}.
+     */
+    static final long DEFAULT_TERM_FREQ_DIVIDER = 500;
+
+    /**
+     * Default for the ratio of forward index read cost to postings read cost (per token)
+     * for which we use the default divider unchanged.
+     *
+     * See {@link ForwardIndexMatchingSettings#getFiToPostingsCostRatio()}.
+     */
+    public static final double DEFAULT_FI_TO_POSTINGS_COST_RATIO = 4.5;
+
+    /**
+     * Don't stray further than this factor from the default divider, no matter what we
+     * measure. Our measurements are rough and the divider is only a rule of thumb.
+     */
+    private static final long MAX_DIVIDER_ADJUSTMENT = 4;
+
+    /** Only measure throughput on indexes at least this large; on small ones it's noise. */
+    private static final long MIN_TOKENS_TO_MEASURE = 1_000_000;
+
+    /** How many positions/tokens to read when measuring throughput. */
+    private static final int TOKENS_TO_SAMPLE = 1_000_000;
+
+    /** How many times to measure (we use the fastest measurement) */
+    private static final int MEASUREMENTS = 5;
+
+    /** How many terms to look at to find a frequent one to measure postings throughput. */
+    private static final int TERMS_TO_SAMPLE = 1000;
+
+    /** Cost models per IndexReader (core cache key). */
+    private static final Map<Object, QueryCostModel> cache = new WeakHashMap<>();
+
+    /**
+     * Get the cost model for an index.
+     *
+     * @param reader the index reader
+     * @return the cost model
+     */
+    public static QueryCostModel get(IndexReader reader) {
+        synchronized (cache) {
+            return cache.computeIfAbsent(reader.getCoreCacheKey(), __ -> new QueryCostModel(reader));
+        }
+    }
+
+    private final IndexReader reader;
+
+    /** Maximum number of unique terms in any one segment, per Lucene field */
+    private final Map<String, Long> maxTermsPerLeafReader = new ConcurrentHashMap<>();
+
+    /** Measured (or default) term frequency divider, or -1 if not determined yet */
+    private volatile long termFreqDivider = -1;
+
+    /** Have we started measuring? */
+    private boolean measuring = false;
+
+    /** Reference cost ratio we started measuring with */
+    private double referenceCostRatio;
+
+    /** Measured cost of reading a term position from the reverse index (ns), or -1 if not measured */
+    private double postingsNsPerToken = -1;
+
+    /** Measured cost of reading a token from the forward index (ns), or -1 if not measured */
+    private double forwardIndexNsPerToken = -1;
+
+    private QueryCostModel(IndexReader reader) {
+        this.reader = reader;
+    }
+
+    /**
+     * Return the maximum number of unique terms in any one segment for a field.
+     *
+     * This is a measure of the cardinality of an annotation. NFA matching doesn't pay off
+     * for annotations with few unique terms (e.g. part of speech).
+     *
+     * @param luceneField Lucene field name
+     * @return maximum number of terms in a segment
+     */
+    public long maxTermsPerLeafReader(String luceneField) {
+        return maxTermsPerLeafReader.computeIfAbsent(luceneField,
+                f -> LuceneUtil.getMaxTermsPerLeafReader(reader, f));
+    }
+
+    /**
+     * Indicates how expensive fetching a lot of term positions from Lucene is; used
+     * to calculate the cost of "regular" matching.
+     *
+     * Higher values means "regular" (reverse) matching is considered relatively cheaper.
+     *
+     * Determined by measuring how fast we can read term positions compared to
+     * forward index tokens (see {@link #startMeasuring()}). Until that measurement
+     * is done, or if we don't measure, the fixed default value is used. The value
+     * changes at most once, when the measurement completes.
+     *
+     * @return the term frequency divider
+     */
+    public long termFreqDivider() {
+        long divider = termFreqDivider;
+        return divider < 0 ? DEFAULT_TERM_FREQ_DIVIDER : divider;
+    }
+
+    /**
+     * Start measuring index throughput to determine the term frequency divider.
+     *
+     * The measurement takes a while, so it runs on the BlackLab instance's
+     * initialization executor (after e.g. the forward indexes have been initialized).
+     * Does nothing if we've already started, or if measuring is disabled (see
+     * {@link ForwardIndexMatchingSettings#getFiToPostingsCostRatio()}).
+     *
+     * Called when an index is opened for searching.
+     */
+    public synchronized void startMeasuring() {
+        if (measuring)
+            return;
+        BlackLabIndex index = BlackLab.fromIndexReader(reader);
+        referenceCostRatio = index.forwardIndexMatchingSettings().getFiToPostingsCostRatio();
+        if (referenceCostRatio <= 0)
+            return; // measuring disabled; always use the default
+        measuring = true;
+        index.blackLab().initializationExecutorService().execute(() -> termFreqDivider = determineTermFreqDivider());
+    }
+
+    /**
+     * Measured cost of reading a term position from the reverse index.
+     *
+     * @return cost in nanoseconds, or -1 if not measured
+     */
+    public synchronized double postingsNsPerToken() {
+        return postingsNsPerToken;
+    }
+
+    /**
+     * Measured cost of reading a token from the forward index.
+     *
+     * @return cost in nanoseconds, or -1 if not measured
+     */
+    public synchronized double forwardIndexNsPerToken() {
+        return forwardIndexNsPerToken;
+    }
+
+    private long determineTermFreqDivider() {
+        try {
+            BlackLabIndex index = BlackLab.fromIndexReader(reader);
+            AnnotatedField field = index.mainAnnotatedField();
+            if (field == null || !field.mainAnnotation().hasForwardIndex()
+                    || reader.getSumTotalTermFreq(field.contentsFieldName()) < MIN_TOKENS_TO_MEASURE)
+                return DEFAULT_TERM_FREQ_DIVIDER;
+            LeafReaderContext largest = null;
+            for (LeafReaderContext rc: reader.leaves()) {
+                if (largest == null || rc.reader().maxDoc() > largest.reader().maxDoc())
+                    largest = rc;
+            }
+            if (largest == null)
+                return DEFAULT_TERM_FREQ_DIVIDER;
+
+            // Measure a few times and keep the fastest time, so we're not skewed by
+            // JIT compilation, a cold cache or other threads competing for the CPU
+            double postingsNs = Double.MAX_VALUE, forwardIndexNs = Double.MAX_VALUE;
+            for (int i = 0; i < MEASUREMENTS; i++) {
+                postingsNs = Math.min(postingsNs, measurePostings(largest.reader(), field.contentsFieldName()));
+                forwardIndexNs = Math.min(forwardIndexNs, measureForwardIndex(index, field, largest.reader()));
+            }
+            synchronized (this) {
+                postingsNsPerToken = postingsNs;
+                forwardIndexNsPerToken = forwardIndexNs;
+            }
+            if (postingsNsPerToken <= 0 || forwardIndexNsPerToken <= 0)
+                return DEFAULT_TERM_FREQ_DIVIDER;
+
+            // Relatively expensive forward index means reverse matching is relatively cheaper
+            double ratio = forwardIndexNsPerToken / postingsNsPerToken / referenceCostRatio;
+            long divider = Math.round(DEFAULT_TERM_FREQ_DIVIDER * ratio);
+            divider = Math.max(DEFAULT_TERM_FREQ_DIVIDER / MAX_DIVIDER_ADJUSTMENT,
+                    Math.min(DEFAULT_TERM_FREQ_DIVIDER * MAX_DIVIDER_ADJUSTMENT, divider));
+            logger.debug(String.format("Query cost model: postings %.1f ns/token, forward index %.1f ns/token, termFreqDivider %d",
+                    postingsNsPerToken, forwardIndexNsPerToken, divider));
+            return divider;
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Could not measure index throughput, using default cost model (" + e.getMessage() + ")");
+            return DEFAULT_TERM_FREQ_DIVIDER;
+        }
+    }
+
+    /**
+     * Measure how long it takes to read term positions for a frequent term.
+     *
+     * @return nanoseconds per position read, or -1 if we couldn't measure
+     */
+    private static double measurePostings(LeafReader leafReader, String luceneField) throws IOException {
+        Terms terms = leafReader.terms(luceneField);
+        if (terms == null)
+            return -1;
+
+        // Find a frequent term so we have enough positions to read
+        TermsEnum termsEnum = terms.iterator();
+        BytesRef frequentTerm = null;
+        long highestFreq = 0;
+        for (int i = 0; i < TERMS_TO_SAMPLE; i++) {
+            BytesRef term = termsEnum.next();
+            if (term == null)
+                break;
+            if (termsEnum.totalTermFreq() > highestFreq) {
+                highestFreq = termsEnum.totalTermFreq();
+                frequentTerm = BytesRef.deepCopyOf(term);
+            }
+        }
+        if (frequentTerm == null || !termsEnum.seekExact(frequentTerm))
+            return -1;
+
+        long start = System.nanoTime();
+        PostingsEnum postings = termsEnum.postings(null, PostingsEnum.POSITIONS);
+        int read = 0;
+        long dummy = 0;
+        while (read < TOKENS_TO_SAMPLE && postings.nextDoc() != DocIdSetIterator.NO_MORE_DOCS) {
+            int freq = postings.freq();
+            for (int i = 0; i < freq; i++)
+                dummy += postings.nextPosition();
+            read += freq;
+        }
+        long elapsed = System.nanoTime() - start;
+        if (dummy < 0 || read == 0) // (use dummy so the loop isn't optimized away)
+            return -1;
+        return (double) elapsed / read;
+    }
+
+    /**
+     * Measure how long it takes to read tokens from the forward index.
+     *
+     * @return nanoseconds per token read, or -1 if we couldn't measure
+     */
+    private static double measureForwardIndex(BlackLabIndex index, AnnotatedField field, LeafReader leafReader) {
+        ForwardIndexAccessor fiAccessor = ForwardIndexAccessor.fromIndex(index, field.name());
+        int annotIndex = fiAccessor.getAnnotationNumber(field.mainAnnotation());
+        long start = System.nanoTime();
+        ForwardIndexAccessorLeafReader fiLeafReader = fiAccessor.getForwardIndexAccessorLeafReader(leafReader);
+        int read = 0;
+        long dummy = 0;
+        for (int docId = 0; read < TOKENS_TO_SAMPLE && docId < leafReader.maxDoc(); docId++) {
+            if (leafReader.getLiveDocs() != null && !leafReader.getLiveDocs().get(docId))
+                continue;
+            ForwardIndexDocument doc = fiLeafReader.getForwardIndexDoc(docId);
+            for (int pos = 0; read < TOKENS_TO_SAMPLE && doc.validPos(pos); pos++) {
+                dummy += doc.getToken(annotIndex, pos);
+                read++;
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        if (dummy == Long.MIN_VALUE || read == 0) // (use dummy so the loop isn't optimized away)
+            return -1;
+        return (double) elapsed / read;
+    }
+
+}
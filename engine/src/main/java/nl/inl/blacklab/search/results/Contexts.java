@@ -1,10 +1,9 @@
 package nl.inl.blacklab.search.results;
 
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.lang3.StringUtils;
 
@@ -12,9 +11,7 @@ import nl.inl.blacklab.exceptions.BlackLabRuntimeException;
 import nl.inl.blacklab.exceptions.InterruptedSearch;
 import nl.inl.blacklab.forwardindex.AnnotationForwardIndex;
 import nl.inl.blacklab.forwardindex.FiidLookup;
-import nl.inl.blacklab.forwardindex.Terms;
-import nl.inl.blacklab.search.Kwic;
-import nl.inl.blacklab.search.indexmetadata.AnnotatedField;
+import nl.inl.blacklab.search.QueryProfile;
 import nl.inl.blacklab.search.indexmetadata.Annotation;
 import nl.inl.blacklab.search.results.Hits.EphemeralHit;
 import nl.inl.blacklab.search.results.Hits.HitsArrays;
@@ -41,111 +38,6 @@ public class Contexts implements Iterable<int[]> {
     // Instance variables
     //------------------------------------------------------------------------------
 
-    /**
-     * Retrieves the KWIC information (KeyWord In Context: left, hit and right
-     * context) for a number of hits in the same document from the ContentStore.
-     *
-     * NOTE: this destroys any existing contexts!
-     *
-     * @param forwardIndex Forward index for the words
-     * @param punctForwardIndex Forward index for the punctuation
-     * @param attrForwardIndices Forward indices for the attributes, or null if none
-     * @param wordsAroundHit number of words left and right of hit to fetch
-     * @param theKwics where to add the KWICs
-     */
-    static void makeKwicsSingleDocForwardIndex(
-                                               Hits hits,
-                                               AnnotationForwardIndex forwardIndex,
-                                               AnnotationForwardIndex punctForwardIndex,
-                                               Map<Annotation, AnnotationForwardIndex> attrForwardIndices,
-                                               Map<Annotation, FiidLookup> fiidLookups,
-                                               ContextSize wordsAroundHit,
-                                               Map<Hit, Kwic> theKwics
-                                               ) {
-        if (hits.size() == 0)
-            return;
-
-        // TODO: more efficient to get all contexts with one getContextWords() call!
-
-        // Get punctuation context
-        int[][] punctContext = null;
-        if (punctForwardIndex != null) {
-            punctContext = getContextWordsSingleDocument(hits.hitsArrays, 0, hits.size(), wordsAroundHit, Arrays.asList(punctForwardIndex), Arrays.asList(fiidLookups.get(punctForwardIndex.annotation())));
-        }
-        Terms punctTerms = punctForwardIndex == null ? null : punctForwardIndex.terms();
-
-        // Get attributes context
-        Annotation[] attrName = null;
-        Terms[] attrTerms = null;
-        int[][][] attrContext = null;
-        if (attrForwardIndices != null) {
-            int n = attrForwardIndices.size();
-            attrName = new Annotation[n];
-            AnnotationForwardIndex[] attrFI = new AnnotationForwardIndex[n];
-            attrTerms = new Terms[n];
-            attrContext = new int[n][][];
-            int i = 0;
-            for (Map.Entry<Annotation, AnnotationForwardIndex> e: attrForwardIndices.entrySet()) {
-                attrName[i] = e.getKey();
-                attrFI[i] = e.getValue();
-                attrTerms[i] = attrFI[i].terms();
-                attrContext[i] = getContextWordsSingleDocument(hits.hitsArrays, 0, hits.size(), wordsAroundHit, Arrays.asList(attrFI[i]), Arrays.asList(fiidLookups.get(attrName[i])));
-                i++;
-            }
-        }
-
-        // Get word context
-        int[][] wordContext = getContextWordsSingleDocument(hits.hitsArrays, 0, hits.size(), wordsAroundHit, Arrays.asList(forwardIndex), Arrays.asList(fiidLookups.get(forwardIndex.annotation())));
-        Terms terms = forwardIndex.terms();
-
-        // Make the concordances from the context
-        AnnotatedField field = forwardIndex.annotation().field();
-        Annotation concPunctFI = field.annotation(Kwic.DEFAULT_CONC_PUNCT_PROP);
-        Annotation concWordFI = field.annotation(Kwic.DEFAULT_CONC_WORD_PROP);
-        for (int i = 0; i < hits.size(); i++) {
-            Hit h = hits.get(i);
-            List<String> tokens = new ArrayList<>();
-            int[] context = wordContext[i];
-            int contextLength = context[Contexts.LENGTH_INDEX];
-            int contextRightStart = context[Contexts.RIGHT_START_INDEX];
-            int contextHitStart = context[Contexts.HIT_START_INDEX];
-            int indexInContext = Contexts.NUMBER_OF_BOOKKEEPING_INTS;
-            for (int j = 0; j < contextLength; j++, indexInContext++) {
-
-                // Add punctuation before word
-                // (Applications may choose to ignore punctuation before the first word)
-                if (punctTerms == null) {
-                    // There is no punctuation forward index. Just put a space
-                    // between every word.
-                    tokens.add(" ");
-                } else
-                    tokens.add(punctTerms.get(punctContext[i][indexInContext]));
-
-                // Add extra attributes (e.g. lemma, pos)
-                if (attrContext != null) {
-                    for (int k = 0; k < attrContext.length; k++) {
-                        tokens.add(attrTerms[k].get(attrContext[k][i][indexInContext]));
-                    }
-                }
-
-                // Add word
-                if (terms != null)
-                    tokens.add(terms.get(context[indexInContext]));
-                else
-                    tokens.add(""); // weird, but make sure the numbers add up at the end
-
-            }
-            List<Annotation> annotations = new ArrayList<>();
-            annotations.add(concPunctFI);
-            if (attrContext != null) {
-                annotations.addAll(Arrays.asList(attrName));
-            }
-            annotations.add(concWordFI);
-            Kwic kwic = new Kwic(annotations, tokens, contextHitStart, contextRightStart);
-            theKwics.put(h, kwic);
-        }
-    }
-
     /**
      * Get context words from the forward index.
      *
@@ -156,7 +48,7 @@ public class Contexts implements Iterable<int[]> {
      * @param contextSources forward indices to get context from
      * @param fiidLookups how to find the forward index ids of documents
      */
-    private static int[][] getContextWordsSingleDocument(HitsArrays hits, int start, int end, ContextSize contextSize,
+    static int[][] getContextWordsSingleDocument(HitsArrays hits, int start, int end, ContextSize contextSize,
             List<AnnotationForwardIndex> contextSources, List<FiidLookup> fiidLookups) {
         final int n = end - start;
         if (n == 0)
@@ -289,6 +181,7 @@ public class Contexts implements Iterable<int[]> {
             throw new IllegalArgumentException("Cannot build contexts without annotations");
 
         hits.ensureAllResultsRead(); // make sure all hits have been read
+        long startNs = System.nanoTime();
         List<AnnotationForwardIndex> fis = new ArrayList<>();
         for (Annotation annotation: annotations) {
             fis.add(hits.index().annotationForwardIndex(annotation));
@@ -323,6 +216,13 @@ public class Contexts implements Iterable<int[]> {
         }
 
         this.annotations = new ArrayList<>(annotations);
+        long ns = System.nanoTime() - startNs;
+        hits.index().metrics().contexts().record(ns, TimeUnit.NANOSECONDS);
+        if (hits.queryInfo().profile() != null) {
+            QueryProfile profile = hits.queryInfo().profile().add("contexts", null);
+            profile.addTime(ns);
+            profile.count("hits", hits.size());
+        }
     }
 
     /**
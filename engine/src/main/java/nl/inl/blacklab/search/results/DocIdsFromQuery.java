@@ -0,0 +1,186 @@
+package nl.inl.blacklab.search.results;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.search.BulkScorer;
+import org.apache.lucene.search.LeafCollector;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.Scorer;
+import org.apache.lucene.search.Weight;
+import org.eclipse.collections.impl.list.mutable.primitive.IntArrayList;
+
+import nl.inl.blacklab.exceptions.BlackLabRuntimeException;
+import nl.inl.blacklab.exceptions.InterruptedSearch;
+import nl.inl.blacklab.search.BlackLabIndex;
+
+/**
+ * Finds the documents matching a Lucene query, processing the index segments in parallel.
+ *
+ * Uses the engine's search executor service, with at most maxThreadsPerSearch threads.
+ * Per-segment results are collected into primitive arrays and concatenated in order,
+ * so the resulting doc ids are sorted.
+ */
+final class DocIdsFromQuery {
+
+    private DocIdsFromQuery() {
+    }
+
+    /** Processes a single segment. */
+    private interface SegmentTask<T> {
+        T process(LeafReaderContext context, BulkScorer scorer) throws IOException;
+    }
+
+    /** Collects doc ids from a single segment. */
+    private static final class SegmentDocIdCollector implements LeafCollector {
+        final IntArrayList docIds = new IntArrayList();
+
+        private final int docBase;
+
+        SegmentDocIdCollector(int docBase) {
+            this.docBase = docBase;
+        }
+
+        @Override
+        public void setScorer(Scorer scorer) {
+            // (ignore)
+        }
+
+        @Override
+        public void collect(int docId) {
+            docIds.add(docBase + docId);
+        }
+    }
+
+    /** Counts docs in a single segment. */
+    private static final class SegmentDocCounter implements LeafCollector {
+        int count = 0;
+
+        @Override
+        public void setScorer(Scorer scorer) {
+            // (ignore)
+        }
+
+        @Override
+        public void collect(int docId) {
+            count++;
+        }
+    }
+
+    /**
+     * Find the ids of all (non-deleted) documents matching a query.
+     *
+     * @param index index to search
+     * @param query query to execute
+     * @return matching document ids, in increasing order
+     */
+    static int[] docIds(BlackLabIndex index, Query query) {
+        List<IntArrayList> perSegment = forEachSegment(index, query, (context, scorer) -> {
+            SegmentDocIdCollector collector = new SegmentDocIdCollector(context.docBase);
+            scorer.score(collector, context.reader().getLiveDocs());
+            return collector.docIds;
+        });
+        int total = 0;
+        for (IntArrayList segmentDocIds: perSegment) {
+            if (segmentDocIds != null)
+                total += segmentDocIds.size();
+        }
+        int[] docIds = new int[total];
+        int n = 0;
+        for (IntArrayList segmentDocIds: perSegment) {
+            if (segmentDocIds != null) {
+                int size = segmentDocIds.size();
+                for (int i = 0; i < size; i++) {
+                    docIds[n] = segmentDocIds.get(i);
+                    n++;
+                }
+            }
+        }
+        return docIds;
+    }
+
+    /**
+     * Count the (non-deleted) documents matching a query.
+     *
+     * @param index index to search
+     * @param query query to execute
+     * @return number of matching documents
+     */
+    static int count(BlackLabIndex index, Query query) {
+        if (query instanceof MatchAllDocsQuery)
+            return index.reader().numDocs();
+        List<Integer> perSegment = forEachSegment(index, query, (context, scorer) -> {
+            SegmentDocCounter counter = new SegmentDocCounter();
+            scorer.score(counter, context.reader().getLiveDocs());
+            return counter.count;
+        });
+        return perSegment.stream().mapToInt(n -> n == null ? 0 : n).sum();
+    }
+
+    /**
+     * Run a task for each segment, in parallel if possible.
+     *
+     * @param index index to search
+     * @param query query to execute
+     * @param task what to do for each segment
+     * @return results per segment, in segment order (null for segments without matches)
+     */
+    private static <T> List<T> forEachSegment(BlackLabIndex index, Query query, SegmentTask<T> task) {
+        IndexReader reader = index.reader();
+        List<LeafReaderContext> leaves = reader.leaves();
+        List<T> results = new ArrayList<>(leaves.size());
+        for (int i = 0; i < leaves.size(); i++)
+            results.add(null);
+        try {
+            Weight weight = index.searcher().createNormalizedWeight(query, false);
+            int numThreads = Math.min(Math.max(index.blackLab().maxThreadsPerSearch(), 1), leaves.size());
+            if (numThreads <= 1) {
+                // Not worth the overhead of starting threads
+                for (int i = 0; i < leaves.size(); i++)
+                    results.set(i, processSegment(weight, leaves.get(i), task));
+                return results;
+            }
+
+            // Give each thread every numThreads'th segment
+            ExecutorService executorService = index.blackLab().searchExecutorService();
+            List<Future<?>> pending = new ArrayList<>();
+            for (int thread = 0; thread < numThreads; thread++) {
+                final int firstSegment = thread;
+                pending.add(executorService.submit(() -> {
+                    for (int i = firstSegment; i < leaves.size(); i += numThreads) {
+                        results.set(i, processSegment(weight, leaves.get(i), task));
+                    }
+                    return null;
+                }));
+            }
+            try {
+                for (Future<?> future: pending)
+                    future.get();
+            } catch (InterruptedException e) {
+                // Interrupt our worker threads as well
+                pending.forEach(f -> f.cancel(true));
+                throw new InterruptedSearch(e);
+            } catch (ExecutionException e) {
+                pending.forEach(f -> f.cancel(true));
+                throw BlackLabRuntimeException.wrap(e.getCause());
+            }
+            return results;
+        } catch (IOException e) {
+            throw BlackLabRuntimeException.wrap(e);
+        }
+    }
+
+    private static <T> T processSegment(Weight weight, LeafReaderContext context, SegmentTask<T> task) throws IOException {
+        if (Thread.currentThread().isInterrupted())
+            throw new InterruptedSearch();
+        BulkScorer scorer = weight.bulkScorer(context);
+        return scorer == null ? null : task.process(context, scorer);
+    }
+}
@@ -33,10 +33,8 @@ import org.apache.lucene.index.NumericDocValues;
 import org.apache.lucene.search.DocIdSetIterator;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.Scorer;
-import org.apache.lucene.search.SimpleCollector;
 import org.apache.lucene.search.Weight;
 
-import nl.inl.blacklab.exceptions.BlackLabRuntimeException;
 import nl.inl.blacklab.exceptions.InterruptedSearch;
 import nl.inl.blacklab.resultproperty.DocProperty;
 import nl.inl.blacklab.resultproperty.DocPropertyAnnotatedFieldLength;
@@ -58,40 +56,6 @@ public class DocResults extends ResultsList<DocResult, DocProperty> implements R
 
     static final Logger logger = LogManager.getLogger(DocResults.class);
 
-    private static final class SimpleDocCollector extends SimpleCollector {
-        private final List<DocResult> results;
-        private final QueryInfo queryInfo;
-        private int docBase;
-
-        SimpleDocCollector(List<DocResult> results, QueryInfo queryInfo) {
-            this.results = results;
-            this.queryInfo = queryInfo;
-        }
-
-        @Override
-        protected void doSetNextReader(LeafReaderContext context)
-                throws IOException {
-            docBase = context.docBase;
-            super.doSetNextReader(context);
-        }
-
-        @Override
-        public void collect(int docId) throws IOException {
-            int globalDocId = docId + docBase;
-            results.add(DocResult.fromDoc(queryInfo, new PropertyValueDoc(queryInfo.index().doc(globalDocId)), 0.0f, 0));
-        }
-
-        @Override
-        public void setScorer(Scorer scorer) {
-            // (ignore)
-        }
-
-        @Override
-        public boolean needsScores() {
-            return false;
-        }
-    }
-
     /**
      * Construct an empty DocResults.
      * @param queryInfo query info
@@ -137,6 +101,18 @@ public class DocResults extends ResultsList<DocResult, DocProperty> implements R
         return new DocResults(queryInfo, query);
     }
 
+    /**
+     * Count the documents matching a query, without constructing any DocResult objects.
+     *
+     * @param queryInfo query info
+     * @param query query to execute
+     * @return number of matching documents
+     */
+    public static ResultsStats countFromQuery(QueryInfo queryInfo, Query query) {
+        int count = DocIdsFromQuery.count(queryInfo.index(), query);
+        return new ResultsStatsStatic(count, count, MaxStats.NOT_EXCEEDED);
+    }
+
     /**
      * Iterator in our source hits object
      */
@@ -230,11 +206,10 @@ public class DocResults extends ResultsList<DocResult, DocProperty> implements R
         this.query = query;
         // TODO: a better approach is to only read documents we're actually interested in instead of all of them; compare with Hits.
         //    even better: make DocResults abstract and provide two implementations, DocResultsFromHits and DocResultsFromQuery.
-        results = new ArrayList<>();
-        try {
-            queryInfo.index().searcher().search(query, new SimpleDocCollector(results, queryInfo));
-        } catch (IOException e) {
-            throw BlackLabRuntimeException.wrap(e);
+        int[] docIds = DocIdsFromQuery.docIds(queryInfo.index(), query);
+        results = new ArrayList<>(docIds.length);
+        for (int docId: docIds) {
+            results.add(DocResult.fromDoc(queryInfo, new PropertyValueDoc(queryInfo.index().doc(docId)), 0.0f, 0));
         }
     }
 
@@ -35,6 +35,22 @@ public class HitGroup extends Group<Hit> {
         return new HitGroup(groupIdentity, storedResults, totalSize);
     }
 
+    static HitGroup fromSharedHits(PropertyValue groupIdentity, SharedGroupHits sharedHits, int offset, int numberStored, int totalSize) {
+        return new HitGroup(groupIdentity, sharedHits, offset, numberStored, totalSize);
+    }
+
+    /** Stored hits shared with the other groups, or null if storedResults is used */
+    private SharedGroupHits sharedHits;
+
+    /** Where our hits start in sharedHits */
+    private int offset;
+
+    /** Number of hits we have in sharedHits */
+    private int numberStored;
+
+    /** Our stored hits, created from sharedHits when first asked for */
+    private Hits sharedStoredResults;
+
     protected HitGroup(QueryInfo queryInfo, PropertyValue groupIdentity, int totalSize) {
         this(groupIdentity, Hits.immutableEmptyList(queryInfo), totalSize);
     }
@@ -66,8 +82,59 @@ public class HitGroup extends Group<Hit> {
         super(groupIdentity, storedResults, totalSize);
     }
     
+    /**
+     * A group whose stored hits are a range in hits shared with other groups.
+     *
+     * The Hits object for this group is created on demand.
+     *
+     * @param groupIdentity identity of the group
+     * @param sharedHits hits for all groups
+     * @param offset where our hits start
+     * @param numberStored number of hits stored for this group
+     * @param totalSize total group size
+     */
+    protected HitGroup(PropertyValue groupIdentity, SharedGroupHits sharedHits, int offset, int numberStored, int totalSize) {
+        super(groupIdentity, null, totalSize);
+        this.sharedHits = sharedHits;
+        this.offset = offset;
+        this.numberStored = numberStored;
+    }
+
     @Override
     public Hits storedResults() {
+        if (sharedHits != null) {
+            if (sharedStoredResults == null)
+                sharedStoredResults = sharedHits.hits(offset, numberStored);
+            return sharedStoredResults;
+        }
         return (Hits)super.storedResults();
     }
+
+    @Override
+    public int numberOfStoredResults() {
+        if (sharedHits != null)
+            return numberStored;
+        return super.numberOfStoredResults();
+    }
+
+    /**
+     * Get the stored hits this group shares with other groups.
+     *
+     * @return hits shared with other groups, or null if this group stores its own hits
+     */
+    SharedGroupHits sharedStoredHits() {
+        return sharedHits;
+    }
+
+    /**
+     * Get a copy of this group with fewer stored hits.
+     *
+     * @param maximumNumberOfResults maximum number of hits to store
+     * @return the truncated group
+     */
+    HitGroup withFewerStoredResults(int maximumNumberOfResults) {
+        if (sharedHits != null)
+            return new HitGroup(groupIdentity, sharedHits, offset, Math.min(numberStored, maximumNumberOfResults), size());
+        return fromHits(groupIdentity, storedResults().window(0, maximumNumberOfResults), size());
+    }
 }
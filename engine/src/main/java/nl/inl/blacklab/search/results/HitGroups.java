@@ -20,14 +20,17 @@ import nl.inl.blacklab.resultproperty.GroupProperty;
 import nl.inl.blacklab.resultproperty.HitProperty;
 import nl.inl.blacklab.resultproperty.PropertyValue;
 import nl.inl.blacklab.search.indexmetadata.Annotation;
-import nl.inl.blacklab.search.results.Hits.HitsArrays;
 import org.apache.commons.lang3.tuple.Pair;
+import org.eclipse.collections.impl.list.mutable.primitive.IntArrayList;
 import org.eclipse.collections.impl.set.mutable.primitive.IntHashSet;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 /**
@@ -36,6 +39,10 @@ import java.util.stream.Collectors;
  * This class allows random access to the groups, and each group provides random
  * access to the hits. Note that this means that all hits found must be
  * retrieved, which may be infeasible for large results sets.
+ *
+ * When grouping hits, the groups don't each get a copy of their hits. Instead,
+ * they share the source hits and a single permutation array, and a group's
+ * Hits object is only created when asked for.
  */
 public class HitGroups extends ResultsList<HitGroup, GroupProperty<Hit, HitGroup>> implements ResultGroups<Hit> {
 
@@ -115,43 +122,59 @@ public class HitGroups extends ResultsList<HitGroup, GroupProperty<Hit, HitGroup
         List<FiidLookup> fiidLookups = FiidLookup.getList(requiredContext, hits.queryInfo().index().reader());
         criteria = criteria.copyWith(hits, requiredContext == null ? null : new Contexts(hits, requiredContext, criteria.needsContextSize(hits.index()), fiidLookups));
         
-        //Thread currentThread = Thread.currentThread();
-        Map<PropertyValue, HitsArrays> groupLists = new HashMap<>();
-        Map<PropertyValue, Integer> groupSizes = new HashMap<>();
-        resultObjects = 0;
-        int i = 0;
-        for (Hit hit: hits) {
+        // Determine the group of each hit, and the group sizes
+        int numberOfHits = hits.size();
+        Map<PropertyValue, Integer> groupIndexes = new HashMap<>();
+        List<PropertyValue> groupIds = new ArrayList<>();
+        IntArrayList groupSizes = new IntArrayList();
+        int[] hitGroupIndexes = new int[numberOfHits];
+        for (int i = 0; i < numberOfHits; i++) {
             PropertyValue identity = criteria.get(i);
-            HitsArrays group = groupLists.get(identity);
-            if (group == null) {
-                group = new HitsArrays();
-                groupLists.put(identity, group);
-            }
-            if (maxResultsToStorePerGroup < 0 || group.size() < maxResultsToStorePerGroup) {
-                group.add(hit);
-                resultObjects++;
+            Integer groupIndex = groupIndexes.get(identity);
+            if (groupIndex == null) {
+                groupIndex = groupIds.size();
+                groupIndexes.put(identity, groupIndex);
+                groupIds.add(identity);
+                groupSizes.add(0);
             }
-            Integer groupSize = groupSizes.get(identity);
-            if (groupSize == null)
-                groupSize = 1;
-            else
-                groupSize++;
+            hitGroupIndexes[i] = groupIndex;
+            groupSizes.set(groupIndex, groupSizes.get(groupIndex) + 1);
+        }
+
+        // Determine where each group's stored hits go in the permutation array
+        int numberOfGroups = groupIds.size();
+        int[] groupOffsets = new int[numberOfGroups];
+        int[] groupStored = new int[numberOfGroups];
+        int totalStored = 0;
+        for (int j = 0; j < numberOfGroups; j++) {
+            int groupSize = groupSizes.get(j);
             if (groupSize > largestGroupSize)
                 largestGroupSize = groupSize;
-            groupSizes.put(identity, groupSize);
-            ++i;
+            groupOffsets[j] = totalStored;
+            totalStored += maxResultsToStorePerGroup < 0 ? groupSize : Math.min(groupSize, maxResultsToStorePerGroup);
         }
-        resultObjects += groupLists.size();
-        for (Map.Entry<PropertyValue, HitsArrays> e : groupLists.entrySet()) {
-            PropertyValue groupId = e.getKey();
-            HitsArrays hitList = e.getValue();
-            Integer groupSize = groupSizes.get(groupId);
-            HitGroup group = HitGroup.fromList(queryInfo(), groupId, hitList, hits.capturedGroups(), groupSize);
+
+        // Fill the permutation array (keeping the original hit order within each group)
+        int[] permutation = new int[totalStored];
+        for (int i = 0; i < numberOfHits; i++) {
+            int groupIndex = hitGroupIndexes[i];
+            if (maxResultsToStorePerGroup < 0 || groupStored[groupIndex] < maxResultsToStorePerGroup) {
+                permutation[groupOffsets[groupIndex] + groupStored[groupIndex]] = i;
+                groupStored[groupIndex]++;
+            }
+        }
+
+        SharedGroupHits sharedHits = SharedGroupHits.create(queryInfo(), hits.hitsArrays(), hits.capturedGroups(), permutation);
+        for (int j = 0; j < numberOfGroups; j++) {
+            PropertyValue groupId = groupIds.get(j);
+            HitGroup group = HitGroup.fromSharedHits(groupId, sharedHits, groupOffsets[j], groupStored[j], groupSizes.get(j));
             groups.put(groupId, group);
             results.add(group);
         }
+        resultObjects = numberOfGroups + sharedHits.numberOfResultObjects();
 
-        // Make a copy so we don't keep any references to the source hits
+        // Save the stats, so we don't keep a reference to the source hits object
+        // (the stored hits may still refer to its hit arrays; see SharedGroupHits)
         this.hitsStats = hits.hitsStats().save();
         this.docsStats = hits.docsStats().save();
     }
@@ -162,20 +185,29 @@ public class HitGroups extends ResultsList<HitGroup, GroupProperty<Hit, HitGroup
         this.windowStats = windowStats;
         this.sampleParameters = sampleParameters;
         resultObjects = 0;
+        Set<SharedGroupHits> sharedHits = Collections.newSetFromMap(new IdentityHashMap<>());
         for (HitGroup group: groups) {
             if (group.size() > largestGroupSize)
                 largestGroupSize = group.size();
             results.add(group);
             this.groups.put(group.identity(), group);
-            resultObjects += group.numberOfStoredResults() + 1;
+            SharedGroupHits groupSharedHits = group.sharedStoredHits();
+            if (groupSharedHits != null) {
+                // Count the shared hits only once
+                if (sharedHits.add(groupSharedHits))
+                    resultObjects += groupSharedHits.numberOfResultObjects();
+                resultObjects++;
+            } else {
+                resultObjects += group.numberOfStoredResults() + 1;
+            }
         }
 
-        // Make a copy so we don't keep any references to the source hits
+        // Save the stats, so we don't keep a reference to the source hits object
+        // (shared stored hits may still refer to its hit arrays; see SharedGroupHits)
         this.hitsStats = hitsStats.save();
         this.docsStats = docsStats.save();
     }
 
-
     @Override
     public HitProperty groupCriteria() {
         return criteria;
@@ -281,8 +313,7 @@ public class HitGroups extends ResultsList<HitGroup, GroupProperty<Hit, HitGroup
             maximumNumberOfResultsPerGroup = Integer.MAX_VALUE;
         List<HitGroup> truncatedGroups = new ArrayList<>();
         for (HitGroup group: results) {
-            HitGroup newGroup = HitGroup.fromHits(group.identity(), group.storedResults().window(0, maximumNumberOfResultsPerGroup), group.size());
-            truncatedGroups.add(newGroup);
+            truncatedGroups.add(group.withFewerStoredResults(maximumNumberOfResultsPerGroup));
         }
 
         // Since we truncated hits, the number of "processed" (aka stored) hits has changed
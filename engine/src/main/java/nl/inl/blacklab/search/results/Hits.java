@@ -146,6 +146,29 @@ public abstract class Hits extends Results<Hit, HitProperty> {
             this.lock.writeLock().unlock();
         }
 
+        /**
+         * Add a block of hits from one document.
+         *
+         * @param doc document the hits occur in
+         * @param starts start positions
+         * @param ends end positions
+         * @param offset index of the first hit to add in starts and ends
+         * @param length number of hits to add
+         */
+        public void addAll(int doc, int[] starts, int[] ends, int offset, int length) {
+            this.lock.writeLock().lock();
+            int size = docs.size() + length;
+            docs.ensureCapacity(size);
+            this.starts.ensureCapacity(size);
+            this.ends.ensureCapacity(size);
+            for (int i = offset; i < offset + length; i++) {
+                docs.add(doc);
+                this.starts.add(starts[i]);
+                this.ends.add(ends[i]);
+            }
+            this.lock.writeLock().unlock();
+        }
+
         /** Add the hit to the end of this list, copying the values. The hit object itself is not retained. */
         public void add(EphemeralHit hit) {
             this.lock.writeLock().lock();
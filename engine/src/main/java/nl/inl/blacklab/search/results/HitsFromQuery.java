@@ -6,6 +6,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
@@ -14,6 +15,7 @@ import org.apache.lucene.index.LeafReaderContext;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.index.TermContext;
 import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.spans.SpanWeight;
 import org.apache.lucene.search.spans.SpanWeight.Postings;
 import org.apache.lucene.search.spans.Spans;
@@ -28,7 +30,8 @@ import nl.inl.blacklab.search.Span;
 import nl.inl.blacklab.search.lucene.BLSpanQuery;
 import nl.inl.blacklab.search.lucene.BLSpans;
 import nl.inl.blacklab.search.lucene.HitQueryContext;
-import nl.inl.blacklab.search.lucene.optimize.ClauseCombinerNfa;
+import nl.inl.blacklab.search.lucene.ProfilingSearcher;
+import nl.inl.blacklab.search.lucene.optimize.ForwardIndexMatchingSettings;
 
 /**
  * A Hits object that is filled from a BLSpanQuery.
@@ -108,34 +111,44 @@ public class HitsFromQuery extends Hits {
             IndexReader reader = index.reader();
 
             // Override FI match threshold? (debug use only!)
-            long oldFiMatchValue = ClauseCombinerNfa.getNfaThreshold();
-            if (searchSettings.fiMatchFactor() != -1 && searchSettings.fiMatchFactor() != ClauseCombinerNfa.getNfaThreshold()) {
+            // (only affects this thread, so concurrent queries are not affected)
+            ForwardIndexMatchingSettings nfaSettings = index.forwardIndexMatchingSettings();
+            if (searchSettings.fiMatchFactor() != -1 && searchSettings.fiMatchFactor() != nfaSettings.threshold()) {
                 logger.debug("setting NFA threshold for this query to " + searchSettings.fiMatchFactor());
-                ClauseCombinerNfa.setNfaThreshold(searchSettings.fiMatchFactor());
+                nfaSettings.overrideThresholdForThisThread(searchSettings.fiMatchFactor());
             }
 
-            sourceQuery.setQueryInfo(queryInfo);
-            if (BlackLabIndexImpl.traceOptimization())
-                logger.debug("Query before optimize()/rewrite(): " + sourceQuery);
-
-            BLSpanQuery optimize = sourceQuery.optimize(reader);
-            if (BlackLabIndexImpl.traceOptimization())
-                logger.debug("Query after optimize(): " + optimize);
-
-            BLSpanQuery spanQuery = optimize.rewrite(reader);
-            if (BlackLabIndexImpl.traceOptimization())
-                logger.debug("Query after rewrite(): " + spanQuery);
-
-            // Restore previous FI match threshold
-            if (searchSettings.fiMatchFactor() != -1) {
-                ClauseCombinerNfa.setNfaThreshold(oldFiMatchValue);
+            BLSpanQuery spanQuery;
+            try {
+                sourceQuery.setQueryInfo(queryInfo);
+                if (BlackLabIndexImpl.traceOptimization())
+                    logger.debug("Query before optimize()/rewrite(): " + sourceQuery);
+
+                long rewriteStart = System.nanoTime();
+                BLSpanQuery optimize = sourceQuery.optimize(reader);
+                if (BlackLabIndexImpl.traceOptimization())
+                    logger.debug("Query after optimize(): " + optimize);
+
+                spanQuery = optimize.rewrite(reader);
+                if (BlackLabIndexImpl.traceOptimization())
+                    logger.debug("Query after rewrite(): " + spanQuery);
+                index.metrics().queryRewrite().record(System.nanoTime() - rewriteStart, TimeUnit.NANOSECONDS);
+                if (queryInfo.profile() != null)
+                    queryInfo.profile().add("rewrite", spanQuery.toString()).addTimeSince(rewriteStart);
+            } finally {
+                // Restore regular FI match threshold
+                nfaSettings.clearThresholdOverride();
             }
 
             //System.err.println(spanQuery);
             termContexts = new HashMap<>();
             Set<Term> terms = new HashSet<>();
             spanQuery = BLSpanQuery.ensureSortedUnique(spanQuery);
-            weight = spanQuery.createWeight(index.searcher(), false);
+            index.metrics().queryMatching(spanQuery.usesForwardIndexMatching());
+            IndexSearcher searcher = index.searcher();
+            if (queryInfo.profile() != null)
+                searcher = new ProfilingSearcher(reader, queryInfo.profile().add("spans", null));
+            weight = ProfilingSearcher.createWeight(spanQuery, searcher, false);
             weight.extractTerms(terms);
             for (Term term : terms) {
                 try {
@@ -8,6 +8,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
@@ -16,21 +17,29 @@ import java.util.stream.Collectors;
 
 import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.Term;
 import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.spans.SpanWeight.Postings;
 import org.apache.lucene.search.spans.Spans;
 import org.apache.lucene.util.Bits;
 
+import io.micrometer.core.instrument.Timer;
+
 import nl.inl.blacklab.exceptions.BlackLabRuntimeException;
 import nl.inl.blacklab.exceptions.InterruptedSearch;
 import nl.inl.blacklab.search.BlackLabIndex;
 import nl.inl.blacklab.search.BlackLabIndexImpl;
+import nl.inl.blacklab.search.IndexMetrics;
+import nl.inl.blacklab.search.QueryProfile;
 import nl.inl.blacklab.search.Span;
 import nl.inl.blacklab.search.lucene.BLSpanQuery;
+import nl.inl.blacklab.search.lucene.BLSpanTermQuery;
 import nl.inl.blacklab.search.lucene.BLSpanWeight;
 import nl.inl.blacklab.search.lucene.BLSpans;
 import nl.inl.blacklab.search.lucene.HitQueryContext;
-import nl.inl.blacklab.search.lucene.optimize.ClauseCombinerNfa;
+import nl.inl.blacklab.search.lucene.ProfilingSearcher;
+import nl.inl.blacklab.search.lucene.optimize.ForwardIndexMatchingSettings;
 import nl.inl.blacklab.search.results.Hits.HitsArrays.HitIterator;
 import nl.inl.util.ThreadAborter;
 
@@ -44,6 +53,12 @@ public class HitsFromQueryParallel extends Hits {
         /** How many hits should we collect (at least) before we add them to the global results? */
         private static final int ADD_HITS_TO_GLOBAL_THRESHOLD = 100;
 
+        /** In count-only mode, how many hits should we reserve on the global counter at a time? */
+        private static final int COUNT_HITS_BATCH_SIZE = 1000;
+
+        /** If we don't need captured groups, how many hits should we get from the spans at a time? */
+        private static final int HIT_BLOCK_SIZE = 256;
+
         BLSpanWeight weight; // Weight is set when this is uninitialized, spans is set otherwise
         BLSpans spans; // usually lazy initialization - takes a long time to set up and holds a large amount of memory. Nulled after we're finished
 
@@ -72,6 +87,8 @@ public class HitsFromQueryParallel extends Hits {
         private final HitsArrays globalResults;
         /** Master list of capturedGroups (only set if any groups to capture. Should always be locked before writing! */
         private CapturedGroups globalCapturedGroups;
+        /** Only count hits and docs, don't store them? (when we don't need to see any hits) */
+        private final boolean countOnly;
 
         // Internal state
         private boolean isDone = false;
@@ -82,6 +99,17 @@ public class HitsFromQueryParallel extends Hits {
         private boolean hasPrefetchedHit = false;
         private int prevDoc = -1;
 
+        /** Start positions of the current block of hits (if we're processing hits in blocks; see {@link #nextBlock(Bits)}) */
+        private int[] blockStarts;
+        /** End positions of the current block of hits */
+        private int[] blockEnds;
+        /** Index of the next hit to process in the current block */
+        private int blockIndex = 0;
+        /** Number of hits in the current block */
+        private int blockLength = 0;
+        /** Have we had all hits from the current document? (so we shouldn't ask for more) */
+        private boolean blockDocDone = false;
+
         /**
          * Construct an uninitialized spansreader that will retrieve its own Spans object on when it's ran.
          *
@@ -128,6 +156,7 @@ public class HitsFromQueryParallel extends Hits {
          * @param globalHitsCounted     global hits counter (includes ones that weren't retrieved because of max. settings)
          * @param globalHitsToProcess   how many more hits to retrieve
          * @param globalHitsToCount     how many more hits to count
+         * @param countOnly             only count hits and docs, don't store any hits
          */
         private SpansReader(
             BLSpanWeight weight,
@@ -141,7 +170,8 @@ public class HitsFromQueryParallel extends Hits {
             AtomicInteger globalHitsProcessed,
             AtomicInteger globalHitsCounted,
             AtomicInteger globalHitsToProcess,
-            AtomicInteger globalHitsToCount
+            AtomicInteger globalHitsToCount,
+            boolean countOnly
         ) {
             this.spans = null; // inverted for uninitialized version
             this.weight = weight;
@@ -159,6 +189,7 @@ public class HitsFromQueryParallel extends Hits {
             this.globalHitsCounted = globalHitsCounted;
             this.globalHitsToCount = globalHitsToCount;
             this.globalHitsToProcess = globalHitsToProcess;
+            this.countOnly = countOnly;
 
             this.docBase = leafReaderContext.docBase;
 
@@ -213,6 +244,38 @@ public class HitsFromQueryParallel extends Hits {
             return true;
         }
 
+        /**
+         * Get the next block of hits from our spans object.
+         *
+         * Used instead of {@link #advanceSpansToNextHit(BLSpans, Bits)} if we don't
+         * need captured groups, so we don't need several calls per hit. A block only
+         * contains hits from one document, the current document of our spans object.
+         *
+         * @param liveDocs used to check if the document is still alive in the index.
+         * @return true if we got a new block of hits, false if out of hits.
+         * @throws IOException
+         */
+        private boolean nextBlock(Bits liveDocs) throws IOException {
+            if (blockStarts == null) {
+                blockStarts = new int[HIT_BLOCK_SIZE];
+                blockEnds = new int[HIT_BLOCK_SIZE];
+            }
+            blockIndex = blockLength = 0;
+            int doc = spans.docID();
+            while (true) {
+                if (doc == DocIdSetIterator.NO_MORE_DOCS)
+                    return false;
+                if (doc != -1 && !blockDocDone && (liveDocs == null || liveDocs.get(doc))) {
+                    blockLength = spans.nextStartPositions(blockStarts, blockEnds);
+                    blockDocDone = blockLength < blockStarts.length;
+                    if (blockLength > 0)
+                        return true;
+                }
+                doc = spans.nextDoc();
+                blockDocDone = false;
+            }
+        }
+
         /**
          * Collect all hits from our spans object.
          * Updates the global counters, shared with other SpansReader objects operating on the same result set.
@@ -228,7 +291,16 @@ public class HitsFromQueryParallel extends Hits {
             if (isDone) // NOTE: initialize() may instantly set isDone to true, so order is important here.
                 return;
 
+            if (countOnly) {
+                countHits();
+                return;
+            }
+
             final int numCaptureGroups = hitQueryContext.numberOfCapturedGroups();
+            if (numCaptureGroups == 0) {
+                collectHitsInBlocks();
+                return;
+            }
             final ArrayList<Span[]> capturedGroups = numCaptureGroups > 0 ? new ArrayList<Span[]>() : null;
 
             final HitsArrays results = new HitsArrays();
@@ -307,6 +379,147 @@ public class HitsFromQueryParallel extends Hits {
             this.leafReaderContext = null;
         }
 
+        /**
+         * Collect all hits from our spans object, getting them in blocks.
+         *
+         * Does the same as the main loop in {@link #run()}, but as we don't need captured groups,
+         * we can get hits from the spans in blocks and reserve them on the global counters a block at a time.
+         */
+        private void collectHitsInBlocks() {
+            final HitsArrays results = new HitsArrays();
+            final Bits liveDocs = leafReaderContext.reader().getLiveDocs();
+            try {
+                while (blockIndex < blockLength || nextBlock(liveDocs)) {
+                    // Reserve as many hits as we can count and store (if we're not at the limits yet)
+                    final int hitsCounted = reserveHits(globalHitsCounted, globalHitsToCount, blockLength - blockIndex);
+                    if (hitsCounted == 0)
+                        return;
+                    final int hitsStored = reserveHits(globalHitsProcessed, globalHitsToProcess, hitsCounted);
+
+                    final int doc = spans.docID() + docBase;
+                    if (doc != prevDoc) {
+                        globalDocsCounted.incrementAndGet();
+                        if (hitsStored > 0) {
+                            globalDocsProcessed.incrementAndGet();
+                        }
+                        if (results.size() >= ADD_HITS_TO_GLOBAL_THRESHOLD) {
+                            // We've built up a batch of hits. Add them to the global results.
+                            // We do this only once per doc, so hits from the same doc remain contiguous in the master list.
+                            addToGlobalResults(results, null);
+                        }
+                    }
+
+                    if (hitsStored > 0)
+                        results.addAll(doc, blockStarts, blockEnds, blockIndex, hitsStored);
+                    blockIndex += hitsCounted;
+                    prevDoc = doc;
+
+                    // Do this at the end so interruptions don't happen halfway through a loop and lead to invalid states
+                    threadAborter.checkAbort();
+                }
+            } catch (InterruptedException e) {
+                throw new InterruptedSearch(e);
+            } catch (IOException e) {
+                throw BlackLabRuntimeException.wrap(e);
+            } finally {
+                // write out leftover hits in last document/aborted document
+                if (results.size() > 0)
+                    addToGlobalResults(results, null);
+            }
+
+            // If we're here, the loop reached its natural end - we're done.
+            // Free some objects to avoid holding on to memory
+            this.isDone = true;
+            this.spans = null;
+            this.hitQueryContext = null;
+            this.leafReaderContext = null;
+        }
+
+        /**
+         * Count all hits and docs from our spans object without storing anything.
+         *
+         * Instead of updating the global counters for every hit, we reserve a batch of hits
+         * on the global hits counter, count locally until the batch is used up, and return
+         * whatever we didn't use at the end. This keeps the maximum number of hits to count
+         * exact while avoiding contention between SpansReaders.
+         *
+         * Hits within the maximum number to process are reserved on the processed counter
+         * as well, even though we don't store them, so the totals we report are the same as
+         * for a search that does store them.
+         */
+        private void countHits() {
+            final Bits liveDocs = leafReaderContext.reader().getLiveDocs();
+            int hitsReserved = 0;
+            int hitsProcessedReserved = 0;
+            int docsCounted = 0;
+            int docsProcessed = 0;
+            try {
+                while (blockIndex < blockLength || nextBlock(liveDocs)) {
+                    if (hitsReserved == 0) {
+                        // Report progress so far and try to reserve another batch of hits to count
+                        globalDocsCounted.addAndGet(docsCounted);
+                        globalDocsProcessed.addAndGet(docsProcessed);
+                        docsCounted = docsProcessed = 0;
+                        hitsReserved = reserveHits(globalHitsCounted, globalHitsToCount, COUNT_HITS_BATCH_SIZE);
+                        if (hitsReserved == 0)
+                            return; // we're at the limit
+                        hitsProcessedReserved = reserveHits(globalHitsProcessed, globalHitsToProcess, hitsReserved);
+                        threadAborter.checkAbort();
+                    }
+                    final int n = Math.min(hitsReserved, blockLength - blockIndex);
+                    final int nProcessed = Math.min(hitsProcessedReserved, n);
+                    hitsReserved -= n;
+                    hitsProcessedReserved -= nProcessed;
+                    blockIndex += n;
+
+                    final int doc = spans.docID() + docBase;
+                    if (doc != prevDoc) {
+                        docsCounted++;
+                        if (nProcessed > 0)
+                            docsProcessed++;
+                    }
+                    prevDoc = doc;
+                }
+            } catch (InterruptedException e) {
+                throw new InterruptedSearch(e);
+            } catch (IOException e) {
+                throw BlackLabRuntimeException.wrap(e);
+            } finally {
+                // Return any hits we reserved but didn't count, and add our docs counts
+                if (hitsReserved > 0)
+                    globalHitsCounted.addAndGet(-hitsReserved);
+                if (hitsProcessedReserved > 0)
+                    globalHitsProcessed.addAndGet(-hitsProcessedReserved);
+                globalDocsCounted.addAndGet(docsCounted);
+                globalDocsProcessed.addAndGet(docsProcessed);
+            }
+
+            // If we're here, the loop reached its natural end - we're done.
+            this.isDone = true;
+            this.spans = null;
+            this.hitQueryContext = null;
+            this.leafReaderContext = null;
+        }
+
+        /**
+         * Reserve a number of hits on a global counter.
+         *
+         * @param counter global counter to reserve the hits on
+         * @param max maximum value for the counter
+         * @param n number of hits we'd like to reserve
+         * @return number of hits reserved (at most n), or 0 if we've reached the maximum
+         */
+        private static int reserveHits(AtomicInteger counter, AtomicInteger max, int n) {
+            while (true) {
+                int current = counter.get();
+                int target = (int) Math.min((long) current + n, max.get());
+                if (target <= current)
+                    return 0;
+                if (counter.compareAndSet(current, target))
+                    return target - current;
+            }
+        }
+
         void addToGlobalResults(HitsArrays hits, List<Span[]> capturedGroups) {
             globalResults.addAll(hits);
 
@@ -353,6 +566,8 @@ public class HitsFromQueryParallel extends Hits {
     protected final int maxHitsToProcess;
     /** Configured upper limit of requestedHitsToCount, to which it will always be clamped. */
     protected final int maxHitsToCount;
+    /** Only count hits and docs, don't store them? (see {@link SearchSettings#countOnly()}) */
+    protected final boolean countOnly;
 
     // state
     protected final HitQueryContext hitQueryContext = new HitQueryContext();
@@ -360,6 +575,15 @@ public class HitsFromQueryParallel extends Hits {
     protected final List<SpansReader> spansReaders = new ArrayList<>();
     protected boolean allSourceSpansFullyRead = false;
 
+    /** Profile node for reading the spans, or null if we're not profiling */
+    private QueryProfile spansProfile;
+
+    /** Hits counted so far that were already added to the index metrics */
+    private int hitsCountedReported;
+
+    /** Docs counted so far that were already added to the index metrics */
+    private int docsCountedReported;
+
     protected HitsFromQueryParallel(QueryInfo queryInfo, BLSpanQuery sourceQuery, SearchSettings searchSettings) {
         super(queryInfo, new HitsArrays()); // explicitly construct HitsArrays so they're writeable
         this.searchSettings = searchSettings;
@@ -377,20 +601,22 @@ public class HitsFromQueryParallel extends Hits {
             configuredMaxHitsToProcess = configuredMaxHitsToCount;
         this.maxHitsToProcess = configuredMaxHitsToProcess;
         this.maxHitsToCount = configuredMaxHitsToCount;
+        this.countOnly = searchSettings.countOnly();
 
         try {
             // Override FI match threshold? (debug use only!)
-            synchronized (ClauseCombinerNfa.class) {
-                long oldFiMatchValue = ClauseCombinerNfa.getNfaThreshold();
-                if (searchSettings.fiMatchFactor() != -1) {
-                    logger.debug("setting NFA threshold for this query to " + searchSettings.fiMatchFactor());
-                    ClauseCombinerNfa.setNfaThreshold(searchSettings.fiMatchFactor());
-                }
-
+            // (only affects this thread, so concurrent queries are not affected)
+            ForwardIndexMatchingSettings nfaSettings = index.forwardIndexMatchingSettings();
+            if (searchSettings.fiMatchFactor() != -1) {
+                logger.debug("setting NFA threshold for this query to " + searchSettings.fiMatchFactor());
+                nfaSettings.overrideThresholdForThisThread(searchSettings.fiMatchFactor());
+            }
+            try {
                 sourceQuery.setQueryInfo(queryInfo);
                 if (BlackLabIndexImpl.traceOptimization())
                     logger.debug("Query before optimize()/rewrite(): " + sourceQuery);
 
+                long rewriteStart = System.nanoTime();
                 optimizedQuery = sourceQuery.optimize(reader);
                 if (BlackLabIndexImpl.traceOptimization())
                     logger.debug("Query after optimize(): " + optimizedQuery);
@@ -400,15 +626,31 @@ public class HitsFromQueryParallel extends Hits {
                     logger.debug("Query after rewrite(): " + optimizedQuery);
 
                 optimizedQuery = BLSpanQuery.ensureSortedUnique(optimizedQuery);
+                index.metrics().queryRewrite().record(System.nanoTime() - rewriteStart, TimeUnit.NANOSECONDS);
+                if (queryInfo.profile() != null)
+                    queryInfo.profile().add("rewrite", optimizedQuery.toString()).addTimeSince(rewriteStart);
+            } finally {
+                // Restore regular FI match threshold
+                nfaSettings.clearThresholdOverride();
+            }
+            index.metrics().queryMatching(optimizedQuery.usesForwardIndexMatching());
 
-                // Restore previous FI match threshold
-                if (searchSettings.fiMatchFactor() != -1) {
-                    ClauseCombinerNfa.setNfaThreshold(oldFiMatchValue);
-                }
+            if (countOnly && countFromTermStatistics(reader, optimizedQuery)) {
+                // We could determine the counts without iterating over any spans.
+                allSourceSpansFullyRead = true;
+                reportCounts();
+                return;
+            }
+
+            // If we're profiling, record the spans for each clause
+            IndexSearcher searcher = index.searcher();
+            if (queryInfo.profile() != null) {
+                spansProfile = queryInfo.profile().add("spans", null);
+                searcher = new ProfilingSearcher(reader, spansProfile);
             }
 
             // This call can take a long time
-            BLSpanWeight weight = optimizedQuery.createWeight(index.searcher(), false);
+            BLSpanWeight weight = ProfilingSearcher.createWeight(optimizedQuery, searcher, false);
 
             boolean hasInitialized = false;
             for (LeafReaderContext leafReaderContext : reader.leaves()) {
@@ -423,7 +665,8 @@ public class HitsFromQueryParallel extends Hits {
                     this.globalHitsProcessed,
                     this.globalHitsCounted,
                     this.requestedHitsToProcess,
-                    this.requestedHitsToCount
+                    this.requestedHitsToCount,
+                    this.countOnly
                 );
                 spansReaders.add(spansReader);
 
@@ -456,11 +699,50 @@ public class HitsFromQueryParallel extends Hits {
         }
     }
 
+    /**
+     * Add the hits and docs counted since the last call to the index metrics.
+     */
+    private void reportCounts() {
+        int hits = globalHitsCounted.get();
+        int docs = globalDocsCounted.get();
+        IndexMetrics metrics = queryInfo().index().metrics();
+        metrics.hitsCounted().increment(hits - hitsCountedReported);
+        metrics.docsCounted().increment(docs - docsCountedReported);
+        hitsCountedReported = hits;
+        docsCountedReported = docs;
+    }
+
+    /**
+     * Try to determine the hit and doc counts from Lucene's term statistics.
+     *
+     * This is possible for a single term query on an index without deleted documents:
+     * the number of hits is the term's total frequency and the number of docs its doc frequency.
+     *
+     * @param reader index reader
+     * @param query optimized query
+     * @return true if the counts were determined, false if we need to count normally
+     * @throws IOException
+     */
+    private boolean countFromTermStatistics(IndexReader reader, BLSpanQuery query) throws IOException {
+        if (!(query instanceof BLSpanTermQuery) || reader.hasDeletions())
+            return false;
+        Term term = ((BLSpanTermQuery) query).getTerm();
+        long totalTermFreq = reader.totalTermFreq(term);
+        if (totalTermFreq < 0 || totalTermFreq > maxHitsToProcess)
+            return false; // frequencies not available, or we'd exceed our limit
+        int docFreq = reader.docFreq(term);
+        globalHitsCounted.set((int) totalTermFreq);
+        globalHitsProcessed.set((int) totalTermFreq);
+        globalDocsCounted.set(docFreq);
+        globalDocsProcessed.set(docFreq);
+        return true;
+    }
+
     @Override
     protected void ensureResultsRead(int number) {
         final int clampedNumber = number = number < 0 ? maxHitsToCount : Math.min(number, maxHitsToCount);
 
-        if (allSourceSpansFullyRead || (hitsArrays.size() >= clampedNumber)) {
+        if (allSourceSpansFullyRead || (hitsAvailable() >= clampedNumber)) {
             return;
         }
 
@@ -476,7 +758,7 @@ public class HitsFromQueryParallel extends Hits {
              * So instead poll our own state, then if we're still missing results after that just count them ourselves
              */
             while (!ensureHitsReadLock.tryLock()) {
-                if (allSourceSpansFullyRead || (hitsArrays.size() >= clampedNumber)) {
+                if (allSourceSpansFullyRead || (hitsAvailable() >= clampedNumber)) {
                     return;
                 }
 
@@ -484,8 +766,10 @@ public class HitsFromQueryParallel extends Hits {
             }
             hasLock = true;
             // This is the blocking portion, retrieve all hits from the other threads.
+            long startTime = System.nanoTime();
             try {
                 final ExecutorService executorService = queryInfo().index().blackLab().searchExecutorService();
+                final Timer spansReaderTimer = queryInfo().index().metrics().spansReader();
 
                 final AtomicInteger i = new AtomicInteger();
                 final int numThreads = Math.max(queryInfo().index().blackLab().maxThreadsPerSearch(), 1);
@@ -494,7 +778,7 @@ public class HitsFromQueryParallel extends Hits {
                     .collect(Collectors.groupingBy(sr -> i.getAndIncrement() % numThreads)) // subdivide the list, one sublist per thread to use.
                     .values()
                     .stream()
-                    .map(list -> executorService.submit(() -> list.forEach(SpansReader::run))) // now submit one task per sublist
+                    .map(list -> executorService.submit(() -> list.forEach(sr -> spansReaderTimer.record(sr)))) // now submit one task per sublist
                     .collect(Collectors.toList()); // gather the futures
 
                 // Wait for workers to complete.
@@ -516,6 +800,10 @@ public class HitsFromQueryParallel extends Hits {
                         it.remove();
                 }
                 this.allSourceSpansFullyRead = spansReaders.isEmpty();
+
+                if (spansProfile != null)
+                    spansProfile.addTimeSince(startTime);
+                reportCounts();
             } catch (Exception e) {
                 Throwable cause = e.getCause();
                 if (!(e instanceof InterruptedException))
@@ -537,6 +825,15 @@ public class HitsFromQueryParallel extends Hits {
         }
     }
 
+    /**
+     * How many hits have we read so far?
+     *
+     * @return number of hits stored, or number of hits counted if we're only counting
+     */
+    private int hitsAvailable() {
+        return countOnly ? globalHitsCounted.get() : hitsArrays.size();
+    }
+
     @Override
     public MaxStats maxStats() {
         return new MaxStats(this.globalHitsCounted.get() >= this.maxHitsToProcess, this.globalHitsCounted.get() >= this.maxHitsToCount);
@@ -603,14 +900,90 @@ public class HitsFromQueryParallel extends Hits {
 
     @Override
     protected int resultsProcessedSoFar() {
-        return hitsProcessedSoFar();
+        return countOnly ? 0 : hitsProcessedSoFar();
     }
 
     @Override
     protected int resultsProcessedTotal() {
+        if (countOnly) {
+            ensureAllResultsRead();
+            return 0; // we didn't store any hits
+        }
         return hitsProcessedTotal();
     }
 
+    @Override
+    public ResultsStats hitsStats() {
+        return countOnly ? countOnlyHitsStats : super.hitsStats();
+    }
+
+    @Override
+    public ResultsStats docsStats() {
+        return countOnly ? countOnlyDocsStats : super.docsStats();
+    }
+
+    /**
+     * Stats for a count-only search.
+     *
+     * Reports the hits and docs we would have processed, even though we didn't store them,
+     * so the results are the same as for a regular search.
+     */
+    private class CountOnlyStats extends ResultsStats {
+
+        private final boolean docs;
+
+        CountOnlyStats(boolean docs) {
+            this.docs = docs;
+        }
+
+        @Override
+        public boolean processedAtLeast(int lowerBound) {
+            while (!doneProcessingAndCounting() && processedSoFar() < lowerBound) {
+                ensureResultsRead(globalHitsCounted.get() + FETCH_HITS_MIN);
+            }
+            return processedSoFar() >= lowerBound;
+        }
+
+        @Override
+        public int processedTotal() {
+            return docs ? docsProcessedTotal() : hitsProcessedTotal();
+        }
+
+        @Override
+        public int processedSoFar() {
+            return docs ? docsProcessedSoFar() : hitsProcessedSoFar();
+        }
+
+        @Override
+        public int countedSoFar() {
+            return docs ? docsCountedSoFar() : hitsCountedSoFar();
+        }
+
+        @Override
+        public int countedTotal() {
+            return docs ? docsCountedTotal() : hitsCountedTotal();
+        }
+
+        @Override
+        public boolean done() {
+            return doneProcessingAndCounting();
+        }
+
+        @Override
+        public MaxStats maxStats() {
+            return HitsFromQueryParallel.this.maxStats();
+        }
+
+        @Override
+        public String toString() {
+            return "ResultsStats(" + HitsFromQueryParallel.this.toString() + ")";
+        }
+    }
+
+    private final ResultsStats countOnlyHitsStats = new CountOnlyStats(false);
+
+    private final ResultsStats countOnlyDocsStats = new CountOnlyStats(true);
+
 
     /**
      * Return debug info.
@@ -619,6 +992,7 @@ public class HitsFromQueryParallel extends Hits {
         Map<String, Object> result = new HashMap<>();
         result.put("className", getClass().getName());
         result.put("globalHitsCounted", globalHitsCounted);
+        result.put("countOnly", countOnly);
         result.put("allSourceSpansFullyRead", allSourceSpansFullyRead);
         result.put("spansReaders-size", spansReaders.size());
         result.put("spansReaders-done", spansReaders.stream().map(r -> r.isDone).collect(Collectors.toList()));
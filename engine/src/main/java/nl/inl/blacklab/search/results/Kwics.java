@@ -1,30 +1,69 @@
 package nl.inl.blacklab.search.results;
 
+import java.util.AbstractList;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collections;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntConsumer;
 
 import org.apache.lucene.index.IndexReader;
-import org.eclipse.collections.api.map.primitive.MutableIntObjectMap;
-import org.eclipse.collections.impl.factory.primitive.IntObjectMaps;
+import org.eclipse.collections.api.list.primitive.MutableIntList;
+import org.eclipse.collections.impl.list.mutable.primitive.IntArrayList;
+import org.eclipse.collections.impl.map.mutable.primitive.ObjectIntHashMap;
 
+import nl.inl.blacklab.exceptions.BlackLabRuntimeException;
+import nl.inl.blacklab.exceptions.InterruptedSearch;
 import nl.inl.blacklab.forwardindex.AnnotationForwardIndex;
 import nl.inl.blacklab.forwardindex.FiidLookup;
+import nl.inl.blacklab.forwardindex.Terms;
+import nl.inl.blacklab.search.BlackLabEngine;
 import nl.inl.blacklab.search.BlackLabIndex;
 import nl.inl.blacklab.search.Kwic;
+import nl.inl.blacklab.search.QueryProfile;
 import nl.inl.blacklab.search.indexmetadata.AnnotatedField;
 import nl.inl.blacklab.search.indexmetadata.Annotation;
 
-/** KWICs for a list of hits. */
+/**
+ * KWICs for a list of hits.
+ *
+ * The contexts are retrieved from the forward index per document (in parallel
+ * if there are many) and stored as term ids, indexed by hit. Term strings are only looked up when
+ * they are actually used, e.g. when writing the KWIC to the response, so
+ * annotations that aren't written never need to be looked up.
+ */
 public class Kwics {
-    
+
+    /** Only use several threads if each thread gets at least this many documents */
+    private static final int MIN_DOCS_PER_THREAD = 50;
+
     /**
-     * The KWIC data, if it has been retrieved.
-     *
-     * NOTE: this will always be null if not all the hits have been retrieved.
+     * Annotations in the contexts, in order: punctuation, attributes (e.g. lemma,
+     * pos), word.
+     */
+    private final List<Annotation> annotations;
+
+    /**
+     * Terms for each annotation in the contexts, in the same order; null if we have
+     * no forward index for this annotation.
      */
-    Map<Hit, Kwic> kwics;
+    private final Terms[] terms;
+
+    /**
+     * The context for each hit, indexed by hit, in the same format as in
+     * {@link Contexts}: bookkeeping ints, followed by the term ids for each
+     * annotation.
+     */
+    private final int[][] contexts;
+
+    /** The hits we have KWICs for */
+    private final Hits hits;
+
+    /** Index of each hit, for looking up KWICs by hit. Only created when needed. */
+    private ObjectIntHashMap<Hit> hitIndexes;
 
     /**
      * @param hits
@@ -32,101 +71,195 @@ public class Kwics {
     protected Kwics(Hits hits, ContextSize contextSize) {
         if (contextSize.left() < 0 || contextSize.right() < 0)
             throw new IllegalArgumentException("contextSize cannot be negative");
-    
-        // Get the concordances
-        kwics = retrieveKwics(hits, contextSize, hits.field());
+        this.hits = hits;
+
+        // Determine the annotations we need; all FIs except word and punct are attributes
+        AnnotatedField field = hits.field();
+        BlackLabIndex index = hits.index();
+        Annotation punctAnnot = field.annotation(Kwic.DEFAULT_CONC_PUNCT_PROP);
+        Annotation wordAnnot = field.annotation(Kwic.DEFAULT_CONC_WORD_PROP);
+        annotations = new ArrayList<>();
+        annotations.add(punctAnnot);
+        for (Annotation annotation: field.annotations()) {
+            if (annotation.hasForwardIndex() && !annotation.equals(wordAnnot) && !annotation.equals(punctAnnot))
+                annotations.add(annotation);
+        }
+        annotations.add(wordAnnot);
+
+        // Get forward indexes, terms and FiidLookups for all of them
+        IndexReader reader = index.reader();
+        List<AnnotationForwardIndex> forwardIndexes = new ArrayList<>();
+        List<FiidLookup> fiidLookups = new ArrayList<>();
+        List<Terms> termsList = new ArrayList<>();
+        for (Annotation annotation: annotations) {
+            AnnotationForwardIndex forwardIndex = index.annotationForwardIndex(annotation);
+            if (forwardIndex == null && annotation == punctAnnot) {
+                // No punctuation forward index; we'll just put a space between words
+                termsList.add(null);
+                continue;
+            }
+            forwardIndexes.add(forwardIndex);
+            fiidLookups.add(new FiidLookup(reader, annotation));
+            termsList.add(forwardIndex.terms());
+        }
+        terms = termsList.toArray(new Terms[0]);
+
+        // Get the contexts
+        long startNs = System.nanoTime();
+        contexts = retrieveContexts(hits, contextSize, forwardIndexes, fiidLookups);
+        long ns = System.nanoTime() - startNs;
+        index.metrics().kwics().record(ns, TimeUnit.NANOSECONDS);
+        if (hits.queryInfo().profile() != null) {
+            QueryProfile profile = hits.queryInfo().profile().add("kwics", null);
+            profile.addTime(ns);
+            profile.count("hits", hits.size());
+        }
+    }
+
+    /**
+     * Retrieve contexts for all the hits.
+     *
+     * If there are many documents, they are divided over several threads of the
+     * search executor.
+     *
+     * @param hits hits to get contexts for
+     * @param contextSize how many words around the hit to retrieve
+     * @param forwardIndexes forward indexes to get contexts from
+     * @param fiidLookups how to find the forward index ids of documents
+     * @return the contexts, indexed by hit
+     */
+    private static int[][] retrieveContexts(Hits hits, ContextSize contextSize,
+            List<AnnotationForwardIndex> forwardIndexes, List<FiidLookup> fiidLookups) {
+        Hits.HitsArrays ha = hits.hitsArrays();
+        int size = hits.size();
+        int[][] contexts = new int[size][];
+        if (size == 0)
+            return contexts;
+
+        // Find the hit index where each document starts
+        MutableIntList docStarts = new IntArrayList();
+        int prevDoc = -1;
+        for (int i = 0; i < size; i++) {
+            int doc = ha.doc(i);
+            if (doc != prevDoc) {
+                docStarts.add(i);
+                prevDoc = doc;
+            }
+        }
+        docStarts.add(size);
+
+        // Get the contexts for each document
+        int numberOfDocs = docStarts.size() - 1;
+        IntConsumer retrieveDoc = i -> {
+            int start = docStarts.get(i);
+            int end = docStarts.get(i + 1);
+            int[][] docContexts = Contexts.getContextWordsSingleDocument(ha, start, end, contextSize,
+                    forwardIndexes, fiidLookups);
+            System.arraycopy(docContexts, 0, contexts, start, end - start);
+        };
+        BlackLabEngine blackLab = hits.index().blackLab();
+        int numThreads = Math.min(Math.max(blackLab.maxThreadsPerSearch(), 1), numberOfDocs / MIN_DOCS_PER_THREAD);
+        if (numThreads <= 1) {
+            // Not worth the overhead of using threads (e.g. a page of hits)
+            for (int i = 0; i < numberOfDocs; i++)
+                retrieveDoc.accept(i);
+            return contexts;
+        }
+
+        // Give each thread every numThreads'th document
+        ExecutorService executorService = blackLab.searchExecutorService();
+        List<Future<?>> pending = new ArrayList<>();
+        for (int thread = 0; thread < numThreads; thread++) {
+            final int firstDoc = thread;
+            pending.add(executorService.submit(() -> {
+                for (int i = firstDoc; i < numberOfDocs; i += numThreads)
+                    retrieveDoc.accept(i);
+            }));
+        }
+        try {
+            for (Future<?> future: pending)
+                future.get();
+        } catch (InterruptedException e) {
+            // Interrupt our worker threads as well
+            pending.forEach(f -> f.cancel(true));
+            throw new InterruptedSearch(e);
+        } catch (ExecutionException e) {
+            pending.forEach(f -> f.cancel(true));
+            throw BlackLabRuntimeException.wrap(e.getCause());
+        }
+        return contexts;
     }
 
     /**
      * Return the KWIC for the specified hit.
      *
-     * The first call to this method will fetch the KWICs for all the hits in this
-     * Hits object. So make sure to select an appropriate HitsWindow first: don't
-     * call this method on a Hits set with >1M hits unless you really want to
-     * display all of them in one go.
+     * Prefer {@link #get(int)} when iterating over the hits.
      *
      * @param h the hit
-     * @return KWIC for this hit
+     * @return KWIC for this hit, or null if it's not one of our hits
      */
     public Kwic get(Hit h) {
-        return kwics.get(h);
+        int index;
+        synchronized (this) {
+            if (hitIndexes == null) {
+                hitIndexes = new ObjectIntHashMap<>(contexts.length);
+                for (int i = contexts.length - 1; i >= 0; i--)
+                    hitIndexes.put(hits.get(i), i);
+            }
+            index = hitIndexes.getIfAbsent(h, -1);
+        }
+        return index < 0 ? null : get(index);
     }
 
-    
     /**
-     * Retrieve KWICs for a (sub)list of hits.
+     * Return the KWIC for the specified hit index.
      *
-     * KWICs are the hit words 'centered' with a certain number of context words
-     * around them.
+     * The term strings in the KWIC are looked up when they're used.
      *
-     * @param contextSize how many words around the hit to retrieve
-     * @param fieldName field to use for building KWICs
+     * @param index the hit index
+     * @return KWIC for this hit
+     */
+    public Kwic get(int index) {
+        int[] context = contexts[index];
+        int hitStart = context[Contexts.HIT_START_INDEX];
+        int rightStart = context[Contexts.RIGHT_START_INDEX];
+        return new Kwic(Collections.unmodifiableList(annotations), new ContextTokens(context), hitStart, rightStart);
+    }
+
+    /**
+     * The tokens in a context, looking up term strings when they're needed.
      *
-     * @return the KWICs
+     * Like Kwic expects, the values of all annotations for the first word come
+     * first, then those for the second word, etc.
      */
-    private static Map<Hit, Kwic> retrieveKwics(Hits hits, ContextSize contextSize, AnnotatedField field) {
-        // Group hits per document
-        MutableIntObjectMap<List<Hit>> hitsPerDocument = IntObjectMaps.mutable.empty();
-        for (Hit key: hits) {
-            List<Hit> hitsInDoc = hitsPerDocument.get(key.doc());
-            if (hitsInDoc == null) {
-                hitsInDoc = new ArrayList<>();
-                hitsPerDocument.put(key.doc(), hitsInDoc);
-            }
-            hitsInDoc.add(key);
-        }
+    private class ContextTokens extends AbstractList<String> {
 
-        // All FIs except word and punct are attributes
-        Map<Annotation, AnnotationForwardIndex> attrForwardIndices = new HashMap<>();
-        BlackLabIndex index = hits.index();
-        for (Annotation annotation: field.annotations()) {
-            if (annotation.hasForwardIndex() && !annotation.name().equals(Kwic.DEFAULT_CONC_WORD_PROP) && !annotation.name().equals(Kwic.DEFAULT_CONC_PUNCT_PROP)) {
-                attrForwardIndices.put(annotation, index.annotationForwardIndex(annotation));
-            }
+        private final int[] context;
+
+        private final int length;
+
+        ContextTokens(int[] context) {
+            this.context = context;
+            this.length = context[Contexts.LENGTH_INDEX];
         }
-        Annotation wordAnnot = field.annotation(Kwic.DEFAULT_CONC_WORD_PROP);
-        AnnotationForwardIndex wordForwardIndex = index.annotationForwardIndex(wordAnnot);
-        Annotation punctAnnot = field.annotation(Kwic.DEFAULT_CONC_PUNCT_PROP);
-        AnnotationForwardIndex punctForwardIndex = index.annotationForwardIndex(punctAnnot);
-        
-        // Get FiidLookups for all required forward indexes
-        IndexReader reader = hits.queryInfo().index().reader();
-        Map<Annotation, FiidLookup> fiidLookups = new HashMap<>();
-        fiidLookups.put(wordAnnot, new FiidLookup(reader, wordAnnot));
-        fiidLookups.put(punctAnnot, new FiidLookup(reader, punctAnnot));
-        for (Map.Entry<Annotation, AnnotationForwardIndex> e: attrForwardIndices.entrySet()) {
-            fiidLookups.put(e.getKey(), new FiidLookup(reader, e.getKey()));
+
+        @Override
+        public String get(int index) {
+            if (index < 0 || index >= size())
+                throw new IndexOutOfBoundsException();
+            int word = index / terms.length;
+            int annotIndex = index % terms.length;
+            if (terms[annotIndex] == null)
+                return " "; // no punctuation forward index
+            // Contexts for annotations without a forward index are not stored
+            int contextNumber = terms[0] == null ? annotIndex - 1 : annotIndex;
+            return terms[annotIndex].get(context[Contexts.NUMBER_OF_BOOKKEEPING_INTS + contextNumber * length + word]);
         }
-        
-        Map<Hit, Kwic> conc1 = new HashMap<>();
-        
-        /*
-         * if doc not is last doc 
-         *  process section if needed
-         *  save start of new section
-         *  
-         * process end section
-         */
-        int lastDocId = -1;
-        int firstIndexWithCurrentDocId = 0;
-        for (int i = 1; i < hits.size(); ++i) {
-            int curDocId = hits.hitsArrays().doc(i);
-            if (curDocId != lastDocId) {
-                if (firstIndexWithCurrentDocId != i) {
-                    Contexts.makeKwicsSingleDocForwardIndex(
-                        hits.window(firstIndexWithCurrentDocId, i - firstIndexWithCurrentDocId), 
-                        wordForwardIndex, punctForwardIndex, attrForwardIndices, fiidLookups, contextSize, conc1);
-                }
-                firstIndexWithCurrentDocId = i;
-                lastDocId = curDocId;
-            }
+
+        @Override
+        public int size() {
+            return length * terms.length;
         }
-        // last part
-        Contexts.makeKwicsSingleDocForwardIndex(
-            hits.window(firstIndexWithCurrentDocId, hits.size() - firstIndexWithCurrentDocId), 
-            wordForwardIndex, punctForwardIndex, attrForwardIndices, fiidLookups, contextSize, conc1);
-        
-        return conc1;
     }
-    
-}
\ No newline at end of file
+
+}
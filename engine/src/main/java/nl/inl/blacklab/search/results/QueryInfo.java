@@ -1,6 +1,7 @@
 package nl.inl.blacklab.search.results;
 
 import nl.inl.blacklab.search.BlackLabIndex;
+import nl.inl.blacklab.search.QueryProfile;
 import nl.inl.blacklab.search.indexmetadata.AnnotatedField;
 
 /**
@@ -17,7 +18,11 @@ public final class QueryInfo {
     }
 
     public static QueryInfo create(BlackLabIndex index, AnnotatedField field, boolean useCache) {
-        return new QueryInfo(index, field, useCache);
+        return create(index, field, useCache, null);
+    }
+
+    public static QueryInfo create(BlackLabIndex index, AnnotatedField field, boolean useCache, QueryProfile profile) {
+        return new QueryInfo(index, field, useCache, profile);
     }
 
     private BlackLabIndex index;
@@ -28,11 +33,15 @@ public final class QueryInfo {
     /** Should we use the cache for this query, or bypass it? */
     private boolean useCache;
 
-    private QueryInfo(BlackLabIndex index, AnnotatedField field, boolean useCache) {
+    /** Where to record a profile of the search, or null if we're not profiling */
+    private QueryProfile profile;
+
+    private QueryInfo(BlackLabIndex index, AnnotatedField field, boolean useCache, QueryProfile profile) {
         super();
         this.index = index;
         this.field = field == null ? index.mainAnnotatedField() : field;
         this.useCache = useCache;
+        this.profile = profile;
     }
 
     /**
@@ -46,7 +55,7 @@ public final class QueryInfo {
     public QueryInfo withIndex(BlackLabIndex newIndex) {
         if (this.index == newIndex)
             return this;
-        return new QueryInfo(newIndex, field, useCache);
+        return new QueryInfo(newIndex, field, useCache, profile);
     }
 
     /** @return the index that was searched. */
@@ -64,6 +73,19 @@ public final class QueryInfo {
         return useCache;
     }
 
+    /**
+     * Where should we record a profile of the search?
+     *
+     * Searches that are profiled are never considered equal to searches that
+     * aren't (or that are profiled separately), so each profile is recorded for
+     * searches that are actually executed.
+     *
+     * @return profile to add to, or null if we're not profiling
+     */
+    public QueryProfile profile() {
+        return profile;
+    }
+
     @Override
     public int hashCode() {
         final int prime = 31;
@@ -92,6 +114,8 @@ public final class QueryInfo {
                 return false;
         } else if (!index.equals(other.index))
             return false;
+        if (profile != other.profile)
+            return false;
         return true;
     }
 
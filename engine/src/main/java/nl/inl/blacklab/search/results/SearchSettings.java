@@ -37,27 +37,44 @@ public final class SearchSettings {
     /** Override FI match NFA factor, or -1 for default */
     private long fiMatchFactor;
 
+    /**
+     * Only count hits, don't store them?
+     *
+     * Hits up to maxHitsToProcess are still reported as processed, so the totals
+     * match those of a search that does store them.
+     */
+    private boolean countOnly;
+
     /**
      * Get settings
      * @param maxHitsToProcess how many hits to process at most
      * @param maxHitsToCount how many hits to count at most
      */
     private SearchSettings(int maxHitsToProcess, int maxHitsToCount, long fiMatchFactor) {
+        this(maxHitsToProcess, maxHitsToCount, fiMatchFactor, false);
+    }
+
+    private SearchSettings(int maxHitsToProcess, int maxHitsToCount, long fiMatchFactor, boolean countOnly) {
         this.maxHitsToProcess = maxHitsToProcess;
         this.maxHitsToCount = maxHitsToCount;
         this.fiMatchFactor = fiMatchFactor;
+        this.countOnly = countOnly;
     }
     
     public SearchSettings withMaxHitsToProcess(int n) {
-        return get(n, maxHitsToCount, fiMatchFactor);
+        return new SearchSettings(n, maxHitsToCount, fiMatchFactor, countOnly);
     }
 
     public SearchSettings withMaxHitsToCount(int n) {
-        return get(maxHitsToProcess, n, fiMatchFactor);
+        return new SearchSettings(maxHitsToProcess, n, fiMatchFactor, countOnly);
     }
 
     public SearchSettings withFiMatchFactor(int n) {
-        return get(maxHitsToProcess, maxHitsToCount, n);
+        return new SearchSettings(maxHitsToProcess, maxHitsToCount, n, countOnly);
+    }
+
+    public SearchSettings withCountOnly(boolean countOnly) {
+        return new SearchSettings(maxHitsToProcess, maxHitsToCount, fiMatchFactor, countOnly);
     }
 
     /** @return the maximum number of hits to retrieve. */
@@ -74,15 +91,21 @@ public final class SearchSettings {
         return fiMatchFactor;
     }
 
+    /** @return whether to only count hits, not store them. */
+    public boolean countOnly() {
+        return countOnly;
+    }
+
     @Override
     public String toString() {
-        return "SearchSettings(" + maxHitsToProcess + ", " + maxHitsToCount + ", " + fiMatchFactor + ")";
+        return "SearchSettings(" + maxHitsToProcess + ", " + maxHitsToCount + ", " + fiMatchFactor + (countOnly ? ", countOnly" : "") + ")";
     }
 
     @Override
     public int hashCode() {
         final int prime = 31;
         int result = 1;
+        result = prime * result + (countOnly ? 1231 : 1237);
         result = prime * result + (int)fiMatchFactor;
         result = prime * result + maxHitsToCount;
         result = prime * result + maxHitsToProcess;
@@ -98,6 +121,8 @@ public final class SearchSettings {
         if (getClass() != obj.getClass())
             return false;
         SearchSettings other = (SearchSettings) obj;
+        if (countOnly != other.countOnly)
+            return false;
         if (fiMatchFactor != other.fiMatchFactor)
             return false;
         if (maxHitsToCount != other.maxHitsToCount)
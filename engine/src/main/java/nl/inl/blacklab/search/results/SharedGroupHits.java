@@ -0,0 +1,112 @@
+package nl.inl.blacklab.search.results;
+
+import org.eclipse.collections.impl.list.mutable.primitive.IntArrayList;
+
+import nl.inl.blacklab.search.results.Hits.EphemeralHit;
+import nl.inl.blacklab.search.results.Hits.HitsArrays;
+
+/**
+ * Stored hits for all groups in a HitGroups instance.
+ *
+ * Instead of giving each group its own copy of its hits, we keep a reference
+ * to the (fully read) source hits and a single permutation array of hit indexes,
+ * ordered by group. Each group is a range in this array. Hits objects for a group
+ * are only created when a client asks for them.
+ *
+ * If only a small part of the source hits is stored (e.g. because the number of
+ * hits stored per group is limited), referencing the source hits would keep a lot
+ * of memory alive for nothing. In that case, we copy the stored hits (ordered by
+ * group) instead.
+ */
+final class SharedGroupHits {
+
+    /**
+     * Copy the stored hits if fewer than 1 in this many source hits are stored.
+     */
+    private static final int COPY_IF_FEWER_THAN_ONE_IN = 2;
+
+    /**
+     * Create the stored hits for all groups.
+     *
+     * @param queryInfo query info
+     * @param source the hits that were grouped
+     * @param capturedGroups captured groups of the source hits, or null if none
+     * @param permutation indexes into source, ordered by group
+     * @return the stored hits
+     */
+    static SharedGroupHits create(QueryInfo queryInfo, HitsArrays source, CapturedGroups capturedGroups, int[] permutation) {
+        if ((long) permutation.length * COPY_IF_FEWER_THAN_ONE_IN >= source.size())
+            return new SharedGroupHits(queryInfo, source, capturedGroups, permutation);
+
+        // Only a small part of the hits is stored. Copy them.
+        HitsArrays copy = hitsArrays(source, permutation, 0, permutation.length);
+        CapturedGroups capturedGroupsCopy = null;
+        if (capturedGroups != null) {
+            capturedGroupsCopy = new CapturedGroupsImpl(capturedGroups.names());
+            EphemeralHit hit = new EphemeralHit();
+            for (int index: permutation) {
+                source.getEphemeral(index, hit);
+                Hit h = hit.toHit();
+                capturedGroupsCopy.put(h, capturedGroups.get(h));
+            }
+        }
+        return new SharedGroupHits(queryInfo, copy, capturedGroupsCopy, null);
+    }
+
+    private final QueryInfo queryInfo;
+
+    /** The hits that were grouped, or a copy of the stored hits (if permutation == null) */
+    private final HitsArrays source;
+
+    /** Captured groups of the source hits, or null if none */
+    private final CapturedGroups capturedGroups;
+
+    /** Indexes into source, ordered by group, or null if source is ordered by group already */
+    private final int[] permutation;
+
+    private SharedGroupHits(QueryInfo queryInfo, HitsArrays source, CapturedGroups capturedGroups, int[] permutation) {
+        this.queryInfo = queryInfo;
+        this.source = source;
+        this.capturedGroups = capturedGroups;
+        this.permutation = permutation;
+    }
+
+    /**
+     * Create a Hits object for (part of) a group.
+     *
+     * @param offset where the group starts in the permutation array
+     * @param number number of hits in the group
+     * @return the group's hits
+     */
+    Hits hits(int offset, int number) {
+        return Hits.fromList(queryInfo, hitsArrays(source, permutation, offset, number), capturedGroups);
+    }
+
+    /**
+     * How many result objects are these hits worth?
+     *
+     * This includes all the source hits we refer to, even the ones we don't store,
+     * because we keep them from being garbage collected. A permutation entry is one
+     * int, a third of what a hit takes up.
+     *
+     * @return equivalent number of result objects
+     */
+    int numberOfResultObjects() {
+        return source.size() + (permutation == null ? 0 : (permutation.length + 2) / 3);
+    }
+
+    private static HitsArrays hitsArrays(HitsArrays source, int[] permutation, int offset, int number) {
+        IntArrayList docs = new IntArrayList(number);
+        IntArrayList starts = new IntArrayList(number);
+        IntArrayList ends = new IntArrayList(number);
+        EphemeralHit hit = new EphemeralHit();
+        for (int i = offset; i < offset + number; i++) {
+            source.getEphemeral(permutation == null ? i : permutation[i], hit);
+            docs.add(hit.doc);
+            starts.add(hit.start);
+            ends.add(hit.end);
+        }
+        return new HitsArrays(docs, starts, ends);
+    }
+
+}
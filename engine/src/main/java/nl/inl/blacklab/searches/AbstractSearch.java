@@ -94,6 +94,18 @@ public abstract class AbstractSearch<R extends SearchResult> implements Search<R
         return true;
     }
 
+    /**
+     * Record the time spent in a phase of this search, if we're profiling it.
+     *
+     * @param phase name of the phase, e.g. "sort"
+     * @param description description, e.g. the sort property, or null for none
+     * @param startNs when the phase was started (from System.nanoTime())
+     */
+    protected void profile(String phase, String description, long startNs) {
+        if (queryInfo.profile() != null)
+            queryInfo.profile().add(phase, description).addTimeSince(startNs);
+    }
+
     protected static String toString(String operation, Object... param) {
         return operation + "(" + StringUtils.join(param, ", ") + ")";
     }
@@ -34,6 +34,19 @@ public interface SearchCache {
      */
     <R extends SearchResult> SearchCacheEntry<R> getAsync(Search<R> search, boolean allowQueue);
 
+    /**
+     * Get the [future] result for the specified search, if it's in the cache.
+     *
+     * Doesn't start the search if it's not in the cache.
+     *
+     * @param <R> type of SearchResult
+     * @param search search we want the result for
+     * @return the future if the search was in the cache, null otherwise
+     */
+    default <R extends SearchResult> SearchCacheEntry<R> getIfPresent(Search<R> search) {
+        return null;
+    }
+
     /**
      * Remove a search from the cache.
      *
@@ -0,0 +1,73 @@
+package nl.inl.blacklab.searches;
+
+import java.util.concurrent.Future;
+
+import org.apache.lucene.search.Query;
+
+import nl.inl.blacklab.exceptions.InvalidQuery;
+import nl.inl.blacklab.search.results.DocResults;
+import nl.inl.blacklab.search.results.QueryInfo;
+import nl.inl.blacklab.search.results.ResultsStats;
+import nl.inl.blacklab.search.results.ResultsStatsDelegate;
+
+/**
+ * Counts the documents matching a Lucene query, without constructing DocResults.
+ */
+public class SearchCountDocsFromQuery extends SearchCount {
+
+    private final Query query;
+
+    public SearchCountDocsFromQuery(QueryInfo queryInfo, Query query) {
+        super(queryInfo);
+        this.query = query;
+    }
+
+    @Override
+    public ResultsStats executeInternal(Peekable<ResultsStats> progressReporter) throws InvalidQuery {
+        return DocResults.countFromQuery(queryInfo(), query);
+    }
+
+    /**
+     * Return the peek object, given a cache entry.
+     *
+     * We don't have a running count, so this will return 0 until the count is done.
+     *
+     * @param future future result object
+     * @return peek object
+     */
+    @Override
+    public ResultsStatsDelegate peekObject(Future<ResultsStats> future) {
+        return new ResultsStatsDelegate(future);
+    }
+
+    @Override
+    public int hashCode() {
+        final int prime = 31;
+        int result = super.hashCode();
+        result = prime * result + ((query == null) ? 0 : query.hashCode());
+        return result;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj)
+            return true;
+        if (!super.equals(obj))
+            return false;
+        if (getClass() != obj.getClass())
+            return false;
+        SearchCountDocsFromQuery other = (SearchCountDocsFromQuery) obj;
+        if (query == null) {
+            if (other.query != null)
+                return false;
+        } else if (!query.equals(other.query))
+            return false;
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return toString("countdocsfromquery", query);
+    }
+
+}
@@ -3,6 +3,7 @@ package nl.inl.blacklab.searches;
 import nl.inl.blacklab.exceptions.InvalidQuery;
 import nl.inl.blacklab.resultproperty.DocProperty;
 import nl.inl.blacklab.search.results.DocGroups;
+import nl.inl.blacklab.search.results.DocResults;
 import nl.inl.blacklab.search.results.QueryInfo;
 
 /** A search that yields groups of documents. */
@@ -23,7 +24,11 @@ public class SearchDocGroupsFromDocs extends SearchDocGroups {
 
     @Override
     public DocGroups executeInternal(Peekable<DocGroups> progressReporter) throws InvalidQuery {
-        return source.executeNoQueue().group(property, maxDocs);
+        DocResults docs = source.executeNoQueue();
+        long startNs = System.nanoTime();
+        DocGroups groups = docs.group(property, maxDocs);
+        profile("group", property.serialize(), startNs);
+        return groups;
     }
 
     @Override
@@ -70,6 +70,17 @@ public abstract class SearchDocs extends SearchForResults<DocResults> {
         return new SearchDocsWindow(queryInfo(), this, first, number);
     }
 
+    /**
+     * Count the documents without constructing the results, if possible.
+     *
+     * Falls back to {@link #count()} if this search doesn't support that.
+     *
+     * @return resulting operation
+     */
+    public SearchCount countOnly() {
+        return count();
+    }
+
     /**
      * Facet the doc results by several properties.
      * 
@@ -20,6 +20,11 @@ public class SearchDocsFromQuery extends SearchDocs {
         return queryInfo().index().queryDocuments(query);
     }
     
+    @Override
+    public SearchCount countOnly() {
+        return new SearchCountDocsFromQuery(queryInfo(), query);
+    }
+
     @Override
     public int hashCode() {
         final int prime = 31;
@@ -19,7 +19,17 @@ public class SearchDocsSorted extends SearchDocs {
 
     @Override
     public DocResults executeInternal(Peekable<DocResults> progressReporter) throws InvalidQuery {
-        return source.executeNoQueue().sort(property);
+        DocResults docs = source.executeNoQueue();
+        long startNs = System.nanoTime();
+        DocResults sorted = docs.sort(property);
+        profile("sort", property.serialize(), startNs);
+        return sorted;
+    }
+
+    @Override
+    public SearchCount countOnly() {
+        // Sorting doesn't affect the count
+        return source.countOnly();
     }
 
     @Override
@@ -4,6 +4,7 @@ import nl.inl.blacklab.exceptions.InvalidQuery;
 import nl.inl.blacklab.resultproperty.HitProperty;
 import nl.inl.blacklab.search.results.HitGroups;
 import nl.inl.blacklab.search.results.HitGroupsTokenFrequencies;
+import nl.inl.blacklab.search.results.Hits;
 import nl.inl.blacklab.search.results.QueryInfo;
 
 /**
@@ -52,10 +53,17 @@ public class SearchHitGroupsFromHits extends SearchHitGroups {
         if (HitGroupsTokenFrequencies.canUse(mustStoreHits, source, property)) {
             // Any token query, group by hit text or doc metadata! Choose faster path that just "looks up"
             // token frequencies in the forward index(es).
-            return HitGroupsTokenFrequencies.get(source, property);
+            long startNs = System.nanoTime();
+            HitGroups groups = HitGroupsTokenFrequencies.get(source, property);
+            profile("group (token frequencies)", property.serialize(), startNs);
+            return groups;
         } else {
             // Just find all the hits and group them.
-            return HitGroups.fromHits(source.executeNoQueue(), property, maxResultsToStorePerGroup);
+            Hits hits = source.executeNoQueue();
+            long startNs = System.nanoTime();
+            HitGroups groups = HitGroups.fromHits(hits, property, maxResultsToStorePerGroup);
+            profile("group", property.serialize(), startNs);
+            return groups;
         }
     }
 
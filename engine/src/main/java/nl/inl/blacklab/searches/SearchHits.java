@@ -128,6 +128,21 @@ public abstract class SearchHits extends SearchForResults<Hits> {
         return new SearchCollocationsFromHits(queryInfo(), this, annotation, size, sensitivity);
     }
 
+    /**
+     * Get a search that can only be used for counting hits and docs.
+     *
+     * If possible, this will return a search that doesn't process (store) any hits,
+     * but only counts them. This is much faster and uses less memory if all you need
+     * is the number of hits and docs, e.g. via {@link #hitCount()} or {@link #docCount()}.
+     *
+     * If this search doesn't support count-only execution, it will return itself.
+     *
+     * @return search to use for counting
+     */
+    public SearchHits countOnly() {
+        return this;
+    }
+
     /** Does this query represent all tokens in a set of documents (possibly the whole index)?
      * 
      * If so, we can often optimize subsequent operations by resolving them more intelligently.
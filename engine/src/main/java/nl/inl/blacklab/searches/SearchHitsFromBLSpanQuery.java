@@ -34,7 +34,7 @@ public class SearchHitsFromBLSpanQuery extends SearchHits {
      */
     @Override
     public Hits executeInternal(Peekable<Hits> progressReporter) throws InvalidQuery {
-        return queryInfo().index().find(spanQuery, searchSettings);
+        return queryInfo().index().find(spanQuery, searchSettings, queryInfo().profile());
     }
 
     @Override
@@ -82,6 +82,14 @@ public class SearchHitsFromBLSpanQuery extends SearchHits {
         return spanQuery.isSingleAnyToken();
     }
 
+    @Override
+    public SearchHits countOnly() {
+        SearchSettings settings = searchSettings == null ? queryInfo().index().searchSettings() : searchSettings;
+        if (settings.countOnly())
+            return this;
+        return new SearchHitsFromBLSpanQuery(queryInfo(), spanQuery, settings.withCountOnly(true));
+    }
+
     @Override
     public Query getFilterQuery() {
         return spanQuery;
@@ -20,7 +20,11 @@ public class SearchHitsSorted extends SearchHits {
 
     @Override
     public Hits executeInternal(Peekable<Hits> progressReporter) throws InvalidQuery {
-        return source.executeNoQueue().sort(property);
+        Hits hits = source.executeNoQueue();
+        long startNs = System.nanoTime();
+        Hits sorted = hits.sort(property);
+        profile("sort", property.serialize(), startNs);
+        return sorted;
     }
 
     @Override
@@ -59,6 +63,12 @@ public class SearchHitsSorted extends SearchHits {
         return toString("sort", source, property);
     }
 
+    @Override
+    public SearchHits countOnly() {
+        // Sorting doesn't affect the counts
+        return source.countOnly();
+    }
+
     @Override
     public SearchSettings searchSettings() {
         return source.searchSettings();
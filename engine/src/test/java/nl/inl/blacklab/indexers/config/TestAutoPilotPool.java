@@ -0,0 +1,65 @@
+package nl.inl.blacklab.indexers.config;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.ximpleware.AutoPilot;
+import com.ximpleware.ParseException;
+import com.ximpleware.VTDGen;
+import com.ximpleware.VTDNav;
+
+import nl.inl.blacklab.exceptions.BlackLabRuntimeException;
+
+public class TestAutoPilotPool {
+
+    private static VTDNav nav(String xml, boolean namespaceAware) throws ParseException {
+        VTDGen vg = new VTDGen();
+        vg.setDoc(xml.getBytes(StandardCharsets.UTF_8));
+        vg.parse(namespaceAware);
+        return vg.getNav();
+    }
+
+    @Test
+    public void testReuse() throws Exception {
+        AutoPilotPool pool = AutoPilotPool.get(new ConfigInputFormat("test"));
+        AutoPilot ap = pool.acquire("string(//w)", nav("<doc><w>a</w></doc>", false));
+        Assert.assertEquals("a", ap.evalXPathToString());
+
+        // While in use, we get another AutoPilot for the same XPath
+        AutoPilot other = pool.acquire("string(//w)", nav("<doc><w>b</w></doc>", false));
+        Assert.assertNotSame(ap, other);
+        Assert.assertEquals("b", other.evalXPathToString());
+        pool.release("string(//w)", other);
+
+        // Once released, it's reused, bound to the new document
+        pool.release("string(//w)", ap);
+        AutoPilot reused = pool.acquire("string(//w)", nav("<doc><w>c</w></doc>", false));
+        Assert.assertTrue(reused == ap || reused == other);
+        Assert.assertEquals("c", reused.evalXPathToString());
+    }
+
+    @Test
+    public void testSamePoolPerFormat() {
+        ConfigInputFormat config = new ConfigInputFormat("test");
+        Assert.assertSame(AutoPilotPool.get(config), AutoPilotPool.get(config));
+        Assert.assertNotSame(AutoPilotPool.get(config), AutoPilotPool.get(new ConfigInputFormat("test")));
+    }
+
+    @Test
+    public void testNamespaces() throws Exception {
+        ConfigInputFormat config = new ConfigInputFormat("test");
+        config.addNamespace("t", "urn:test");
+        AutoPilotPool pool = AutoPilotPool.get(config);
+        AutoPilot ap = pool.acquire("string(//t:w)", nav("<doc xmlns:x='urn:test'><x:w>a</x:w></doc>", true));
+        Assert.assertEquals("a", ap.evalXPathToString());
+        pool.release("string(//t:w)", ap);
+    }
+
+    @Test(expected = BlackLabRuntimeException.class)
+    public void testInvalidXPath() throws Exception {
+        AutoPilotPool.get(new ConfigInputFormat("test")).acquire("//w[", nav("<doc/>", false));
+    }
+
+}
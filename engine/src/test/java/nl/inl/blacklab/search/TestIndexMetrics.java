@@ -0,0 +1,68 @@
+package nl.inl.blacklab.search;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class TestIndexMetrics {
+
+    @Test
+    public void testRecord() {
+        MeterRegistry registry = new SimpleMeterRegistry();
+        IndexMetrics metrics = new IndexMetrics(registry, "test");
+        metrics.queryMatching(true);
+        metrics.queryMatching(false);
+        metrics.queryMatching(false);
+        metrics.hitsCounted().increment(10);
+        metrics.kwics().record(5, TimeUnit.MILLISECONDS);
+
+        Assert.assertEquals(1.0, registry.get("blacklab.query.matching").tags(IndexMetrics.TAG_INDEX, "test")
+                .tag("strategy", "forward-index").counter().count(), 0);
+        Assert.assertEquals(2.0, registry.get("blacklab.query.matching").tag("strategy", "reverse-index")
+                .counter().count(), 0);
+        Assert.assertEquals(10.0, registry.get("blacklab.hits.counted").counter().count(), 0);
+        Assert.assertEquals(1, registry.get("blacklab.kwics.build").timer().count());
+    }
+
+    @Test
+    public void testClose() {
+        MeterRegistry registry = new SimpleMeterRegistry();
+        IndexMetrics metrics = new IndexMetrics(registry, "test");
+        IndexMetrics other = new IndexMetrics(registry, "other");
+        // Meter registered elsewhere with the index tags
+        Counter evictions = registry.counter("blacklab.cache.evictions", metrics.tags());
+        evictions.increment();
+        Assert.assertFalse(registry.find("blacklab.hits.counted").tags(metrics.tags()).meters().isEmpty());
+
+        metrics.close();
+        Assert.assertTrue(registry.find("blacklab.hits.counted").tags(metrics.tags()).meters().isEmpty());
+        Assert.assertNull(registry.find("blacklab.cache.evictions").counter());
+        // Other index's meters are still there
+        Assert.assertNotNull(registry.find("blacklab.hits.counted").tags(other.tags()).counter());
+    }
+
+    @Test
+    public void testCloseSameId() {
+        // E.g. an index that is reopened before the old instance is closed
+        MeterRegistry registry = new SimpleMeterRegistry();
+        IndexMetrics metrics = new IndexMetrics(registry, "/data/index");
+        IndexMetrics reopened = new IndexMetrics(registry, "/data/index");
+        metrics.hitsCounted().increment();
+        reopened.hitsCounted().increment();
+        Assert.assertEquals(2.0, registry.get("blacklab.hits.counted").tags(reopened.tags()).counter().count(), 0);
+
+        metrics.close();
+        metrics.close(); // closing twice doesn't remove the other instance's meters
+        reopened.hitsCounted().increment();
+        Assert.assertEquals(3.0, registry.get("blacklab.hits.counted").tags(reopened.tags()).counter().count(), 0);
+
+        reopened.close();
+        Assert.assertNull(registry.find("blacklab.hits.counted").tags(reopened.tags()).counter());
+    }
+
+}
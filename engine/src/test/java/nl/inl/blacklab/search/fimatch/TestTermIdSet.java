@@ -0,0 +1,82 @@
+package nl.inl.blacklab.search.fimatch;
+
+import java.io.File;
+import java.text.Collator;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import nl.inl.blacklab.forwardindex.AnnotationForwardIndex.CollatorVersion;
+import nl.inl.blacklab.forwardindex.Collators;
+import nl.inl.blacklab.forwardindex.Terms;
+import nl.inl.util.UtilsForTesting;
+
+public class TestTermIdSet {
+
+    private static final String[] TERMS = { "the", "quick", "brown", "fox", "jumps", "over", "lazy", "dog" };
+
+    private Terms terms;
+
+    @Before
+    public void setUp() {
+        UtilsForTesting.removeBlackLabTestDirs();
+        File dir = UtilsForTesting.createBlackLabTestDir("TermIdSet");
+        Collators colls = new Collators(Collator.getInstance(new Locale("en", "GB")), CollatorVersion.V2);
+        Terms writer = Terms.openForWriting(colls, null);
+        for (String term: TERMS)
+            writer.indexOf(term);
+        File f = new File(dir, "terms.dat");
+        writer.write(f);
+        terms = Terms.openForReading(colls, f, true);
+    }
+
+    @After
+    public void tearDown() {
+        UtilsForTesting.removeBlackLabTestDirs();
+    }
+
+    @Test
+    public void testMatchingTermIds() {
+        Pattern p = Pattern.compile(".*o.*");
+        TermIdSet set = TermIdSet.get(terms, "REGEX|s|.*o.*", t -> p.matcher(t).matches());
+        for (int i = 0; i < TERMS.length; i++) {
+            Assert.assertTrue(set.covers(i));
+            Assert.assertEquals(TERMS[i], TERMS[i].contains("o"), set.contains(i));
+        }
+        Assert.assertFalse(set.covers(TERMS.length));
+
+        // Same key gives us the cached set
+        Assert.assertSame(set, TermIdSet.get(terms, "REGEX|s|.*o.*", t -> p.matcher(t).matches()));
+    }
+
+    @Test
+    public void testBuildDoesntBlockOtherPatterns() throws InterruptedException {
+        CountDownLatch slowBuildStarted = new CountDownLatch(1);
+        CountDownLatch otherPatternDone = new CountDownLatch(1);
+        Thread slowBuild = new Thread(() -> TermIdSet.get(terms, "REGEX|s|slow", t -> {
+            slowBuildStarted.countDown();
+            try {
+                otherPatternDone.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return false;
+        }));
+        slowBuild.start();
+        Assert.assertTrue(slowBuildStarted.await(10, TimeUnit.SECONDS));
+
+        // While the slow set is being built, we can still get another one
+        TermIdSet set = TermIdSet.get(terms, "REGEX|s|fox", "fox"::equals);
+        Assert.assertTrue(set.contains(3));
+        Assert.assertTrue("slow build should still be running", slowBuild.isAlive());
+        otherPatternDone.countDown();
+        slowBuild.join();
+    }
+
+}
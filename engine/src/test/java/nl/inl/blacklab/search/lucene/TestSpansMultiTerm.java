@@ -0,0 +1,131 @@
+package nl.inl.blacklab.search.lucene;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import org.apache.lucene.analysis.core.WhitespaceAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.search.spans.Spans;
+import org.apache.lucene.store.RAMDirectory;
+import org.apache.lucene.util.automaton.CompiledAutomaton;
+import org.apache.lucene.util.automaton.RegExp;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class TestSpansMultiTerm {
+
+    private static final String FIELD = "contents";
+
+    private static final int NUMBER_OF_DOCS = 10;
+
+    private static final int DOC_LENGTH = 2000;
+
+    /** Number of distinct rare terms */
+    private static final int RARE_TERMS = 3000;
+
+    /** Tokens per document */
+    private static String[][] tokens = new String[NUMBER_OF_DOCS][DOC_LENGTH];
+
+    private static RAMDirectory directory;
+
+    private static DirectoryReader reader;
+
+    @BeforeClass
+    public static void setUp() throws IOException {
+        // A small segment with many distinct terms: a frequent term ("the")
+        // and lots of rare ones (t0-t2999)
+        directory = new RAMDirectory();
+        try (IndexWriter writer = new IndexWriter(directory, new IndexWriterConfig(new WhitespaceAnalyzer()))) {
+            for (int doc = 0; doc < NUMBER_OF_DOCS; doc++) {
+                for (int i = 0; i < DOC_LENGTH; i++)
+                    tokens[doc][i] = i % 3 == 0 ? "the" : "t" + ((doc * DOC_LENGTH + i) % RARE_TERMS);
+                Document document = new Document();
+                document.add(new Field(FIELD, String.join(" ", tokens[doc]), TextField.TYPE_NOT_STORED));
+                writer.addDocument(document);
+            }
+            writer.forceMerge(1);
+        }
+        reader = DirectoryReader.open(directory);
+    }
+
+    @AfterClass
+    public static void tearDown() throws IOException {
+        reader.close();
+        directory.close();
+    }
+
+    private static SpansMultiTerm spans(String regex, int maxBufferedPositions) throws IOException {
+        CompiledAutomaton automaton = new CompiledAutomaton(new RegExp(regex).toAutomaton());
+        SpanQueryMultiTerm.MatchingTerms terms = new SpanQueryMultiTerm.MatchingTerms(FIELD, automaton, null);
+        LeafReader leafReader = reader.leaves().get(0).reader();
+        return SpansMultiTerm.create(leafReader, terms, maxBufferedPositions);
+    }
+
+    private static List<String> hits(Spans spans) throws IOException {
+        List<String> hits = new ArrayList<>();
+        while (spans.nextDoc() != DocIdSetIterator.NO_MORE_DOCS) {
+            while (spans.nextStartPosition() != Spans.NO_MORE_POSITIONS) {
+                Assert.assertEquals(spans.startPosition() + 1, spans.endPosition());
+                hits.add(spans.docID() + ":" + spans.startPosition());
+            }
+        }
+        return hits;
+    }
+
+    private static List<String> expectedHits(String regex) {
+        Pattern pattern = Pattern.compile(regex);
+        List<String> hits = new ArrayList<>();
+        for (int doc = 0; doc < NUMBER_OF_DOCS; doc++) {
+            for (int i = 0; i < DOC_LENGTH; i++) {
+                if (pattern.matcher(tokens[doc][i]).matches())
+                    hits.add(doc + ":" + i);
+            }
+        }
+        return hits;
+    }
+
+    @Test
+    public void testManyTerms() throws IOException {
+        for (String regex: new String[] { "t.*", "t1.*", "the|t2.*", "t[0-9]*5" }) {
+            Assert.assertEquals(regex, expectedHits(regex), hits(spans(regex, SpansMultiTerm.MAX_BUFFERED_POSITIONS)));
+            Assert.assertEquals(regex, expectedHits(regex), hits(spans(regex, 100)));
+        }
+        Assert.assertNull(spans("x.*", 100));
+    }
+
+    @Test
+    public void testMemoryBounded() throws IOException {
+        // Rare terms that don't fit in the buffer are merged into the per-document bitsets,
+        // so the merged positions take at most a bit per token (plus some overhead),
+        // no matter how many terms match
+        int maxBuffered = 100;
+        SpansMultiTerm spans = spans("t.*", maxBuffered);
+        Assert.assertTrue(spans.numberOfBufferedPositions() <= maxBuffered);
+        long maxBitsetBytes = NUMBER_OF_DOCS * (DOC_LENGTH / 8 + 64L) * 2;
+        Assert.assertTrue(spans.sizeBytes() <= maxBitsetBytes + maxBuffered * 12L);
+    }
+
+    @Test
+    public void testAdvance() throws IOException {
+        String regex = "the|t2.*";
+        List<String> expected = expectedHits(regex);
+        SpansMultiTerm spans = spans(regex, 100);
+        Assert.assertEquals(5, spans.advance(5));
+        Assert.assertEquals(6, spans.advanceStartPosition(5)); // "the" at 6
+        Assert.assertTrue(expected.contains("5:" + spans.startPosition()));
+        Assert.assertEquals(9, spans.advanceStartPosition(7));
+        Assert.assertEquals(DocIdSetIterator.NO_MORE_DOCS, spans.advance(NUMBER_OF_DOCS));
+    }
+
+}
@@ -0,0 +1,25 @@
+package nl.inl.blacklab.search.lucene.optimize;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestForwardIndexMatchingSettings {
+
+    @Test
+    public void testThreadOverride() throws InterruptedException {
+        ForwardIndexMatchingSettings settings = new ForwardIndexMatchingSettings();
+        settings.overrideThresholdForThisThread(ClauseCombinerNfa.MAX_NFA_MATCHING);
+        Assert.assertEquals(ClauseCombinerNfa.MAX_NFA_MATCHING, settings.threshold());
+
+        // Other threads are not affected
+        long[] otherThread = new long[1];
+        Thread thread = new Thread(() -> otherThread[0] = settings.threshold());
+        thread.start();
+        thread.join();
+        Assert.assertEquals(ClauseCombinerNfa.DEFAULT_FORWARD_INDEX_MATCHING_THRESHOLD, otherThread[0]);
+
+        settings.clearThresholdOverride();
+        Assert.assertEquals(ClauseCombinerNfa.DEFAULT_FORWARD_INDEX_MATCHING_THRESHOLD, settings.threshold());
+    }
+
+}
@@ -0,0 +1,51 @@
+package nl.inl.blacklab.mocks;
+
+import nl.inl.blacklab.exceptions.BlackLabRuntimeException;
+import nl.inl.blacklab.search.fimatch.ForwardIndexDocument;
+import nl.inl.blacklab.search.indexmetadata.MatchSensitivity;
+
+/**
+ * Forward index document where each character of a string is a token.
+ *
+ * Use with {@link MockFiAccessor}.
+ */
+public class ForwardIndexDocumentString extends ForwardIndexDocument {
+
+    private final String input;
+
+    public ForwardIndexDocumentString(String input) {
+        this.input = input;
+    }
+
+    @Override
+    public int getToken(int annotIndex, int pos) {
+        if (annotIndex != 0)
+            throw new BlackLabRuntimeException("only 0 is valid annotation");
+        if (!validPos(pos))
+            return -1;
+        return input.charAt(pos);
+    }
+
+    @Override
+    public boolean validPos(int pos) {
+        return pos >= 0 && pos < input.length();
+    }
+
+    @Override
+    public String getTermString(int annotIndex, int termId) {
+        if (annotIndex != 0)
+            throw new BlackLabRuntimeException("only 0 is valid annotation");
+        return Character.toString((char) termId);
+    }
+
+    @Override
+    public boolean termsEqual(int annotIndex, int[] termId, MatchSensitivity sensitivity) {
+        if (annotIndex != 0)
+            throw new BlackLabRuntimeException("only 0 is valid annotation");
+        for (int i = 1; i < termId.length; i++) {
+            if (termId[i] != termId[0])
+                return false;
+        }
+        return true;
+    }
+}
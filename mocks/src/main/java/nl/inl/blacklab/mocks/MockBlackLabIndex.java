@@ -5,7 +5,12 @@ import nl.inl.blacklab.forwardindex.AnnotationForwardIndex;
 import nl.inl.blacklab.forwardindex.ForwardIndex;
 import nl.inl.blacklab.search.*;
 import nl.inl.blacklab.search.indexmetadata.*;
+import nl.inl.blacklab.search.lucene.BLSpanMultiTermQueryWrapper;
 import nl.inl.blacklab.search.lucene.BLSpanQuery;
+import nl.inl.blacklab.search.lucene.ReverseTermIndexCache;
+import nl.inl.blacklab.search.lucene.SpanCache;
+import nl.inl.blacklab.search.lucene.TagSpanIndexCache;
+import nl.inl.blacklab.search.lucene.optimize.ForwardIndexMatchingSettings;
 import nl.inl.blacklab.search.results.*;
 import nl.inl.blacklab.searches.SearchCache;
 import nl.inl.blacklab.searches.SearchCacheDummy;
@@ -29,6 +34,16 @@ public class MockBlackLabIndex implements BlackLabIndex {
 
     private SearchSettings searchSettings;
 
+    private final ForwardIndexMatchingSettings forwardIndexMatchingSettings = new ForwardIndexMatchingSettings();
+
+    private final SpanCache spanCache = new SpanCache();
+
+    private final TagSpanIndexCache tagSpanIndexCache = new TagSpanIndexCache();
+
+    private final ReverseTermIndexCache reverseTermIndexCache = new ReverseTermIndexCache();
+
+    private final IndexWarmup warmup = new IndexWarmup(this);
+
     private Map<Annotation, AnnotationForwardIndex> forwardIndices = new HashMap<>();
 
     private Analyzer analyzer;
@@ -118,6 +133,41 @@ public class MockBlackLabIndex implements BlackLabIndex {
         return searchSettings;
     }
 
+    @Override
+    public ForwardIndexMatchingSettings forwardIndexMatchingSettings() {
+        return forwardIndexMatchingSettings;
+    }
+
+    @Override
+    public long maxTermsToExpand() {
+        return BLSpanMultiTermQueryWrapper.DEFAULT_MAX_TERMS_TO_EXPAND;
+    }
+
+    @Override
+    public void setMaxTermsToExpand(long maxTermsToExpand) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public ReverseTermIndexCache reverseTermIndexCache() {
+        return reverseTermIndexCache;
+    }
+
+    @Override
+    public SpanCache spanCache() {
+        return spanCache;
+    }
+
+    @Override
+    public TagSpanIndexCache tagSpanIndexCache() {
+        return tagSpanIndexCache;
+    }
+
+    @Override
+    public IndexWarmup warmup() {
+        return warmup;
+    }
+
     @Override
     public UnbalancedTagsStrategy defaultUnbalancedTagsStrategy() {
         throw new UnsupportedOperationException();
@@ -149,7 +199,7 @@ public class MockBlackLabIndex implements BlackLabIndex {
     }
 
     @Override
-    public Hits find(BLSpanQuery query, SearchSettings settings) throws TooManyClauses {
+    public Hits find(BLSpanQuery query, SearchSettings settings, QueryProfile profile) throws TooManyClauses {
         throw new UnsupportedOperationException();
     }
 
@@ -214,7 +264,7 @@ public class MockBlackLabIndex implements BlackLabIndex {
     }
 
     @Override
-    public SearchEmpty search(AnnotatedField field, boolean useCache) {
+    public SearchEmpty search(AnnotatedField field, boolean useCache, QueryProfile profile) {
         throw new UnsupportedOperationException();
     }
     
@@ -0,0 +1,67 @@
+package nl.inl.blacklab.mocks;
+
+import org.apache.lucene.index.LeafReader;
+import org.eclipse.collections.api.set.primitive.MutableIntSet;
+
+import nl.inl.blacklab.exceptions.BlackLabRuntimeException;
+import nl.inl.blacklab.search.fimatch.ForwardIndexAccessor;
+import nl.inl.blacklab.search.indexmetadata.Annotation;
+import nl.inl.blacklab.search.indexmetadata.MatchSensitivity;
+
+/**
+ * Forward index accessor for a single annotation, word, whose terms are single
+ * characters. A term's id is its character.
+ *
+ * Use with {@link ForwardIndexDocumentString}.
+ */
+public class MockFiAccessor extends ForwardIndexAccessor {
+    @Override
+    public int numberOfAnnotations() {
+        return 1;
+    }
+
+    @Override
+    public void getTermNumbers(MutableIntSet results, int annotNumber, String annotValue,
+            MatchSensitivity sensitivity) {
+        if (annotNumber != 0)
+            throw new BlackLabRuntimeException("only 0 is valid annotation");
+        if (annotValue.length() > 1)
+            throw new BlackLabRuntimeException("only words of length 1 are valid");
+        results.add(annotValue.charAt(0));
+    }
+
+    @Override
+    public int getAnnotationNumber(String annotName) {
+        if (!annotName.equals("word"))
+            throw new BlackLabRuntimeException("only 'word' is valid annotation");
+        return 0;
+    }
+
+    @Override
+    public int getAnnotationNumber(Annotation annotation) {
+        return getAnnotationNumber(annotation.name());
+    }
+
+    @Override
+    public ForwardIndexAccessorLeafReader getForwardIndexAccessorLeafReader(LeafReader reader) {
+        return null;
+    }
+
+    @Override
+    public String getTermString(int annotIndex, int termId) {
+        if (annotIndex != 0)
+            throw new BlackLabRuntimeException("only 0 is valid annotation");
+        return Character.toString((char) termId);
+    }
+
+    @Override
+    public boolean termsEqual(int annotIndex, int[] termId, MatchSensitivity sensitivity) {
+        if (annotIndex != 0)
+            throw new BlackLabRuntimeException("only 0 is valid annotation");
+        for (int i = 1; i < termId.length; i++) {
+            if (termId[i] != termId[0])
+                return false;
+        }
+        return true;
+    }
+}
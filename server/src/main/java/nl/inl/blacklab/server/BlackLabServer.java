@@ -15,15 +15,22 @@ import nl.inl.blacklab.server.datastream.DataStream;
 import nl.inl.blacklab.server.exceptions.BlsException;
 import nl.inl.blacklab.server.exceptions.ConfigurationException;
 import nl.inl.blacklab.server.exceptions.InternalServerError;
+import nl.inl.blacklab.server.exceptions.ResponseAborted;
 import nl.inl.blacklab.server.requesthandlers.RequestHandler;
 import nl.inl.blacklab.server.requesthandlers.Response;
 import nl.inl.blacklab.server.requesthandlers.SearchParameters;
 import nl.inl.blacklab.server.search.SearchManager;
+import nl.inl.blacklab.server.util.ResponseOutputStream;
 import nl.inl.blacklab.server.util.ServletUtil;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.ThreadContext;
 
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.DispatcherType;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
@@ -33,6 +40,10 @@ import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class BlackLabServer extends HttpServlet {
 
@@ -43,6 +54,9 @@ public class BlackLabServer extends HttpServlet {
 
     private static final Logger logger = LogManager.getLogger(BlackLabServer.class);
 
+    /** Request attribute with the error that made us abort an asynchronous request's response */
+    private static final String ATTR_RESPONSE_ABORTED = BlackLabServer.class.getName() + ".responseAborted";
+
     static final Charset CONFIG_ENCODING = Charset.forName("utf-8");
 
     static final Charset OUTPUT_ENCODING = Charset.forName("utf-8");
@@ -177,9 +191,10 @@ public class BlackLabServer extends HttpServlet {
      *
      * @param request HTTP request object
      * @param responseObject where to write our response
+     * @throws ServletException
      */
     @Override
-    protected void doGet(HttpServletRequest request, HttpServletResponse responseObject) {
+    protected void doGet(HttpServletRequest request, HttpServletResponse responseObject) throws ServletException {
         handleRequest(request, responseObject);
     }
 
@@ -194,7 +209,15 @@ public class BlackLabServer extends HttpServlet {
         }
     }
 
-	private void handleRequest(HttpServletRequest request, HttpServletResponse responseObject) {
+	private void handleRequest(HttpServletRequest request, HttpServletResponse responseObject) throws ServletException {
+        if (request.getDispatcherType() == DispatcherType.ASYNC) {
+            // We've dispatched back to the container after an asynchronous request failed midway;
+            // rethrow the error so the container resets the connection (see respond())
+            ResponseAborted e = (ResponseAborted) request.getAttribute(ATTR_RESPONSE_ABORTED);
+            if (e != null)
+                throw e;
+        }
+
         try {
             request.setCharacterEncoding("utf-8");
         } catch (UnsupportedEncodingException ex) {
@@ -263,6 +286,244 @@ public class BlackLabServer extends HttpServlet {
         // For some auth systems, we need to persist the logged-in user, e.g. by setting a cookie
         searchManager.getAuthSystem().persistUser(this, request, responseObject, requestHandler.getUser());
 
+        // If the client already has the current version of the response, we're done
+        String etag = getETag(request, requestHandler, outputType, debugMode);
+        if (etag != null && ServletUtil.ifNoneMatch(request, etag)) {
+            responseObject.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            String allowOrigin = searchManager.config().getProtocol().getAccessControlAllowOrigin();
+            if (allowOrigin != null)
+                responseObject.addHeader("Access-Control-Allow-Origin", allowOrigin);
+            responseObject.addHeader("Vary", "Accept-Encoding");
+            ServletUtil.writeCacheHeaders(responseObject, searchManager.config().getCache().getClientCacheTimeSec(), etag);
+            requestHandler.cleanup();
+            return;
+        }
+
+        if (requestHandler.runsSearch() && request.isAsyncSupported()) {
+            // Searches may take a while; don't tie up a container thread, but let our scheduler
+            // run the request when there's room (with a fair queue per user)
+            AsyncContext asyncContext = request.startAsync();
+            AsyncSearchRequest asyncRequest = new AsyncSearchRequest(requestHandler);
+            asyncContext.addListener(asyncRequest);
+            asyncContext.setTimeout(getAsyncRequestTimeoutMs());
+            final DataFormat finalOutputType = outputType;
+            String requestId = ThreadContext.get("requestId");
+            try {
+                searchManager.getRequestScheduler().submit(requestHandler.getUser().uniqueId(), () -> {
+                    if (!asyncRequest.start())
+                        return; // waited too long for its turn; already answered
+                    ThreadContext.put("requestId", requestId);
+                    ResponseAborted aborted = null;
+                    try {
+                        respond(request, (HttpServletResponse) asyncContext.getResponse(), requestHandler,
+                                finalOutputType, debugMode, etag);
+                    } catch (ResponseAborted e) {
+                        aborted = e;
+                    } finally {
+                        ThreadContext.remove("requestId");
+                        if (asyncRequest.finished()) {
+                            if (aborted != null) {
+                                // Let the container handle the error on its own thread; completing normally
+                                // would end the response as if nothing was wrong
+                                request.setAttribute(ATTR_RESPONSE_ABORTED, aborted);
+                                asyncContext.dispatch();
+                            } else {
+                                asyncContext.complete();
+                            }
+                        }
+                    }
+                }, () -> {
+                    // We're shutting down before the request got its turn
+                    if (!asyncRequest.start())
+                        return;
+                    try {
+                        ((HttpServletResponse) asyncContext.getResponse()).setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+                        requestHandler.cleanup();
+                    } finally {
+                        if (asyncRequest.finished())
+                            asyncContext.complete();
+                    }
+                });
+                return;
+            } catch (RejectedExecutionException e) {
+                // Shutting down; handle it here
+                asyncRequest.start();
+                try {
+                    respond(request, responseObject, requestHandler, outputType, debugMode, etag);
+                } finally {
+                    if (asyncRequest.finished())
+                        asyncContext.complete();
+                }
+                return;
+            }
+        }
+        respond(request, responseObject, requestHandler, outputType, debugMode, etag);
+    }
+
+    /**
+     * How long may an asynchronous search request take in total?
+     *
+     * That's the time it may wait for its turn plus the time the search itself may take.
+     *
+     * @return timeout in ms, or 0 for no timeout
+     */
+    private long getAsyncRequestTimeoutMs() {
+        int maxQueueWaitSec = searchManager.config().getPerformance().getMaxQueueWaitSec();
+        if (maxQueueWaitSec <= 0)
+            return 0;
+        return (maxQueueWaitSec + (long) searchManager.config().getCache().getMaxSearchTimeSec()) * 1000;
+    }
+
+    /**
+     * Keeps track of a search request we run asynchronously, so we can answer it
+     * if it times out.
+     *
+     * If the request is still waiting for its turn at that time, it is answered with
+     * 503 Service Unavailable. If it's running (normally searches are aborted before
+     * this, see BlsCache), we interrupt it and give it a moment to finish. If it doesn't,
+     * we answer with 504 Gateway Timeout, if nothing was sent yet.
+     */
+    private static class AsyncSearchRequest implements AsyncListener {
+
+        /** How long to wait for a running request to finish after we've interrupted it */
+        private static final long WAIT_AFTER_INTERRUPT_SEC = 5;
+
+        private static final int WAITING = 0;
+
+        private static final int RUNNING = 1;
+
+        private static final int FINISHED = 2;
+
+        private static final int TIMED_OUT = 3;
+
+        private final RequestHandler requestHandler;
+
+        private final AtomicInteger state = new AtomicInteger(WAITING);
+
+        /** Thread running the request, or null if not running */
+        private Thread thread;
+
+        private final CountDownLatch done = new CountDownLatch(1);
+
+        AsyncSearchRequest(RequestHandler requestHandler) {
+            this.requestHandler = requestHandler;
+        }
+
+        /**
+         * Start running (or rejecting) the request on this thread.
+         *
+         * @return false if the request already timed out (and was answered)
+         */
+        synchronized boolean start() {
+            if (!state.compareAndSet(WAITING, RUNNING))
+                return false;
+            thread = Thread.currentThread();
+            return true;
+        }
+
+        /**
+         * The request is done; call before completing the AsyncContext.
+         *
+         * @return false if it timed out while running (and was already completed)
+         */
+        synchronized boolean finished() {
+            thread = null;
+            done.countDown();
+            return state.compareAndSet(RUNNING, FINISHED);
+        }
+
+        private synchronized void interrupt() {
+            if (thread != null)
+                thread.interrupt();
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            AsyncContext asyncContext = event.getAsyncContext();
+            HttpServletResponse response = (HttpServletResponse) asyncContext.getResponse();
+            if (state.compareAndSet(WAITING, TIMED_OUT)) {
+                logger.warn("Search request waited too long for its turn; answering with 503");
+                response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+                requestHandler.cleanup();
+                asyncContext.complete();
+                return;
+            }
+            logger.warn("Search request timed out while running; interrupting it");
+            interrupt();
+            try {
+                if (done.await(WAIT_AFTER_INTERRUPT_SEC, TimeUnit.SECONDS))
+                    return; // it has completed the request
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (state.compareAndSet(RUNNING, TIMED_OUT)) {
+                logger.error("Search request didn't finish after interrupting it; answering with 504");
+                if (!response.isCommitted())
+                    response.setStatus(HttpServletResponse.SC_GATEWAY_TIMEOUT);
+                asyncContext.complete();
+            }
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            // nothing to do
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            // nothing to do
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+            // nothing to do
+        }
+    }
+
+    /**
+     * Determine the ETag for the response to this request, if possible.
+     *
+     * The ETag is based on the index version and the normalized search parameters
+     * (see {@link RequestHandler#getResponseIdentity()}), plus everything that
+     * influences how the response is represented (format, JSONP, encoding, etc.).
+     * It is only sent with responses that report the final results (see
+     * {@link RequestHandler#isResponseFinal()}).
+     *
+     * @param request HTTP request object
+     * @param requestHandler handler for this request
+     * @param outputType response format
+     * @param debugMode whether this is a debug mode request
+     * @return the ETag, or null if we can't determine one
+     */
+    private String getETag(HttpServletRequest request, RequestHandler requestHandler, DataFormat outputType, boolean debugMode) {
+        String responseIdentity;
+        try {
+            responseIdentity = requestHandler.getResponseIdentity();
+        } catch (BlsException e) {
+            return null; // will be reported when handling the request
+        }
+        if (responseIdentity == null)
+            return null;
+        return ServletUtil.getETag(responseIdentity + "|" + outputType
+                + "|" + ServletUtil.getParameter(request, "jsonp", "")
+                + "|" + ServletUtil.getParameter(request, "prettyprint", debugMode)
+                + "|" + requestHandler.omitBlackLabResponseRootElement()
+                + "|" + ServletUtil.getAcceptedContentEncoding(request));
+    }
+
+    /**
+     * Handle the request and write the response.
+     *
+     * @param request HTTP request object
+     * @param responseObject where to write our response
+     * @param requestHandler handler for this request
+     * @param outputType response format
+     * @param debugMode whether this is a debug mode request
+     * @param etag ETag for the response (only sent if the request succeeds), or null for none
+     * @throws ResponseAborted if an error occurred after part of the response was sent
+     */
+    private void respond(HttpServletRequest request, HttpServletResponse responseObject, RequestHandler requestHandler,
+            DataFormat outputType, boolean debugMode, String etag) throws ResponseAborted {
         // Is this a JSONP request?
         String callbackFunction = ServletUtil.getParameter(request, "jsonp", "");
         boolean isJsonp = callbackFunction.length() > 0;
@@ -273,9 +534,28 @@ public class BlackLabServer extends HttpServlet {
 
         String rootEl = requestHandler.omitBlackLabResponseRootElement() ? null : BLACKLAB_RESPONSE_ROOT_ELEMENT;
 
+        // === Write the response headers (status code is set below, or when the response is committed)
+
+        // Write HTTP headers (encoding, content type and cache)
+        responseObject.setCharacterEncoding(OUTPUT_ENCODING.name().toLowerCase());
+        responseObject.setContentType(ServletUtil.getContentType(outputType));
+        String allowOrigin = searchManager.config().getProtocol().getAccessControlAllowOrigin();
+        if (allowOrigin != null)
+            responseObject.addHeader("Access-Control-Allow-Origin", allowOrigin);
+        ServletUtil.writeCacheHeaders(responseObject, cacheTime);
+        String contentEncoding = ServletUtil.getAcceptedContentEncoding(request);
+        responseObject.addHeader("Vary", "Accept-Encoding");
+
         // === Handle the request
-        StringWriter buf = new StringWriter();
-        PrintWriter out = new PrintWriter(buf);
+        // The response is written directly to the client (compressed if possible). The first part
+        // is buffered, so if an error occurs before the response is committed, we can still send
+        // a proper error response instead.
+        ResponseOutputStream responseStream = new ResponseOutputStream(responseObject, contentEncoding, ResponseOutputStream.DEFAULT_BUFFER_SIZE);
+        if (etag != null) {
+            // Only if the response is final; while still counting, the same request will get a different response
+            responseStream.setHeaderOnCommit("ETag", () -> requestHandler.isResponseFinal() ? etag : null);
+        }
+        PrintWriter out = new PrintWriter(new OutputStreamWriter(responseStream, OUTPUT_ENCODING));
         DataStream ds = DataStream.create(outputType, out, prettyPrint, callbackFunction);
         ds.setOmitEmptyAnnotations(searchManager.config().getProtocol().isOmitEmptyProperties());
         ds.startDocument(rootEl);
@@ -308,32 +588,42 @@ public class BlackLabServer extends HttpServlet {
                 requestHandler.cleanup(); // close logger
             }
         }
-        ds.endDocument(rootEl);
-
-        // === Write the response headers
 
-        // Write HTTP headers (status code, encoding, content type and cache)
-        if (!isJsonp) // JSONP request always returns 200 OK because otherwise script doesn't load
-            responseObject.setStatus(httpCode);
-        responseObject.setCharacterEncoding(OUTPUT_ENCODING.name().toLowerCase());
-        responseObject.setContentType(ServletUtil.getContentType(outputType));
-        String allowOrigin = searchManager.config().getProtocol().getAccessControlAllowOrigin();
-        if (allowOrigin != null)
-            responseObject.addHeader("Access-Control-Allow-Origin", allowOrigin);
-        ServletUtil.writeCacheHeaders(responseObject, cacheTime);
-
-        // === Write the response that was captured in buf
+        // === Finish the response
         try {
-            Writer realOut = new OutputStreamWriter(responseObject.getOutputStream(), OUTPUT_ENCODING);
             boolean errorOccurred = errorBuf.getBuffer().length() > errorBufLengthBefore;
-            StringWriter writeWhat = errorOccurred ? errorBuf : buf;
-            realOut.write(writeWhat.toString());
-            realOut.flush();
+            if (errorOccurred) {
+                if (responseStream.discard()) {
+                    // Nothing was sent yet; send the error response instead
+                    responseStream.setHeaderOnCommit("ETag", (String) null);
+                    if (!isJsonp) // JSONP request always returns 200 OK because otherwise script doesn't load
+                        responseObject.setStatus(httpCode);
+                    Writer errorWriter = new OutputStreamWriter(responseStream, OUTPUT_ENCODING);
+                    errorWriter.write(errorBuf.toString());
+                    errorWriter.flush();
+                } else {
+                    // We've already sent the headers (with status 200) and part of the response.
+                    // We can't report the error anymore; log it and have the container reset the
+                    // connection, so the client knows the response is incomplete.
+                    logger.error("Error after response was partly sent, aborting response: " + errorBuf);
+                    responseStream.abortWithError("Error after response was partly sent");
+                }
+            } else {
+                ds.endDocument(rootEl);
+                out.flush();
+                if (!isJsonp) {
+                    if (!responseStream.isCommitted())
+                        responseObject.setStatus(httpCode);
+                    else if (httpCode != HttpServletResponse.SC_OK)
+                        logger.warn("Couldn't set HTTP status " + httpCode + ", response was already committed");
+                }
+            }
+            responseStream.close();
         } catch (IOException e) {
             // Client cancelled the request midway through.
             // This is okay, don't raise the alarm.
             logger.debug("(couldn't send response, client probably cancelled the request)");
-            return;
+            responseStream.abort();
         }
     }
 
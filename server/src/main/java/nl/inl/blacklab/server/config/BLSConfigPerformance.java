@@ -19,6 +19,8 @@ public class BLSConfigPerformance {
 
     int maxRunningJobsPerUser = 10;
 
+    int maxQueueWaitSec = 120;
+
     public int getMaxConcurrentSearches() {
         return maxConcurrentSearches;
     }
@@ -68,6 +70,14 @@ public class BLSConfigPerformance {
         //this.pausingEnabled = pausingEnabled;
     }
 
+    public int getMaxQueueWaitSec() {
+        return maxQueueWaitSec;
+    }
+
+    public void setMaxQueueWaitSec(int maxQueueWaitSec) {
+        this.maxQueueWaitSec = maxQueueWaitSec;
+    }
+
     public boolean isAutodetectMaxConcurrent() {
         return autodetectMaxConcurrent;
     }
@@ -0,0 +1,19 @@
+package nl.inl.blacklab.server.exceptions;
+
+import javax.servlet.ServletException;
+
+/**
+ * Thrown when an error occurred after (part of) the response was already sent.
+ *
+ * We can't send an error response anymore at that point. This exception is
+ * propagated to the servlet container, which will then reset the connection
+ * instead of ending the response normally, so the client knows the response
+ * is incomplete.
+ */
+public class ResponseAborted extends ServletException {
+
+    public ResponseAborted(String msg) {
+        super(msg);
+    }
+
+}
@@ -21,10 +21,12 @@ import nl.inl.blacklab.exceptions.ErrorOpeningIndex;
 import nl.inl.blacklab.exceptions.IndexTooOld;
 import nl.inl.blacklab.index.IndexListener;
 import nl.inl.blacklab.index.Indexer;
+import nl.inl.blacklab.queryParser.corpusql.CorpusQueryLanguageParser;
 import nl.inl.blacklab.search.BlackLab;
 import nl.inl.blacklab.search.BlackLabIndex;
 import nl.inl.blacklab.search.BlackLabIndexImpl;
 import nl.inl.blacklab.search.indexmetadata.IndexMetadata;
+import nl.inl.blacklab.search.results.QueryInfo;
 import nl.inl.blacklab.server.exceptions.BlsException;
 import nl.inl.blacklab.server.exceptions.IllegalIndexName;
 import nl.inl.blacklab.server.exceptions.InternalServerError;
@@ -255,8 +257,10 @@ public class Index {
 
         //logger.debug("    Opening index '" + id + "', dir = " + dir);
         try {
-            index = searchMan.blackLabInstance().open(this.dir);
-            index.setCache(searchMan.getBlackLabCache());
+            BlackLabIndex blIndex = searchMan.blackLabInstance().open(this.dir);
+            blIndex.setCache(searchMan.getBlackLabCache());
+            blIndex.warmup().start(pattern -> CorpusQueryLanguageParser.parse(pattern).toQuery(QueryInfo.create(blIndex)));
+            index = blIndex;
             //logger.debug("Done opening index '" + id + "'");
         } catch (IndexTooOld e) {
             throw e;
@@ -448,6 +448,26 @@ public class IndexManager {
         return availableIndices;
     }
 
+    /**
+     * Open all public indices in the background.
+     *
+     * That way, they start warming up (if configured) right after startup,
+     * instead of when they're first searched.
+     */
+    public void openPublicIndices() {
+        Thread thread = new Thread(() -> {
+            for (Index index: getAvailablePublicIndices()) {
+                try {
+                    index.blIndex();
+                } catch (BlsException e) {
+                    logger.warn("Could not open index " + index.getId() + ": " + e.getMessage());
+                }
+            }
+        }, "OpenPublicIndices");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
     /**
      * Find all indices within our collection directories, and add them to the
      * {@link IndexManager#indices} list. Indices that are already loaded are
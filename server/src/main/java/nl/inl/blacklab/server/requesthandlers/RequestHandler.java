@@ -22,6 +22,8 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.apache.logging.log4j.ThreadContext;
 import org.apache.lucene.document.Document;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexReader;
 
 import nl.inl.blacklab.exceptions.BlackLabException;
 import nl.inl.blacklab.exceptions.InterruptedSearch;
@@ -33,6 +35,8 @@ import nl.inl.blacklab.search.BlackLabIndex;
 import nl.inl.blacklab.search.Concordance;
 import nl.inl.blacklab.search.ConcordanceType;
 import nl.inl.blacklab.search.Kwic;
+import nl.inl.blacklab.search.QueryExplanation;
+import nl.inl.blacklab.search.QueryProfile;
 import nl.inl.blacklab.search.Span;
 import nl.inl.blacklab.search.indexmetadata.AnnotatedField;
 import nl.inl.blacklab.search.indexmetadata.AnnotatedFields;
@@ -415,6 +419,9 @@ public abstract class RequestHandler {
 
     private String requestId;
 
+    /** Set to false if our response reports results that are still being counted */
+    private boolean responseFinal = true;
+
     RequestHandler(BlackLabServer servlet, HttpServletRequest request, User user, String indexName, String urlResource,
             String urlPathInfo) {
         this.servlet = servlet;
@@ -470,7 +477,59 @@ public abstract class RequestHandler {
      * @return false if the client should not cache the response
      */
     public boolean isCacheAllowed() {
-        return request.getMethod().equals("GET");
+        return request.getMethod().equals("GET") && (searchParam == null || searchParam.getProfile() == null);
+    }
+
+    /**
+     * Get a string that identifies the response to this request, for use in an ETag.
+     *
+     * For searches, this consists of the index version and the normalized search
+     * parameters: as long as the index doesn't change, the same parameters yield
+     * the same response.
+     *
+     * Returns null if the user may not read the index or it isn't available, so
+     * a client never gets a 304 Not Modified where it should get an error.
+     *
+     * @return identity of the response, or null if we can't tell (no ETag will be used)
+     * @throws BlsException if the index couldn't be opened
+     */
+    public String getResponseIdentity() throws BlsException {
+        if (!runsSearch() || !isCacheAllowed())
+            return null;
+        Index indexObj = indexMan.getIndex(indexName);
+        if (!indexObj.userMayRead(user) || indexObj.getStatus() != IndexStatus.AVAILABLE)
+            return null; // the request handler will report the problem
+        BlackLabIndex index = indexObj.blIndex();
+        IndexReader reader = index.reader();
+        long readerVersion = reader instanceof DirectoryReader ? ((DirectoryReader) reader).getVersion() : -1;
+        if (readerVersion < 0)
+            return null; // can't tell when the index changes
+        return getClass().getSimpleName() + "|" + index.metadata().timeModified() + "|" + readerVersion + "|"
+                + debugMode + "|" + searchParam.normalized();
+    }
+
+    /**
+     * Does our response report the final results?
+     *
+     * Only final responses get an ETag: if the results were still being counted, the
+     * same request will get a different response later.
+     *
+     * @return false if the response reports results that were still being counted
+     */
+    public boolean isResponseFinal() {
+        return responseFinal;
+    }
+
+    /**
+     * Does this operation (potentially) run a search?
+     *
+     * Such requests are handled asynchronously, with bounded concurrency (see
+     * {@link nl.inl.blacklab.server.search.SearchRequestScheduler}).
+     *
+     * @return true if this operation may run a search
+     */
+    public boolean runsSearch() {
+        return false;
     }
 
     public boolean omitBlackLabResponseRootElement() {
@@ -559,6 +618,42 @@ public abstract class RequestHandler {
         ds.endMap();
     }
 
+    /**
+     * Stream the estimated costs the query planner used to decide how to execute a query.
+     *
+     * @param ds where to stream
+     * @param explanation the query explanation
+     */
+    protected static void dataStreamQueryCosts(DataStream ds, QueryExplanation explanation) {
+        ds.startMap()
+                .entry("reverseMatchingCost", explanation.reverseMatchingCost())
+                .entry("forwardMatchingCost", explanation.forwardMatchingCost())
+                .entry("termFreqDivider", explanation.termFreqDivider())
+                .entry("nfaThreshold", explanation.nfaThreshold());
+        if (explanation.postingsNsPerToken() >= 0)
+            ds.entry("postingsNsPerToken", explanation.postingsNsPerToken());
+        if (explanation.forwardIndexNsPerToken() >= 0)
+            ds.entry("forwardIndexNsPerToken", explanation.forwardIndexNsPerToken());
+        ds.endMap();
+    }
+
+    /**
+     * Stream the profile of this request, if one was requested (profile=true).
+     *
+     * Should be called at the end of the response, so the profile includes the
+     * time spent writing the rest of it.
+     *
+     * @param ds where to stream
+     * @param startWritingNs when we started writing the response (from System.nanoTime())
+     */
+    protected void dataStreamProfile(DataStream ds, long startWritingNs) {
+        QueryProfile profile = searchParam.getProfile();
+        if (profile == null)
+            return;
+        profile.add("serialize", null).addTimeSince(startWritingNs);
+        ds.startEntry("profile").value(searchParam.finishProfile().toMap()).endEntry();
+    }
+
     protected static void dataStreamMetadataGroupInfo(DataStream ds, BlackLabIndex index) {
         MetadataFieldGroups metaGroups = index.metadata().metadataFields().groups();
         synchronized (metaGroups) { // concurrent requests
@@ -806,6 +901,8 @@ public abstract class RequestHandler {
         long docsCounted = docsStats == null || countFailed ? -1 : (waitForTotal ? docsStats.countedTotal() : docsStats.countedSoFar());
         long docsProcessed = docsStats == null ? -1 : (waitForTotal ? docsStats.processedTotal() : docsStats.processedSoFar());
 
+        if (!hitsStats.done() || (docsStats != null && !docsStats.done()) || countFailed)
+            responseFinal = false;
         ds.entry("stillCounting", !hitsStats.done());
         ds.entry("numberOfHits", hitsCounted)
                 .entry("numberOfHitsRetrieved", hitsProcessed)
@@ -977,7 +1074,9 @@ public abstract class RequestHandler {
 
         ds.startEntry("hits").startList();
         Set<Annotation> annotationsToList = new HashSet<>(getAnnotationsToWrite());
+        int hitIndex = -1;
         for (Hit hit : hits) {
+            hitIndex++;
             ds.startItem("hit").startMap();
 
             // Find pid
@@ -1030,7 +1129,7 @@ public abstract class RequestHandler {
                 }
             } else {
                 // Add KWIC info
-                Kwic c = kwics.get(hit);
+                Kwic c = kwics.get(hitIndex);
                 if (includeContext) {
                     ds.startEntry("left").contextList(c.annotations(), annotationsToList, c.left()).endEntry()
                             .startEntry("match").contextList(c.annotations(), annotationsToList, c.match()).endEntry()
@@ -7,6 +7,7 @@ import nl.inl.blacklab.server.BlackLabServer;
 import nl.inl.blacklab.server.datastream.DataStream;
 import nl.inl.blacklab.server.exceptions.BlsException;
 import nl.inl.blacklab.server.jobs.User;
+import nl.inl.blacklab.server.search.SearchRequestScheduler;
 
 /**
  * Display the contents of the cache.
@@ -33,7 +34,12 @@ public class RequestHandlerCacheInfo extends RequestHandler {
         ds.endEntry()
             .startEntry("cacheContents");
         ds.value(blackLabCache.getCacheContent(debugInfo));
-        ds.endEntry()
+        ds.endEntry();
+        SearchRequestScheduler scheduler = searchMan.getRequestScheduler();
+        ds.startEntry("searchRequests").startMap()
+                .entry("running", scheduler.numberRunning())
+                .entry("waiting", scheduler.numberWaiting())
+            .endMap().endEntry()
                 .endMap();
         return HTTP_OK;
     }
@@ -1,5 +1,6 @@
 package nl.inl.blacklab.server.requesthandlers;
 
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
 import java.util.concurrent.ExecutionException;
@@ -25,13 +26,18 @@ import nl.inl.blacklab.search.results.DocResults;
 import nl.inl.blacklab.search.results.Hit;
 import nl.inl.blacklab.search.results.Hits;
 import nl.inl.blacklab.search.results.Kwics;
+import nl.inl.blacklab.search.results.QueryInfo;
 import nl.inl.blacklab.search.results.ResultsStats;
+import nl.inl.blacklab.search.results.WindowStats;
 import nl.inl.blacklab.searches.SearchCacheEntry;
+import nl.inl.blacklab.searches.SearchCount;
+import nl.inl.blacklab.searches.SearchHits;
 import nl.inl.blacklab.server.BlackLabServer;
 import nl.inl.blacklab.server.datastream.DataStream;
 import nl.inl.blacklab.server.exceptions.BlsException;
 import nl.inl.blacklab.server.jobs.ContextSettings;
 import nl.inl.blacklab.server.jobs.User;
+import nl.inl.blacklab.server.jobs.WindowSettings;
 
 /**
  * Request handler for the doc results.
@@ -50,6 +56,17 @@ public class RequestHandlerDocs extends RequestHandler {
     private DocResults docResults;
     private long totalTime;
 
+    /** Count of docs matching the pattern (or filter) */
+    private SearchCount docsCount;
+
+    /** If we only counted the docs (number=0 without a pattern): the count */
+    private ResultsStats docsCountOnly;
+
+    @Override
+    public boolean runsSearch() {
+        return true;
+    }
+
     @Override
     public int handle(DataStream ds) throws BlsException, InvalidQuery {
         // Do we want to view a single group after grouping?
@@ -61,17 +78,34 @@ public class RequestHandlerDocs extends RequestHandler {
             viewGroup = "";
         int response = 0;
 
+        // If we don't need any actual docs (just the totals), we only have to count them
+        boolean viewingGroup = groupBy.length() > 0 && viewGroup.length() > 0;
+        WindowSettings windowSettings = searchParam.getWindowSettings();
+        boolean countOnly = !viewingGroup && windowSettings.first() == 0 && windowSettings.size() == 0 &&
+                !searchParam.getBoolean("includetokencount") && !searchParam.hasFacets();
+
         // Make sure we have the hits search, so we can later determine totals.
         originalHitsSearch = null;
+        docsCount = searchParam.docsCount();
         if (searchParam.hasPattern()) {
-            originalHitsSearch = searchParam.hitsSample().hitCount().executeAsync();
+            SearchHits searchHits = searchParam.hitsSample();
+            if (countOnly && searchMan.getBlackLabCache().getIfPresent(searchHits) == null) {
+                // We don't have the hits already; only count them (no need to store them)
+                searchHits = searchHits.countOnly();
+            }
+            originalHitsSearch = searchHits.hitCount().executeAsync();
+            docsCount = searchHits.docCount();
         }
 
-        if (groupBy.length() > 0 && viewGroup.length() > 0) {
+        if (viewingGroup) {
 
             // View a single group in a grouped docs resultset
             response = doViewGroup(ds, viewGroup);
 
+        } else if (countOnly) {
+            // Only the totals, no docs
+            response = doCountOnly(ds);
+
         } else {
             // Regular set of docs (no grouping first)
             response = doRegularDocs(ds);
@@ -153,6 +187,31 @@ public class RequestHandlerDocs extends RequestHandler {
         return doResponse(ds, false, new HashSet<>(this.getAnnotationsToWrite()), this.getMetadataToWrite(), waitForTotal);
     }
 
+    private int doCountOnly(DataStream ds) throws BlsException, InvalidQuery {
+        if (originalHitsSearch != null) {
+            // The totals come from the hits search
+            search = originalHitsSearch;
+        } else {
+            // Count the docs matching the filter without constructing the results
+            SearchCacheEntry<ResultsStats> count = searchParam.docs().countOnly().executeAsync();
+            search = count;
+            try {
+                docsCountOnly = count.get();
+            } catch (InterruptedException | ExecutionException e) {
+                throw RequestHandler.translateSearchException(e);
+            }
+        }
+        boolean waitForTotal = searchParam.getBoolean("waitfortotal");
+        ResultsStats stats = originalHitsSearch == null ? docsCountOnly : originalHitsSearch.peek();
+        if (waitForTotal)
+            stats.countedTotal();
+        window = DocResults.fromList(QueryInfo.create(blIndex()), Collections.emptyList(), null,
+                new WindowStats(stats.countedSoFar() > 0, 0, 0, 0));
+        totalTime = search.threwException() ? -1 : search.timeUserWaitedMs();
+
+        return doResponse(ds, false, new HashSet<>(this.getAnnotationsToWrite()), this.getMetadataToWrite(), waitForTotal);
+    }
+
     private int doResponse(DataStream ds, boolean isViewGroup, Set<Annotation> annotationsTolist, Set<MetadataField> metadataFieldsToList, boolean waitForTotal) throws BlsException, InvalidQuery {
         BlackLabIndex blIndex = blIndex();
 
@@ -165,16 +224,21 @@ public class RequestHandlerDocs extends RequestHandler {
 
         // Search is done; construct the results object
 
+        long startWritingNs = System.nanoTime();
         ds.startMap();
 
         // The summary
         ds.startEntry("summary").startMap();
         ResultsStats hitsStats, docsStats;
         hitsStats = originalHitsSearch == null ? null : originalHitsSearch.peek();
-        docsStats = searchParam.docsCount().executeAsync().peek();
+        docsStats = docsCount.executeAsync().peek();
         addSummaryCommonFields(ds, searchParam, search.timeUserWaitedMs(), totalTime, null, window.windowStats());
         boolean countFailed = totalTime < 0;
-        if (hitsStats == null)
+        if (docsCountOnly != null) {
+            ds.entry("stillCounting", false)
+                    .entry("numberOfDocs", docsCountOnly.countedTotal())
+                    .entry("numberOfDocsRetrieved", docsCountOnly.processedTotal());
+        } else if (hitsStats == null)
             addNumberOfResultsSummaryDocResults(ds, isViewGroup, docResults, countFailed, null);
         else
             addNumberOfResultsSummaryTotalHits(ds, hitsStats, docsStats, waitForTotal, countFailed, null);
@@ -251,6 +315,7 @@ public class RequestHandlerDocs extends RequestHandler {
             dataStreamFacets(ds, totalDocResults, searchParam.facets());
             ds.endEntry();
         }
+        dataStreamProfile(ds, startWritingNs);
         ds.endMap();
         return HTTP_OK;
     }
@@ -291,6 +291,11 @@ public class RequestHandlerDocsCsv extends RequestHandler {
         }
     }
 
+    @Override
+    public boolean runsSearch() {
+        return true;
+    }
+
     @Override
     public int handle(DataStream ds) throws BlsException, InvalidQuery {
         Result result = getDocs();
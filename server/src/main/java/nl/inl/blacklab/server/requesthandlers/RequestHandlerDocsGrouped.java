@@ -30,6 +30,11 @@ public class RequestHandlerDocsGrouped extends RequestHandler {
         super(servlet, request, user, indexName, urlResource, urlPathPart);
     }
 
+    @Override
+    public boolean runsSearch() {
+        return true;
+    }
+
     @Override
     public int handle(DataStream ds) throws BlsException, InvalidQuery {
 
@@ -61,6 +66,7 @@ public class RequestHandlerDocsGrouped extends RequestHandler {
         if (first + number > groups.size())
             numberOfGroupsInWindow = groups.size() - first;
 
+        long startWritingNs = System.nanoTime();
         ds.startMap();
 
         // The summary
@@ -133,6 +139,7 @@ public class RequestHandlerDocsGrouped extends RequestHandler {
         }
         ds.endList().endEntry();
 
+        dataStreamProfile(ds, startWritingNs);
         ds.endMap();
 
         return HTTP_OK;
@@ -45,6 +45,9 @@ public class RequestHandlerExplain extends RequestHandler {
                     .entry("textPattern", patt)
                     .entry("originalQuery", explanation.originalQuery())
                     .entry("rewrittenQuery", explanation.rewrittenQuery());
+            ds.startEntry("costs");
+            dataStreamQueryCosts(ds, explanation);
+            ds.endEntry();
             ds.endMap();
         } catch (TooManyClauses e) {
             return Response.badRequest(ds, "QUERY_TOO_BROAD",
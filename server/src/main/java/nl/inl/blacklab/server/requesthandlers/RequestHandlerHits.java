@@ -53,6 +53,7 @@ import nl.inl.blacklab.search.results.QueryInfo;
 import nl.inl.blacklab.search.results.Results;
 import nl.inl.blacklab.search.results.ResultsStats;
 import nl.inl.blacklab.search.results.ResultsStatsStatic;
+import nl.inl.blacklab.search.results.WindowStats;
 import nl.inl.blacklab.search.textpattern.TextPattern;
 import nl.inl.blacklab.search.textpattern.TextPatternAnd;
 import nl.inl.blacklab.search.textpattern.TextPatternAnnotation;
@@ -83,6 +84,11 @@ public class RequestHandlerHits extends RequestHandler {
         super(servlet, request, user, indexName, urlResource, urlPathPart);
     }
 
+    @Override
+    public boolean runsSearch() {
+        return true;
+    }
+
     @SuppressWarnings("unchecked")
     @Override
     public int handle(DataStream ds) throws BlsException, InvalidQuery {
@@ -101,6 +107,12 @@ public class RequestHandlerHits extends RequestHandler {
 
         boolean viewingGroup = groupBy.length() > 0 && viewGroup.length() > 0;
         boolean waitForTotal = searchParam.getBoolean("waitfortotal");
+        WindowSettings windowSettings = searchParam.getWindowSettings();
+        boolean includeTokenCount = searchParam.getBoolean("includetokencount");
+
+        // If we don't need any actual hits (just the totals), we only have to count them
+        boolean countOnly = !viewingGroup && windowSettings.first() == 0 && windowSettings.size() == 0 &&
+                !searchParam.getString("calc").equals("colloc") && !includeTokenCount && !searchParam.hasFacets();
         try {
             if (viewingGroup) {
                 // We're viewing a single group. Get the hits from the grouping results.
@@ -114,6 +126,10 @@ public class RequestHandlerHits extends RequestHandler {
                 // Regular hits request.
                 // Create the search objects
                 SearchHits searchHits = searchParam.hitsSample();
+                if (countOnly && searchMan.getBlackLabCache().getIfPresent(searchHits) == null) {
+                    // We don't have the hits already; only count them (no need to store them)
+                    searchHits = searchHits.countOnly();
+                }
                 SearchCount searchHitCount = searchHits.hitCount();
                 SearchCount searchDocCount = searchHits.docCount();
                 // Start the search.
@@ -126,6 +142,11 @@ public class RequestHandlerHits extends RequestHandler {
                 try {
                     hitsStats = ((SearchCacheEntry<ResultsStats>) cacheEntry).peek();
                     docsStats = searchDocCount.executeAsync().peek();
+                    // If the counts are still queued (server busy), use the running counts from the hits
+                    if (hitsStats == null)
+                        hitsStats = hits.hitsStats();
+                    if (docsStats == null)
+                        docsStats = hits.docsStats();
                     // Wait until all hits have been counted.
                     if (waitForTotal) {
                         hitsStats.countedTotal();
@@ -150,14 +171,15 @@ public class RequestHandlerHits extends RequestHandler {
             return HTTP_OK;
         }
 
-
-        WindowSettings windowSettings = searchParam.getWindowSettings();
         if (!hits.hitsStats().processedAtLeast(windowSettings.first()))
             throw new BadRequest("HIT_NUMBER_OUT_OF_RANGE", "Non-existent hit number specified.");
 
         SearchCacheEntry<Hits> cacheEntryWindow = null;
         Hits window;
-        if (!viewingGroup) {
+        if (countOnly) {
+            // We only counted; there's no hits to show.
+            window = Hits.immutableEmptyList(hits.queryInfo());
+        } else if (!viewingGroup) {
             // Request the window of hits we're interested in.
             // (we hold on to the cache entry so that we can differentiate between search and count time later)
             cacheEntryWindow = searchParam.hitsWindow().executeAsync();
@@ -175,7 +197,6 @@ public class RequestHandlerHits extends RequestHandler {
 
         BlackLabIndex index = hits.index();
 
-        boolean includeTokenCount = searchParam.getBoolean("includetokencount");
         long totalTokens = -1;
         if (includeTokenCount) {
             perDocResults = hits.perDocResults(Results.NO_LIMIT);
@@ -190,6 +211,7 @@ public class RequestHandlerHits extends RequestHandler {
 
         // Search is done; construct the results object
 
+        long startWritingNs = System.nanoTime();
         ds.startMap();
 
         // The summary
@@ -199,7 +221,8 @@ public class RequestHandlerHits extends RequestHandler {
         long searchTime = (cacheEntryWindow == null ? cacheEntry.timeUserWaitedMs() : cacheEntryWindow.timeUserWaitedMs()) + kwicTimeMs;
         long countTime = cacheEntry.threwException() ? -1 : cacheEntry.timeUserWaitedMs();
         logger.info("Total search time is:{} ms", searchTime);
-        addSummaryCommonFields(ds, searchParam, searchTime, countTime, null, window.windowStats());
+        WindowStats windowStats = countOnly ? new WindowStats(hitsStats.countedSoFar() > 0, 0, 0, 0) : window.windowStats();
+        addSummaryCommonFields(ds, searchParam, searchTime, countTime, null, windowStats);
         addNumberOfResultsSummaryTotalHits(ds, hitsStats, docsStats, waitForTotal, countTime < 0, null);
         if (includeTokenCount)
             ds.entry("tokensInMatchingDocuments", totalTokens);
@@ -220,7 +243,9 @@ public class RequestHandlerHits extends RequestHandler {
                 ds.startEntry("explanation").startMap()
                         .entry("originalQuery", explanation.originalQuery())
                         .entry("rewrittenQuery", explanation.rewrittenQuery())
-                        .endMap().endEntry();
+                        .startEntry("costs");
+                dataStreamQueryCosts(ds, explanation);
+                ds.endEntry().endMap().endEntry();
             } catch (RegexpTooLarge e) {
                 throw new BadRequest("REGEXP_TOO_LARGE", "Regular expression too large.");
             } catch (WildcardTermTooBroad e) {
@@ -266,6 +291,7 @@ public class RequestHandlerHits extends RequestHandler {
             ds.endEntry();
         }
 
+        dataStreamProfile(ds, startWritingNs);
         ds.endMap();
 
         return HTTP_OK;
@@ -286,13 +286,14 @@ public class RequestHandlerHitsCsv extends RequestHandler {
 
             Map<Integer, Document> luceneDocs = new HashMap<>();
             Kwics kwics = hits.kwics(blIndex().defaultContextSize());
+            int hitIndex = 0;
             for (Hit hit : hits) {
                 Document doc = luceneDocs.get(hit.doc());
                 if (doc == null) {
                     doc = blIndex().doc(hit.doc()).luceneDoc();
                     luceneDocs.put(hit.doc(), doc);
                 }
-                writeHit(kwics.get(hit), doc, mainTokenProperty, annotationsToWrite, getDocumentPid(blIndex(), hit.doc(), doc), metadataFieldsToWrite, row);
+                writeHit(kwics.get(hitIndex++), doc, mainTokenProperty, annotationsToWrite, getDocumentPid(blIndex(), hit.doc(), doc), metadataFieldsToWrite, row);
                 printer.printRecord(row);
             }
             printer.flush();
@@ -304,6 +305,11 @@ public class RequestHandlerHitsCsv extends RequestHandler {
         }
     }
 
+    @Override
+    public boolean runsSearch() {
+        return true;
+    }
+
     @Override
     public int handle(DataStream ds) throws BlsException, InvalidQuery {
         Result result = getHits();
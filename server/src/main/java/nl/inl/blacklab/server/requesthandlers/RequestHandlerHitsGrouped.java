@@ -14,16 +14,19 @@ import org.apache.lucene.document.Document;
 import org.apache.lucene.search.BooleanClause.Occur;
 import org.apache.lucene.search.BooleanQuery;
 import org.apache.lucene.search.BooleanQuery.Builder;
+import org.apache.lucene.search.MatchAllDocsQuery;
 import org.apache.lucene.search.Query;
 import org.eclipse.collections.api.set.primitive.MutableIntSet;
 import org.eclipse.collections.impl.set.mutable.primitive.IntHashSet;
 
 import nl.inl.blacklab.exceptions.InvalidQuery;
 import nl.inl.blacklab.resultproperty.DocProperty;
+import nl.inl.blacklab.resultproperty.DocPropertyStoredField;
 import nl.inl.blacklab.resultproperty.HitProperty;
 import nl.inl.blacklab.resultproperty.HitPropertyMultiple;
 import nl.inl.blacklab.resultproperty.PropertyValue;
 import nl.inl.blacklab.search.BlackLabIndex;
+import nl.inl.blacklab.search.MetadataValueRollup;
 import nl.inl.blacklab.search.indexmetadata.MetadataField;
 import nl.inl.blacklab.search.results.CorpusSize;
 import nl.inl.blacklab.search.results.DocResults;
@@ -54,6 +57,11 @@ public class RequestHandlerHitsGrouped extends RequestHandler {
         super(servlet, request, user, indexName, urlResource, urlPathPart);
     }
 
+    @Override
+    public boolean runsSearch() {
+        return true;
+    }
+
     @Override
     public int handle(DataStream ds) throws BlsException, InvalidQuery {
         HitGroups groups;
@@ -67,6 +75,7 @@ public class RequestHandlerHitsGrouped extends RequestHandler {
             throw RequestHandler.translateSearchException(e);
         }
 
+        long startWritingNs = System.nanoTime();
         ds.startMap();
         ds.startEntry("summary").startMap();
         WindowSettings windowSettings = searchParam.getWindowSettings();
@@ -163,6 +172,7 @@ public class RequestHandlerHitsGrouped extends RequestHandler {
         if (searchParam.includeGroupContents()) {
             writeDocInfos(ds, groups, pids, first, requestedWindowSize);
         }
+        dataStreamProfile(ds, startWritingNs);
         ds.endMap();
 
         return HTTP_OK;
@@ -204,6 +214,13 @@ public class RequestHandlerHitsGrouped extends RequestHandler {
     static CorpusSize findSubcorpusSize(SearchParameters searchParam, Query metadataFilterQuery, DocProperty property, PropertyValue value, boolean countTokens) {
         if (!property.canConstructQuery(searchParam.blIndex(), value))
             return CorpusSize.EMPTY; // cannot determine subcorpus size of empty value
+        if (metadataFilterQuery instanceof MatchAllDocsQuery && property instanceof DocPropertyStoredField) {
+            // No filter; see if we can just look up the size for this metadata value
+            String fieldName = ((DocPropertyStoredField) property).fieldName();
+            CorpusSize size = MetadataValueRollup.subcorpusSize(searchParam.blIndex(), fieldName, value.toString());
+            if (size != null)
+                return countTokens ? size : CorpusSize.get(size.getDocuments(), -1);
+        }
         // Construct a query that matches this propery value
         Query query = property.query(searchParam.blIndex(), value); // analyzer....!
         if (query == null) {
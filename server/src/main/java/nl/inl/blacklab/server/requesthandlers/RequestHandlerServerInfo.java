@@ -7,6 +7,7 @@ import javax.servlet.http.HttpServletRequest;
 import nl.inl.blacklab.exceptions.IndexTooOld;
 import nl.inl.blacklab.index.IndexListener;
 import nl.inl.blacklab.search.BlackLabIndexImpl;
+import nl.inl.blacklab.search.IndexWarmup;
 import nl.inl.blacklab.search.indexmetadata.IndexMetadata;
 import nl.inl.blacklab.server.BlackLabServer;
 import nl.inl.blacklab.server.datastream.DataStream;
@@ -65,6 +66,20 @@ public class RequestHandlerServerInfo extends RequestHandler {
                                     .entry("tokensProcessed", indexProgress.getTokensProcessed())
                                     .endMap().endEntry();
                         }
+                    } else {
+                        IndexWarmup warmup = index.blIndex().warmup();
+                        if (warmup.status() != IndexWarmup.Status.DISABLED) {
+                            ds.startEntry("warmup").startMap()
+                                    .entry("status", warmup.status())
+                                    .entry("filesPrefetched", warmup.filesPrefetched())
+                                    .entry("filesToPrefetch", warmup.filesToPrefetch())
+                                    .entry("bytesPrefetched", warmup.bytesPrefetched())
+                                    .entry("queriesReplayed", warmup.queriesReplayed())
+                                    .entry("queriesFailed", warmup.queriesFailed())
+                                    .entry("queriesToReplay", warmup.queriesToReplay())
+                                    .entry("timeMs", warmup.timeMs())
+                                    .endMap().endEntry();
+                        }
                     }
 
                     String formatIdentifier = indexMetadata.documentFormat();
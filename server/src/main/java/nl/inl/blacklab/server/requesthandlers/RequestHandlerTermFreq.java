@@ -29,6 +29,11 @@ public class RequestHandlerTermFreq extends RequestHandler {
         super(servlet, request, user, indexName, urlResource, urlPathPart);
     }
 
+    @Override
+    public boolean runsSearch() {
+        return true;
+    }
+
     @Override
     public int handle(DataStream ds) throws BlsException {
         //TODO: use background job?
@@ -1,5 +1,7 @@
 package nl.inl.blacklab.server.requesthandlers;
 
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -28,8 +30,10 @@ import nl.inl.blacklab.resultproperty.HitProperty;
 import nl.inl.blacklab.resultproperty.PropertyValue;
 import nl.inl.blacklab.search.BlackLabIndex;
 import nl.inl.blacklab.search.ConcordanceType;
+import nl.inl.blacklab.search.QueryProfile;
 import nl.inl.blacklab.search.SingleDocIdFilter;
 import nl.inl.blacklab.search.indexmetadata.MatchSensitivity;
+import nl.inl.blacklab.search.lucene.BLSpanQuery;
 import nl.inl.blacklab.search.results.ContextSize;
 import nl.inl.blacklab.search.results.Results;
 import nl.inl.blacklab.search.results.SampleParameters;
@@ -99,6 +103,7 @@ public class SearchParameters {
         defaultParameterValues.put("fimatch", "-1");
         defaultParameterValues.put("usecache", "yes");
         defaultParameterValues.put("explain", "no");
+        defaultParameterValues.put("profile", "no");
         defaultParameterValues.put("listvalues", "");
         defaultParameterValues.put("listmetadatavalues", "");
         defaultParameterValues.put("subprops", "");
@@ -137,6 +142,10 @@ public class SearchParameters {
             param.put(name, value);
         }
         param.setDebugMode(searchMan.config().getDebug().isDebugMode(request.getRemoteAddr()));
+        if (param.debugMode && param.getBoolean("profile")) {
+            param.profile = new QueryProfile("request");
+            param.profileStartNs = System.nanoTime();
+        }
         return param;
     }
 
@@ -151,6 +160,7 @@ public class SearchParameters {
             // How to search
             "fimatch", // [debug] set NFA FI matching threshold
             "usecache", // [debug] use cache or bypass it?
+            "profile", // [debug] record where time is spent executing the search?
 
             // How to present results
             "sort", // sorting (grouped) hits/docs
@@ -210,6 +220,12 @@ public class SearchParameters {
 
     private List<DocProperty> facetProps;
 
+    /** Profile of this request, if requested (profile=true, debug mode only) */
+    private QueryProfile profile;
+
+    /** When we started profiling this request (ns) */
+    private long profileStartNs;
+
     private SearchParameters(SearchManager searchManager, boolean isDocsOperation) {
         this.searchManager = searchManager;
         this.isDocsOperation = isDocsOperation;
@@ -280,6 +296,29 @@ public class SearchParameters {
         return Collections.unmodifiableMap(map);
     }
 
+    /**
+     * Get a normalized representation of these parameters.
+     *
+     * Default values are filled in and parameters are always listed in the same order,
+     * so two requests with the same normalized parameters will get the same results.
+     *
+     * @return normalized parameters
+     */
+    public String normalized() {
+        StringBuilder b = new StringBuilder(getIndexName()).append(isDocsOperation ? "/docs?" : "/hits?");
+        for (String name: NAMES) {
+            String value = getString(name);
+            if (value != null && !value.isEmpty()) {
+                try {
+                    b.append(name).append("=").append(URLEncoder.encode(value, "utf-8")).append("&");
+                } catch (UnsupportedEncodingException e) {
+                    throw new RuntimeException(e); // never happens, utf-8 is always supported
+                }
+            }
+        }
+        return b.toString();
+    }
+
     public void dataStream(DataStream ds) {
         ds.startMap();
         for (Map.Entry<String, String> e : map.entrySet()) {
@@ -319,7 +358,10 @@ public class SearchParameters {
                                 "Syntax error in gapped CorpusQL pattern: " + e.getMessage());
                     }
                 } else {
+                    long startNs = System.nanoTime();
                     pattern = BlsUtils.parsePatt(blIndex(), patt, pattLang);
+                    if (profile != null)
+                        profile.add("parse", patt).addTimeSince(startNs);
                 }
             }
         }
@@ -376,6 +418,29 @@ public class SearchParameters {
         return debugMode ? getBoolean("usecache") : true;
     }
 
+    /**
+     * Get the profile for this request.
+     *
+     * Profiled searches are not shared with other requests through the cache, so
+     * the profile shows how long each phase actually took.
+     *
+     * @return the profile, or null if we're not profiling
+     */
+    public QueryProfile getProfile() {
+        return profile;
+    }
+
+    /**
+     * Finish the profile for this request, by recording the total time spent so far.
+     *
+     * @return the profile, or null if we're not profiling
+     */
+    QueryProfile finishProfile() {
+        if (profile != null)
+            profile.addTimeSince(profileStartNs);
+        return profile;
+    }
+
     public SearchSettings getSearchSettings() {
         int fiMatchNfaFactor = debugMode ? getInteger("fimatch") : -1;
         int maxRetrieve = getInteger("maxretrieve");
@@ -602,10 +667,15 @@ public class SearchParameters {
     }
 
     private SearchHits hits() throws BlsException {
-        SearchEmpty search = blIndex().search(null, getUseCache());
+        SearchEmpty search = blIndex().search(null, getUseCache(), profile);
         try {
             Query filter = hasFilter() ? getFilterQuery() : null;
-            return search.find(getPattern().toQuery(search.queryInfo(), filter), getSearchSettings());
+            TextPattern textPattern = getPattern(); // (parses the pattern if we haven't yet)
+            long startNs = System.nanoTime();
+            BLSpanQuery query = textPattern.toQuery(search.queryInfo(), filter);
+            if (profile != null)
+                profile.add("toQuery", query.toString()).addTimeSince(startNs);
+            return search.find(query, getSearchSettings());
         } catch (InvalidQuery e) {
             throw new BadRequest("PATT_SYNTAX_ERROR", "Syntax error in CorpusQL pattern: " + e.getMessage());
         } catch (BlsException e) {
@@ -641,7 +711,7 @@ public class SearchParameters {
         if (pattern == null && docFilterQuery == null) {
             docFilterQuery = new MatchAllDocsQuery();
         }
-        SearchEmpty search = blIndex().search(null, getUseCache());
+        SearchEmpty search = blIndex().search(null, getUseCache(), profile);
         return search.findDocuments(docFilterQuery);
     }
 
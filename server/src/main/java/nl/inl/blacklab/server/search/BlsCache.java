@@ -14,6 +14,7 @@ import java.util.stream.Collectors;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import io.micrometer.core.instrument.Metrics;
 import nl.inl.blacklab.exceptions.ServerOverloaded;
 import nl.inl.blacklab.search.BlackLabIndex;
 import nl.inl.blacklab.search.results.SearchResult;
@@ -99,6 +100,12 @@ public class BlsCache implements SearchCache {
 
     private String previousCacheStatsMessage = "";
 
+    /** Number of times a search was found in the cache */
+    private long cacheHits = 0;
+
+    /** Number of times a search was not found in the cache (and had to be started) */
+    private long cacheMisses = 0;
+
     @SuppressWarnings("deprecation")
     public BlsCache(BLSConfig blsConfig, @SuppressWarnings("unused") ExecutorService executorService) {
         this.config = blsConfig.getCache();
@@ -169,6 +176,14 @@ public class BlsCache implements SearchCache {
         return getFromCache(search, allowQueue);
     }
 
+    @Override
+    @SuppressWarnings("unchecked")
+    public synchronized <R extends SearchResult> BlsCacheEntry<R> getIfPresent(Search<R> search) {
+        if (!search.queryInfo().useCache() || cacheDisabled)
+            return null;
+        return (BlsCacheEntry<R>) searches.get(search);
+    }
+
     @SuppressWarnings("unchecked")
     private synchronized <R extends SearchResult> BlsCacheEntry<R> getFromCache(Search<R> search, boolean allowQueue) {
         //if (trace) logger.debug("getFromCache({}, allowQueue={})", search, allowQueue);
@@ -176,6 +191,7 @@ public class BlsCache implements SearchCache {
         boolean useCache = search.queryInfo().useCache() && !cacheDisabled;
         future = useCache ? (BlsCacheEntry<R>) searches.get(search) : null;
         if (future == null) {
+            cacheMisses++;
             logger.info("not found in cache, starting search: " + search);
             int numQueued = numberOfQueuedSearches();
             if (numQueued >= config.getMaxQueuedSearches()) {
@@ -212,6 +228,7 @@ public class BlsCache implements SearchCache {
             }
         } else {
             // Already in cache.
+            cacheHits++;
             traceInfo("-- FOUND:    {}", search);
             future.updateLastAccess();
         }
@@ -300,6 +317,24 @@ public class BlsCache implements SearchCache {
         return (int) searches.values().stream().filter(SearchCacheEntry::isRunning).count();
     }
 
+    /**
+     * How many times was a search found in the cache?
+     *
+     * @return number of cache hits
+     */
+    public synchronized long numberOfCacheHits() {
+        return cacheHits;
+    }
+
+    /**
+     * How many times was a search not found in the cache, so it had to be started?
+     *
+     * @return number of cache misses
+     */
+    public synchronized long numberOfCacheMisses() {
+        return cacheMisses;
+    }
+
     private synchronized int numberOfQueuedSearches() {
         return (int) searches.values().stream().filter(s -> !s.wasStarted()).count();
     }
@@ -417,6 +452,8 @@ public class BlsCache implements SearchCache {
                 }
                 traceInfo("-- REMOVE ({}): {}", reason, search);
                 remove(search.search());
+                Metrics.counter("blacklab.cache.evictions", search.search().queryInfo().index().metrics().tags()
+                        .and("reason", reason)).increment();
 
                 memoryToFreeUpMegs -= (long)search.numberOfStoredHits() * SIZE_OF_HIT / ONE_MB_BYTES; // NB very rough guess, but ok
                 searches.remove(i);
@@ -460,22 +497,24 @@ public class BlsCache implements SearchCache {
     @Override
     public Map<String, Object> getCacheStatus() {
         Map<String, Integer> counts = getCountsPerStatus();
-        return Map.of(
-            "targetFreeMemMegs", config.getTargetFreeMemMegs(),
-            "minFreeMemForSearchMegs", config.getMinFreeMemForSearchMegs(),
-            "maxQueuedSearches", config.getMaxQueuedSearches(),
-            "maxSearchTimeSec", config.getMaxSearchTimeSec(),
-            "maxJobAgeSec", config.getMaxJobAgeSec(),
-            "maxSearchAgeSec", config.getMaxJobAgeSec(),
-            "sizeBytes", cacheSizeBytes,
-            "numberOfSearches", searches.size(),
-            "freeMemory", MemoryUtil.getFree(),
-            "countsPerStatus", Map.of(
+        return Map.ofEntries(
+            Map.entry("targetFreeMemMegs", config.getTargetFreeMemMegs()),
+            Map.entry("minFreeMemForSearchMegs", config.getMinFreeMemForSearchMegs()),
+            Map.entry("maxQueuedSearches", config.getMaxQueuedSearches()),
+            Map.entry("maxSearchTimeSec", config.getMaxSearchTimeSec()),
+            Map.entry("maxJobAgeSec", config.getMaxJobAgeSec()),
+            Map.entry("maxSearchAgeSec", config.getMaxJobAgeSec()),
+            Map.entry("sizeBytes", cacheSizeBytes),
+            Map.entry("numberOfSearches", searches.size()),
+            Map.entry("freeMemory", MemoryUtil.getFree()),
+            Map.entry("cacheHits", numberOfCacheHits()),
+            Map.entry("cacheMisses", numberOfCacheMisses()),
+            Map.entry("countsPerStatus", Map.of(
                 "queued", counts.get("queued"),
                 "running", counts.get("running"),
                 "finished", counts.get("finished"),
                 "cancelled", counts.get("cancelled")
-            )
+            ))
         );
     }
 
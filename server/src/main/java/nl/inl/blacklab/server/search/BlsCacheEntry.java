@@ -13,6 +13,7 @@ import java.util.concurrent.TimeoutException;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.logging.log4j.ThreadContext;
 
+import io.micrometer.core.instrument.Metrics;
 import nl.inl.blacklab.exceptions.BlackLabRuntimeException;
 import nl.inl.blacklab.exceptions.InterruptedSearch;
 import nl.inl.blacklab.search.results.SearchResult;
@@ -117,6 +118,8 @@ public class BlsCacheEntry<T extends SearchResult> extends SearchCacheEntry<T> {
         if (future != null)
             throw new RuntimeException("Search already started");
         started = true;
+        Metrics.timer("blacklab.cache.queue.wait", search.queryInfo().index().metrics().tags())
+                .record(now() - createTime, TimeUnit.MILLISECONDS);
         final String requestId = ThreadContext.get("requestId");
         peekValue = search.peekObject(this);
         future = search.queryInfo().index().blackLab().searchExecutorService().submit(() -> {
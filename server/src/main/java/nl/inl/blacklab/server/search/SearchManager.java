@@ -37,6 +37,9 @@ public class SearchManager {
     /** Main BlackLab object, containing the search executor service */
     private BlackLabEngine blackLab;
 
+    /** Runs search requests with bounded concurrency */
+    private SearchRequestScheduler requestScheduler;
+
     public SearchManager(BLSConfig config) throws ConfigurationException {
         this.config = config;
 
@@ -51,9 +54,15 @@ public class SearchManager {
 
         // Find the indices
         indexMan = new IndexManager(this, config);
+        if (config.getSearch().getWarmup().isEnabled()) {
+            // Don't wait for the first search to open and warm up the indexes
+            indexMan.openPublicIndices();
+        }
 
         // Init auth system
         authSystem = new AuthManager(config.getAuthentication());
+
+        requestScheduler = new SearchRequestScheduler(numberOfSearchThreads, config.getPerformance().getMaxRunningJobsPerUser());
     }
 
     /**
@@ -65,6 +74,8 @@ public class SearchManager {
     public synchronized void cleanup() {
 
         // Stop any running searches
+        requestScheduler.cleanup();
+        requestScheduler = null;
         cache.cleanup();
         cache = null;
 
@@ -93,6 +104,10 @@ public class SearchManager {
         return indexMan;
     }
 
+    public SearchRequestScheduler getRequestScheduler() {
+        return requestScheduler;
+    }
+
     public BlackLabEngine blackLabInstance() {
         return blackLab;
     }
@@ -0,0 +1,189 @@
+package nl.inl.blacklab.server.search;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Runs search requests on our own threads, with bounded concurrency.
+ *
+ * The servlet hands search requests to us (using Servlet 3 async processing),
+ * so slow searches don't tie up the servlet container's threads and quick requests
+ * (document info, metadata, etc.) aren't starved.
+ *
+ * At most maxConcurrentSearches requests run at the same time, and at most
+ * maxRunningJobsPerUser of those for a single user. Waiting requests are queued per
+ * user, and users take turns, so a single user firing off lots of requests can't
+ * monopolize the server.
+ */
+public class SearchRequestScheduler {
+
+    private static final Logger logger = LogManager.getLogger(SearchRequestScheduler.class);
+
+    /** Maximum number of requests running at the same time */
+    private final int maxConcurrent;
+
+    /** Maximum number of requests running at the same time for a single user */
+    private final int maxPerUser;
+
+    /** Runs our requests (never more than maxConcurrent at a time) */
+    private final ExecutorService executorService;
+
+    /** A request waiting for its turn */
+    private static final class WaitingRequest {
+        /** Runs the request */
+        final Runnable request;
+
+        /** Tells the client we won't run the request after all */
+        final Runnable reject;
+
+        WaitingRequest(Runnable request, Runnable reject) {
+            this.request = request;
+            this.reject = reject;
+        }
+    }
+
+    /** Waiting requests per user. Iteration order is the order in which users get their turn. */
+    private final Map<String, Deque<WaitingRequest>> waiting = new LinkedHashMap<>();
+
+    /** Number of running requests per user */
+    private final Map<String, Integer> runningPerUser = new HashMap<>();
+
+    /** Total number of running requests */
+    private int running = 0;
+
+    private final AtomicInteger threadCounter = new AtomicInteger(1);
+
+    public SearchRequestScheduler(int maxConcurrent, int maxPerUser) {
+        this.maxConcurrent = Math.max(1, maxConcurrent);
+        this.maxPerUser = maxPerUser <= 0 ? this.maxConcurrent : maxPerUser;
+        executorService = Executors.newCachedThreadPool(runnable -> {
+            Thread worker = Executors.defaultThreadFactory().newThread(runnable);
+            worker.setName("RequestThread-" + threadCounter.getAndUpdate(i -> (i + 1) % 10000));
+            return worker;
+        });
+    }
+
+    /**
+     * Queue a request to run as soon as its turn comes.
+     *
+     * @param userId unique id of the user (or session) the request is for
+     * @param request the request to run
+     * @param reject called instead of request if we're shut down before it could run
+     *               (should finish the request, e.g. with a 503 response)
+     * @throws RejectedExecutionException if we've been shut down
+     */
+    public synchronized void submit(String userId, Runnable request, Runnable reject) {
+        if (executorService.isShutdown())
+            throw new RejectedExecutionException("Scheduler was shut down");
+        waiting.computeIfAbsent(userId, __ -> new ArrayDeque<>()).add(new WaitingRequest(request, reject));
+        dispatch();
+    }
+
+    /**
+     * Start as many waiting requests as we're allowed to.
+     */
+    private synchronized void dispatch() {
+        while (running < maxConcurrent) {
+            // Find the first user in line who may run another request
+            String userId = null;
+            Iterator<Entry<String, Deque<WaitingRequest>>> it = waiting.entrySet().iterator();
+            while (it.hasNext()) {
+                Entry<String, Deque<WaitingRequest>> e = it.next();
+                if (runningPerUser.getOrDefault(e.getKey(), 0) < maxPerUser) {
+                    userId = e.getKey();
+                    break;
+                }
+            }
+            if (userId == null)
+                return; // nothing (allowed) to run
+
+            // Take their next request and move them to the back of the line
+            Deque<WaitingRequest> requests = waiting.remove(userId);
+            WaitingRequest request = requests.poll();
+            if (!requests.isEmpty())
+                waiting.put(userId, requests);
+
+            runningPerUser.merge(userId, 1, Integer::sum);
+            running++;
+            final String finalUserId = userId;
+            try {
+                executorService.execute(() -> {
+                    try {
+                        request.request.run();
+                    } catch (RuntimeException e) {
+                        logger.error("Error running request", e);
+                    } finally {
+                        finished(finalUserId);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                // We're shutting down
+                reject(request);
+                finished(finalUserId);
+                return;
+            }
+        }
+    }
+
+    /**
+     * A request has finished; start the next one, if any.
+     *
+     * @param userId user whose request finished
+     */
+    private synchronized void finished(String userId) {
+        runningPerUser.computeIfPresent(userId, (__, n) -> n > 1 ? n - 1 : null);
+        running--;
+        dispatch();
+    }
+
+    /**
+     * Get the number of requests currently running.
+     *
+     * @return number of running requests
+     */
+    public synchronized int numberRunning() {
+        return running;
+    }
+
+    /**
+     * Get the number of requests waiting for their turn.
+     *
+     * @return number of waiting requests
+     */
+    public synchronized int numberWaiting() {
+        return waiting.values().stream().mapToInt(Deque::size).sum();
+    }
+
+    /**
+     * Stop accepting requests, reject the waiting ones and interrupt the running ones.
+     */
+    public synchronized void cleanup() {
+        executorService.shutdownNow();
+        for (Deque<WaitingRequest> requests: waiting.values()) {
+            for (WaitingRequest request: requests)
+                reject(request);
+        }
+        waiting.clear();
+    }
+
+    private static void reject(WaitingRequest request) {
+        try {
+            request.reject.run();
+        } catch (RuntimeException e) {
+            logger.error("Error rejecting request", e);
+        }
+    }
+
+}
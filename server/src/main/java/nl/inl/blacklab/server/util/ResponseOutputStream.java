@@ -0,0 +1,268 @@
+package nl.inl.blacklab.server.util;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import javax.servlet.http.HttpServletResponse;
+
+import nl.inl.blacklab.server.exceptions.ResponseAborted;
+
+/**
+ * Output stream that writes the response to the client, compressing it if the client
+ * accepts that.
+ *
+ * The first part of the response is kept in memory. As long as it fits, the response
+ * hasn't been committed yet and we can still discard it and send an error response
+ * (with the correct HTTP status) instead. Once it grows larger, the HTTP headers are
+ * sent and the rest is streamed straight to the client, so large responses don't
+ * have to exist in memory as a whole.
+ */
+public class ResponseOutputStream extends OutputStream {
+
+    /** How many bytes to keep in memory before committing the response */
+    public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    /** Don't bother compressing responses smaller than this */
+    private static final int MIN_SIZE_TO_COMPRESS = 1024;
+
+    /** Size of the buffer between us and the servlet output stream */
+    private static final int STREAM_BUFFER_SIZE = 8192;
+
+    private final HttpServletResponse response;
+
+    /** Content encoding to use ("gzip" or "deflate"), or null for none */
+    private final String contentEncoding;
+
+    private final int bufferSize;
+
+    /** Holds the start of the response until we commit */
+    private ByteArrayOutputStream buffer;
+
+    /** Where to write after we've committed */
+    private OutputStream out;
+
+    /** Compresses our output after we've committed, or null if not compressing */
+    private DeflaterOutputStream compressor;
+
+    /** The compressor's Deflater (holds native memory until we end() it) */
+    private Deflater deflater;
+
+    private boolean closed = false;
+
+    /** Headers to set when we commit (value null means don't set) */
+    private final Map<String, Supplier<String>> headersOnCommit = new LinkedHashMap<>();
+
+    /**
+     * Create the stream.
+     *
+     * Any response headers (including the status) should be set before the response
+     * is committed, i.e. before more than bufferSize bytes are written or this stream
+     * is closed.
+     *
+     * @param response response to write to
+     * @param contentEncoding content encoding to use ("gzip" or "deflate"), or null for none
+     * @param bufferSize how many bytes to keep in memory before committing
+     */
+    public ResponseOutputStream(HttpServletResponse response, String contentEncoding, int bufferSize) {
+        this.response = response;
+        this.contentEncoding = contentEncoding;
+        this.bufferSize = bufferSize;
+        buffer = new ByteArrayOutputStream(Math.min(bufferSize, STREAM_BUFFER_SIZE));
+    }
+
+    /**
+     * Have we sent (part of) the response to the client yet?
+     *
+     * If so, we can no longer change the HTTP status or discard what we've written.
+     *
+     * @return true if the response was committed
+     */
+    public boolean isCommitted() {
+        return out != null;
+    }
+
+    /**
+     * Throw away everything written so far, if possible.
+     *
+     * @return true if discarded, false if we've already committed the response
+     */
+    public boolean discard() {
+        if (isCommitted())
+            return false;
+        buffer.reset();
+        return true;
+    }
+
+    /**
+     * Set a header when the response is committed.
+     *
+     * Useful for headers that only apply if the response succeeds (e.g. ETag): they can
+     * still be cancelled by calling this method with a null value if we discard the response.
+     *
+     * @param name header name
+     * @param value header value, or null to cancel setting the header
+     */
+    public void setHeaderOnCommit(String name, String value) {
+        headersOnCommit.put(name, () -> value);
+    }
+
+    /**
+     * Set a header when the response is committed, determining its value at that time.
+     *
+     * @param name header name
+     * @param value supplies the header value when we commit (null means don't set it)
+     */
+    public void setHeaderOnCommit(String name, Supplier<String> value) {
+        headersOnCommit.put(name, value);
+    }
+
+    /**
+     * Send the HTTP headers and anything we've buffered, and stream
+     * everything after that.
+     *
+     * @param compress whether or not to compress the response
+     */
+    private void commit(boolean compress) throws IOException {
+        for (Map.Entry<String, Supplier<String>> e: headersOnCommit.entrySet()) {
+            String value = e.getValue().get();
+            if (value != null)
+                response.setHeader(e.getKey(), value);
+        }
+        OutputStream servletOut = response.getOutputStream();
+        if (compress && contentEncoding != null) {
+            response.setHeader("Content-Encoding", contentEncoding);
+            if (contentEncoding.equals("gzip")) {
+                GzipOutputStream gzip = new GzipOutputStream(servletOut);
+                deflater = gzip.deflater();
+                compressor = gzip;
+            } else {
+                deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+                compressor = new DeflaterOutputStream(servletOut, deflater, STREAM_BUFFER_SIZE);
+            }
+            servletOut = compressor;
+        }
+        out = new BufferedOutputStream(servletOut, STREAM_BUFFER_SIZE);
+        buffer.writeTo(out);
+        buffer = null;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (closed)
+            throw new IOException("Stream closed");
+        if (out == null && buffer.size() + 1 > bufferSize)
+            commit(true);
+        if (out == null)
+            buffer.write(b);
+        else
+            out.write(b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (closed)
+            throw new IOException("Stream closed");
+        if (out == null && buffer.size() + len > bufferSize)
+            commit(true);
+        if (out == null)
+            buffer.write(b, off, len);
+        else
+            out.write(b, off, len);
+    }
+
+    /**
+     * Flushes what we've written to the client, if we've committed.
+     *
+     * Before committing, this does nothing, so we can still discard the response.
+     */
+    @Override
+    public void flush() throws IOException {
+        if (out != null)
+            out.flush();
+    }
+
+    /**
+     * Finish the response.
+     *
+     * If we haven't committed yet, the whole response is sent now (compressed only if
+     * it is large enough to be worth it). Closing the servlet output stream is left to
+     * the servlet container.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed)
+            return;
+        if (out == null)
+            commit(buffer.size() >= MIN_SIZE_TO_COMPRESS);
+        closed = true;
+        try {
+            out.flush();
+            if (compressor != null) {
+                // Write the gzip/deflate trailer
+                compressor.finish();
+            }
+            response.getOutputStream().flush();
+        } finally {
+            endDeflater();
+        }
+    }
+
+    /**
+     * Stop writing the response after an error occurred.
+     *
+     * If we've committed, the response is left unfinished: we don't flush what's still
+     * buffered or write the gzip/deflate trailer. If we haven't committed, nothing is sent
+     * (use {@link #discard()} to send an error response instead).
+     *
+     * Note that this alone doesn't tell the client anything went wrong: the servlet
+     * container will still end the response normally, and an uncompressed response
+     * then just looks complete. Use {@link #abortWithError(String)} for that.
+     */
+    public void abort() {
+        closed = true;
+        buffer = null;
+        endDeflater();
+    }
+
+    /**
+     * Abort the response because an error occurred after we committed it.
+     *
+     * Stops writing (see {@link #abort()}) and throws {@link ResponseAborted}. The
+     * servlet should propagate that to the servlet container, which will then reset the
+     * connection instead of ending the response normally, whether it is compressed or not.
+     *
+     * @param message description of the error
+     * @throws ResponseAborted always
+     */
+    public void abortWithError(String message) throws ResponseAborted {
+        abort();
+        throw new ResponseAborted(message);
+    }
+
+    private void endDeflater() {
+        if (deflater != null) {
+            deflater.end();
+            deflater = null;
+        }
+    }
+
+    /** GZIPOutputStream that gives access to its Deflater, so we can end() it. */
+    private static class GzipOutputStream extends GZIPOutputStream {
+        GzipOutputStream(OutputStream out) throws IOException {
+            super(out, STREAM_BUFFER_SIZE);
+        }
+
+        Deflater deflater() {
+            return def;
+        }
+    }
+
+}
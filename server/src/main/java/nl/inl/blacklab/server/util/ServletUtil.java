@@ -2,7 +2,10 @@ package nl.inl.blacklab.server.util;
 
 import java.io.IOException;
 import java.io.PrintStream;
+import java.math.BigInteger;
 import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.Calendar;
@@ -178,6 +181,84 @@ public class ServletUtil {
         }
     }
 
+    /**
+     * Determine what content encoding to use for the response, based on the
+     * Accept-Encoding header.
+     *
+     * We prefer gzip over deflate.
+     *
+     * @param request the request object
+     * @return "gzip", "deflate", or null if the client doesn't accept either
+     */
+    public static String getAcceptedContentEncoding(HttpServletRequest request) {
+        String acceptEncoding = request.getHeader("Accept-Encoding");
+        if (acceptEncoding == null)
+            return null;
+        boolean deflate = false;
+        for (String part: acceptEncoding.split(",")) {
+            String[] encodingAndParams = part.trim().split(";");
+            String encoding = encodingAndParams[0].trim().toLowerCase();
+            boolean refused = false;
+            for (int i = 1; i < encodingAndParams.length; i++) {
+                String param = encodingAndParams[i].trim();
+                if (param.startsWith("q=")) {
+                    try {
+                        refused = Double.parseDouble(param.substring(2)) <= 0;
+                    } catch (NumberFormatException e) {
+                        // ignore malformed quality value
+                    }
+                }
+            }
+            if (refused)
+                continue;
+            if (encoding.equals("gzip") || encoding.equals("x-gzip") || encoding.equals("*"))
+                return "gzip";
+            if (encoding.equals("deflate"))
+                deflate = true;
+        }
+        return deflate ? "deflate" : null;
+    }
+
+    /**
+     * Create a strong ETag for a response.
+     *
+     * @param responseIdentity string that uniquely identifies the response (including its representation)
+     * @return the ETag, including quotes
+     */
+    public static String getETag(String responseIdentity) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] hash = digest.digest(responseIdentity.getBytes(DEFAULT_ENCODING));
+            return "\"" + String.format("%064x", new BigInteger(1, hash)) + "\"";
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e); // never happens, SHA-256 is always supported
+        }
+    }
+
+    /**
+     * Does the If-None-Match header match the given ETag?
+     *
+     * If so, the client already has the current response and we can answer
+     * with 304 Not Modified.
+     *
+     * @param request the request object
+     * @param etag our ETag for the response, including quotes
+     * @return true if the client's copy matches
+     */
+    public static boolean ifNoneMatch(HttpServletRequest request, String etag) {
+        String ifNoneMatch = request.getHeader("If-None-Match");
+        if (ifNoneMatch == null)
+            return false;
+        for (String tag: ifNoneMatch.split(",")) {
+            tag = tag.trim();
+            if (tag.startsWith("W/"))
+                tag = tag.substring(2); // GET uses weak comparison
+            if (tag.equals("*") || tag.equals(etag))
+                return true;
+        }
+        return false;
+    }
+
     /** The HTTP date format, to use for the cache header */
     static DateFormat httpDateFormat;
 
@@ -198,6 +279,22 @@ public class ServletUtil {
      * @param cacheTimeSeconds how long to cache the response
      */
     public static void writeCacheHeaders(HttpServletResponse response, int cacheTimeSeconds) {
+        writeCacheHeaders(response, cacheTimeSeconds, null);
+    }
+
+    /**
+     * Write cache headers for the configured cache time, and the ETag (if any).
+     *
+     * With an ETag, clients (and proxies) can revalidate their copy using If-None-Match
+     * and get a 304 Not Modified response if nothing changed.
+     *
+     * @param response the response object to write the headers to
+     * @param cacheTimeSeconds how long to cache the response
+     * @param etag ETag for the response, or null for none
+     */
+    public static void writeCacheHeaders(HttpServletResponse response, int cacheTimeSeconds, String etag) {
+        if (etag != null)
+            response.setHeader("ETag", etag);
         if (cacheTimeSeconds > 0) {
             // Cache page for specified time
             GregorianCalendar cal = new GregorianCalendar();
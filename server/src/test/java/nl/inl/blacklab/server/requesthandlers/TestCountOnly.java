@@ -0,0 +1,131 @@
+package nl.inl.blacklab.server.requesthandlers;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import javax.servlet.ServletException;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import nl.inl.blacklab.exceptions.DocumentFormatNotFound;
+import nl.inl.blacklab.exceptions.ErrorOpeningIndex;
+import nl.inl.blacklab.index.DocumentFormats;
+import nl.inl.blacklab.index.Indexer;
+import nl.inl.blacklab.mocks.DocIndexerExample;
+import nl.inl.blacklab.search.BlackLabEngine;
+import nl.inl.blacklab.server.testutil.InProcessServer;
+import nl.inl.blacklab.server.testutil.InProcessServer.Response;
+import nl.inl.util.UtilsForTesting;
+
+/**
+ * Test that requests with number=0 (which only count the results) report the same totals as regular requests.
+ */
+public class TestCountOnly {
+
+    private static final String[] TEST_DATA = {
+            "<doc><s><w l='the' p='art'>The</w> <w l='quick' p='adj'>quick</w> <w l='fox' p='nou'>fox</w> "
+                    + "<w l='jump' p='vrb'>jumps</w> <w l='over' p='pre'>over</w> <w l='the' p='art'>the</w> "
+                    + "<w l='dog' p='nou'>dog</w>.</s></doc>",
+            "<doc><s><w l='may' p='vrb'>May</w> <w l='the' p='art'>the</w> <w l='force' p='nou'>Force</w> "
+                    + "<w l='be' p='vrb'>be</w> <w l='with' p='pre'>with</w> <w l='you' p='pro'>you</w>.</s></doc>",
+            "<doc><s><w l='that' p='pro'>That</w> <w l='be' p='vrb'>is</w> <w l='the' p='art'>the</w> "
+                    + "<w l='question' p='nou'>question</w>.</s></doc>",
+    };
+
+    private static File testDir;
+
+    private static InProcessServer server;
+
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    @BeforeClass
+    public static void setUp() throws DocumentFormatNotFound, ErrorOpeningIndex, IOException, ServletException {
+        testDir = UtilsForTesting.createBlackLabTestDir("TestCountOnly");
+        File collectionDir = new File(testDir, "indexes");
+        collectionDir.mkdir();
+        String config = "configVersion: 2\nindexLocations:\n- " + collectionDir.getAbsolutePath() + "\n";
+        FileUtils.writeStringToFile(new File(testDir, "blacklab-server.yaml"), config, StandardCharsets.UTF_8);
+        server = new InProcessServer(testDir);
+        // Make sure the server has applied its configuration before we create the index
+        // (BlackLab's global configuration can only be applied once)
+        Assert.assertEquals(200, server.get("/", "test-session").getStatus());
+
+        DocumentFormats.registerFormat("testformat", DocIndexerExample.class);
+        BlackLabEngine engine = server.getServlet().getSearchManager().blackLabInstance();
+        Indexer indexer = Indexer.openIndex(engine.openForWriting(new File(collectionDir, "test"), true), "testformat");
+        try {
+            for (int i = 0; i < TEST_DATA.length; i++)
+                indexer.index("test" + (i + 1), TEST_DATA[i].getBytes(StandardCharsets.UTF_8));
+        } finally {
+            indexer.close();
+        }
+    }
+
+    @AfterClass
+    public static void tearDown() throws IOException {
+        if (server != null)
+            server.close();
+        FileUtils.deleteDirectory(testDir);
+    }
+
+    private static JsonNode summary(String pathAndQuery) throws IOException {
+        Response response = server.get(pathAndQuery + "&waitfortotal=true&outputformat=json", "test-session", true);
+        Assert.assertEquals(response.getBody(), 200, response.getStatus());
+        return mapper.readTree(response.getBody()).get("summary");
+    }
+
+    @Test
+    public void testCountOnly() throws IOException {
+        JsonNode summary = summary("/test/hits?patt=%22the%22&number=0");
+        Assert.assertEquals(4, summary.get("numberOfHits").asInt());
+        Assert.assertEquals(4, summary.get("numberOfHitsRetrieved").asInt());
+        Assert.assertEquals(3, summary.get("numberOfDocs").asInt());
+        Assert.assertEquals(3, summary.get("numberOfDocsRetrieved").asInt());
+        Assert.assertFalse(summary.get("stoppedRetrievingHits").asBoolean());
+    }
+
+    @Test
+    public void testCountOnlyMaxRetrieve() throws IOException {
+        JsonNode summary = summary("/test/hits?patt=%22the%22&number=0&maxretrieve=2");
+        Assert.assertEquals(4, summary.get("numberOfHits").asInt());
+        Assert.assertEquals(2, summary.get("numberOfHitsRetrieved").asInt());
+        Assert.assertTrue(summary.get("stoppedRetrievingHits").asBoolean());
+    }
+
+    @Test
+    public void testCountOnlySameAsFullSearch() throws IOException {
+        JsonNode full = summary("/test/hits?patt=%5Bpos%3D%22nou%22%5D&number=10");
+        JsonNode countOnly = summary("/test/hits?patt=%5Bpos%3D%22nou%22%5D&number=0");
+        for (String key: new String[] { "numberOfHits", "numberOfHitsRetrieved", "numberOfDocs",
+                "numberOfDocsRetrieved", "stoppedRetrievingHits", "stoppedCountingHits" }) {
+            Assert.assertEquals(key, full.get(key), countOnly.get(key));
+        }
+    }
+
+    @Test
+    public void testDocsCountOnly() throws IOException {
+        JsonNode summary = summary("/test/docs?number=0");
+        Assert.assertEquals(3, summary.get("numberOfDocs").asInt());
+        Assert.assertEquals(3, summary.get("numberOfDocsRetrieved").asInt());
+    }
+
+    @Test
+    public void testDocsCountOnlyPattern() throws IOException {
+        JsonNode full = summary("/test/docs?patt=%5Blemma%3D%22be%22%5D&number=10");
+        JsonNode countOnly = summary("/test/docs?patt=%5Blemma%3D%22be%22%5D&number=0");
+        Assert.assertEquals(2, countOnly.get("numberOfDocs").asInt());
+        for (String key: new String[] { "numberOfHits", "numberOfHitsRetrieved", "numberOfDocs",
+                "numberOfDocsRetrieved", "stoppedRetrievingHits" }) {
+            Assert.assertEquals(key, full.get(key), countOnly.get(key));
+        }
+    }
+
+}
@@ -0,0 +1,428 @@
+package nl.inl.blacklab.server.testutil;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.lang.reflect.Array;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.DispatcherType;
+import javax.servlet.ServletConfig;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpSession;
+
+import nl.inl.blacklab.exceptions.BlackLabRuntimeException;
+import nl.inl.blacklab.server.BlackLabServer;
+import nl.inl.blacklab.server.exceptions.ResponseAborted;
+
+/**
+ * Runs a BlackLabServer servlet in this process, without a servlet container.
+ *
+ * Requests are passed to the servlet directly, using minimal implementations of
+ * the servlet API objects, so we measure BlackLab Server itself, not the
+ * container or the network. Asynchronous requests (searches) are supported, so
+ * requests go through the server's request scheduler just like they normally
+ * would.
+ */
+public class InProcessServer {
+
+    /** Context path we pretend to run under */
+    private static final String CONTEXT_PATH = "/blacklab-server";
+
+    /** Default for how long to wait for an asynchronous request to complete */
+    public static final long DEFAULT_REQUEST_TIMEOUT_SEC = 600;
+
+    /** Result of a request. */
+    public static class Response {
+        private final int status;
+
+        private final long bytes;
+
+        private final byte[] body;
+
+        private final boolean aborted;
+
+        Response(int status, long bytes, byte[] body, boolean aborted) {
+            this.status = status;
+            this.bytes = bytes;
+            this.body = body;
+            this.aborted = aborted;
+        }
+
+        /** @return HTTP status code */
+        public int getStatus() {
+            return status;
+        }
+
+        /** @return size of the response body in bytes */
+        public long getBytes() {
+            return bytes;
+        }
+
+        /** @return the response body, or null if we didn't keep it */
+        public String getBody() {
+            return body == null ? null : new String(body, StandardCharsets.UTF_8);
+        }
+
+        /**
+         * Was the response aborted after part of it was sent?
+         *
+         * A servlet container would reset the connection in that case, so the body
+         * is incomplete.
+         *
+         * @return true if the response was aborted
+         */
+        public boolean isAborted() {
+            return aborted;
+        }
+    }
+
+    private final BlackLabServer servlet;
+
+    /** How long to wait for an asynchronous request to complete */
+    private long requestTimeoutSec = DEFAULT_REQUEST_TIMEOUT_SEC;
+
+    /**
+     * Start the server.
+     *
+     * @param configDir directory containing blacklab-server.yaml (or .json)
+     * @throws ServletException if the servlet could not be initialized
+     */
+    public InProcessServer(File configDir) throws ServletException {
+        // BlackLabServer looks for its config file in the parent of the servlet dir
+        File servletDir = new File(configDir.getAbsoluteFile(), "blacklab-server");
+        ServletContext context = proxy(ServletContext.class, (p, method, args) -> {
+            switch (method.getName()) {
+            case "getRealPath":
+                return servletDir.getPath();
+            case "getContextPath":
+                return CONTEXT_PATH;
+            case "getServletContextName":
+                return "blacklab-server";
+            case "getInitParameterNames":
+            case "getAttributeNames":
+                return Collections.emptyEnumeration();
+            default:
+                return defaultValue(method.getReturnType());
+            }
+        });
+        ServletConfig config = proxy(ServletConfig.class, (p, method, args) -> {
+            switch (method.getName()) {
+            case "getServletContext":
+                return context;
+            case "getServletName":
+                return "BlackLabServer";
+            case "getInitParameterNames":
+                return Collections.emptyEnumeration();
+            default:
+                return defaultValue(method.getReturnType());
+            }
+        });
+        servlet = new BlackLabServer();
+        servlet.init(config);
+    }
+
+    /**
+     * Set how long to wait for an asynchronous request to complete.
+     *
+     * If a request takes longer, we stop waiting and report it with status 504
+     * (Gateway Timeout).
+     * This comes after the servlet's own asynchronous request timeout (see
+     * performance.maxQueueWaitSec), which we enforce like a servlet container would.
+     *
+     * @param requestTimeoutSec timeout in seconds
+     */
+    public void setRequestTimeoutSec(long requestTimeoutSec) {
+        this.requestTimeoutSec = requestTimeoutSec;
+    }
+
+    /**
+     * Perform a GET request and wait for the response.
+     *
+     * @param pathAndQuery path and query string, relative to the server root (e.g.
+     *            /myindex/hits?patt=%22the%22)
+     * @param sessionId session id for the client; determines the (anonymous) user
+     * @return response status and size
+     */
+    public Response get(String pathAndQuery, String sessionId) {
+        return get(pathAndQuery, sessionId, false);
+    }
+
+    /**
+     * Perform a GET request and wait for the response.
+     *
+     * @param pathAndQuery path and query string, relative to the server root (e.g.
+     *            /myindex/hits?patt=%22the%22)
+     * @param sessionId session id for the client; determines the (anonymous) user
+     * @param keepBody if true, keep the response body (otherwise it is discarded)
+     * @return response status, size and (optionally) body
+     */
+    public Response get(String pathAndQuery, String sessionId, boolean keepBody) {
+        int q = pathAndQuery.indexOf('?');
+        String path = q < 0 ? pathAndQuery : pathAndQuery.substring(0, q);
+        String queryString = q < 0 ? null : pathAndQuery.substring(q + 1);
+        Map<String, String[]> parameters = parseQueryString(queryString);
+
+        CountingOutputStream out = new CountingOutputStream(keepBody ? new ByteArrayOutputStream() : null);
+        int[] status = { HttpServletResponse.SC_OK };
+        HttpServletResponse response = proxy(HttpServletResponse.class, (p, method, args) -> {
+            switch (method.getName()) {
+            case "getOutputStream":
+                return out;
+            case "setStatus":
+            case "sendError":
+                status[0] = (Integer) args[0];
+                return null;
+            case "getStatus":
+                return status[0];
+            default:
+                return defaultValue(method.getReturnType());
+            }
+        });
+
+        CountDownLatch completed = new CountDownLatch(1);
+        boolean[] async = { false };
+        boolean[] dispatched = { false };
+        boolean[] aborted = { false };
+        List<AsyncListener> asyncListeners = new CopyOnWriteArrayList<>();
+        long[] asyncTimeoutMs = { 0 };
+        Map<String, Object> attributes = new ConcurrentHashMap<>();
+        HttpSession session = proxy(HttpSession.class, (p, method, args) -> {
+            if (method.getName().equals("getId"))
+                return sessionId;
+            return defaultValue(method.getReturnType());
+        });
+        HttpServletRequest[] request = { null };
+        AsyncContext asyncContext = proxy(AsyncContext.class, (p, method, args) -> {
+            switch (method.getName()) {
+            case "getRequest":
+                return request[0];
+            case "getResponse":
+                return response;
+            case "complete":
+                completed.countDown();
+                return null;
+            case "dispatch":
+                // Like the container would, handle the request again, on another thread
+                dispatched[0] = true;
+                new Thread(() -> {
+                    aborted[0] = service(request[0], response);
+                    completed.countDown();
+                }).start();
+                return null;
+            case "addListener":
+                asyncListeners.add((AsyncListener) args[0]);
+                return null;
+            case "setTimeout":
+                asyncTimeoutMs[0] = (Long) args[0];
+                return null;
+            default:
+                return defaultValue(method.getReturnType());
+            }
+        });
+        request[0] = proxy(HttpServletRequest.class, (p, method, args) -> {
+            switch (method.getName()) {
+            case "getMethod":
+                return "GET";
+            case "getPathInfo":
+                return path;
+            case "getServletPath":
+                return "";
+            case "getContextPath":
+                return CONTEXT_PATH;
+            case "getRequestURI":
+                return CONTEXT_PATH + path;
+            case "getRequestURL":
+                return new StringBuffer("http://localhost" + CONTEXT_PATH + path);
+            case "getQueryString":
+                return queryString;
+            case "getParameter":
+                String[] values = parameters.get(args[0]);
+                return values == null ? null : values[0];
+            case "getParameterValues":
+                return parameters.get(args[0]);
+            case "getParameterMap":
+                return parameters;
+            case "getParameterNames":
+                return Collections.enumeration(parameters.keySet());
+            case "getHeaderNames":
+            case "getHeaders":
+            case "getAttributeNames":
+                return Collections.emptyEnumeration();
+            case "getAttribute":
+                return attributes.get(args[0]);
+            case "setAttribute":
+                attributes.put((String) args[0], args[1]);
+                return null;
+            case "removeAttribute":
+                attributes.remove(args[0]);
+                return null;
+            case "getDispatcherType":
+                return dispatched[0] ? DispatcherType.ASYNC : DispatcherType.REQUEST;
+            case "getSession":
+                return session;
+            case "getRemoteAddr":
+            case "getLocalAddr":
+                return "127.0.0.1";
+            case "getServerName":
+                return "localhost";
+            case "getScheme":
+                return "http";
+            case "getLocalPort":
+            case "getServerPort":
+                return 80;
+            case "isAsyncSupported":
+                return true;
+            case "startAsync":
+                async[0] = true;
+                return asyncContext;
+            default:
+                return defaultValue(method.getReturnType());
+            }
+        });
+
+        try {
+            aborted[0] = service(request[0], response);
+            if (async[0] && asyncTimeoutMs[0] > 0 && !completed.await(asyncTimeoutMs[0], TimeUnit.MILLISECONDS)) {
+                // Like the container would, let the servlet know the request timed out
+                for (AsyncListener listener: asyncListeners)
+                    listener.onTimeout(new AsyncEvent(asyncContext));
+            }
+            if (async[0] && !completed.await(requestTimeoutSec, TimeUnit.SECONDS)) {
+                // Request didn't complete in time; report it as an error
+                return new Response(HttpServletResponse.SC_GATEWAY_TIMEOUT, out.count, null, false);
+            }
+        } catch (IOException e) {
+            throw BlackLabRuntimeException.wrap(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw BlackLabRuntimeException.wrap(e);
+        }
+        return new Response(status[0], out.count, keepBody ? out.body.toByteArray() : null, aborted[0]);
+    }
+
+    /**
+     * Pass a request to the servlet.
+     *
+     * @return true if the servlet aborted the response (a container would reset the connection)
+     */
+    private boolean service(HttpServletRequest request, HttpServletResponse response) {
+        try {
+            servlet.service(request, response);
+            return false;
+        } catch (ResponseAborted e) {
+            return true;
+        } catch (ServletException | IOException e) {
+            throw BlackLabRuntimeException.wrap(e);
+        }
+    }
+
+    /**
+     * Get the servlet we're running.
+     *
+     * @return the servlet
+     */
+    public BlackLabServer getServlet() {
+        return servlet;
+    }
+
+    /**
+     * Shut down the server.
+     */
+    public void close() {
+        servlet.destroy();
+    }
+
+    private static Map<String, String[]> parseQueryString(String queryString) {
+        Map<String, List<String>> values = new LinkedHashMap<>();
+        if (queryString != null && !queryString.isEmpty()) {
+            for (String param : queryString.split("&")) {
+                int eq = param.indexOf('=');
+                String name = decode(eq < 0 ? param : param.substring(0, eq));
+                String value = eq < 0 ? "" : decode(param.substring(eq + 1));
+                values.computeIfAbsent(name, __ -> new ArrayList<>()).add(value);
+            }
+        }
+        Map<String, String[]> result = new LinkedHashMap<>();
+        values.forEach((name, v) -> result.put(name, v.toArray(new String[0])));
+        return result;
+    }
+
+    private static String decode(String str) {
+        try {
+            return URLDecoder.decode(str, StandardCharsets.UTF_8.name());
+        } catch (UnsupportedEncodingException e) {
+            throw BlackLabRuntimeException.wrap(e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> cls, InvocationHandler handler) {
+        return (T) Proxy.newProxyInstance(InProcessServer.class.getClassLoader(), new Class<?>[] { cls }, handler);
+    }
+
+    /** Value to return for methods we don't implement (so primitive return types don't cause NPEs) */
+    static Object defaultValue(Class<?> type) {
+        if (type.isPrimitive() && type != void.class)
+            return Array.get(Array.newInstance(type, 1), 0); // (0, 0.0, false, etc.)
+        return null;
+    }
+
+    /** Keeps track of the size of the response, and optionally keeps the response itself. */
+    private static class CountingOutputStream extends ServletOutputStream {
+        private long count = 0;
+
+        /** Response body, or null to discard it */
+        private final ByteArrayOutputStream body;
+
+        CountingOutputStream(ByteArrayOutputStream body) {
+            this.body = body;
+        }
+
+        @Override
+        public void write(int b) {
+            count++;
+            if (body != null)
+                body.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+            if (body != null)
+                body.write(b, off, len);
+        }
+
+        @Override
+        public boolean isReady() {
+            return true;
+        }
+
+        @Override
+        public void setWriteListener(WriteListener writeListener) {
+            // not needed, we're never asynchronous
+        }
+    }
+
+}
@@ -0,0 +1,281 @@
+package nl.inl.blacklab.server.testutil;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.servlet.ServletException;
+
+import org.apache.commons.lang3.StringUtils;
+import org.eclipse.collections.api.list.primitive.MutableLongList;
+import org.eclipse.collections.impl.list.mutable.primitive.LongArrayList;
+
+import nl.inl.blacklab.exceptions.BlackLabRuntimeException;
+import nl.inl.blacklab.searches.SearchCache;
+import nl.inl.blacklab.server.search.BlsCache;
+import nl.inl.blacklab.server.testutil.InProcessServer.Response;
+import nl.inl.util.FileUtil;
+
+/**
+ * Replays a log of BlackLab Server requests with a number of concurrent clients,
+ * against a server running in this process.
+ *
+ * Unlike BatchQuery, which runs queries one after another, this shows how the
+ * server behaves under concurrent load, so it can be used to tune e.g.
+ * maxConcurrentSearches and maxThreadsPerSearch. Reports throughput, latency
+ * percentiles per endpoint and the cache hit ratio.
+ *
+ * The log file should contain one request per line: either a path and query
+ * string relative to the server root (e.g. /myindex/hits?patt=%22the%22), or a
+ * line from a web server access log containing a GET request. Empty lines and
+ * lines starting with # are skipped. Requests that don't complete within the
+ * timeout count as errors, as do responses that were aborted midway.
+ *
+ * Part of the server's test classes, so it's not included in the WAR. Run it
+ * from the server directory with e.g.:
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=nl.inl.blacklab.server.testutil.LoadTest -Dexec.args="-c 8 requests.log"
+ * </pre>
+ */
+public class LoadTest {
+
+    /** Finds the request in an access log line, e.g. "GET /blacklab-server/x/hits?... HTTP/1.1" */
+    private static final Pattern ACCESS_LOG_REQUEST = Pattern.compile("\"GET (\\S+)[^\"]*\"");
+
+    /** Latencies (in ns) and errors per endpoint, for one client */
+    private static class Measurements {
+        final Map<String, MutableLongList> latencies = new TreeMap<>();
+
+        final Map<String, Integer> errors = new TreeMap<>();
+
+        void add(String endpoint, long latencyNs, boolean error) {
+            latencies.computeIfAbsent(endpoint, __ -> new LongArrayList()).add(latencyNs);
+            if (error)
+                errors.merge(endpoint, 1, Integer::sum);
+        }
+
+        void addAll(Measurements other) {
+            other.latencies.forEach((endpoint, l) -> latencies.computeIfAbsent(endpoint, __ -> new LongArrayList()).addAll(l));
+            other.errors.forEach((endpoint, n) -> errors.merge(endpoint, n, Integer::sum));
+        }
+    }
+
+    public static void main(String[] args) throws ServletException, InterruptedException {
+        int numberOfClients = 4;
+        int requestsPerClient = -1;
+        long timeoutSec = InProcessServer.DEFAULT_REQUEST_TIMEOUT_SEC;
+        File configDir = new File(".");
+        List<String> fileArgs = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i].trim();
+            if (arg.startsWith("-")) {
+                if (i + 1 >= args.length) {
+                    System.err.println("Option " + arg + " needs a value");
+                    usage();
+                    return;
+                }
+                String value = args[++i];
+                switch (arg) {
+                case "-c":
+                    numberOfClients = Integer.parseInt(value);
+                    break;
+                case "-n":
+                    requestsPerClient = Integer.parseInt(value);
+                    break;
+                case "-d":
+                    configDir = new File(value);
+                    break;
+                case "-t":
+                    timeoutSec = Long.parseLong(value);
+                    break;
+                default:
+                    System.err.println("Illegal option: " + arg);
+                    usage();
+                    return;
+                }
+            } else {
+                fileArgs.add(arg);
+            }
+        }
+        if (fileArgs.size() != 1) {
+            usage();
+            return;
+        }
+        File logFile = new File(fileArgs.get(0));
+        if (!logFile.exists()) {
+            System.err.println("Log file not found: " + logFile);
+            usage();
+            return;
+        }
+        List<String> requests = readRequests(logFile);
+        if (requests.isEmpty()) {
+            System.err.println("No requests found in " + logFile);
+            return;
+        }
+        if (requestsPerClient < 0)
+            requestsPerClient = requests.size();
+
+        System.err.print("Starting server... ");
+        InProcessServer server = new InProcessServer(configDir);
+        server.setRequestTimeoutSec(timeoutSec);
+        System.err.println("done.");
+        try {
+            run(server, requests, numberOfClients, requestsPerClient);
+        } finally {
+            server.close();
+        }
+    }
+
+    private static void run(InProcessServer server, List<String> requests, int numberOfClients,
+            int requestsPerClient) throws InterruptedException {
+        ExecutorService clients = Executors.newFixedThreadPool(numberOfClients);
+        List<Future<Measurements>> results = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int i = 0; i < numberOfClients; i++) {
+            // Each client starts at a different point in the log, so they don't all
+            // send the same request at the same time
+            int clientNumber = i;
+            int offset = (int) ((long) requests.size() * i / numberOfClients);
+            int n = requestsPerClient;
+            results.add(clients.submit(() -> {
+                Measurements m = new Measurements();
+                String sessionId = "loadtest-client-" + clientNumber;
+                for (int j = 0; j < n; j++) {
+                    String request = requests.get((offset + j) % requests.size());
+                    long t = System.nanoTime();
+                    Response response = server.get(request, sessionId);
+                    m.add(endpoint(request), System.nanoTime() - t, response.getStatus() >= 400 || response.isAborted());
+                }
+                return m;
+            }));
+        }
+        Measurements total = new Measurements();
+        for (Future<Measurements> result : results) {
+            try {
+                total.addAll(result.get());
+            } catch (ExecutionException e) {
+                throw BlackLabRuntimeException.wrap(e.getCause());
+            }
+        }
+        double elapsedSec = (System.nanoTime() - start) / 1e9;
+        clients.shutdown();
+
+        // Report
+        int totalRequests = numberOfClients * requestsPerClient;
+        System.out.println(String.format("%d clients, %d requests in %.1f s: %.1f requests/s", numberOfClients,
+                totalRequests, elapsedSec, totalRequests / elapsedSec));
+        System.out.println();
+        System.out.println(String.format("%-16s %8s %8s %10s %10s %10s %10s", "Endpoint", "Requests", "Errors",
+                "p50 (ms)", "p95 (ms)", "p99 (ms)", "max (ms)"));
+        total.latencies.forEach((endpoint, l) -> {
+            long[] sorted = l.toSortedArray();
+            System.out.println(String.format("%-16s %8d %8d %10.1f %10.1f %10.1f %10.1f", endpoint, sorted.length,
+                    total.errors.getOrDefault(endpoint, 0), percentile(sorted, 50), percentile(sorted, 95),
+                    percentile(sorted, 99), sorted[sorted.length - 1] / 1e6));
+        });
+        System.out.println();
+        // (the server reads its config and creates the cache when it receives the first request)
+        SearchCache cache = server.getServlet().getSearchManager().getBlackLabCache();
+        if (cache instanceof BlsCache) {
+            long hits = ((BlsCache) cache).numberOfCacheHits();
+            long misses = ((BlsCache) cache).numberOfCacheMisses();
+            System.out.println(String.format("Cache: %d hits, %d misses, hit ratio %.1f%%", hits, misses,
+                    hits + misses == 0 ? 0 : hits * 100.0 / (hits + misses)));
+        } else {
+            System.out.println("Cache hit ratio not available for " + cache.getClass().getSimpleName());
+        }
+    }
+
+    /**
+     * Percentile using the nearest-rank method.
+     *
+     * @param sorted sorted latencies in ns
+     * @param p percentile (0-100)
+     * @return latency in ms
+     */
+    private static double percentile(long[] sorted, int p) {
+        int rank = (int) Math.ceil(p / 100.0 * sorted.length);
+        return sorted[Math.max(0, rank - 1)] / 1e6;
+    }
+
+    /**
+     * Read the requests to replay.
+     *
+     * @param logFile request log
+     * @return requests (path and query string, relative to the server root)
+     */
+    static List<String> readRequests(File logFile) {
+        List<String> requests = new ArrayList<>();
+        for (String line : FileUtil.readLines(logFile)) {
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#"))
+                continue;
+            Matcher m = ACCESS_LOG_REQUEST.matcher(line);
+            String request = m.find() ? m.group(1) : line;
+            // Strip the context path, if any
+            if (request.startsWith("/blacklab-server/") || request.equals("/blacklab-server"))
+                request = request.substring("/blacklab-server".length());
+            if (!request.startsWith("/"))
+                request = "/" + request;
+            requests.add(request);
+        }
+        return requests;
+    }
+
+    /**
+     * Determine the endpoint a request goes to, for reporting.
+     *
+     * Follows how BlackLabServer chooses a request handler, e.g. hits with a group
+     * parameter go to hits-grouped.
+     *
+     * @param request path and query string
+     * @return endpoint name
+     */
+    static String endpoint(String request) {
+        int q = request.indexOf('?');
+        String path = StringUtils.strip(q < 0 ? request : request.substring(0, q), "/");
+        String query = q < 0 ? "" : request.substring(q + 1);
+        String[] parts = path.split("/", 3);
+        if (parts.length < 2 || parts[1].isEmpty())
+            return path.isEmpty() ? "server-info" : "index-info";
+        String resource = parts[1];
+        String pathInfo = parts.length >= 3 ? StringUtils.strip(parts[2], "/") : "";
+        if (resource.equals("docs") && !pathInfo.isEmpty()) {
+            if (pathInfo.endsWith("/contents"))
+                return "doc-contents";
+            if (pathInfo.endsWith("/snippet"))
+                return "doc-snippet";
+            return "doc-info";
+        }
+        if (resource.equals("hits") || resource.equals("docs")) {
+            boolean grouped = Arrays.stream(query.split("&")).anyMatch(p -> p.startsWith("group=") && p.length() > 6);
+            boolean viewGroup = Arrays.stream(query.split("&")).anyMatch(p -> p.startsWith("viewgroup=") && p.length() > 10);
+            if (grouped && !viewGroup)
+                return resource + "-grouped";
+        }
+        return resource;
+    }
+
+    private static void usage() {
+        System.err.println("\nUsage: " + LoadTest.class.getSimpleName() + " [options] <logfile>\n\n"
+                + "<logfile> should contain BlackLab Server requests (e.g. /myindex/hits?patt=...), one per line,\n"
+                + "or be an access log containing such GET requests.\n"
+                + "\n"
+                + "Options:\n"
+                + "-c <n>    number of concurrent clients (default: 4)\n"
+                + "-n <n>    number of requests per client (default: number of requests in log)\n"
+                + "-d <dir>  directory containing blacklab-server.yaml (default: current directory)\n"
+                + "-t <sec>  count requests taking longer than this as errors (default: "
+                + InProcessServer.DEFAULT_REQUEST_TIMEOUT_SEC + ")\n");
+    }
+}
@@ -0,0 +1,37 @@
+package nl.inl.blacklab.server.testutil;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestLoadTest {
+
+    @Test
+    public void testEndpoint() {
+        Assert.assertEquals("server-info", LoadTest.endpoint("/"));
+        Assert.assertEquals("index-info", LoadTest.endpoint("/myindex/"));
+        Assert.assertEquals("hits", LoadTest.endpoint("/myindex/hits?patt=%22a%22"));
+        Assert.assertEquals("hits-grouped", LoadTest.endpoint("/myindex/hits?patt=%22a%22&group=hit:word"));
+        Assert.assertEquals("hits", LoadTest.endpoint("/myindex/hits?patt=%22a%22&group=hit:word&viewgroup=x"));
+        Assert.assertEquals("hits", LoadTest.endpoint("/myindex/hits?patt=%22a%22&group="));
+        Assert.assertEquals("docs-grouped", LoadTest.endpoint("/myindex/docs/?patt=%22a%22&group=field:year"));
+        Assert.assertEquals("doc-info", LoadTest.endpoint("/myindex/docs/pid1"));
+        Assert.assertEquals("doc-contents", LoadTest.endpoint("/myindex/docs/pid1/contents"));
+        Assert.assertEquals("doc-snippet", LoadTest.endpoint("/myindex/docs/pid1/snippet?hitstart=1&hitend=2"));
+        Assert.assertEquals("termfreq", LoadTest.endpoint("/myindex/termfreq?annotation=lemma"));
+    }
+
+    @Test
+    public void testDefaultValue() {
+        Assert.assertEquals(false, InProcessServer.defaultValue(boolean.class));
+        Assert.assertEquals((byte) 0, InProcessServer.defaultValue(byte.class));
+        Assert.assertEquals((short) 0, InProcessServer.defaultValue(short.class));
+        Assert.assertEquals('\0', InProcessServer.defaultValue(char.class));
+        Assert.assertEquals(0, InProcessServer.defaultValue(int.class));
+        Assert.assertEquals(0L, InProcessServer.defaultValue(long.class));
+        Assert.assertEquals(0.0f, InProcessServer.defaultValue(float.class));
+        Assert.assertEquals(0.0, InProcessServer.defaultValue(double.class));
+        Assert.assertNull(InProcessServer.defaultValue(void.class));
+        Assert.assertNull(InProcessServer.defaultValue(String.class));
+    }
+
+}
@@ -0,0 +1,100 @@
+package nl.inl.blacklab.server.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletResponse;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import nl.inl.blacklab.server.exceptions.ResponseAborted;
+
+public class TestResponseOutputStream {
+
+    /** What was sent to the client */
+    private ByteArrayOutputStream sent;
+
+    /** Response that sends to our buffer, without any Content-Encoding */
+    private HttpServletResponse response;
+
+    private static byte[] data(int size) {
+        byte[] data = new byte[size];
+        Arrays.fill(data, (byte) 'a');
+        return data;
+    }
+
+    @Before
+    public void setUp() {
+        sent = new ByteArrayOutputStream();
+        ServletOutputStream servletOut = new ServletOutputStream() {
+            @Override
+            public void write(int b) {
+                sent.write(b);
+            }
+
+            @Override
+            public boolean isReady() {
+                return true;
+            }
+
+            @Override
+            public void setWriteListener(WriteListener writeListener) {
+                // not needed
+            }
+        };
+        response = (HttpServletResponse) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] { HttpServletResponse.class }, (p, method, args) -> {
+                    if (method.getName().equals("getOutputStream"))
+                        return servletOut;
+                    return null;
+                });
+    }
+
+    @Test
+    public void testDiscardBeforeCommit() throws IOException {
+        ResponseOutputStream out = new ResponseOutputStream(response, null, ResponseOutputStream.DEFAULT_BUFFER_SIZE);
+        out.write(data(1000));
+        Assert.assertFalse(out.isCommitted());
+        Assert.assertTrue(out.discard());
+        out.write(data(10));
+        out.close();
+        Assert.assertEquals(10, sent.size());
+    }
+
+    @Test
+    public void testUncompressedErrorAfterCommit() throws IOException {
+        ResponseOutputStream out = new ResponseOutputStream(response, null, ResponseOutputStream.DEFAULT_BUFFER_SIZE);
+        for (int i = 0; i < 100; i++)
+            out.write(data(1000));
+        Assert.assertTrue(out.isCommitted());
+        Assert.assertFalse(out.discard());
+        int sentBeforeError = sent.size();
+        Assert.assertTrue(sentBeforeError >= ResponseOutputStream.DEFAULT_BUFFER_SIZE);
+
+        // An uncompressed response that was cut off looks complete to the client,
+        // so we must let the servlet container know to reset the connection
+        try {
+            out.abortWithError("test error");
+            Assert.fail("Expected ResponseAborted");
+        } catch (ResponseAborted e) {
+            Assert.assertEquals("test error", e.getMessage());
+        }
+
+        // Nothing else is sent
+        out.close();
+        Assert.assertEquals(sentBeforeError, sent.size());
+        try {
+            out.write(data(10));
+            Assert.fail("Expected IOException");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+
+}
@@ -11,6 +11,7 @@ import java.util.concurrent.ExecutorService;
 import java.util.concurrent.LinkedBlockingDeque;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Pattern;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
@@ -95,11 +96,82 @@ public class FileProcessor implements AutoCloseable {
          */
         void file(String path, byte[] contents, File file) throws Exception;
 
+        /**
+         * A file is about to be split into parts (see {@link FileSplitter}).
+         * <p>
+         * Called once per split file, before its first part is handled.
+         *
+         * @param path path to the file
+         * @param file the file
+         */
+        default void splitFileStarted(String path, File file) {
+            // (nothing by default)
+        }
+
+        /**
+         * Handle a part of a file that was split by the {@link FileSplitter}.
+         * <p>
+         * Called instead of {@link #file(String, byte[], File)} for each part. Parts
+         * may be handled in multiple threads. By default, the part is handled like a
+         * file.
+         *
+         * @param path path to the file the part was split from
+         * @param contents contents of the part
+         * @param file the file the part was split from
+         * @throws Exception these will be passed to
+         *             {@link ErrorHandler#errorOccurred(Throwable, String, File)}
+         */
+        default void filePart(String path, byte[] contents, File file) throws Exception {
+            file(path, contents, file);
+        }
+
+        /**
+         * All parts of a split file have been handled.
+         * <p>
+         * Called once per split file, so it can be reported as a single file.
+         *
+         * @param path path to the file
+         * @param file the file
+         */
+        default void splitFileDone(String path, File file) {
+            // (nothing by default)
+        }
+
         // Regular file(File f) function is omitted on purpose.
         // As we process regular files as well as "virtual" files (entries in archives and the like) in the same manner.
         // This means in some cases there is no actual file backing up the data
     }
 
+    /**
+     * Splits a large file into parts that can be processed separately (and in
+     * parallel), so the file doesn't need to be read into memory as a whole.
+     */
+    @FunctionalInterface
+    public interface FileSplitter {
+        /**
+         * Split a file into parts, if possible.
+         *
+         * @param file the file to split
+         * @param partHandler called with the contents of each part
+         * @return true if the file was split, false if the file should be processed
+         *         as a whole (in which case partHandler was not called)
+         * @throws IOException on error reading the file
+         */
+        boolean split(File file, PartHandler partHandler) throws IOException;
+    }
+
+    /**
+     * Handles a part of a file split by a {@link FileSplitter}.
+     */
+    @FunctionalInterface
+    public interface PartHandler {
+        /**
+         * @param contents contents of this part
+         * @return true if we should continue with the next part, false if not
+         */
+        boolean part(byte[] contents);
+    }
+
     /**
      * Handles error, and decides whether to continue processing or not.
      */
@@ -219,6 +291,9 @@ public class FileProcessor implements AutoCloseable {
     /** What to do with each file */
     private FileHandler fileHandler;
 
+    /** Splits large files into parts, or null if we don't split files */
+    private FileSplitter fileSplitter;
+
     /** Decides whether or not to continue when an error occurs */
     private ErrorHandler errorHandler = new SimpleErrorHandler(false);
 
@@ -372,6 +447,19 @@ public class FileProcessor implements AutoCloseable {
         this.fileHandler = fileHandler;
     }
 
+    /**
+     * Split large regular files into parts that are handled separately.
+     *
+     * Each part is passed to {@link FileHandler#file(String, byte[], File)} with
+     * the file's path. Parts are handled in parallel if we're using multiple
+     * threads. Archives and gzipped files are never split.
+     *
+     * @param fileSplitter splitter to use, or null to never split files
+     */
+    public void setFileSplitter(FileSplitter fileSplitter) {
+        this.fileSplitter = fileSplitter;
+    }
+
     /**
      * Process a file or directory.
      *
@@ -407,7 +495,10 @@ public class FileProcessor implements AutoCloseable {
             }
         } else {
             try {
-                processFile(file.getAbsolutePath(), FileUtils.readFileToByteArray(file), file);
+                String path = file.getAbsolutePath();
+                if (canSplit(path) && splitFile(path, file))
+                    return;
+                processFile(path, FileUtils.readFileToByteArray(file), file);
             } catch (IOException e) {
                 reportAndAbort(e, file.getAbsolutePath(), file);
                 return;
@@ -415,6 +506,53 @@ public class FileProcessor implements AutoCloseable {
         }
     }
 
+    /**
+     * Should we try to split this file into parts?
+     *
+     * @param path path to the file
+     * @return true if we have a splitter and this is a regular file we would handle
+     */
+    private boolean canSplit(String path) {
+        if (fileSplitter == null || path.endsWith(".gz") || path.endsWith(".tgz") || path.endsWith(".zip"))
+            return false;
+        return !skipFile(path) && getFileNamePattern().matcher(path).matches();
+    }
+
+    /**
+     * Split a file into parts and process those.
+     *
+     * The FileHandler is told when we start processing the parts and when they've
+     * all been processed, so the parts can be reported as a single file.
+     *
+     * @param path path to the file
+     * @param file the file
+     * @return true if the file was split, false if it should be processed as a whole
+     * @throws IOException on error reading the file
+     */
+    private boolean splitFile(String path, File file) throws IOException {
+        AtomicInteger numberOfParts = new AtomicInteger();
+        AtomicInteger partsPending = new AtomicInteger(1); // (1 until we're done splitting)
+        Runnable partDone = () -> {
+            if (partsPending.decrementAndGet() == 0)
+                fileHandler.splitFileDone(path, file);
+        };
+        boolean split = fileSplitter.split(file, part -> {
+            if (numberOfParts.getAndIncrement() == 0)
+                fileHandler.splitFileStarted(path, file);
+            partsPending.incrementAndGet();
+            CompletableFuture.runAsync(makeRunnable(() -> fileHandler.filePart(path, part, file)), executor)
+                    .exceptionally(e -> reportAndAbort(e, path, file))
+                    .thenRun(partDone);
+            return !closed; // quit splitting the file if we've received an error in the meantime
+        });
+        if (split) {
+            if (numberOfParts.get() == 0)
+                fileHandler.splitFileStarted(path, file); // (no parts; still report the file)
+            partDone.run();
+        }
+        return split;
+    }
+
     /**
      * Process from an InputStream, which may be an archive or a regular file.
      *
@@ -0,0 +1,339 @@
+package nl.inl.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Splits a large XML file into separate parts, one for each occurrence of an
+ * element (e.g. the document element).
+ *
+ * The file is scanned through a memory-mapped window, so it is never read into
+ * memory as a whole. Each part consists of everything before and including the
+ * root start tag (XML declaration, DOCTYPE, namespace declarations on the root
+ * element), followed by the element and the root end tag. This means that XPaths
+ * like <code>//doc</code> or <code>/root/doc</code> still match in each part.
+ * Anything else outside the elements (e.g. a shared header) is not included.
+ *
+ * Only works for encodings that are compatible with ASCII, like UTF-8 or
+ * ISO-8859-1. Elements nested inside an element of the same name are part of the
+ * outer element.
+ *
+ * If a root element name is given (like for <code>/root/doc</code>), only
+ * direct children of the root are split off, and files with a different root
+ * element are not split. Otherwise (like for <code>//doc</code>), the outermost
+ * matching elements at any depth are split off.
+ */
+public class XmlElementSplitter implements FileProcessor.FileSplitter {
+
+    /** How much of the file to map into memory at once while scanning */
+    private static final int WINDOW_SIZE = 256 * 1024 * 1024;
+
+    /** Name of the root element, or null to split on elements at any depth (prefix, if any, is ignored) */
+    private final String rootElementName;
+
+    /** Name of the element to split on (prefix, if any, is ignored) */
+    private final String elementName;
+
+    /** Only split files at least this large */
+    private final long minimumFileSize;
+
+    /**
+     * @param elementName local name of the element to split on, at any depth
+     * @param minimumFileSize only split files at least this large; smaller files are
+     *            processed as a whole
+     */
+    public XmlElementSplitter(String elementName, long minimumFileSize) {
+        this(null, elementName, minimumFileSize);
+    }
+
+    /**
+     * @param rootElementName local name of the root element, or null to split on
+     *            elements at any depth
+     * @param elementName local name of the element to split on
+     * @param minimumFileSize only split files at least this large; smaller files are
+     *            processed as a whole
+     */
+    public XmlElementSplitter(String rootElementName, String elementName, long minimumFileSize) {
+        this.rootElementName = rootElementName;
+        this.elementName = elementName;
+        this.minimumFileSize = minimumFileSize;
+    }
+
+    @Override
+    public boolean split(File file, FileProcessor.PartHandler partHandler) throws IOException {
+        if (file.length() < minimumFileSize)
+            return false;
+        try (MappedFile in = new MappedFile(file)) {
+            return new Scanner(in, partHandler).scan();
+        }
+    }
+
+    /** Reads a file through a sliding memory-mapped window. */
+    private static class MappedFile implements AutoCloseable {
+
+        private final FileChannel channel;
+
+        private final long size;
+
+        private MappedByteBuffer window;
+
+        private long windowStart;
+
+        private long pos;
+
+        MappedFile(File file) throws IOException {
+            channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+            size = channel.size();
+        }
+
+        long position() {
+            return pos;
+        }
+
+        /**
+         * Read the next byte.
+         *
+         * @return the byte (0-255), or -1 at the end of the file
+         */
+        int read() throws IOException {
+            if (pos >= size)
+                return -1;
+            if (window == null || pos >= windowStart + window.limit()) {
+                windowStart = pos;
+                window = channel.map(FileChannel.MapMode.READ_ONLY, pos, Math.min(WINDOW_SIZE, size - pos));
+            }
+            return window.get((int) (pos++ - windowStart)) & 0xFF;
+        }
+
+        /** Go back one byte (only valid directly after reading a byte). */
+        void unread() {
+            pos--;
+        }
+
+        /**
+         * Copy a range of bytes from the file.
+         *
+         * @param start first byte
+         * @param end byte after the last
+         * @param dest where to copy the bytes
+         * @param destOffset where in dest to copy them
+         */
+        void copy(long start, long end, byte[] dest, int destOffset) throws IOException {
+            int length = (int) (end - start);
+            if (window != null && start >= windowStart && end <= windowStart + window.limit()) {
+                // Already mapped; copy directly
+                ByteBuffer buf = window.duplicate();
+                buf.position((int) (start - windowStart));
+                buf.get(dest, destOffset, length);
+            } else {
+                ByteBuffer buf = ByteBuffer.wrap(dest, destOffset, length);
+                while (buf.hasRemaining()) {
+                    if (channel.read(buf, start + buf.position() - destOffset) < 0)
+                        throw new IOException("Unexpected end of file");
+                }
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            window = null;
+            channel.close();
+        }
+    }
+
+    /** Scans the file for the elements to split on. */
+    private class Scanner {
+
+        private final MappedFile in;
+
+        private final FileProcessor.PartHandler partHandler;
+
+        /** Everything up to and including the root start tag */
+        private byte[] header;
+
+        /** The root end tag */
+        private byte[] footer;
+
+        /** Current element depth */
+        private int depth = 0;
+
+        /** Byte position of the current element's start tag, or -1 if not in one */
+        private long elementStart = -1;
+
+        /** Depth outside the current element */
+        private int elementDepth;
+
+        Scanner(MappedFile in, FileProcessor.PartHandler partHandler) {
+            this.in = in;
+            this.partHandler = partHandler;
+        }
+
+        /**
+         * Scan the file and pass the parts to the handler.
+         *
+         * @return false if the file cannot be split (the root element is the element to
+         *         split on or not the expected root element, or the file isn't
+         *         ASCII-compatible)
+         */
+        boolean scan() throws IOException {
+            int first = in.read();
+            if (first == 0xFE || first == 0xFF || first == 0)
+                return false; // UTF-16 or UTF-32
+            int b = first;
+            while (b != -1) {
+                if (b == '<') {
+                    long tagStart = in.position() - 1;
+                    int c = in.read();
+                    if (c == '?') {
+                        skipUntil("?>");
+                    } else if (c == '!') {
+                        skipDeclaration();
+                    } else if (c == '/') {
+                        String name = readName(in.read());
+                        skipUntil(">");
+                        depth--;
+                        if (elementStart >= 0 && depth == elementDepth && localName(name).equals(elementName)) {
+                            if (!emit(elementStart, in.position()))
+                                return true;
+                            elementStart = -1;
+                        }
+                    } else if (c != -1) {
+                        String name = readName(c);
+                        boolean selfClosing = skipStartTag();
+                        boolean matches = localName(name).equals(elementName);
+                        if (depth == 0) {
+                            // Root element
+                            if (matches || selfClosing)
+                                return false; // nothing to split
+                            if (rootElementName != null && !localName(name).equals(rootElementName))
+                                return false; // documentPath won't match; let the indexer deal with it
+                            header = new byte[(int) in.position()];
+                            in.copy(0, in.position(), header, 0);
+                            footer = ("</" + name + ">").getBytes(StandardCharsets.UTF_8);
+                        } else if (elementStart < 0 && matches && (rootElementName == null || depth == 1)) {
+                            elementStart = tagStart;
+                            elementDepth = depth;
+                        }
+                        if (selfClosing) {
+                            if (elementStart == tagStart) {
+                                if (!emit(elementStart, in.position()))
+                                    return true;
+                                elementStart = -1;
+                            }
+                        } else {
+                            depth++;
+                        }
+                    }
+                }
+                b = in.read();
+            }
+            return true;
+        }
+
+        private boolean emit(long start, long end) throws IOException {
+            long length = header.length + end - start + footer.length;
+            if (length > Integer.MAX_VALUE - 8)
+                throw new IOException("XML element too large to process: " + (end - start) + " bytes");
+            byte[] part = new byte[(int) length];
+            System.arraycopy(header, 0, part, 0, header.length);
+            in.copy(start, end, part, header.length);
+            System.arraycopy(footer, 0, part, part.length - footer.length, footer.length);
+            return partHandler.part(part);
+        }
+
+        private String readName(int c) throws IOException {
+            StringBuilder name = new StringBuilder();
+            while (c != -1 && c != '>' && c != '/' && !Character.isWhitespace(c)) {
+                name.append((char) c);
+                c = in.read();
+            }
+            if (c == '>' || c == '/')
+                in.unread(); // let the caller see the end of the tag
+            return name.toString();
+        }
+
+        /**
+         * Skip the rest of a start tag.
+         *
+         * @return true if this was a self-closing tag
+         */
+        private boolean skipStartTag() throws IOException {
+            int quote = 0;
+            int prev = 0;
+            int c;
+            while ((c = in.read()) != -1) {
+                if (quote != 0) {
+                    if (c == quote)
+                        quote = 0;
+                } else if (c == '"' || c == '\'') {
+                    quote = c;
+                } else if (c == '>') {
+                    return prev == '/';
+                }
+                prev = c;
+            }
+            return false;
+        }
+
+        /** Skip a comment, CDATA section or DOCTYPE declaration. */
+        private void skipDeclaration() throws IOException {
+            int c = in.read();
+            if (c == '-') {
+                skipUntil("-->");
+            } else if (c == '[') {
+                skipUntil("]]>");
+            } else {
+                // DOCTYPE; may contain an internal subset in square brackets
+                int brackets = 0;
+                int quote = 0;
+                while (c != -1) {
+                    if (quote != 0) {
+                        if (c == quote)
+                            quote = 0;
+                    } else if (c == '"' || c == '\'') {
+                        quote = c;
+                    } else if (c == '[') {
+                        brackets++;
+                    } else if (c == ']') {
+                        brackets--;
+                    } else if (c == '>' && brackets == 0) {
+                        return;
+                    }
+                    c = in.read();
+                }
+            }
+        }
+
+        private void skipUntil(String end) throws IOException {
+            // Keep the last few bytes read, to compare with the end string
+            int[] last = new int[end.length()];
+            int n = 0;
+            int c;
+            while ((c = in.read()) != -1) {
+                last[n % last.length] = c;
+                n++;
+                if (n >= last.length && endsWith(last, n, end))
+                    return;
+            }
+        }
+
+        private boolean endsWith(int[] last, int n, String end) {
+            for (int i = 0; i < end.length(); i++) {
+                if (last[(n + i) % last.length] != end.charAt(i))
+                    return false;
+            }
+            return true;
+        }
+    }
+
+    private static String localName(String name) {
+        int i = name.indexOf(':');
+        return i < 0 ? name : name.substring(i + 1);
+    }
+
+}
@@ -0,0 +1,136 @@
+package nl.inl.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestXmlElementSplitter {
+
+    private static final String HEADER = "<?xml version=\"1.0\" encoding=\"utf-8\"?>\n"
+            + "<!DOCTYPE root [ <!ENTITY e \"<doc>\"> ]>\n"
+            + "<root xmlns:x=\"urn:test\" a='>'>";
+
+    private File dir;
+
+    @Before
+    public void setUp() {
+        UtilsForTesting.removeBlackLabTestDirs();
+        dir = UtilsForTesting.createBlackLabTestDir("XmlElementSplitter");
+    }
+
+    @After
+    public void tearDown() {
+        UtilsForTesting.removeBlackLabTestDirs();
+    }
+
+    private List<String> split(String xml, String elementName, long minimumFileSize) throws IOException {
+        return split(xml, null, elementName, minimumFileSize);
+    }
+
+    private List<String> split(String xml, String rootElementName, String elementName, long minimumFileSize) throws IOException {
+        File f = new File(dir, "test.xml");
+        FileUtils.writeStringToFile(f, xml, StandardCharsets.UTF_8);
+        List<String> parts = new ArrayList<>();
+        boolean split = new XmlElementSplitter(rootElementName, elementName, minimumFileSize).split(f, part -> {
+            parts.add(new String(part, StandardCharsets.UTF_8));
+            return true;
+        });
+        return split ? parts : null;
+    }
+
+    @Test
+    public void testSplit() throws IOException {
+        String xml = HEADER
+                + "<x:doc id='1'><w>a</w><!-- </x:doc> --><doc>nested</doc></x:doc>"
+                + "<group><doc/></group>"
+                + "<?pi <doc>?><doc id=\"3\" title=\"a > b\"><![CDATA[</doc>]]></doc >"
+                + "</root>";
+        List<String> expected = Arrays.asList(
+                HEADER + "<x:doc id='1'><w>a</w><!-- </x:doc> --><doc>nested</doc></x:doc></root>",
+                HEADER + "<doc/></root>",
+                HEADER + "<doc id=\"3\" title=\"a > b\"><![CDATA[</doc>]]></doc ></root>");
+        Assert.assertEquals(expected, split(xml, "doc", 0));
+    }
+
+    @Test
+    public void testSplitRootChildren() throws IOException {
+        // For /root/doc, only direct children of the root are documents
+        String xml = HEADER
+                + "<x:doc id='1'><doc>nested</doc></x:doc>"
+                + "<group><doc id='2'/></group>"
+                + "<doc id='3'/>"
+                + "</root>";
+        List<String> expected = Arrays.asList(
+                HEADER + "<x:doc id='1'><doc>nested</doc></x:doc></root>",
+                HEADER + "<doc id='3'/></root>");
+        Assert.assertEquals(expected, split(xml, "root", "doc", 0));
+        // (root prefix is ignored)
+        String prefixedRoot = xml.replace("<root ", "<x:root ").replace("</root>", "</x:root>");
+        Assert.assertEquals(2, split(prefixedRoot, "root", "doc", 0).size());
+    }
+
+    @Test
+    public void testSplitFileReportedOnce() throws IOException {
+        File f = new File(dir, "test.xml");
+        FileUtils.writeStringToFile(f, HEADER + "<doc/><doc/><doc/></root>", StandardCharsets.UTF_8);
+        List<String> events = Collections.synchronizedList(new ArrayList<>());
+        try (FileProcessor proc = new FileProcessor(2, false, false)) {
+            proc.setFileSplitter(new XmlElementSplitter("root", "doc", 0));
+            proc.setFileHandler(new FileProcessor.FileHandler() {
+                @Override
+                public void directory(File d) {
+                    events.add("directory");
+                }
+
+                @Override
+                public void file(String path, InputStream is, File file) {
+                    events.add("file");
+                }
+
+                @Override
+                public void file(String path, byte[] contents, File file) {
+                    events.add("file");
+                }
+
+                @Override
+                public void splitFileStarted(String path, File file) {
+                    events.add("started");
+                }
+
+                @Override
+                public void filePart(String path, byte[] contents, File file) {
+                    events.add("part");
+                }
+
+                @Override
+                public void splitFileDone(String path, File file) {
+                    events.add("done");
+                }
+            });
+            proc.processFile(f);
+        }
+        Assert.assertEquals(Arrays.asList("started", "part", "part", "part", "done"), events);
+    }
+
+    @Test
+    public void testNoSplit() throws IOException {
+        // Root is the document element
+        Assert.assertNull(split("<doc><w>a</w></doc>", "doc", 0));
+        // File is too small
+        Assert.assertNull(split(HEADER + "<doc/></root>", "doc", 1000));
+        // Root element doesn't match the document path
+        Assert.assertNull(split(HEADER + "<doc/></root>", "corpus", "doc", 0));
+    }
+
+}